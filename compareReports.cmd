@@ -0,0 +1,6 @@
+@echo off
+
+rem Compares two run reports written by the importer and flags the regressions. Pass -h to see all options
+rem   compareReports.cmd baseline-report.json run-report.json
+
+java -cp target/neo4j-webgraph-1.8.3.0-jar-with-dependencies.jar org.neo4japps.webgraph.importer.ReportComparison %*
\ No newline at end of file
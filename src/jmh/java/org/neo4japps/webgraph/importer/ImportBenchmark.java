@@ -0,0 +1,165 @@
+package org.neo4japps.webgraph.importer;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4japps.webgraph.util.DirectoryUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micro benchmark of the import hot path: one operation adds a page with {@link GraphImporter#addPage} and its
+ * outgoing links with {@link GraphImporter#addLinks}, the way the crawler does for every visited page.
+ * <p>
+ * The pages and their links are generated up front, so the benchmark measures the importer rather than URL building.
+ * Link targets are drawn from the same set of pages. The higher the hub skew, the more links point to the first few
+ * pages, which makes the importers look up (and lock) the same nodes over and over. Every measurement iteration
+ * starts with an empty store. Once all pages have been imported, the following operations update existing pages.
+ * <p>
+ * Build and run it with the benchmark profile, e.g.:
+ * <p>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="ImportBenchmark -p store=batch -prof gc"
+ * <p>
+ * '-prof gc' reports the allocation rate per operation. For lock contention use '-prof stack' (time spent BLOCKED or
+ * WAITING per thread state) or '-prof jfr', which records Java monitor and park events for JDK Mission Control.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ImportBenchmark {
+
+    private static final String ROOT_URL = "http://www.benchmark.local/";
+
+    private static final int TRANSACTION_SIZE = 500;
+
+    /**
+     * batch: {@link BatchGraphImporter} on a temporary directory. transactional: {@link TransactionalGraphImporter} on
+     * a temporary directory. impermanent: {@link TransactionalGraphImporter} on an in-memory store.
+     */
+    @Param({"batch", "transactional", "impermanent"})
+    public String store;
+
+    @Param({"5", "50"})
+    public int outDegree;
+
+    /**
+     * Exponent applied to the uniformly distributed link targets: 1 spreads the links evenly, 3 makes the first pages
+     * hubs, like on most websites.
+     */
+    @Param({"1", "3"})
+    public int hubSkew;
+
+    @Param({"20000"})
+    public int pageCount;
+
+    private String[] urls;
+    private List<List<String>> links;
+    private String content;
+
+    private final AtomicInteger nextPage = new AtomicInteger();
+
+    private File storeDir;
+    private GraphImporter importer;
+
+    @Setup(Level.Trial)
+    public void generatePages() {
+        final Random random = new Random(42);
+
+        urls = new String[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            urls[i] = ROOT_URL + "page/" + i;
+        }
+
+        links = new ArrayList<>(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            final List<String> pageLinks = new ArrayList<>(outDegree);
+            for (int j = 0; j < outDegree; j++) {
+                pageLinks.add(urls[(int) (Math.pow(random.nextDouble(), hubSkew) * pageCount)]);
+            }
+            links.add(pageLinks);
+        }
+
+        final StringBuilder html = new StringBuilder();
+        while (html.length() < 4096) {
+            html.append("Lorem ipsum dolor sit amet, consectetur adipiscing elit. ");
+        }
+        content = html.toString();
+    }
+
+    @Setup(Level.Iteration)
+    public void createImporter() throws IOException {
+        nextPage.set(0);
+        final long now = System.currentTimeMillis();
+
+        switch (store) {
+            case "batch":
+                storeDir = Files.createTempDirectory("import-benchmark").toFile();
+                importer = new BatchGraphImporter(storeDir.getPath(), ROOT_URL, now, 1);
+                break;
+            case "transactional":
+                storeDir = Files.createTempDirectory("import-benchmark").toFile();
+                importer = new TransactionalGraphImporter(
+                        new GraphDatabaseFactory().newEmbeddedDatabase(storeDir.getPath()), ROOT_URL, now,
+                        TRANSACTION_SIZE);
+                break;
+            case "impermanent":
+                importer = TransactionalGraphImporter.createImpermanentInstance(ROOT_URL, now, TRANSACTION_SIZE);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown store " + store);
+        }
+
+        importer.addPage(ROOT_URL, content);
+    }
+
+    @TearDown(Level.Iteration)
+    public void shutdownImporter() throws IOException {
+        importer.shutdown();
+        if (storeDir != null) {
+            DirectoryUtil.deleteDir(storeDir);
+            storeDir = null;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Node addPageAndLinks() {
+        return importNextPage();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Node addPageAndLinksConcurrently() {
+        return importNextPage();
+    }
+
+    private Node importNextPage() {
+        final int i = Math.floorMod(nextPage.getAndIncrement(), pageCount);
+        final Node page = importer.addPage(urls[i], content);
+        importer.addLinks(page, links.get(i));
+        return page;
+    }
+}
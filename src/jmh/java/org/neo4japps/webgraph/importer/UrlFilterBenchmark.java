@@ -0,0 +1,190 @@
+package org.neo4japps.webgraph.importer;
+
+import edu.uci.ics.crawler4j.url.WebURL;
+import org.neo4japps.webgraph.util.UrlUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro benchmark of the URL layer, which runs for every discovered link rather than for every imported page:
+ * {@link HtmlOnlyCrawler#shouldVisit}, {@link ApplicationConfiguration#isCrawlableUrl} and the {@link UrlUtil}
+ * methods. One operation handles one URL, so '-prof gc' reports the allocation per URL.
+ * <p>
+ * Each corpus is a fixed, seeded mix of URLs of one kind, "mixed" combines all of them in the proportions typically
+ * found on a website. The methods that take a {@link URL} only get the well-formed URLs of the corpus.
+ * <p>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="UrlFilterBenchmark -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlFilterBenchmark {
+
+    private static final int CORPUS_SIZE = 4096;
+
+    /**
+     * pages: ordinary crawlable pages. longQuery: pages with tracking and session parameters. media: images, CSS and
+     * scripts, including the broken "image.jpg/" kind. excluded: ignored subdomains and other domains. malformed: URLs
+     * that java.net.URL rejects. mixed: all of the above.
+     */
+    @Param({"mixed", "pages", "longQuery", "media", "excluded", "malformed"})
+    public String corpus;
+
+    private String[] urls;
+    private WebURL[] webUrls;
+    private URL[] parsedUrls;
+
+    private ApplicationConfiguration appConfig;
+    private HtmlOnlyCrawler crawler;
+
+    private int next;
+    private int nextParsed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(ApplicationConfiguration.ROOT_URL_KEY, "https://www.my.company.com");
+        props.setProperty(ApplicationConfiguration.SEED_URLS_KEY, "https://www.my.company.com");
+        props.setProperty(ApplicationConfiguration.DOMAINS_TO_CRAWL_KEY, "my.company.com, mycomp.com, my-company.com");
+        props.setProperty(ApplicationConfiguration.SUBDOMAINS_TO_IGNORE_KEY,
+                "shopping.my.company.com, intranet.my.company.com, static.my.company.com");
+        appConfig = new ApplicationConfiguration(new String[]{}, props);
+
+        crawler = new HtmlOnlyCrawler();
+        crawler.setAppConfig(appConfig);
+
+        urls = generateCorpus(corpus, new Random(42));
+
+        webUrls = new WebURL[urls.length];
+        final List<URL> wellFormed = new ArrayList<>();
+        for (int i = 0; i < urls.length; i++) {
+            webUrls[i] = new WebURL();
+            webUrls[i].setURL(urls[i]);
+            try {
+                wellFormed.add(new URL(urls[i]));
+            } catch (MalformedURLException e) {
+                // only used by the string based benchmarks
+            }
+        }
+        // fall back to a single URL for the malformed corpus, so that the URL based benchmarks still run
+        if (wellFormed.isEmpty()) {
+            wellFormed.add(new URL("https://www.my.company.com/"));
+        }
+        parsedUrls = wellFormed.toArray(new URL[0]);
+    }
+
+    static String[] generateCorpus(String kind, Random random) {
+        final String[] urls = new String[CORPUS_SIZE];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = generateUrl(kind.equals("mixed") ? mixedKind(random) : kind, i, random);
+        }
+        return urls;
+    }
+
+    private static String mixedKind(Random random) {
+        final int r = random.nextInt(100);
+        if (r < 50) {
+            return "pages";
+        } else if (r < 65) {
+            return "longQuery";
+        } else if (r < 85) {
+            return "media";
+        } else if (r < 97) {
+            return "excluded";
+        }
+        return "malformed";
+    }
+
+    private static String generateUrl(String kind, int i, Random random) {
+        switch (kind) {
+            case "pages":
+                final String[] hosts = {"https://www.my.company.com", "https://my.company.com",
+                        "https://sub1.my.company.com", "http://www.mycomp.com"};
+                final String host = hosts[random.nextInt(hosts.length)];
+                return random.nextInt(10) == 0 ? host + "/" : host + "/section" + random.nextInt(20) + "/page-" + i
+                        + (random.nextBoolean() ? ".html" : "");
+            case "longQuery":
+                return "https://www.my.company.com/search/results.aspx?q=product+" + i
+                        + "&utm_source=newsletter&utm_medium=email&utm_campaign=spring-sale-" + random.nextInt(100)
+                        + "&sessionid=" + Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong())
+                        + "&page=" + random.nextInt(50) + "&sort=price_asc&filter=colour%3Dred%26size%3DXL#results";
+            case "media":
+                final String[] media = {".jpg", ".png", ".gif", ".css", ".js", ".pdf", ".jpg/", ".png/"};
+                return random.nextInt(5) == 0 ? "https://www.my.company.com/img/banner-" + i
+                        : "https://www.my.company.com/assets/file-" + i + media[random.nextInt(media.length)];
+            case "excluded":
+                final String[] excluded = {"https://shopping.my.company.com", "https://intranet.my.company.com",
+                        "https://www.facebook.com", "https://twitter.com", "http://www.othersite.org"};
+                return excluded[random.nextInt(excluded.length)] + "/item/" + i;
+            case "malformed":
+                final String[] malformed = {"htps://www.my.company.com/page-", "www.my.company.com/page-",
+                        "javascript:void(", "//www.my.company.com/page-", "http//www.my.company.com/page-"};
+                return malformed[random.nextInt(malformed.length)] + i;
+            default:
+                throw new IllegalArgumentException("Unknown corpus " + kind);
+        }
+    }
+
+    private int nextIndex() {
+        final int i = next;
+        next = (i + 1) & (CORPUS_SIZE - 1);
+        return i;
+    }
+
+    private URL nextParsedUrl() {
+        final URL url = parsedUrls[nextParsed];
+        nextParsed = nextParsed + 1 == parsedUrls.length ? 0 : nextParsed + 1;
+        return url;
+    }
+
+    @Benchmark
+    public boolean shouldVisit() {
+        return crawler.shouldVisit(webUrls[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean isCrawlableUrl() {
+        return appConfig.isCrawlableUrl(urls[nextIndex()]);
+    }
+
+    @Benchmark
+    public void extractHost(Blackhole blackhole) {
+        try {
+            blackhole.consume(UrlUtil.extractHost(urls[nextIndex()]));
+        } catch (MalformedURLException e) {
+            blackhole.consume(e);
+        }
+    }
+
+    @Benchmark
+    public String extractDomain() {
+        return UrlUtil.extractDomain(nextParsedUrl());
+    }
+
+    @Benchmark
+    public boolean isHomePage() {
+        return UrlUtil.isHomePage(nextParsedUrl());
+    }
+}
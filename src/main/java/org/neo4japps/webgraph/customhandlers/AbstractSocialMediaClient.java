@@ -2,29 +2,90 @@ package org.neo4japps.webgraph.customhandlers;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.neo4japps.webgraph.importer.DeferredUpdateException;
+import org.neo4japps.webgraph.importer.StageTimers;
+import org.neo4japps.webgraph.jfr.SocialApiCallEvent;
+import org.neo4japps.webgraph.util.CircuitBreaker;
+import org.neo4japps.webgraph.util.RateLimiter;
 import org.neo4japps.webgraph.util.SimpleHttpClient;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
 /**
- * This base class is thread-safe.
+ * This base class is thread-safe. All threads using a client share its {@link RateLimiter}, which enforces the
+ * politeness delay without holding a lock while waiting, and its {@link CircuitBreaker}, which stops all requests while
+ * the service keeps failing.
  */
 public abstract class AbstractSocialMediaClient implements SocialMediaClient {
+
+    /**
+     * Turns the JSON returned by the social API into the result of a query.
+     */
+    protected interface ResponseParser<T> {
+        T parse(String jsonString) throws ServiceUnavailableException;
+    }
+
+    private static final Runnable NO_OP = () -> {
+    };
+
     protected final Logger logger = LogManager.getLogger(this.getClass());
 
     protected final SimpleHttpClient httpClient;
 
-    private final Object mutex = new Object();
+    // no limit until the politeness delay is set
+    private final RateLimiter rateLimiter = new RateLimiter(0, TimeUnit.MILLISECONDS, 1);
+
+    private final CircuitBreaker circuitBreaker;
 
-    private volatile int politenessDelay = 0;
-    private volatile long lastFetchTime = 0;
+    private volatile String apiBaseUrl;
 
-    protected AbstractSocialMediaClient(SimpleHttpClient httpClient) {
+    /**
+     * @param apiBaseUrl scheme, host and port of the social API
+     */
+    protected AbstractSocialMediaClient(SimpleHttpClient httpClient, String apiBaseUrl) {
+        // opens when half of the last 20 requests failed, then lets a trial request through every 30 seconds
+        this(httpClient, apiBaseUrl, new CircuitBreaker(20, 5, 0.5, 30, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Package private visibility for unit testing
+     */
+    AbstractSocialMediaClient(SimpleHttpClient httpClient, String apiBaseUrl, CircuitBreaker circuitBreaker) {
         this.httpClient = httpClient;
+        this.apiBaseUrl = apiBaseUrl;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Sends the requests somewhere else than to the real social API, e.g. to a local stand-in for load testing.
+     */
+    public void setApiBaseUrl(String apiBaseUrl) {
+        this.apiBaseUrl = apiBaseUrl;
+    }
+
+    public String getApiBaseUrl() {
+        return apiBaseUrl;
     }
 
     @Override
     public void setPolitenessDelay(int value) {
         assert value >= 0;
-        this.politenessDelay = value;
+        rateLimiter.setInterval(value, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void setMaxBurst(int requests) {
+        rateLimiter.setBurst(requests);
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
     }
 
     @Override
@@ -34,45 +95,131 @@ public abstract class AbstractSocialMediaClient implements SocialMediaClient {
 
         final String queryUrl = getSocialApiUrl() + cleanUp(pageUrl);
 
-        int retryCounter = 0;
-
-        while (true) {
-            try {
-                waitPolitely();
-                String jsonString = httpClient.httpGet(queryUrl);
-                SocialJsonResponse jsonObject = deserialize(jsonString, queryUrl);
-                return jsonObject.getCount();
-            } catch (ServiceUnavailableException e) {
-                if (retryCounter == 10) {
-                    logger.warn(e.getMessage() + ". Giving up.");
-                    throw e;
-                }
-                retryCounter++;
-                logger.warn(e.getMessage() + ". Retrying... " + retryCounter);
-                sleep(1000);
-            }
+        return fetch(queryUrl, httpClient.getMaxContentLength(),
+                jsonString -> deserialize(jsonString, queryUrl).getCount());
+    }
+
+    @Override
+    public final CompletableFuture<Integer> getSocialCountAsync(String pageUrl) {
+        if (pageUrl == null)
+            return CompletableFuture.completedFuture(SocialJsonResponse.UNINITALIZED);
+
+        final String queryUrl = getSocialApiUrl() + cleanUp(pageUrl);
+
+        return fetchAsync(queryUrl, httpClient.getMaxContentLength(),
+                jsonString -> deserialize(jsonString, queryUrl).getCount());
+    }
+
+    /**
+     * Queries the social API politely. While the service is unavailable or unreachable, or the circuit breaker is open,
+     * the query is not retried but fails with a {@link DeferredUpdateException}, so that the caller can try again
+     * later. A response that can't be read counts as a failure of the service as well.
+     */
+    protected final <T> T fetch(String queryUrl, int maxContentLength, ResponseParser<T> parser) throws Exception {
+        checkCircuitBreaker();
+        try {
+            final long start = System.nanoTime();
+            final SocialApiCallEvent event = new SocialApiCallEvent();
+            event.begin();
+            rateLimiter.acquire();
+            String jsonString = httpClient.httpGet(queryUrl, maxContentLength);
+            commit(event, queryUrl, jsonString, false);
+            StageTimers.getInstance().record(StageTimers.Stage.SOCIAL_LOOKUP, start);
+            return parse(jsonString, parser);
+        } catch (DeferredUpdateException e) {
+            // already reported by parse()
+            throw e;
+        } catch (Exception | Error e) {
+            // interrupted while waiting for the rate limiter, a response that can't be read,...
+            onUnexpectedFailure();
+            throw e;
+        }
+    }
+
+    /**
+     * Non-blocking version of {@link #fetch}. Instead of sleeping, the request is scheduled for the time slot reserved
+     * with the rate limiter.
+     */
+    protected final <T> CompletableFuture<T> fetchAsync(String queryUrl, int maxContentLength,
+                                                        ResponseParser<T> parser) {
+        try {
+            checkCircuitBreaker();
+        } catch (DeferredUpdateException e) {
+            return CompletableFuture.failedFuture(e);
         }
+
+        final long start = System.nanoTime();
+        final SocialApiCallEvent event = new SocialApiCallEvent();
+        event.begin();
+        final long delay = rateLimiter.reserve();
+        final CompletableFuture<Void> slot = delay == 0 ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.runAsync(NO_OP, CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS));
+
+        return slot.thenCompose(ignore -> httpClient.httpGetAsync(queryUrl, maxContentLength))
+                .thenCompose(jsonString -> {
+                    commit(event, queryUrl, jsonString, true);
+                    StageTimers.getInstance().record(StageTimers.Stage.SOCIAL_LOOKUP, start);
+                    try {
+                        return CompletableFuture.completedFuture(parse(jsonString, parser));
+                    } catch (DeferredUpdateException e) {
+                        return CompletableFuture.failedFuture(e);
+                    }
+                })
+                .whenComplete((result, e) -> {
+                    final Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    if (cause != null && !(cause instanceof DeferredUpdateException)) {
+                        onUnexpectedFailure();
+                    }
+                });
     }
 
-    private void waitPolitely() {
-        if (politenessDelay == 0) {
-            return;
+    private static void commit(SocialApiCallEvent event, String queryUrl, String jsonString, boolean async) {
+        if (event.shouldCommit()) {
+            event.url = queryUrl;
+            event.responseLength = jsonString == null ? 0 : jsonString.length();
+            event.async = async;
+            event.unavailable = jsonString == null || jsonString.isEmpty()
+                    || SimpleHttpClient.SERVICE_UNAVAILABLE.equals(jsonString);
+            event.commit();
         }
+    }
 
-        synchronized (mutex) {
-            final long millisSinceLastFetch = System.currentTimeMillis() - lastFetchTime;
-            if (millisSinceLastFetch < politenessDelay) {
-                sleep(politenessDelay - millisSinceLastFetch);
-            }
-            lastFetchTime = System.currentTimeMillis();
+    private void checkCircuitBreaker() throws DeferredUpdateException {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new DeferredUpdateException(getClass().getSimpleName() + " circuit breaker is open");
         }
     }
 
-    private void sleep(long millis) {
+    /**
+     * Every call let through by the circuit breaker must report its outcome. Otherwise a trial call of the half-open
+     * breaker would never end, and the breaker would deny all calls from then on.
+     */
+    private void onUnexpectedFailure() {
+        circuitBreaker.onFailure();
+    }
+
+    /**
+     * Reports the outcome to the circuit breaker, unless the parser throws something other than a
+     * {@link ServiceUnavailableException}, which is left to the caller.
+     */
+    private <T> T parse(String jsonString, ResponseParser<T> parser) throws DeferredUpdateException {
         try {
-            Thread.sleep(millis);
-        } catch (InterruptedException ignore) {
-            Thread.currentThread().interrupt();
+            if (SimpleHttpClient.SERVICE_UNAVAILABLE.equals(jsonString)) {
+                throw new ServiceUnavailableException(getClass().getSimpleName() + " throttled or unavailable");
+            }
+            if (jsonString == null || jsonString.isEmpty()) {
+                // connection refused or reset, unknown host, timeout,...
+                throw new ServiceUnavailableException(getClass().getSimpleName() + " sent no response");
+            }
+            T result = parser.parse(jsonString);
+            circuitBreaker.onSuccess();
+            rateLimiter.speedUp();
+            return result;
+        } catch (ServiceUnavailableException e) {
+            // the service is overloaded, slow down all threads using this client
+            circuitBreaker.onFailure();
+            rateLimiter.slowDown();
+            throw new DeferredUpdateException(e.getMessage(), e);
         }
     }
 
@@ -0,0 +1,208 @@
+package org.neo4japps.webgraph.customhandlers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gathers the page URLs requested by concurrent observer threads and looks them up with one Facebook API request.
+ * <p>
+ * A batch is sent as soon as it holds the maximum number of URLs, or when the maximum wait time has passed since the
+ * first URL of the batch was requested. Each caller blocks until the count of its own URL is known.
+ * <p>
+ * This class is thread-safe.
+ */
+public class BatchingFacebookClient implements SocialMediaClient {
+
+    private static class PendingLookup {
+        final String pageUrl;
+        final CompletableFuture<Integer> count = new CompletableFuture<>();
+
+        PendingLookup(String pageUrl) {
+            this.pageUrl = pageUrl;
+        }
+    }
+
+    private final Logger logger = LogManager.getLogger(this.getClass());
+
+    private final FacebookClient client;
+    private final int maxBatchSize;
+    private final long maxWaitMillis;
+
+    private final BlockingQueue<PendingLookup> pendingLookups = new LinkedBlockingQueue<>();
+    private final Thread batcher;
+    private final AtomicBoolean isShutdown = new AtomicBoolean();
+
+    private final AtomicLong numberOfRequests = new AtomicLong();
+    private final AtomicLong numberOfLookups = new AtomicLong();
+
+    public BatchingFacebookClient(FacebookClient client, int maxBatchSize, long maxWaitMillis) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be greater than 0");
+        }
+        if (maxWaitMillis < 0) {
+            throw new IllegalArgumentException("maxWaitMillis must not be negative");
+        }
+
+        this.client = client;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitMillis = maxWaitMillis;
+
+        batcher = new Thread(this::sendBatches, getClass().getSimpleName());
+        batcher.setDaemon(true);
+        batcher.start();
+    }
+
+    @Override
+    public void setPolitenessDelay(int milliseconds) {
+        client.setPolitenessDelay(milliseconds);
+    }
+
+    @Override
+    public void setMaxBurst(int requests) {
+        client.setMaxBurst(requests);
+    }
+
+    @Override
+    public int getSocialCount(String pageUrl) throws Exception {
+        if (pageUrl == null) {
+            return SocialJsonResponse.UNINITALIZED;
+        }
+
+        if (pageUrl.indexOf(',') >= 0 || isShutdown.get()) {
+            // the URL can't be part of a comma separated list
+            numberOfRequests.incrementAndGet();
+            numberOfLookups.incrementAndGet();
+            return client.getSocialCount(pageUrl);
+        }
+
+        try {
+            return enqueue(pageUrl).get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Adds the URL to the next batch. Unlike {@link #getSocialCount(String)} this doesn't wait for the batch to be
+     * sent.
+     */
+    @Override
+    public CompletableFuture<Integer> getSocialCountAsync(String pageUrl) {
+        if (pageUrl == null) {
+            return CompletableFuture.completedFuture(SocialJsonResponse.UNINITALIZED);
+        }
+
+        if (pageUrl.indexOf(',') >= 0 || isShutdown.get()) {
+            numberOfRequests.incrementAndGet();
+            numberOfLookups.incrementAndGet();
+            return client.getSocialCountAsync(pageUrl);
+        }
+
+        return enqueue(pageUrl);
+    }
+
+    private CompletableFuture<Integer> enqueue(String pageUrl) {
+        final PendingLookup lookup = new PendingLookup(pageUrl);
+        pendingLookups.add(lookup);
+        if (isShutdown.get()) {
+            // the batcher may have stopped before it could see the lookup
+            failPendingLookups();
+        }
+        return lookup.count;
+    }
+
+    private void sendBatches() {
+        try {
+            while (!isShutdown.get()) {
+                final List<PendingLookup> batch = new ArrayList<>(maxBatchSize);
+                batch.add(pendingLookups.take());
+
+                final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+                while (batch.size() < maxBatchSize) {
+                    final PendingLookup next = pendingLookups.poll(deadline - System.nanoTime(),
+                            TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                send(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        failPendingLookups();
+    }
+
+    private void send(List<PendingLookup> batch) {
+        // several observers may ask for the same page
+        final LinkedHashSet<String> pageUrls = new LinkedHashSet<>();
+        for (PendingLookup lookup : batch) {
+            pageUrls.add(lookup.pageUrl);
+        }
+
+        try {
+            numberOfRequests.incrementAndGet();
+            numberOfLookups.addAndGet(pageUrls.size());
+            final Map<String, Integer> counts = client.getSocialCounts(new ArrayList<>(pageUrls));
+
+            for (PendingLookup lookup : batch) {
+                final Integer count = counts.get(lookup.pageUrl);
+                lookup.count.complete(count == null ? SocialJsonResponse.UNINITALIZED : count);
+            }
+        } catch (Exception e) {
+            logger.warn("Failure looking up " + pageUrls.size() + " URLs", e);
+            for (PendingLookup lookup : batch) {
+                lookup.count.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void failPendingLookups() {
+        PendingLookup lookup;
+        while ((lookup = pendingLookups.poll()) != null) {
+            lookup.count.completeExceptionally(new IllegalStateException(getClass().getSimpleName() + " shut down"));
+        }
+    }
+
+    /**
+     * @return the number of API requests sent so far
+     */
+    public long getNumberOfRequests() {
+        return numberOfRequests.get();
+    }
+
+    /**
+     * @return the number of distinct URLs looked up so far
+     */
+    public long getNumberOfLookups() {
+        return numberOfLookups.get();
+    }
+
+    @Override
+    public void shutdown() {
+        if (isShutdown.getAndSet(true)) {
+            return;
+        }
+        batcher.interrupt();
+        failPendingLookups();
+    }
+}
@@ -0,0 +1,109 @@
+package org.neo4japps.webgraph.customhandlers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Looks up social counts in a {@link SocialCountCache} before asking the social API, and caches the counts it gets.
+ * <p>
+ * This class is thread-safe.
+ */
+public class CachingSocialMediaClient implements SocialMediaClient {
+    private final Logger logger = LogManager.getLogger(this.getClass());
+
+    private final SocialMediaClient client;
+    private final SocialCountCache cache;
+    private final long ttlMillis;
+
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong cacheUpdates = new AtomicLong();
+
+    /**
+     * @param cache closed when this client is shut down
+     */
+    public CachingSocialMediaClient(SocialMediaClient client, SocialCountCache cache, long ttlMillis) {
+        this.client = client;
+        this.cache = cache;
+        this.ttlMillis = ttlMillis;
+    }
+
+    @Override
+    public int getSocialCount(String pageUrl) throws Exception {
+        if (pageUrl == null) {
+            return SocialJsonResponse.UNINITALIZED;
+        }
+
+        final Integer cachedCount = cache.get(pageUrl, ttlMillis);
+        if (cachedCount != null) {
+            cacheHits.incrementAndGet();
+            return cachedCount;
+        }
+        cacheMisses.incrementAndGet();
+
+        final int count = client.getSocialCount(pageUrl);
+        if (count != SocialJsonResponse.UNINITALIZED) {
+            cache.put(pageUrl, count);
+            cacheUpdates.incrementAndGet();
+        }
+        return count;
+    }
+
+    @Override
+    public CompletableFuture<Integer> getSocialCountAsync(String pageUrl) {
+        if (pageUrl == null) {
+            return CompletableFuture.completedFuture(SocialJsonResponse.UNINITALIZED);
+        }
+
+        final Integer cachedCount = cache.get(pageUrl, ttlMillis);
+        if (cachedCount != null) {
+            cacheHits.incrementAndGet();
+            return CompletableFuture.completedFuture(cachedCount);
+        }
+        cacheMisses.incrementAndGet();
+
+        return client.getSocialCountAsync(pageUrl).thenApply(count -> {
+            if (count != SocialJsonResponse.UNINITALIZED) {
+                cache.put(pageUrl, count);
+                cacheUpdates.incrementAndGet();
+            }
+            return count;
+        });
+    }
+
+    @Override
+    public void setPolitenessDelay(int milliseconds) {
+        client.setPolitenessDelay(milliseconds);
+    }
+
+    @Override
+    public void setMaxBurst(int requests) {
+        client.setMaxBurst(requests);
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    public long getCacheUpdates() {
+        return cacheUpdates.get();
+    }
+
+    @Override
+    public void shutdown() {
+        client.shutdown();
+        try {
+            cache.close();
+        } catch (IOException e) {
+            logger.warn("Cannot close social count cache " + cache.getFile(), e);
+        }
+    }
+}
@@ -2,10 +2,33 @@ package org.neo4japps.webgraph.customhandlers;
 
 import org.neo4j.graphdb.Node;
 import org.neo4japps.webgraph.importer.ApplicationConfiguration;
+import org.neo4japps.webgraph.importer.DeferredUpdateException;
 import org.neo4japps.webgraph.importer.GraphImporter;
 import org.neo4japps.webgraph.importer.PageNode;
+import org.neo4japps.webgraph.importer.PageSnapshot;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class FacebookAndTwitterEventHandler extends SocialMediaEventHandler {
+
+    /**
+     * The count of one of the two lookups, or why it failed
+     */
+    private static final class LookupResult {
+        final int count;
+        final Throwable failure;
+
+        LookupResult(Integer count, Throwable failure) {
+            this.count = count == null ? SocialJsonResponse.UNINITALIZED : count;
+            this.failure = failure instanceof CompletionException ? failure.getCause() : failure;
+        }
+
+        boolean hasCount() {
+            return failure == null && count != SocialJsonResponse.UNINITALIZED;
+        }
+    }
+
     private SocialMediaClient facebookClient;
     private SocialMediaClient twitterClient;
 
@@ -32,60 +55,87 @@ public class FacebookAndTwitterEventHandler extends SocialMediaEventHandler {
         super.configure(config);
 
         if (facebookClient == null) {
-            facebookClient = new FacebookClient(httpClient);
+            facebookClient = createFacebookClient(config);
         }
         facebookClient.setPolitenessDelay(config.getPolitenessDelay());
+        facebookClient.setMaxBurst(config.getSocialApiBurst());
 
         if (twitterClient == null) {
-            twitterClient = new TwitterClient(httpClient);
+            twitterClient = createTwitterClient(config);
         }
         // Twitter doesn't like being hit too often
         twitterClient.setPolitenessDelay(config.getPolitenessDelay() + 100);
+        twitterClient.setMaxBurst(config.getSocialApiBurst());
     }
 
     @Override
-    protected int getTransactionSize() {
-        return 1;
+    protected boolean shouldIgnore(Node page, GraphImporter graphImporter) {
+        return graphImporter.getGraphLock().optimisticRead(
+                () -> PageNode.hasFacebookTotalCountProperty(page) && PageNode.hasTwitterCountProperty(page));
     }
 
     @Override
-    protected boolean shouldIgnore(Node page, GraphImporter graphImporter) {
-        graphImporter.getLock().lock();
-        try {
-            return PageNode.hasFacebookTotalCountProperty(page) && PageNode.hasTwitterCountProperty(page);
-        } finally {
-            graphImporter.getLock().unlock();
-        }
+    protected Node updatePage(Node page, GraphImporter graphImporter) throws Exception {
+        return updatePage(PageSnapshot.of(page, graphImporter.getGraphLock()), graphImporter);
     }
 
+    /**
+     * Looks up both counts concurrently, so that a page takes as long as the slower of the two lookups rather than
+     * their sum, then writes both counts in one go. If one lookup fails the count of the other is written anyway.
+     */
     @Override
-    protected Node updatePage(Node page, GraphImporter graphImporter) throws Exception {
-        updateFacebook(page, graphImporter);
-        updateTwitter(page, graphImporter);
-        return page;
+    protected Node updatePage(PageSnapshot page, GraphImporter graphImporter) throws Exception {
+        return applyWhenDone(page, lookUpAsync(page, graphImporter), graphImporter);
     }
 
-    private void updateFacebook(Node page, GraphImporter graphImporter) throws Exception {
-        if (PageNode.hasFacebookTotalCountProperty(page, graphImporter.getLock())) {
-            return;
-        }
+    @Override
+    protected CompletableFuture<PageUpdate> lookUpAsync(PageSnapshot page, GraphImporter graphImporter) {
+        final Node node = page.getNode();
+        final boolean[] hasCounts = graphImporter.getGraphLock().optimisticRead(() -> new boolean[]{
+                PageNode.hasFacebookTotalCountProperty(node), PageNode.hasTwitterCountProperty(node)});
 
-        final String pageUrl = PageNode.getUrl(page, graphImporter.getLock());
-        int count = facebookClient.getSocialCount(pageUrl);
-        if (count != SocialJsonResponse.UNINITALIZED) {
-            PageNode.setFacebookTotalCount(page, count, graphImporter.getLock());
-        }
+        final CompletableFuture<Integer> facebookCount = hasCounts[0]
+                ? CompletableFuture.completedFuture(SocialJsonResponse.UNINITALIZED)
+                : facebookClient.getSocialCountAsync(page.getUrl());
+        final CompletableFuture<Integer> twitterCount = hasCounts[1]
+                ? CompletableFuture.completedFuture(SocialJsonResponse.UNINITALIZED)
+                : twitterClient.getSocialCountAsync(page.getUrl());
+
+        return facebookCount.handle(LookupResult::new).thenCombine(twitterCount.handle(LookupResult::new),
+                FacebookAndTwitterEventHandler::combine);
     }
 
-    private void updateTwitter(Node page, GraphImporter graphImporter) throws Exception {
-        if (PageNode.hasTwitterCountProperty(page, graphImporter.getLock())) {
-            return;
-        }
+    private static PageUpdate combine(LookupResult facebook, LookupResult twitter) {
+        final PageUpdate update = pageNode -> {
+            if (facebook.hasCount()) {
+                PageNode.setFacebookTotalCount(pageNode, facebook.count);
+            }
+            if (twitter.hasCount()) {
+                PageNode.setTwitterCount(pageNode, twitter.count);
+            }
+        };
 
-        final String pageUrl = PageNode.getUrl(page, graphImporter.getLock());
-        int count = twitterClient.getSocialCount(pageUrl);
-        if (count != SocialJsonResponse.UNINITALIZED) {
-            PageNode.setTwitterCount(page, count, graphImporter.getLock());
+        // if both failed prefer the failure that gets the page retried
+        final Throwable failure = facebook.failure == null || twitter.failure instanceof DeferredUpdateException
+                ? twitter.failure : facebook.failure;
+        if (failure == null) {
+            return update;
+        }
+        if (facebook.hasCount() || twitter.hasCount()) {
+            // a retry only looks up the count that is still missing
+            throw new CompletionException(new PartialUpdateException(update, failure));
         }
+        throw new CompletionException(failure);
+    }
+
+    /**
+     * Shuts down the clients first, while the HTTP client they share still works, e.g. for a batch of lookups that is
+     * still waiting to be sent.
+     */
+    @Override
+    public void shutdown() {
+        facebookClient.shutdown();
+        twitterClient.shutdown();
+        super.shutdown();
     }
 }
@@ -1,21 +1,34 @@
 package org.neo4japps.webgraph.customhandlers;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
 import org.neo4japps.webgraph.util.SimpleHttpClient;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * This class is thread-safe.
  */
 public class FacebookClient extends AbstractSocialMediaClient {
 
+    private static final ResponsesReader RESPONSES_READER = new ResponsesReader();
+
+    public static final String DEFAULT_API_BASE_URL = "https://api.ak.facebook.com";
+
     public FacebookClient(SimpleHttpClient httpClient) {
-        super(httpClient);
+        super(httpClient, DEFAULT_API_BASE_URL);
     }
 
     @Override
     protected String getSocialApiUrl() {
-        return "https://api.ak.facebook.com/restserver.php?v=1.0&method=links.getStats&format=json&urls=";
+        return getApiBaseUrl() + "/restserver.php?v=1.0&method=links.getStats&format=json&urls=";
     }
 
     @Override
@@ -31,6 +44,55 @@ public class FacebookClient extends AbstractSocialMediaClient {
         return url;
     }
 
+    /**
+     * Looks up several pages with one API request. links.getStats accepts a comma separated list of URLs and returns
+     * one entry per URL. URLs that contain commas must be looked up on their own.
+     *
+     * @return the total count per page URL. Pages without a count in the response are left out.
+     */
+    public Map<String, Integer> getSocialCounts(List<String> pageUrls) throws Exception {
+        final StringBuilder urls = new StringBuilder();
+        for (String pageUrl : pageUrls) {
+            if (urls.length() > 0) {
+                urls.append(',');
+            }
+            urls.append(cleanUp(pageUrl));
+        }
+
+        final String queryUrl = getSocialApiUrl() + urls;
+        return fetch(queryUrl, pageUrls.size() * httpClient.getMaxContentLength(),
+                jsonString -> toCounts(pageUrls, doDeserializeAll(jsonString, queryUrl)));
+    }
+
+    /**
+     * Package private visibility for unit testing
+     */
+    Map<String, Integer> toCounts(List<String> pageUrls, FacebookJsonResponse[] responses) {
+        final Set<String> requestedUrls = new HashSet<>(pageUrls);
+        final Map<String, Integer> counts = new HashMap<>();
+
+        for (int i = 0; i < responses.length; i++) {
+            final FacebookJsonResponse response = responses[i];
+            if (response == null || !response.isInitialized()) {
+                continue;
+            }
+
+            // Facebook echoes the requested URL. If it doesn't, rely on the entries being in the order of the request.
+            String pageUrl = null;
+            if (requestedUrls.contains(response.url)) {
+                pageUrl = response.url;
+            } else if (responses.length == pageUrls.size()) {
+                pageUrl = pageUrls.get(i);
+            }
+
+            if (pageUrl != null) {
+                counts.put(pageUrl, response.getCount());
+            }
+        }
+
+        return counts;
+    }
+
     @Override
     protected SocialJsonResponse deserialize(String jsonString, String url) throws ServiceUnavailableException {
         return doDeserialize(jsonString, url);
@@ -40,32 +102,108 @@ public class FacebookClient extends AbstractSocialMediaClient {
      * Package private visibility for unit testing
      */
     FacebookJsonResponse doDeserialize(String jsonString, String url) throws ServiceUnavailableException {
+        final FacebookJsonResponse[] deserializedArray = doDeserializeAll(jsonString, url);
+        return deserializedArray.length == 0 || deserializedArray[0] == null ? new FacebookJsonResponse()
+                : deserializedArray[0];
+    }
+
+    /**
+     * Package private visibility for unit testing
+     */
+    FacebookJsonResponse[] doDeserializeAll(String jsonString, String url) throws ServiceUnavailableException {
         // Sample Facebook JSON (note that an array is returned!):
         // [{"url":"http://mydomain.com","normalized_url":"http://mydomain.com/","share_count":4356,"like_count":1648,"comment_count":2622,"total_count":8626,"click_count":453,"comments_fbid":448586548274,"commentsbox_count":1}]
 
-        if (jsonString != null && jsonString.contains("Service temporarily unavailable")) {
+        if (jsonString == null || jsonString.isEmpty()) {
+            return new FacebookJsonResponse[0];
+        }
+
+        try {
+            return RESPONSES_READER.parse(jsonString);
+        } catch (SocialJsonReader.ErrorMarkerException e) {
             throw new ServiceUnavailableException("Service temporarily unavailable when retrieving URL " + url);
+        } catch (IOException e) {
+            if (jsonString.contains(RESPONSES_READER.getErrorMarker())) {
+                // not JSON at all, e.g. an error page
+                throw new ServiceUnavailableException("Service temporarily unavailable when retrieving URL " + url);
+            }
+            // counts as a failure of the service
+            throw new JsonParseException("Can't parse JSON (" + jsonString + ") returned by " + url, e);
         }
+    }
+
+    /**
+     * Reads the array of links.getStats results.
+     */
+    private static final class ResponsesReader extends SocialJsonReader<FacebookJsonResponse[]> {
 
-        FacebookJsonResponse res;
+        ResponsesReader() {
+            super("Service temporarily unavailable");
+        }
 
-        try {
-            if (jsonString == null || jsonString.trim().equals("")) {
-                throw new JsonSyntaxException("Can't parse empty JSON string");
+        @Override
+        protected FacebookJsonResponse[] read(JsonReader in) throws IOException {
+            switch (in.peek()) {
+                case NULL:
+                    in.nextNull();
+                    return new FacebookJsonResponse[0];
+                case BEGIN_ARRAY:
+                    break;
+                default:
+                    // look for the error marker in the error object
+                    skipValue(in);
+                    throw new MalformedJsonException("Expected an array");
             }
 
-            FacebookJsonResponse[] deserializedArray = new Gson().fromJson(jsonString, FacebookJsonResponse[].class);
-            res = deserializedArray[0];
-        } catch (JsonSyntaxException e) {
-            if (url != null) {
-                // we use null URLs in unit test to avoid logging all the
-                // exceptions
-                logger.warn("Can't parse JSON (" + jsonString + ") returned by " + url, e);
+            final List<FacebookJsonResponse> responses = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                switch (in.peek()) {
+                    case NULL:
+                        in.nextNull();
+                        responses.add(null);
+                        break;
+                    case BEGIN_OBJECT:
+                        responses.add(readResponse(in));
+                        break;
+                    default:
+                        throw new MalformedJsonException("Expected an object");
+                }
             }
+            in.endArray();
 
-            res = new FacebookJsonResponse();
+            return responses.toArray(new FacebookJsonResponse[0]);
         }
 
-        return res;
+        private FacebookJsonResponse readResponse(JsonReader in) throws IOException {
+            final FacebookJsonResponse response = new FacebookJsonResponse();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "url":
+                        response.url = nextString(in);
+                        break;
+                    case "share_count":
+                        response.share_count = nextInt(in);
+                        break;
+                    case "like_count":
+                        response.like_count = nextInt(in);
+                        break;
+                    case "comment_count":
+                        response.comment_count = nextInt(in);
+                        break;
+                    case "total_count":
+                        response.total_count = nextInt(in);
+                        break;
+                    case "click_count":
+                        response.click_count = nextInt(in);
+                        break;
+                    default:
+                        skipValue(in);
+                }
+            }
+            in.endObject();
+            return response;
+        }
     }
 }
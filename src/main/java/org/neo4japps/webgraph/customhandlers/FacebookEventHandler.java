@@ -4,6 +4,9 @@ import org.neo4j.graphdb.Node;
 import org.neo4japps.webgraph.importer.ApplicationConfiguration;
 import org.neo4japps.webgraph.importer.GraphImporter;
 import org.neo4japps.webgraph.importer.PageNode;
+import org.neo4japps.webgraph.importer.PageSnapshot;
+
+import java.util.concurrent.CompletableFuture;
 
 public class FacebookEventHandler extends SocialMediaEventHandler {
     private SocialMediaClient facebookClient;
@@ -21,30 +24,45 @@ public class FacebookEventHandler extends SocialMediaEventHandler {
     public void configure(ApplicationConfiguration config) {
         super.configure(config);
         if (facebookClient == null) {
-            facebookClient = new FacebookClient(httpClient);
+            facebookClient = createFacebookClient(config);
         }
         facebookClient.setPolitenessDelay(config.getPolitenessDelay());
-    }
-
-    @Override
-    protected int getTransactionSize() {
-        return 1;
+        facebookClient.setMaxBurst(config.getSocialApiBurst());
     }
 
     @Override
     protected boolean shouldIgnore(Node page, GraphImporter graphImporter) {
-        return PageNode.hasFacebookTotalCountProperty(page, graphImporter.getLock());
+        return PageNode.hasFacebookTotalCountProperty(page, graphImporter.getGraphLock());
     }
 
     @Override
     protected Node updatePage(Node page, GraphImporter graphImporter) throws Exception {
-        final String pageUrl = PageNode.getUrl(page, graphImporter.getLock());
+        return updatePage(PageSnapshot.of(page, graphImporter.getGraphLock()), graphImporter);
+    }
 
-        int count = facebookClient.getSocialCount(pageUrl);
+    @Override
+    protected Node updatePage(PageSnapshot page, GraphImporter graphImporter) throws Exception {
+        int count = facebookClient.getSocialCount(page.getUrl());
         if (count != SocialJsonResponse.UNINITALIZED) {
-            PageNode.setFacebookTotalCount(page, count, graphImporter.getLock());
+            PageNode.setFacebookTotalCount(page.getNode(), count, graphImporter.getGraphLock());
         }
 
-        return page;
+        return page.getNode();
+    }
+
+    @Override
+    protected CompletableFuture<PageUpdate> lookUpAsync(PageSnapshot page, GraphImporter graphImporter) {
+        return facebookClient.getSocialCountAsync(page.getUrl()).thenApply(count -> node -> {
+            if (count != SocialJsonResponse.UNINITALIZED) {
+                PageNode.setFacebookTotalCount(node, count);
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        // while the shared HTTP client still works
+        facebookClient.shutdown();
+        super.shutdown();
     }
 }
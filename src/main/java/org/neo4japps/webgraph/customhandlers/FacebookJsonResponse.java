@@ -1,6 +1,7 @@
 package org.neo4japps.webgraph.customhandlers;
 
 public class FacebookJsonResponse extends SocialJsonResponse {
+    public String url;
     public int share_count = UNINITALIZED;
     public int like_count = UNINITALIZED;
     public int comment_count = UNINITALIZED;
@@ -9,7 +10,7 @@ public class FacebookJsonResponse extends SocialJsonResponse {
 
     @Override
     public String toString() {
-        return "FacebookJsonResponse [share_count=" + share_count + ", like_count=" + like_count + ", comment_count="
+        return "FacebookJsonResponse [url=" + url + ", share_count=" + share_count + ", like_count=" + like_count + ", comment_count="
                 + comment_count + ", total_count=" + total_count + ", click_count=" + click_count + "]";
     }
 
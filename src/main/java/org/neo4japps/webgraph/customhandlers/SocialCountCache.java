@@ -0,0 +1,195 @@
+package org.neo4japps.webgraph.customhandlers;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistent cache of social counts, so that repeated imports don't query the social APIs for every page again.
+ * <p>
+ * The cache is a memory-mapped hash table with a fixed number of slots, keyed by a 64 bit hash of the page URL. Each
+ * slot holds the URL hash, the time the count was fetched and the count itself. Lookups probe a few neighbouring
+ * slots. If all of them are taken, the oldest entry gets replaced. Entries older than the time-to-live are treated as
+ * missing.
+ * <p>
+ * There is one cache file per social service. Handlers of the same service share the cache via
+ * {@link #open(File, String, int)} and {@link #close()}.
+ * <p>
+ * This class is thread-safe.
+ */
+public class SocialCountCache implements Closeable {
+
+    public static final String FILE_SUFFIX = ".cache";
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    private static final int MAGIC = 0x53434331; // "SCC1"
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 24;
+    private static final int MAX_PROBES = 16;
+
+    private static final long EMPTY = 0;
+
+    private static final Logger logger = LogManager.getLogger(SocialCountCache.class);
+
+    // open caches by file, shared by all handlers of the same service
+    private static final Map<File, SocialCountCache> openCaches = new HashMap<>();
+
+    private final File file;
+    private final int capacity;
+    private final RandomAccessFile randomAccessFile;
+    private final MappedByteBuffer buffer;
+
+    private int references;
+
+    /**
+     * Opens the cache of the given service, or returns the already open one. Every call must be matched by a call to
+     * {@link #close()}.
+     */
+    public static SocialCountCache open(File dir, String service, int capacity) throws IOException {
+        final File file = new File(dir, service + FILE_SUFFIX).getAbsoluteFile();
+        synchronized (openCaches) {
+            SocialCountCache cache = openCaches.get(file);
+            if (cache == null) {
+                cache = new SocialCountCache(file, capacity);
+                openCaches.put(file, cache);
+            }
+            cache.references++;
+            return cache;
+        }
+    }
+
+    private SocialCountCache(File file, int capacity) throws IOException {
+        if (capacity < MAX_PROBES || capacity > (Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE) {
+            throw new IllegalArgumentException("Illegal cache capacity " + capacity);
+        }
+
+        final File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create directory " + dir);
+        }
+
+        this.file = file;
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+
+        final long size = HEADER_SIZE + (long) capacity * SLOT_SIZE;
+        final boolean valid = randomAccessFile.length() >= HEADER_SIZE && randomAccessFile.readInt() == MAGIC
+                && randomAccessFile.readInt() == capacity;
+        if (!valid) {
+            if (randomAccessFile.length() > 0) {
+                logger.warn("Discarding incompatible social count cache " + file);
+            }
+            randomAccessFile.setLength(0);
+        }
+        randomAccessFile.setLength(size);
+
+        this.capacity = capacity;
+        this.buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, capacity);
+    }
+
+    /**
+     * @return the cached count, or null if the URL is not cached or the entry is older than the given time-to-live
+     */
+    public Integer get(String url, long ttlMillis) {
+        final long hash = hash(url);
+        final long now = System.currentTimeMillis();
+
+        synchronized (this) {
+            for (int i = 0; i < MAX_PROBES; i++) {
+                final int offset = slotOffset(hash, i);
+                final long slotHash = buffer.getLong(offset);
+                if (slotHash == EMPTY) {
+                    return null;
+                }
+                if (slotHash == hash) {
+                    final long fetchTime = buffer.getLong(offset + 8);
+                    return now - fetchTime > ttlMillis ? null : buffer.getInt(offset + 16);
+                }
+            }
+        }
+        return null;
+    }
+
+    public void put(String url, int count) {
+        put(url, count, System.currentTimeMillis());
+    }
+
+    /**
+     * Package private visibility for unit testing
+     */
+    synchronized void put(String url, int count, long fetchTimeMillis) {
+        final long hash = hash(url);
+
+        int target = -1;
+        long oldestFetchTime = Long.MAX_VALUE;
+        for (int i = 0; i < MAX_PROBES; i++) {
+            final int offset = slotOffset(hash, i);
+            final long slotHash = buffer.getLong(offset);
+            if (slotHash == EMPTY || slotHash == hash) {
+                target = offset;
+                break;
+            }
+            final long fetchTime = buffer.getLong(offset + 8);
+            if (fetchTime < oldestFetchTime) {
+                // all probed slots are taken, replace the oldest one
+                oldestFetchTime = fetchTime;
+                target = offset;
+            }
+        }
+
+        // write the hash last, so that a half-written slot is never matched
+        buffer.putLong(target, EMPTY);
+        buffer.putLong(target + 8, fetchTimeMillis);
+        buffer.putInt(target + 16, count);
+        buffer.putLong(target, hash);
+    }
+
+    private int slotOffset(long hash, int probe) {
+        final int slot = (int) (((hash & Long.MAX_VALUE) + probe) % capacity);
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the URL. Never returns {@link #EMPTY}.
+     */
+    static long hash(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : url.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Writes the cache to disk once the last user has closed it.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (openCaches) {
+            if (references == 0 || --references > 0) {
+                return;
+            }
+            openCaches.remove(file);
+        }
+
+        synchronized (this) {
+            buffer.force();
+            randomAccessFile.close();
+        }
+    }
+}
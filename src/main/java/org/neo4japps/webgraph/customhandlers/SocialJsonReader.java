@@ -0,0 +1,122 @@
+package org.neo4japps.webgraph.customhandlers;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Base class of the hand-written readers of the social API responses, built on Gson's streaming {@link JsonReader}. The
+ * readers are stateless, so one instance per response type is shared by all threads.
+ * <p>
+ * The APIs report an overloaded service with an error message in an otherwise ordinary JSON response. While reading,
+ * every string in the response is compared to the error marker of the API, so that no separate scan of the response is
+ * needed.
+ */
+abstract class SocialJsonReader<T> {
+
+    /**
+     * Thrown when the response contains the error marker of the API.
+     */
+    static class ErrorMarkerException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ErrorMarkerException(String marker) {
+            super(marker);
+        }
+    }
+
+    private final String errorMarker;
+
+    protected SocialJsonReader(String errorMarker) {
+        this.errorMarker = errorMarker;
+    }
+
+    String getErrorMarker() {
+        return errorMarker;
+    }
+
+    /**
+     * Parses the response leniently, like Gson does, e.g. accepting unquoted names.
+     *
+     * @throws ErrorMarkerException if the response contains the error marker
+     * @throws IOException          if the response is not valid JSON, or doesn't have the expected structure
+     */
+    final T parse(String jsonString) throws IOException {
+        final JsonReader in = new JsonReader(new StringReader(jsonString));
+        in.setLenient(true);
+        try {
+            return read(in);
+        } catch (IllegalStateException | NumberFormatException e) {
+            // unexpected token
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the response. Use the methods below to read strings, so that the error marker is noticed.
+     */
+    protected abstract T read(JsonReader in) throws IOException;
+
+    protected final String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return checkString(in.nextString());
+    }
+
+    /**
+     * @return the number, or {@link SocialJsonResponse#UNINITALIZED} if the value is null
+     */
+    protected final int nextInt(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return SocialJsonResponse.UNINITALIZED;
+        }
+        return in.nextInt();
+    }
+
+    /**
+     * Skips the next value, including nested arrays and objects, but looks at all strings in it.
+     */
+    protected final void skipValue(JsonReader in) throws IOException {
+        int depth = 0;
+        do {
+            switch (in.peek()) {
+                case BEGIN_ARRAY:
+                    in.beginArray();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    in.endArray();
+                    depth--;
+                    break;
+                case BEGIN_OBJECT:
+                    in.beginObject();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    in.endObject();
+                    depth--;
+                    break;
+                case NAME:
+                    in.nextName();
+                    break;
+                case STRING:
+                    checkString(in.nextString());
+                    break;
+                default:
+                    in.skipValue();
+            }
+        } while (depth > 0);
+    }
+
+    private String checkString(String value) throws ErrorMarkerException {
+        if (value.contains(errorMarker)) {
+            throw new ErrorMarkerException(errorMarker);
+        }
+        return value;
+    }
+}
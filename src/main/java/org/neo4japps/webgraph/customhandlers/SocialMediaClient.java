@@ -1,8 +1,38 @@
 package org.neo4japps.webgraph.customhandlers;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface SocialMediaClient {
 
     int getSocialCount(String pageUrl) throws Exception;
 
+    /**
+     * Looks up the social count without blocking the calling thread.
+     * <p>
+     * The default implementation calls {@link #getSocialCount(String)} and therefore does block. Clients backed by a
+     * non-blocking HTTP client override it.
+     *
+     * @return a future completed with the count, or completed exceptionally if the lookup failed
+     */
+    default CompletableFuture<Integer> getSocialCountAsync(String pageUrl) {
+        try {
+            return CompletableFuture.completedFuture(getSocialCount(pageUrl));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     void setPolitenessDelay(int milliseconds);
-}
\ No newline at end of file
+
+    /**
+     * @param requests the number of requests that may be sent back to back after an idle period, before the
+     *                 politeness delay applies
+     */
+    void setMaxBurst(int requests);
+
+    /**
+     * Releases any resources of the client. The default implementation does nothing.
+     */
+    default void shutdown() {
+    }
+}
@@ -1,48 +1,392 @@
 package org.neo4japps.webgraph.customhandlers;
 
+import org.neo4j.graphdb.Node;
 import org.neo4japps.webgraph.importer.ApplicationConfiguration;
 import org.neo4japps.webgraph.importer.CachingObserver;
+import org.neo4japps.webgraph.importer.DeferredUpdateException;
+import org.neo4japps.webgraph.importer.GraphImporter;
 import org.neo4japps.webgraph.importer.GraphObserver;
+import org.neo4japps.webgraph.importer.PageSnapshot;
 import org.neo4japps.webgraph.util.SimpleHttpClient;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
 public abstract class SocialMediaEventHandler extends GraphObserver implements CachingObserver {
 
+    private static final int RETRY_INTERVAL_SECONDS = 10;
+
+    private static class DeferredPage {
+        final PageSnapshot page;
+        final GraphImporter graphImporter;
+
+        DeferredPage(PageSnapshot page, GraphImporter graphImporter) {
+            this.page = page;
+            this.graphImporter = graphImporter;
+        }
+    }
+
+    /**
+     * Writes the result of an asynchronous lookup to a page node. Called while holding the graph write lock.
+     */
+    protected interface PageUpdate {
+        void apply(Node page);
+    }
+
+    /**
+     * Completes a lookup that got only some of the counts of a page. The counts that arrived are written before the
+     * failure is handled, so that a retry only looks up the missing counts.
+     */
+    protected static final class PartialUpdateException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final transient PageUpdate update;
+
+        public PartialUpdateException(PageUpdate update, Throwable cause) {
+            super(cause.getMessage(), cause);
+            this.update = update;
+        }
+
+        PageUpdate getUpdate() {
+            return update;
+        }
+    }
+
     // we should never request the same URL twice, so no need for caching
     private int maxCacheEntries = 0;
 
     protected final SimpleHttpClient httpClient = new SimpleHttpClient(this, maxCacheEntries);
 
+    // clients backed by the persistent social count cache
+    private final List<CachingSocialMediaClient> cachingClients = new CopyOnWriteArrayList<>();
+
+    private int lookupsInFlight = 1;
+
+    // pages whose lookups failed because the service was unavailable
+    private final Queue<DeferredPage> deferredPages = new ConcurrentLinkedQueue<>();
+
+    // guarded by this
+    private ScheduledExecutorService retryScheduler;
+    private boolean isShutdown;
+
     @Override
     public void configure(ApplicationConfiguration config) {
         super.configure(config);
 
         httpClient.configProxy(config.getProxyHost(), config.getProxyPort(), config.getProxyUsername(),
                 config.getProxyPassword());
+        httpClient.configConnectionPool(config.getHttpMaxPerRoute(), config.getHttpMaxTotal(),
+                config.getHttpKeepAlive());
+        httpClient.setMaxContentLength(config.getHttpMaxContent());
+        lookupsInFlight = config.getSocialLookupsInFlight();
+    }
+
+    /**
+     * Pages are looked up one at a time, unless several lookups may be in flight. In that case the pages of a
+     * transaction are all looked up at once by {@link #updatePages}.
+     */
+    @Override
+    protected final int getTransactionSize() {
+        return lookupsInFlight;
+    }
+
+    /**
+     * Starts the lookups of all pages without waiting for any of them, then writes all results under one write lock.
+     * The calling thread only waits for the slowest lookup instead of for each round trip in turn.
+     */
+    @Override
+    protected List<PageSnapshot> updatePages(List<PageSnapshot> pages, GraphImporter graphImporter) throws Exception {
+        final List<CompletableFuture<PageUpdate>> lookups = new ArrayList<>(pages.size());
+        for (PageSnapshot page : pages) {
+            lookups.add(lookUpAsync(page, graphImporter));
+        }
+
+        final List<PageSnapshot> updatedPages = new ArrayList<>(pages.size());
+        final List<PageUpdate> updates = new ArrayList<>(pages.size());
+        // pages that only got some of their counts, written along with the others
+        final List<PageSnapshot> partiallyUpdatedPages = new ArrayList<>();
+        final List<PartialUpdateException> partialUpdates = new ArrayList<>();
+        for (int i = 0; i < pages.size(); i++) {
+            try {
+                updates.add(lookups.get(i).get());
+                updatedPages.add(pages.get(i));
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof PartialUpdateException) {
+                    partiallyUpdatedPages.add(pages.get(i));
+                    partialUpdates.add((PartialUpdateException) e.getCause());
+                } else {
+                    handleLookupFailure(pages.get(i), graphImporter, e.getCause());
+                }
+            }
+        }
+
+        if (updates.isEmpty() && partialUpdates.isEmpty()) {
+            return updatedPages;
+        }
+
+        final Lock writeLock = graphImporter.getGraphLock().writeLock();
+        writeLock.lock();
+        try {
+            for (int i = 0; i < updates.size(); i++) {
+                updates.get(i).apply(updatedPages.get(i).getNode());
+            }
+            for (int i = 0; i < partialUpdates.size(); i++) {
+                partialUpdates.get(i).getUpdate().apply(partiallyUpdatedPages.get(i).getNode());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+
+        for (int i = 0; i < partialUpdates.size(); i++) {
+            handleLookupFailure(partiallyUpdatedPages.get(i), graphImporter, partialUpdates.get(i).getCause());
+        }
+
+        return updatedPages;
+    }
+
+    private void handleLookupFailure(PageSnapshot page, GraphImporter graphImporter, Throwable cause) {
+        if (cause instanceof DeferredUpdateException) {
+            deferUpdate(page, graphImporter, (DeferredUpdateException) cause);
+        } else {
+            logger.warn("Failure updating page node " + page.getUrl(), cause);
+        }
+    }
+
+    /**
+     * Keeps the page for a later retry. The deferred pages are retried on a scheduler thread, in the order they were
+     * deferred, until one of them is deferred again, i.e. until the service is still unavailable or its circuit breaker
+     * is still open. The event of the page isn't committed to the event journal until the page has been retried, so
+     * that a resumed import replays it if it never was.
+     */
+    @Override
+    protected void deferUpdate(PageSnapshot page, GraphImporter graphImporter, DeferredUpdateException cause) {
+        super.deferUpdate(page, graphImporter, cause);
+        holdJournalCommitUntilRetried(page);
+        deferredPages.add(new DeferredPage(page, graphImporter));
+        startRetryScheduler();
+    }
+
+    private synchronized void startRetryScheduler() {
+        if (retryScheduler != null || isShutdown) {
+            return;
+        }
+
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, getClass().getSimpleName() + "-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        retryScheduler.scheduleWithFixedDelay(this::retryDeferredPages, RETRY_INTERVAL_SECONDS,
+                RETRY_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Package private visibility for unit testing
+     */
+    void retryDeferredPages() {
+        DeferredPage deferred;
+        while ((deferred = deferredPages.peek()) != null) {
+            boolean isRetried;
+            try {
+                isRetried = retryDeferredUpdate(deferred.page, deferred.graphImporter);
+            } catch (Exception e) {
+                logger.warn("Failure retrying update of page node " + deferred.page.getUrl(), e);
+                isRetried = true;
+            }
+
+            // only removed now so that the queue doesn't look empty while the retry is in progress. If the page was
+            // deferred again it's back in the queue already.
+            deferredPages.remove(deferred);
+            if (!isRetried) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Waits for the retry scheduler to empty the deferred pages.
+     */
+    @Override
+    public boolean awaitDeferredUpdates(long timeout, TimeUnit unit) throws InterruptedException {
+        if (deferredPages.isEmpty()) {
+            return true;
+        }
+
+        logger.info("Waiting for " + deferredPages.size() + " deferred page nodes to be updated");
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!deferredPages.isEmpty()) {
+            final long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.min(remainingNanos, TimeUnit.MILLISECONDS.toNanos(500)));
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of pages waiting to be retried
+     */
+    public int getNumberOfDeferredPages() {
+        return deferredPages.size();
+    }
+
+    /**
+     * Waits for the lookup of a single page and writes its result under the write lock. If the lookup only got some of
+     * the counts, these are written before its failure is thrown.
+     */
+    protected final Node applyWhenDone(PageSnapshot page, CompletableFuture<PageUpdate> lookup,
+                                       GraphImporter graphImporter) throws Exception {
+        PageUpdate update;
+        Throwable failure = null;
+        try {
+            update = lookup.get();
+        } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof PartialUpdateException)) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+            update = ((PartialUpdateException) e.getCause()).getUpdate();
+            failure = e.getCause().getCause();
+        }
+
+        final Lock writeLock = graphImporter.getGraphLock().writeLock();
+        writeLock.lock();
+        try {
+            update.apply(page.getNode());
+        } finally {
+            writeLock.unlock();
+        }
+
+        if (failure instanceof Exception) {
+            throw (Exception) failure;
+        } else if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return page.getNode();
+    }
+
+    /**
+     * Looks up the social counts of a page without blocking.
+     *
+     * @return a future completed with the update to write to the page node, or completed exceptionally with a
+     * {@link PartialUpdateException} if only some of the counts could be looked up
+     */
+    protected abstract CompletableFuture<PageUpdate> lookUpAsync(PageSnapshot page, GraphImporter graphImporter);
+
+    /**
+     * @return a Facebook client that batches the lookups of concurrent threads, if configured
+     */
+    protected SocialMediaClient createFacebookClient(ApplicationConfiguration config) {
+        FacebookClient facebookClient = new FacebookClient(httpClient);
+        if (config.getFacebookApiUrl() != null) {
+            facebookClient.setApiBaseUrl(config.getFacebookApiUrl());
+        }
+
+        SocialMediaClient client = facebookClient;
+        if (config.isBatchFacebookRequests()) {
+            client = new BatchingFacebookClient(facebookClient, config.getFacebookBatchSize(),
+                    config.getFacebookBatchWait());
+        }
+        return withCountCache(client, "facebook", config.getFacebookCacheTtl(), config);
+    }
+
+    protected SocialMediaClient createTwitterClient(ApplicationConfiguration config) {
+        TwitterClient twitterClient = new TwitterClient(httpClient);
+        if (config.getTwitterApiUrl() != null) {
+            twitterClient.setApiBaseUrl(config.getTwitterApiUrl());
+        }
+        return withCountCache(twitterClient, "twitter", config.getTwitterCacheTtl(), config);
+    }
+
+    /**
+     * @return a client that consults the persistent social count cache first, if configured
+     */
+    private SocialMediaClient withCountCache(SocialMediaClient client, String service, int ttlHours,
+                                             ApplicationConfiguration config) {
+        if (config.getSocialCacheDir() == null) {
+            return client;
+        }
+
+        try {
+            SocialCountCache cache = SocialCountCache.open(new File(config.getSocialCacheDir()), service,
+                    SocialCountCache.DEFAULT_CAPACITY);
+            CachingSocialMediaClient cachingClient = new CachingSocialMediaClient(client, cache,
+                    TimeUnit.HOURS.toMillis(ttlHours));
+            cachingClients.add(cachingClient);
+            return cachingClient;
+        } catch (IOException e) {
+            logger.warn("Cannot open " + service + " count cache in " + config.getSocialCacheDir()
+                    + ". Counts won't be cached.", e);
+            return client;
+        }
     }
 
     @Override
     public final boolean isCachingEnabled() {
-        return maxCacheEntries > 0;
+        return maxCacheEntries > 0 || !cachingClients.isEmpty();
     }
 
     @Override
     public final long getCacheHits() {
-        return httpClient.getCacheHits();
+        long hits = httpClient.getCacheHits();
+        for (CachingSocialMediaClient client : cachingClients) {
+            hits += client.getCacheHits();
+        }
+        return hits;
     }
 
     @Override
     public final long getCacheMisses() {
-        return httpClient.getCacheMisses();
+        long misses = httpClient.getCacheMisses();
+        for (CachingSocialMediaClient client : cachingClients) {
+            misses += client.getCacheMisses();
+        }
+        return misses;
+    }
+
+    @Override
+    public final long getCoalescedRequests() {
+        return httpClient.getCoalescedRequests();
     }
 
     @Override
     public final long getCacheUpdates() {
-        return httpClient.getCacheUpdates();
+        long updates = httpClient.getCacheUpdates();
+        for (CachingSocialMediaClient client : cachingClients) {
+            updates += client.getCacheUpdates();
+        }
+        return updates;
     }
 
     @Override
     public void shutdown() {
         super.shutdown();
+
+        synchronized (this) {
+            isShutdown = true;
+            if (retryScheduler != null) {
+                retryScheduler.shutdownNow();
+            }
+        }
+        if (!deferredPages.isEmpty()) {
+            logger.warn(deferredPages.size() + " deferred page nodes have not been updated. If events are journaled"
+                    + " they will be replayed when the import is resumed.");
+        }
+
         httpClient.shutdown();
     }
 }
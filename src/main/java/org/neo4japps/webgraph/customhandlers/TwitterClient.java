@@ -1,16 +1,23 @@
 package org.neo4japps.webgraph.customhandlers;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
 import org.neo4japps.webgraph.util.SimpleHttpClient;
 
+import java.io.IOException;
+
 /**
  * This class is thread-safe.
  */
 public class TwitterClient extends AbstractSocialMediaClient {
 
+    private static final ResponseReader RESPONSE_READER = new ResponseReader();
+
+    public static final String DEFAULT_API_BASE_URL = "https://urls.api.twitter.com";
+
     public TwitterClient(SimpleHttpClient httpClient) {
-        super(httpClient);
+        super(httpClient, DEFAULT_API_BASE_URL);
     }
 
     @Override
@@ -19,7 +26,7 @@ public class TwitterClient extends AbstractSocialMediaClient {
         // of
         // "Unable to access URL counting services" errors
         // see https://dev.twitter.com/discussions/9025
-        return "https://urls.api.twitter.com/1/urls/count.json?url=";
+        return getApiBaseUrl() + "/1/urls/count.json?url=";
     }
 
     @Override
@@ -40,28 +47,54 @@ public class TwitterClient extends AbstractSocialMediaClient {
         // Sample Twitter JSON:
         // {"count":3115,"url":"http://mydomain.com/"}
 
-        if (jsonString != null && jsonString.contains("Unable to access URL counting services")) {
-            throw new ServiceUnavailableException("Unable to access URL counting services for URL " + url);
+        if (jsonString == null || jsonString.isEmpty()) {
+            return new TwitterJsonResponse();
         }
 
-        TwitterJsonResponse res = null;
-
         try {
-            if (jsonString == null || jsonString.trim().equals("")) {
-                throw new JsonSyntaxException("Can't parse empty JSON string");
+            return RESPONSE_READER.parse(jsonString);
+        } catch (SocialJsonReader.ErrorMarkerException e) {
+            throw new ServiceUnavailableException("Unable to access URL counting services for URL " + url);
+        } catch (IOException e) {
+            if (jsonString.contains(RESPONSE_READER.getErrorMarker())) {
+                // not JSON at all, e.g. an error page
+                throw new ServiceUnavailableException("Unable to access URL counting services for URL " + url);
             }
+            // counts as a failure of the service
+            throw new JsonParseException("Can't parse JSON (" + jsonString + ") returned by " + url, e);
+        }
+    }
 
-            res = new Gson().fromJson(jsonString, TwitterJsonResponse.class);
-        } catch (JsonSyntaxException e) {
-            if (url != null) {
-                // we use null URLs in unit test to avoid logging all the
-                // exceptions
-                logger.warn("Can't parse JSON (" + jsonString + ") returned by " + url, e);
-            }
+    private static final class ResponseReader extends SocialJsonReader<TwitterJsonResponse> {
 
-            res = new TwitterJsonResponse();
+        ResponseReader() {
+            super("Unable to access URL counting services");
         }
 
-        return res;
+        @Override
+        protected TwitterJsonResponse read(JsonReader in) throws IOException {
+            final TwitterJsonResponse response = new TwitterJsonResponse();
+            switch (in.peek()) {
+                case NULL:
+                    in.nextNull();
+                    return response;
+                case BEGIN_OBJECT:
+                    break;
+                default:
+                    throw new MalformedJsonException("Expected an object");
+            }
+
+            in.beginObject();
+            while (in.hasNext()) {
+                if (in.nextName().equals("count")) {
+                    response.count = nextInt(in);
+                } else {
+                    // the errors are reported in an array of objects
+                    skipValue(in);
+                }
+            }
+            in.endObject();
+            return response;
+        }
     }
 }
@@ -4,6 +4,9 @@ import org.neo4j.graphdb.Node;
 import org.neo4japps.webgraph.importer.ApplicationConfiguration;
 import org.neo4japps.webgraph.importer.GraphImporter;
 import org.neo4japps.webgraph.importer.PageNode;
+import org.neo4japps.webgraph.importer.PageSnapshot;
+
+import java.util.concurrent.CompletableFuture;
 
 public class TwitterEventHandler extends SocialMediaEventHandler {
     private SocialMediaClient twitterClient;
@@ -21,31 +24,46 @@ public class TwitterEventHandler extends SocialMediaEventHandler {
     public void configure(ApplicationConfiguration config) {
         super.configure(config);
         if (twitterClient == null) {
-            twitterClient = new TwitterClient(httpClient);
+            twitterClient = createTwitterClient(config);
         }
         // Twitter doesn't like being hit too often
         twitterClient.setPolitenessDelay(config.getPolitenessDelay() + 100);
-    }
-
-    @Override
-    protected int getTransactionSize() {
-        return 1;
+        twitterClient.setMaxBurst(config.getSocialApiBurst());
     }
 
     @Override
     protected boolean shouldIgnore(Node page, GraphImporter graphImporter) {
-        return PageNode.hasTwitterCountProperty(page, graphImporter.getLock());
+        return PageNode.hasTwitterCountProperty(page, graphImporter.getGraphLock());
     }
 
     @Override
     protected Node updatePage(Node page, GraphImporter graphImporter) throws Exception {
-        final String pageUrl = PageNode.getUrl(page, graphImporter.getLock());
+        return updatePage(PageSnapshot.of(page, graphImporter.getGraphLock()), graphImporter);
+    }
 
-        int count = twitterClient.getSocialCount(pageUrl);
+    @Override
+    protected Node updatePage(PageSnapshot page, GraphImporter graphImporter) throws Exception {
+        int count = twitterClient.getSocialCount(page.getUrl());
         if (count != SocialJsonResponse.UNINITALIZED) {
-            PageNode.setTwitterCount(page, count, graphImporter.getLock());
+            PageNode.setTwitterCount(page.getNode(), count, graphImporter.getGraphLock());
         }
 
-        return page;
+        return page.getNode();
+    }
+
+    @Override
+    protected CompletableFuture<PageUpdate> lookUpAsync(PageSnapshot page, GraphImporter graphImporter) {
+        return twitterClient.getSocialCountAsync(page.getUrl()).thenApply(count -> node -> {
+            if (count != SocialJsonResponse.UNINITALIZED) {
+                PageNode.setTwitterCount(node, count);
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        // while the shared HTTP client still works
+        twitterClient.shutdown();
+        super.shutdown();
     }
 }
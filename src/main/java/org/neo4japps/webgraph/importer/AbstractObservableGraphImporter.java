@@ -8,6 +8,9 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
 import org.neo4japps.webgraph.util.StringFormatUtil;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -17,10 +20,11 @@ public abstract class AbstractObservableGraphImporter extends ConcurrentObservab
     protected static final String PAGE_INDEX_NAME = "pages";
     protected static final String CATEGORY_INDEX_NAME = "categories";
 
+    private static final int JOURNAL_REPLAY_CHUNK_SIZE = 100;
+
     protected final Logger logger = LogManager.getLogger(this.getClass());
 
     protected final String rootUrl;
-    protected final int reportFrequency;
     protected final long startTimeInMillis;
 
     protected final AtomicInteger numberOfPageNodes = new AtomicInteger();
@@ -28,14 +32,9 @@ public abstract class AbstractObservableGraphImporter extends ConcurrentObservab
 
     protected final AtomicBoolean isStopped = new AtomicBoolean();
 
-    protected AbstractObservableGraphImporter(String rootUrl, long startTimeInMillis, int importProgressReportFrequency) {
-        if (importProgressReportFrequency < 1) {
-            throw new IllegalArgumentException("Value for importProgressReportFrequency must be greater than 0");
-        }
-
+    protected AbstractObservableGraphImporter(String rootUrl, long startTimeInMillis) {
         this.rootUrl = rootUrl;
         this.startTimeInMillis = startTimeInMillis;
-        this.reportFrequency = importProgressReportFrequency;
     }
 
     // This index can be used in Cypher queries to find pages by url/type/domain
@@ -51,6 +50,33 @@ public abstract class AbstractObservableGraphImporter extends ConcurrentObservab
         return ret;
     }
 
+    /**
+     * @return the number of events waiting for an importer thread to notify the observers
+     */
+    int getEventQueueDepth() {
+        return 0;
+    }
+
+    /**
+     * @return the number of importer threads notifying observers right now
+     */
+    int getNumberOfActiveEventConsumers() {
+        return 0;
+    }
+
+    /**
+     * @return the number of page nodes imported per second since the import started
+     */
+    final double getNodesPerSecond() {
+        final double elapsedSeconds = (System.currentTimeMillis() - startTimeInMillis) / 1000.00;
+        // avoid division by zero!
+        return elapsedSeconds <= 0 ? 0 : getNumberOfPageNodes() / elapsedSeconds;
+    }
+
+    boolean isStopped() {
+        return isStopped.get();
+    }
+
     @Override
     public final int getNumberOfPageNodes() {
         return numberOfPageNodes.get();
@@ -69,6 +95,18 @@ public abstract class AbstractObservableGraphImporter extends ConcurrentObservab
         } else {
             logger.trace("Stopped");
         }
+        stopDispatchers();
+    }
+
+    /**
+     * Blocks until all events queued for asynchronously notified observers have been processed.
+     */
+    protected final void waitForDispatchersToFinish() throws InterruptedException {
+        int pendingEvents;
+        while ((pendingEvents = getNumberOfPendingDispatcherEvents()) > 0) {
+            logger.info(pendingEvents + " events still queued for asynchronous event handlers");
+            Thread.sleep(2000);
+        }
     }
 
     protected final void populateNewPageNode(Node node, String url, String domain, String type, String content) {
@@ -137,28 +175,119 @@ public abstract class AbstractObservableGraphImporter extends ConcurrentObservab
 
     protected final void broadcastModification(Node page) {
         if (!isStopped.get() && countObservers() > 0 && page != null) {
-            notifyObserversAndHandleExceptions(new PageNodesModificationEvent(this, page));
+            broadcastSnapshots(PageSnapshot.of(Collections.singletonList(page), getGraphLock()));
         }
     }
 
     protected final void broadcastModifications(List<Node> pages) {
         if (!isStopped.get() && countObservers() > 0 && pages != null && !pages.isEmpty()) {
-            notifyObserversAndHandleExceptions(new PageNodesModificationEvent(this, pages));
+            broadcastSnapshots(PageSnapshot.of(pages, getGraphLock()));
+        }
+    }
+
+    /**
+     * The caller must hold the graph lock.
+     *
+     * @return the snapshots of the given pages, or null if nobody is interested in them
+     */
+    protected final List<PageSnapshot> takeSnapshotsForObservers(List<Node> pages) {
+        if (countObservers() == 0 || pages == null || pages.isEmpty()) {
+            return null;
+        }
+        final List<PageSnapshot> snapshots = new ArrayList<>(pages.size());
+        for (Node page : pages) {
+            snapshots.add(PageSnapshot.of(page));
+        }
+        return snapshots;
+    }
+
+    /**
+     * For importers that take the snapshots themselves, while they still hold the graph lock after modifying the pages.
+     */
+    protected final void broadcastSnapshots(List<PageSnapshot> pages) {
+        if (!isStopped.get() && countObservers() > 0 && pages != null && !pages.isEmpty()) {
+            notifyObserversAndHandleExceptions(createEvent(pages));
         }
     }
 
-    protected final void reportProgress() {
-        int numberOfCreatedNodes = getNumberOfPageNodes();
-        if (numberOfCreatedNodes % reportFrequency == 0) {
-            final long endMillis = System.currentTimeMillis();
-            final double elapsedSeconds = (endMillis - startTimeInMillis) / 1000.00;
-            // avoid division by zero!
-            final double nodesPerSecond = (elapsedSeconds == 0.00) ? numberOfCreatedNodes
-                    : (numberOfCreatedNodes / elapsedSeconds);
-            if (logger.isInfoEnabled()) {
-                logger.info("Nodes imported so far: " + numberOfCreatedNodes + ". That's "
-                        + StringFormatUtil.formatNodesPerSecond(nodesPerSecond) + " nodes per sec.");
+    private PageNodesModificationEvent createEvent(List<PageSnapshot> pages) {
+        final long creationTimeNanos = System.nanoTime();
+        long journalOffset = -1;
+
+        final EventJournal journal = getEventJournal();
+        if (journal != null) {
+            try {
+                journalOffset = journal.append(pages);
+            } catch (IOException e) {
+                logger.warn("Could not journal modification of " + pages.size() + " page nodes", e);
             }
         }
+
+        return new PageNodesModificationEvent(this, pages, creationTimeNanos, journalOffset);
+    }
+
+    /**
+     * Sends every observer the journaled events it had not processed when the previous import stopped. Must be called
+     * before the import starts, after all observers have been registered.
+     *
+     * @return the number of replayed page nodes
+     */
+    public final long replayEventJournal() throws IOException {
+        final EventJournal journal = getEventJournal();
+        if (journal == null) {
+            return 0;
+        }
+
+        final long end = journal.size();
+        long replayedPages = 0;
+
+        for (GraphObserver observer : getObservers()) {
+            final long start = journal.getCommittedOffset(observer);
+            if (start < end) {
+                logger.info("Replaying " + (end - start) + " journaled page nodes to "
+                        + observer.getClass().getSimpleName());
+            }
+
+            long offset = start;
+            while (offset < end && !isStopped.get()) {
+                final long[] ids = journal.read(offset, (int) Math.min(JOURNAL_REPLAY_CHUNK_SIZE, end - offset));
+                replayJournalEntries(observer, journal, offset, ids);
+                offset += ids.length;
+            }
+            replayedPages += offset - start;
+        }
+
+        return replayedPages;
+    }
+
+    private void replayJournalEntries(GraphObserver observer, EventJournal journal, long offset, long[] ids) {
+        // events must cover contiguous journal entries, so split them where a node no longer exists
+        List<Node> pages = new ArrayList<>();
+        long eventOffset = offset;
+
+        for (int i = 0; i < ids.length; i++) {
+            Node page = getNodeById(ids[i]);
+            if (page != null) {
+                pages.add(page);
+                continue;
+            }
+
+            if (!pages.isEmpty()) {
+                notifyObserver(observer, createReplayEvent(pages, eventOffset));
+                pages = new ArrayList<>();
+            }
+            // nothing to do for a missing node, other than moving on
+            journal.commit(observer, offset + i, offset + i + 1);
+            eventOffset = offset + i + 1;
+        }
+
+        if (!pages.isEmpty()) {
+            notifyObserver(observer, createReplayEvent(pages, eventOffset));
+        }
+    }
+
+    private PageNodesModificationEvent createReplayEvent(List<Node> pages, long journalOffset) {
+        return new PageNodesModificationEvent(this, PageSnapshot.of(pages, getGraphLock()), System.nanoTime(),
+                journalOffset);
     }
 }
@@ -13,12 +13,18 @@ import org.neo4j.graphdb.factory.GraphDatabaseFactory;
 import org.neo4japps.webgraph.util.DirectoryUtil;
 import org.neo4japps.webgraph.util.StringFormatUtil;
 
+import java.io.File;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class App {
+    private static final int ENRICHMENT_PARTITION_SIZE = 10000;
+    private static final int ENRICHMENT_BATCH_SIZE = 100;
+    private static final int DEFERRED_UPDATES_TIMEOUT_SECONDS = 60;
+
     private final Set<GraphObserver> graphObservers = Collections.synchronizedSet(new HashSet<GraphObserver>());
 
     final Logger logger = LogManager.getLogger(this.getClass());
@@ -28,8 +34,12 @@ public class App {
 
     private final AtomicBoolean isShutdown = new AtomicBoolean();
 
+    private final ImportMBeans mbeans = new ImportMBeans();
+    private ProgressReporter progressReporter;
+
     private ApplicationConfiguration appConfig;
     private GraphImporter graphImporter = null;
+    private EventJournal eventJournal = null;
     private boolean isSuccessfulImport = false;
     private long startTimeInMillis;
 
@@ -64,8 +74,9 @@ public class App {
             appConfig.confirm();
         }
 
-        if (!appConfig.isResumableImport()) {
+        if (!appConfig.isResumableImport() && !appConfig.isEnrichOnly()) {
             deleteEmbeddedDatabaseDir();
+            deleteEventJournalDir();
         }
 
         startTimeInMillis = System.currentTimeMillis();
@@ -93,11 +104,15 @@ public class App {
             normalShutdown();
         }
 
+        mbeans.unregisterAll();
+
         String shutdownType = isQuickShutdown ? "quick" : "normal";
         logger.info("Finished " + shutdownType + " shutdown sequence.");
     }
 
     private void quickShutdown() {
+        stopProgressReporter();
+
         if (!graphObservers.isEmpty()) {
             System.out.println("Shutting down graph event handlers");
             for (GraphObserver observer : graphObservers) {
@@ -105,6 +120,8 @@ public class App {
             }
         }
 
+        closeEventJournal();
+
         if (graphImporter != null) {
             System.out.println("Shutting down database");
             graphImporter.shutdown();
@@ -114,6 +131,8 @@ public class App {
     private void normalShutdown() {
         logger.info("Starting shutdown sequence.");
 
+        stopProgressReporter();
+
         if (graphImporter != null) {
             logger.info("Stopping import");
             graphImporter.stop();
@@ -126,6 +145,8 @@ public class App {
             }
         }
 
+        closeEventJournal();
+
         reportResults();
 
         if (graphImporter != null) {
@@ -181,19 +202,45 @@ public class App {
         }
     }
 
+    private void deleteEventJournalDir() throws IOException {
+        DirectoryUtil.deleteDir(appConfig.getEventJournalDir());
+    }
+
     private void doRun() throws Exception {
+        StageTimers.getInstance().reset();
         createGraphImporter();
 
         registerShutdownHook();
         registerCustomEventHandlers();
+        registerMBeans();
+        startProgressReporter();
 
-        crawlAndImport();
+        if (appConfig.isEnrichOnly()) {
+            enrichGraph();
+        } else {
+            openEventJournal();
+            crawlAndImport();
+        }
 
         graphImporter.waitForImportToFinish();
+        waitForDeferredUpdates();
 
         isSuccessfulImport = true;
     }
 
+    /**
+     * Gives the observers some time to retry the pages they couldn't update during the import, e.g. because a social
+     * media service was unavailable.
+     */
+    private void waitForDeferredUpdates() throws InterruptedException {
+        for (GraphObserver observer : graphObservers) {
+            if (!observer.awaitDeferredUpdates(DEFERRED_UPDATES_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn(observer.getClass().getSimpleName() + " still has deferred page nodes after waiting "
+                        + DEFERRED_UPDATES_TIMEOUT_SECONDS + " seconds");
+            }
+        }
+    }
+
     private void createGraphImporter() {
         if (graphImporter != null) {
             // don't create twice
@@ -203,10 +250,36 @@ public class App {
         if (appConfig.isUseTransactions()) {
             GraphDatabaseService graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(appConfig.getDbDir());
             graphImporter = new TransactionalGraphImporter(graphDb, appConfig.getRootUrl(), startTimeInMillis,
-                    appConfig.getImportProgressReportFrequency(), appConfig.getTransactionSize());
+                    appConfig.getTransactionSize());
         } else {
             graphImporter = new BatchGraphImporter(appConfig.getDbDir(), appConfig.getRootUrl(), startTimeInMillis,
-                    appConfig.getImportProgressReportFrequency(), appConfig.getNumberOfBatchImporterThreads());
+                    appConfig.getNumberOfBatchImporterThreads());
+        }
+    }
+
+    private void openEventJournal() throws IOException {
+        if (!appConfig.isJournalEvents() || graphObservers.isEmpty()) {
+            return;
+        }
+
+        AbstractObservableGraphImporter observable = (AbstractObservableGraphImporter) graphImporter;
+        eventJournal = new EventJournal(appConfig.getEventJournalDir());
+        observable.setEventJournal(eventJournal);
+
+        if (appConfig.isResumableImport()) {
+            long replayedPages = observable.replayEventJournal();
+            logger.info("Replayed " + replayedPages + " journaled page nodes");
+        }
+    }
+
+    private void closeEventJournal() {
+        if (eventJournal == null) {
+            return;
+        }
+        try {
+            eventJournal.close();
+        } catch (IOException e) {
+            logger.warn("Error closing event journal", e);
         }
     }
 
@@ -241,7 +314,7 @@ public class App {
                 GraphObserver graphObserver;
                 try {
                     graphObserver = clazz.newInstance();
-                    ((ConcurrentObservable) graphImporter).addObserver(graphObserver);
+                    addObserver(graphObserver);
                     graphObserver.configure(appConfig);
                     graphObservers.add(graphObserver);
                 } catch (InstantiationException | IllegalAccessException e) {
@@ -253,13 +326,51 @@ public class App {
         }
     }
 
+    /**
+     * Makes the statistics of the running import available via JMX
+     */
+    private void registerMBeans() {
+        AbstractObservableGraphImporter observable = (AbstractObservableGraphImporter) graphImporter;
+        mbeans.registerImporter(observable);
+        for (GraphObserver observer : observable.getObservers()) {
+            mbeans.registerObserver(observer, observable.getDispatcher(observer));
+        }
+        mbeans.registerCrawler(startTimeInMillis);
+        mbeans.registerFailedUrls();
+    }
+
+    private void startProgressReporter() {
+        if (silent) {
+            return;
+        }
+        progressReporter = new ProgressReporter((AbstractObservableGraphImporter) graphImporter,
+                TimeUnit.SECONDS.toMillis(appConfig.getProgressReportInterval()));
+        progressReporter.start();
+    }
+
+    private void stopProgressReporter() {
+        if (progressReporter != null) {
+            progressReporter.stop();
+        }
+    }
+
+    private void addObserver(GraphObserver graphObserver) {
+        ConcurrentObservable observable = (ConcurrentObservable) graphImporter;
+        if (appConfig.isAsynchronousObservers()) {
+            observable.addObserver(graphObserver, appConfig.getObserverQueueCapacity(), appConfig.getObserverThreads(),
+                    appConfig.getObserverOverflowPolicy());
+        } else {
+            observable.addObserver(graphObserver);
+        }
+    }
+
     /**
      * This is where everything happens!
      */
     private void crawlAndImport() throws Exception {
 
         CrawlConfig crawlConfig = buildCrawlConfig();
-        PageFetcher pageFetcher = new PageFetcher(crawlConfig);
+        PageFetcher pageFetcher = buildPageFetcher(crawlConfig);
         RobotstxtConfig robotsTxtConfig = new RobotstxtConfig();
         robotsTxtConfig.setEnabled(appConfig.isRespectRobotsTxt());
         RobotstxtServer robotsTxtServer = new RobotstxtServer(robotsTxtConfig, pageFetcher);
@@ -328,6 +439,28 @@ public class App {
         return crawlConfig;
     }
 
+    private PageFetcher buildPageFetcher(CrawlConfig crawlConfig) throws IOException {
+        if (appConfig.getReplayArchive() != null) {
+            return new ReplayPageFetcher(crawlConfig, appConfig.getReplayArchive());
+        }
+        if (appConfig.getRecordArchive() != null) {
+            return new RecordingPageFetcher(crawlConfig, appConfig.getRecordArchive());
+        }
+        return new PageFetcher(crawlConfig);
+    }
+
+    private void enrichGraph() throws InterruptedException {
+        if (graphObservers.isEmpty()) {
+            logger.info("Nothing to enrich, no custom event handlers configured");
+            return;
+        }
+
+        GraphEnricher enricher = new GraphEnricher((AbstractObservableGraphImporter) graphImporter,
+                Runtime.getRuntime().availableProcessors(), ENRICHMENT_PARTITION_SIZE, ENRICHMENT_BATCH_SIZE);
+        long pages = enricher.enrich();
+        logger.info("Finished scanning " + pages + " page nodes");
+    }
+
     /**
      * For each crawl, we need to add some seed URLs. These are the first URLs that are fetched and then the crawler
      * starts following links which are found in these pages.
@@ -350,6 +483,27 @@ public class App {
 
             displayBasicGraphInfo(elapsedSeconds);
             displayFailedUrls();
+            displayStageLatencies();
+            writeRunReport(endMillis);
+        }
+    }
+
+    private void displayStageLatencies() {
+        logger.info("");
+        StageTimers.getInstance().report(logger);
+    }
+
+    /**
+     * This method accesses the graph, so it must be called before the shutdown.
+     */
+    private void writeRunReport(long endMillis) {
+        final String fileName = appConfig.getRunReport();
+        try {
+            new RunReport(appConfig, (AbstractObservableGraphImporter) graphImporter, startTimeInMillis, endMillis)
+                    .write(new File(fileName));
+            logger.info("Run report: " + fileName);
+        } catch (IOException e) {
+            logger.warn("Cannot write run report " + fileName, e);
         }
     }
 
@@ -424,12 +578,29 @@ public class App {
             logger.info(observerClassName + " ignored: " + observer.getNumberOfIgnoredPageNodes() + " page nodes");
             logger.info(
                     observerClassName + " failed to update: " + observer.getNumberOfFailedUpdates() + " page nodes");
+            if (observer.getNumberOfDeferredUpdates() > 0) {
+                logger.info(observerClassName + " deferred: " + observer.getNumberOfDeferredUpdates() + " updates");
+            }
+            logger.info(observerClassName + " event lag: "
+                    + StringFormatUtil.formatMillis(observer.getAverageEventLagMillis()) + " ms average, "
+                    + StringFormatUtil.formatMillis(observer.getMaxEventLagMillis()) + " ms max");
+
+            ObserverDispatcher dispatcher = ((ConcurrentObservable) graphImporter).getDispatcher(observer);
+            if (dispatcher != null) {
+                logger.info(observerClassName + " dropped: " + dispatcher.getNumberOfDroppedEvents() + " events ("
+                        + dispatcher.getNumberOfDroppedPages() + " page nodes)");
+                logger.info(observerClassName + " spilled: " + dispatcher.getNumberOfSpilledEvents() + " events");
+            }
 
             if (observer instanceof CachingObserver && ((CachingObserver) observer).isCachingEnabled()) {
                 logger.info(observerClassName + " cache hits: " + ((CachingObserver) observer).getCacheHits());
                 logger.info(observerClassName + " cache misses: " + ((CachingObserver) observer).getCacheMisses());
                 logger.info(observerClassName + " cache updates: " + ((CachingObserver) observer).getCacheUpdates());
             }
+            if (observer instanceof CachingObserver && ((CachingObserver) observer).getCoalescedRequests() > 0) {
+                logger.info(observerClassName + " coalesced requests: "
+                        + ((CachingObserver) observer).getCoalescedRequests());
+            }
 
             logger.info("");
         }
@@ -454,4 +625,18 @@ public class App {
     public boolean isSuccessfulImport() {
         return isSuccessfulImport;
     }
+
+    /**
+     * Package private visibility for unit testing and benchmarks.
+     */
+    GraphImporter getGraphImporter() {
+        return graphImporter;
+    }
+
+    /**
+     * Package private visibility for unit testing and benchmarks.
+     */
+    Set<GraphObserver> getGraphObservers() {
+        return Collections.unmodifiableSet(graphObservers);
+    }
 }
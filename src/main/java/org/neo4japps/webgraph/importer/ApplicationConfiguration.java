@@ -13,6 +13,7 @@ public class ApplicationConfiguration {
 
     public static final String DEFAULT_DB_DIR_LOCATION = "./graph.db";
     public static final String DEFAULT_CRAWL_DATA_ROOT = "./crawl-data/root";
+    public static final String DEFAULT_EVENT_JOURNAL_DIR = "./event-journal";
 
     public static final String DEFAULT_CONFIG_FILE_NAME = "config.properties";
 
@@ -32,21 +33,72 @@ public class ApplicationConfiguration {
                     .describedAs("include HTTPS pages in crawling (defaults to false)");
             accepts("t").withOptionalArg().ofType(Boolean.class)
                     .describedAs("Use DB transactions during import (defaults to false, i.e. batch import)");
+            accepts("e").withOptionalArg().ofType(Boolean.class).describedAs(
+                    "enrich the existing graph with the custom event handlers, without crawling (defaults to false)");
+            accepts("j").withOptionalArg().ofType(Boolean.class).describedAs(
+                    "journal events so that event handlers can catch up when the import is resumed (defaults to false)");
 
             accepts("c").withRequiredArg().ofType(Integer.class).describedAs("number of crawler threads").defaultsTo(2);
             accepts("f").withRequiredArg().ofType(Integer.class).describedAs("max pages to fetch").defaultsTo(-1);
             accepts("d").withRequiredArg().ofType(Integer.class).describedAs("max depth of crawling").defaultsTo(10);
             accepts("p").withRequiredArg().ofType(Integer.class).describedAs("politeness delay").defaultsTo(50);
-            accepts("rf").withRequiredArg().ofType(Integer.class).describedAs("import progress report frequency")
-                    .defaultsTo(500);
+            accepts("ri").withRequiredArg().ofType(Integer.class)
+                    .describedAs("import progress report interval in seconds").defaultsTo(10);
             accepts("ts").withRequiredArg().ofType(Integer.class)
                     .describedAs("transaction size (number of nodes to import per DB transaction)").defaultsTo(500);
 
+            accepts("oq").withRequiredArg().ofType(Integer.class).describedAs(
+                    "event queue capacity per event handler (defaults to 0, i.e. handlers are notified synchronously)")
+                    .defaultsTo(0);
+            accepts("ot").withRequiredArg().ofType(Integer.class)
+                    .describedAs("number of threads per event handler queue").defaultsTo(4);
+            accepts("op").withRequiredArg().ofType(String.class)
+                    .describedAs("what to do when an event handler queue is full: block, drop or spill")
+                    .defaultsTo("block");
+
+            accepts("sb").withRequiredArg().ofType(Integer.class).describedAs(
+                    "number of social API requests that may be sent back to back before the politeness delay applies")
+                    .defaultsTo(1);
+            accepts("sl").withRequiredArg().ofType(Integer.class).describedAs(
+                    "number of social count lookups each handler thread keeps in flight (defaults to 1, i.e. blocking "
+                            + "lookups)").defaultsTo(1);
+            accepts("socialCacheDir").withRequiredArg().ofType(String.class)
+                    .describedAs("directory of the persistent social count cache (defaults to no caching)");
+            accepts("fbCacheTtl").withRequiredArg().ofType(Integer.class)
+                    .describedAs("hours until cached Facebook counts are fetched again").defaultsTo(24);
+            accepts("twCacheTtl").withRequiredArg().ofType(Integer.class)
+                    .describedAs("hours until cached Twitter counts are fetched again").defaultsTo(24);
+            accepts("fbApiUrl").withRequiredArg().ofType(String.class).describedAs(
+                    "base URL of the Facebook API, e.g. of a local stand-in (defaults to the real API)");
+            accepts("twApiUrl").withRequiredArg().ofType(String.class).describedAs(
+                    "base URL of the Twitter API, e.g. of a local stand-in (defaults to the real API)");
+            accepts("fbb").withRequiredArg().ofType(Integer.class).describedAs(
+                    "max number of URLs per Facebook API request (defaults to 1, i.e. no batching)").defaultsTo(1);
+            accepts("fbw").withRequiredArg().ofType(Integer.class)
+                    .describedAs("max milliseconds to wait for a Facebook batch to fill up").defaultsTo(100);
+
+            accepts("httpMaxPerRoute").withRequiredArg().ofType(Integer.class)
+                    .describedAs("max pooled connections per host of each social media handler").defaultsTo(50);
+            accepts("httpMaxTotal").withRequiredArg().ofType(Integer.class)
+                    .describedAs("max pooled connections of each social media handler").defaultsTo(100);
+            accepts("httpKeepAlive").withRequiredArg().ofType(Integer.class)
+                    .describedAs("seconds an idle pooled connection is kept alive").defaultsTo(30);
+            accepts("httpMaxContent").withRequiredArg().ofType(Integer.class)
+                    .describedAs("max length in bytes of a social API response").defaultsTo(2048);
+
             accepts("proxyHost").withRequiredArg().ofType(String.class).describedAs("proxy host");
             accepts("proxyPort").withRequiredArg().ofType(Integer.class).describedAs("proxy port").defaultsTo(8080);
             accepts("proxyUsername").withRequiredArg().ofType(String.class).describedAs("proxy user name");
             accepts("proxyPassword").withRequiredArg().ofType(String.class).describedAs("proxy password");
 
+            accepts("recordTo").withRequiredArg().ofType(String.class)
+                    .describedAs("record all fetched responses to this WARC archive file");
+            accepts("replayFrom").withRequiredArg().ofType(String.class)
+                    .describedAs("replay fetched responses from this WARC archive file instead of the network");
+            accepts("runReport").withRequiredArg().ofType(String.class)
+                    .describedAs("write the statistics of the import to this JSON file")
+                    .defaultsTo(RunReport.DEFAULT_FILE_NAME);
+
             accepts("config").withRequiredArg().ofType(String.class).describedAs("configuration file name")
                     .defaultsTo(DEFAULT_CONFIG_FILE_NAME);
 
@@ -64,16 +116,42 @@ public class ApplicationConfiguration {
     private final int maxPagesToFetch; // crawler default is -1 (unlimited)
     private final int maxDepthOfCrawling; // crawler default is -1 (unlimited)
     private final int politenessDelay; // crawler default is 200
-    private final int importProgressReportFrequency;
+    private final int progressReportInterval;
+
+    private final int httpMaxPerRoute;
+    private final int httpMaxTotal;
+    private final int httpKeepAlive;
+    private final int httpMaxContent;
 
     private final String proxyHost; // e.g. "proxy1.mydomain.net"
     private final int proxyPort;
     private final String proxyUsername;
     private final String proxyPassword;
 
+    private final String recordArchive;
+    private final String replayArchive;
+    private final String runReport;
+
     private final boolean useTransactions;
     private final int transactionSize;
 
+    private final boolean journalEvents;
+    private final boolean enrichOnly;
+
+    private final int observerQueueCapacity;
+    private final int observerThreads;
+    private final ObserverDispatcher.OverflowPolicy observerOverflowPolicy;
+
+    private final int socialApiBurst;
+    private final int socialLookupsInFlight;
+    private final String socialCacheDir;
+    private final int facebookCacheTtl;
+    private final int twitterCacheTtl;
+    private final String facebookApiUrl;
+    private final String twitterApiUrl;
+    private final int facebookBatchSize;
+    private final int facebookBatchWait;
+
     private final String configFileName;
     private final String configFileFullPath;
     private final Properties configProperties;
@@ -85,6 +163,7 @@ public class ApplicationConfiguration {
     private static final String DB_DIR = DEFAULT_DB_DIR_LOCATION; // hard-coded for now
     private static final String CRAWL_STORAGE_DIR = DEFAULT_CRAWL_DATA_ROOT; // hard-coded
     // for now
+    private static final String EVENT_JOURNAL_DIR = DEFAULT_EVENT_JOURNAL_DIR; // hard-coded for now
 
     public ApplicationConfiguration(String[] cmdLineArgs) throws Exception {
         this(cmdLineArgs, null);
@@ -121,18 +200,82 @@ public class ApplicationConfiguration {
             throw new IllegalArgumentException("Value for option 'p' must be >= 0 milliseconds");
         }
 
-        importProgressReportFrequency = (Integer) cliOptions.valueOf("rf");
-        if (importProgressReportFrequency < 1) {
-            throw new IllegalArgumentException("Value for option 'rf' must be >= 1 node(s)");
+        progressReportInterval = (Integer) cliOptions.valueOf("ri");
+        if (progressReportInterval < 1) {
+            throw new IllegalArgumentException("Value for option 'ri' must be >= 1 second(s)");
         }
 
         useTransactions = getOptionalBooleanArgument("t", false);
+        journalEvents = getOptionalBooleanArgument("j", false);
+        enrichOnly = getOptionalBooleanArgument("e", false);
 
         transactionSize = (Integer) cliOptions.valueOf("ts");
         if (transactionSize < 1) {
             throw new IllegalArgumentException("Value for option 'ts' must be >= 1 node(s)");
         }
 
+        observerQueueCapacity = (Integer) cliOptions.valueOf("oq");
+        if (observerQueueCapacity < 0) {
+            throw new IllegalArgumentException("Value for option 'oq' must be >= 0 event(s)");
+        }
+        observerThreads = (Integer) cliOptions.valueOf("ot");
+        if (observerThreads < 1) {
+            throw new IllegalArgumentException("Value for option 'ot' must be >= 1");
+        }
+        try {
+            observerOverflowPolicy = ObserverDispatcher.OverflowPolicy.valueOf(
+                    ((String) cliOptions.valueOf("op")).toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Value for option 'op' must be one of: block, drop, spill");
+        }
+
+        socialApiBurst = (Integer) cliOptions.valueOf("sb");
+        if (socialApiBurst < 1) {
+            throw new IllegalArgumentException("Value for option 'sb' must be >= 1 request(s)");
+        }
+        socialLookupsInFlight = (Integer) cliOptions.valueOf("sl");
+        if (socialLookupsInFlight < 1) {
+            throw new IllegalArgumentException("Value for option 'sl' must be >= 1 lookup(s)");
+        }
+        socialCacheDir = (String) cliOptions.valueOf("socialCacheDir");
+        facebookCacheTtl = (Integer) cliOptions.valueOf("fbCacheTtl");
+        if (facebookCacheTtl < 0) {
+            throw new IllegalArgumentException("Value for option 'fbCacheTtl' must be >= 0 hours");
+        }
+        twitterCacheTtl = (Integer) cliOptions.valueOf("twCacheTtl");
+        if (twitterCacheTtl < 0) {
+            throw new IllegalArgumentException("Value for option 'twCacheTtl' must be >= 0 hours");
+        }
+
+        facebookApiUrl = (String) cliOptions.valueOf("fbApiUrl");
+        twitterApiUrl = (String) cliOptions.valueOf("twApiUrl");
+
+        facebookBatchSize = (Integer) cliOptions.valueOf("fbb");
+        if (facebookBatchSize < 1) {
+            throw new IllegalArgumentException("Value for option 'fbb' must be >= 1 URL(s)");
+        }
+        facebookBatchWait = (Integer) cliOptions.valueOf("fbw");
+        if (facebookBatchWait < 0) {
+            throw new IllegalArgumentException("Value for option 'fbw' must be >= 0 milliseconds");
+        }
+
+        httpMaxPerRoute = (Integer) cliOptions.valueOf("httpMaxPerRoute");
+        if (httpMaxPerRoute < 1) {
+            throw new IllegalArgumentException("Value for option 'httpMaxPerRoute' must be >= 1 connection(s)");
+        }
+        httpMaxTotal = (Integer) cliOptions.valueOf("httpMaxTotal");
+        if (httpMaxTotal < httpMaxPerRoute) {
+            throw new IllegalArgumentException("Value for option 'httpMaxTotal' must be >= httpMaxPerRoute");
+        }
+        httpKeepAlive = (Integer) cliOptions.valueOf("httpKeepAlive");
+        if (httpKeepAlive < 0) {
+            throw new IllegalArgumentException("Value for option 'httpKeepAlive' must be >= 0 seconds");
+        }
+        httpMaxContent = (Integer) cliOptions.valueOf("httpMaxContent");
+        if (httpMaxContent < 1) {
+            throw new IllegalArgumentException("Value for option 'httpMaxContent' must be >= 1 byte(s)");
+        }
+
         proxyHost = (String) cliOptions.valueOf("proxyHost");
         proxyPort = (Integer) cliOptions.valueOf("proxyPort");
         if (proxyPort < 1) {
@@ -141,6 +284,13 @@ public class ApplicationConfiguration {
         proxyUsername = (String) cliOptions.valueOf("proxyUsername");
         proxyPassword = (String) cliOptions.valueOf("proxyPassword");
 
+        recordArchive = (String) cliOptions.valueOf("recordTo");
+        replayArchive = (String) cliOptions.valueOf("replayFrom");
+        if (recordArchive != null && replayArchive != null) {
+            throw new IllegalArgumentException("Options 'recordTo' and 'replayFrom' cannot be used together");
+        }
+        runReport = (String) cliOptions.valueOf("runReport");
+
         configFileName = (String) cliOptions.valueOf("config");
         if (props == null) {
             // normal case
@@ -212,19 +362,27 @@ public class ApplicationConfiguration {
         sink.println("Command line options:");
         sink.println();
         sink.println("resumableImport: " + isResumableImport());
+        sink.println("enrichOnly: " + isEnrichOnly());
         sink.println("includeBinaryContentInCrawling: " + isIncludeBinaryContentInCrawling());
         sink.println("includeHttpsPages: " + isIncludeHttpsPages());
         sink.println("numberOfCrawlers: " + getNumberOfCrawlers());
         sink.println("maxPagesToFetch: " + getMaxPagesToFetch());
         sink.println("maxDepthOfCrawling: " + getMaxDepthOfCrawling());
         sink.println("politenessDelay: " + getPolitenessDelay() + " ms");
-        sink.println("importProgressReportFrequency every: " + getImportProgressReportFrequency() + " nodes");
+        sink.println("progressReportInterval: " + getProgressReportInterval() + " seconds");
 
+        sink.println("httpMaxPerRoute: " + getHttpMaxPerRoute() + " connections");
+        sink.println("httpMaxTotal: " + getHttpMaxTotal() + " connections");
+        sink.println("httpKeepAlive: " + getHttpKeepAlive() + " seconds");
+        sink.println("httpMaxContent: " + getHttpMaxContent() + " bytes");
         sink.println("proxyHost: " + getProxyHost());
         sink.println("proxyPort: " + getProxyPort());
         sink.println("proxyUsername: " + getProxyUsername());
         sink.println("proxyPassword: " + mask(getProxyPassword(), '*'));
 
+        sink.println("recordTo: " + getRecordArchive());
+        sink.println("replayFrom: " + getReplayArchive());
+
         sink.println("");
         sink.println("useTransactions: " + isUseTransactions());
         if (isUseTransactions()) {
@@ -234,6 +392,31 @@ public class ApplicationConfiguration {
         } else {
             sink.println("numberOfBatchImporterThreads: " + getNumberOfBatchImporterThreads());
         }
+        if (isAsynchronousObservers()) {
+            sink.println("observerQueueCapacity: " + getObserverQueueCapacity() + " events");
+            sink.println("observerThreads: " + getObserverThreads());
+            sink.println("observerOverflowPolicy: " + getObserverOverflowPolicy());
+        }
+
+        sink.println("journalEvents: " + isJournalEvents());
+        sink.println("socialApiBurst: " + getSocialApiBurst() + " requests");
+        sink.println("socialLookupsInFlight: " + getSocialLookupsInFlight());
+        if (getSocialCacheDir() != null) {
+            sink.println("socialCacheDir: " + getSocialCacheDir());
+            sink.println("facebookCacheTtl: " + getFacebookCacheTtl() + " hours");
+            sink.println("twitterCacheTtl: " + getTwitterCacheTtl() + " hours");
+        }
+        if (getFacebookApiUrl() != null) {
+            sink.println("facebookApiUrl: " + getFacebookApiUrl());
+        }
+        if (getTwitterApiUrl() != null) {
+            sink.println("twitterApiUrl: " + getTwitterApiUrl());
+        }
+        if (isBatchFacebookRequests()) {
+            sink.println("facebookBatchSize: " + getFacebookBatchSize() + " URLs");
+            sink.println("facebookBatchWait: " + getFacebookBatchWait() + " ms");
+        }
+        sink.println("runReport: " + getRunReport());
 
         sink.println("");
         sink.println("respectRobotsTxt: " + isRespectRobotsTxt() + " (hard-coded)");
@@ -241,6 +424,9 @@ public class ApplicationConfiguration {
         sink.println("maxTotalConnections: " + getMaxTotalConnections() + " (hard-coded)");
         sink.println("databaseDirectory: " + getDbDir() + " (hard-coded)");
         sink.println("crawlStorageDir: " + getCrawlStorageDir() + " (hard-coded)");
+        if (isJournalEvents()) {
+            sink.println("eventJournalDir: " + getEventJournalDir() + " (hard-coded)");
+        }
         sink.println();
         sink.println("Properties (loaded from " + configFileFullPath + "):");
         sink.println();
@@ -287,6 +473,81 @@ public class ApplicationConfiguration {
         return isUseTransactions() ? 0 : getNumberOfCrawlers() * 20;
     }
 
+    /**
+     * @return true if event handlers should be notified via their own queues rather than on the importing thread
+     */
+    public boolean isAsynchronousObservers() {
+        return observerQueueCapacity > 0;
+    }
+
+    public int getObserverQueueCapacity() {
+        return observerQueueCapacity;
+    }
+
+    public int getObserverThreads() {
+        return observerThreads;
+    }
+
+    public ObserverDispatcher.OverflowPolicy getObserverOverflowPolicy() {
+        return observerOverflowPolicy;
+    }
+
+    public int getSocialApiBurst() {
+        return socialApiBurst;
+    }
+
+    /**
+     * @return the number of pages whose social counts a handler thread looks up concurrently before writing them to the
+     * graph in one go
+     */
+    public int getSocialLookupsInFlight() {
+        return socialLookupsInFlight;
+    }
+
+    /**
+     * @return the directory of the persistent social count cache, or null if social counts should not be cached
+     */
+    public String getSocialCacheDir() {
+        return socialCacheDir;
+    }
+
+    public int getFacebookCacheTtl() {
+        return facebookCacheTtl;
+    }
+
+    public int getTwitterCacheTtl() {
+        return twitterCacheTtl;
+    }
+
+    /**
+     * @return the base URL the Facebook handlers send their requests to, or null for the real Facebook API
+     */
+    public String getFacebookApiUrl() {
+        return facebookApiUrl;
+    }
+
+    /**
+     * @return the base URL the Twitter handlers send their requests to, or null for the real Twitter API
+     */
+    public String getTwitterApiUrl() {
+        return twitterApiUrl;
+    }
+
+    /**
+     * @return true if the Facebook event handlers should look up several URLs per API request
+     */
+    public boolean isBatchFacebookRequests() {
+        return facebookBatchSize > 1;
+    }
+
+    public int getFacebookBatchSize() {
+        return facebookBatchSize;
+    }
+
+    public int getFacebookBatchWait() {
+        return facebookBatchWait;
+    }
+
     public int getMaxPagesToFetch() {
         return maxPagesToFetch;
     }
@@ -299,8 +560,27 @@ public class ApplicationConfiguration {
         return politenessDelay;
     }
 
-    public int getImportProgressReportFrequency() {
-        return importProgressReportFrequency;
+    /**
+     * @return the interval between import progress reports in seconds
+     */
+    public int getProgressReportInterval() {
+        return progressReportInterval;
+    }
+
+    public int getHttpMaxPerRoute() {
+        return httpMaxPerRoute;
+    }
+
+    public int getHttpMaxTotal() {
+        return httpMaxTotal;
+    }
+
+    public int getHttpKeepAlive() {
+        return httpKeepAlive;
+    }
+
+    public int getHttpMaxContent() {
+        return httpMaxContent;
     }
 
     public String getProxyHost() {
@@ -319,6 +599,18 @@ public class ApplicationConfiguration {
         return proxyPassword;
     }
 
+    public String getRecordArchive() {
+        return recordArchive;
+    }
+
+    public String getReplayArchive() {
+        return replayArchive;
+    }
+
+    public String getRunReport() {
+        return runReport;
+    }
+
     public boolean isUseTransactions() {
         return useTransactions;
     }
@@ -343,6 +635,21 @@ public class ApplicationConfiguration {
         return CRAWL_STORAGE_DIR;
     }
 
+    /**
+     * @return true if the existing graph should only be enriched by the custom event handlers, rather than crawled
+     */
+    public boolean isEnrichOnly() {
+        return enrichOnly;
+    }
+
+    public boolean isJournalEvents() {
+        return journalEvents;
+    }
+
+    public String getEventJournalDir() {
+        return EVENT_JOURNAL_DIR;
+    }
+
     public String getConfigFileName() {
         return configFileName;
     }
@@ -7,6 +7,7 @@ import org.neo4j.unsafe.batchinsert.BatchDbWorkAround;
 import org.neo4j.unsafe.batchinsert.BatchInserterIndex;
 import org.neo4j.unsafe.batchinsert.BatchInserterIndexProvider;
 import org.neo4j.unsafe.batchinsert.BatchInserters;
+import org.neo4japps.webgraph.jfr.EventQueuePutEvent;
 import org.neo4japps.webgraph.util.ListChunker;
 import org.neo4japps.webgraph.util.UrlUtil;
 
@@ -17,11 +18,11 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This importer drops support for transactions and concurrency in favor of insertion speed. Only one thread at a time
- * may work against the underlying batch database/inserter.
+ * may access the underlying batch database/inserter, see {@link #getGraphLock()}. Even loading a node is not a pure
+ * read: the batch database caches the nodes it loads, and a node evicted from the cache gets written to the store.
  * <p>
  * Note that if the JVM/machine crashes or if we fail to shut down the DB before the JVM
  * exits the Neo4j store can be considered being in an inconsistent state and the insertion has to be re-done from
@@ -76,7 +77,9 @@ public class BatchGraphImporter extends AbstractObservableGraphImporter {
         }
     }
 
-    private final Lock graphMutex = new ReentrantLock();
+    // the read lock is the write lock, only optimistic reads of the properties of nodes already loaded run concurrently
+    private final StampedGraphLock graphLock = new StampedGraphLock();
+    private final Lock graphMutex = graphLock.writeLock();
 
     private final GraphDatabaseService graphDb;
 
@@ -88,8 +91,8 @@ public class BatchGraphImporter extends AbstractObservableGraphImporter {
     final List<EventQueueConsumer> eventConsumers;
 
     public BatchGraphImporter(String storeDir, String rootUrl, long startTimeInMillis,
-                              int importProgressReportFrequency, int numberOfEventHandlerThreads) {
-        super(rootUrl, startTimeInMillis, importProgressReportFrequency);
+                              int numberOfEventHandlerThreads) {
+        super(rootUrl, startTimeInMillis);
 
         graphDb = BatchInserters.batchDatabase(storeDir);
 
@@ -124,11 +127,34 @@ public class BatchGraphImporter extends AbstractObservableGraphImporter {
         }
     }
 
+    @Override
+    int getEventQueueDepth() {
+        return eventQueue.size();
+    }
+
+    @Override
+    int getNumberOfActiveEventConsumers() {
+        int active = 0;
+        synchronized (eventConsumers) {
+            for (EventQueueConsumer consumer : eventConsumers) {
+                if (consumer.isProcessingEvent()) {
+                    active++;
+                }
+            }
+        }
+        return active;
+    }
+
     @Override
     public Lock getLock() {
         return graphMutex;
     }
 
+    @Override
+    public GraphLock getGraphLock() {
+        return graphLock;
+    }
+
     @Override
     public Transaction beginDbTransaction() {
         return graphDb.beginTx();
@@ -144,9 +170,19 @@ public class BatchGraphImporter extends AbstractObservableGraphImporter {
         if (isStopped.get())
             return null;
 
-        Node page = addPageWithoutBroadcasting(url, content);
+        final Node page;
+        final List<PageSnapshot> snapshots;
 
-        broadcastModification(page);
+        // take the snapshot while we still hold the lock, so that observers don't need to take it again
+        graphMutex.lock();
+        try {
+            page = addPageWithoutBroadcasting(url, content);
+            snapshots = takeSnapshotsForObservers(page == null ? null : Collections.singletonList(page));
+        } finally {
+            graphMutex.unlock();
+        }
+
+        broadcastSnapshots(snapshots);
 
         return page;
     }
@@ -191,8 +227,6 @@ public class BatchGraphImporter extends AbstractObservableGraphImporter {
             graphMutex.unlock();
         }
 
-        reportProgress();
-
         return page;
     }
 
@@ -235,10 +269,19 @@ public class BatchGraphImporter extends AbstractObservableGraphImporter {
 
         try {
             for (PageNodesModificationEvent chunk : chunks) {
-                if (eventQueue.remainingCapacity() == 0) {
+                final EventQueuePutEvent putEvent = new EventQueuePutEvent();
+                putEvent.begin();
+                final int remainingCapacity = eventQueue.remainingCapacity();
+                if (remainingCapacity == 0) {
                     logger.trace("Event queue is full. Waiting for importer threads to become available.");
                 }
                 eventQueue.put(chunk);
+                if (putEvent.shouldCommit()) {
+                    putEvent.queue = getClass().getSimpleName();
+                    putEvent.pageCount = chunk.getPages().size();
+                    putEvent.remainingCapacity = remainingCapacity;
+                    putEvent.commit();
+                }
             }
         } catch (InterruptedException e) {
             logger.warn(e);
@@ -253,10 +296,15 @@ public class BatchGraphImporter extends AbstractObservableGraphImporter {
     private List<PageNodesModificationEvent> chunkUp(PageNodesModificationEvent event, int chunkSize) {
         List<PageNodesModificationEvent> events = new ArrayList<>();
 
-        ListChunker<Node> chunker = new ListChunker<>(event.getPages(), chunkSize);
+        long journalOffset = event.getJournalOffset();
+        ListChunker<PageSnapshot> chunker = new ListChunker<>(event.getSnapshots(), chunkSize);
         while (chunker.hasMore()) {
-            final List<Node> chunk = chunker.getNextChunk();
-            events.add(new PageNodesModificationEvent(event.getSource(), chunk));
+            final List<PageSnapshot> chunk = chunker.getNextChunk();
+            events.add(new PageNodesModificationEvent(event.getSource(), chunk, event.getCreationTimeNanos(),
+                    journalOffset));
+            if (journalOffset >= 0) {
+                journalOffset += chunk.size();
+            }
         }
 
         return events;
@@ -275,6 +323,7 @@ public class BatchGraphImporter extends AbstractObservableGraphImporter {
         }
 
         final List<Node> nodes = new ArrayList<>();
+        final List<PageSnapshot> snapshots;
 
         graphMutex.lock();
         try {
@@ -291,11 +340,12 @@ public class BatchGraphImporter extends AbstractObservableGraphImporter {
                     links.add(link);
                 }
             }
+            snapshots = takeSnapshotsForObservers(nodes);
         } finally {
             graphMutex.unlock();
         }
 
-        broadcastModifications(nodes);
+        broadcastSnapshots(snapshots);
 
         return links;
     }
@@ -333,6 +383,57 @@ public class BatchGraphImporter extends AbstractObservableGraphImporter {
         }
     }
 
+    @Override
+    public Node getNodeById(long id) {
+        graphMutex.lock();
+        try {
+            return graphDb.getNodeById(id);
+        } catch (NotFoundException e) {
+            return null;
+        } finally {
+            graphMutex.unlock();
+        }
+    }
+
+    @Override
+    public long getHighestNodeId() {
+        // The batch database doesn't expose its id generator. But this importer never deletes nodes, so node ids are
+        // dense and we can search for the last one.
+        graphMutex.lock();
+        try {
+            if (!nodeExists(0)) {
+                return 0;
+            }
+            long low = 0;
+            long high = 1;
+            while (nodeExists(high)) {
+                low = high;
+                high *= 2;
+            }
+            // node low exists, node high doesn't
+            while (high - low > 1) {
+                final long middle = low + (high - low) / 2;
+                if (nodeExists(middle)) {
+                    low = middle;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        } finally {
+            graphMutex.unlock();
+        }
+    }
+
+    private boolean nodeExists(long id) {
+        try {
+            graphDb.getNodeById(id);
+            return true;
+        } catch (NotFoundException e) {
+            return false;
+        }
+    }
+
     private Long getNodeId(String url) {
         IndexHits<Long> indexHits = pageIndex.get(PageNode.URL_KEY, url);
         return indexHits.getSingle();
@@ -411,6 +512,8 @@ public class BatchGraphImporter extends AbstractObservableGraphImporter {
 
             Thread.sleep(2000);
         }
+
+        waitForDispatchersToFinish();
     }
 
     private boolean eventQueueNotEmpty() {
@@ -12,4 +12,11 @@ public interface CachingObserver {
     long getCacheMisses();
 
     long getCacheUpdates();
+
+    /**
+     * @return the number of requests that shared the response of an identical request in flight
+     */
+    default long getCoalescedRequests() {
+        return 0;
+    }
 }
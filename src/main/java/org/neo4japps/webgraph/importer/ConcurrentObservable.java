@@ -2,12 +2,19 @@ package org.neo4japps.webgraph.importer;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 public abstract class ConcurrentObservable {
 
     private final List<GraphObserver> observers = new CopyOnWriteArrayList<>();
 
+    // observers that are notified asynchronously, each one via its own dispatcher
+    private final Map<GraphObserver, ObserverDispatcher> dispatchers = new ConcurrentHashMap<>();
+
+    private volatile EventJournal eventJournal;
+
     public final List<GraphObserver> getObservers() {
         return Collections.unmodifiableList(observers);
     }
@@ -16,13 +23,93 @@ public abstract class ConcurrentObservable {
         return observers.size();
     }
 
+    /**
+     * Registers an observer that gets notified synchronously, on the thread that modified the graph.
+     */
     public final void addObserver(GraphObserver o) {
         observers.add(o);
+        registerWithEventJournal(o);
+    }
+
+    /**
+     * Registers an observer that gets notified asynchronously, via its own bounded queue and worker threads.
+     */
+    public final void addObserver(GraphObserver o, int queueCapacity, int numberOfThreads,
+                                  ObserverDispatcher.OverflowPolicy overflowPolicy) {
+        dispatchers.put(o, new ObserverDispatcher(this, o, queueCapacity, numberOfThreads, overflowPolicy));
+        observers.add(o);
+        registerWithEventJournal(o);
+    }
+
+    private void registerWithEventJournal(GraphObserver o) {
+        final EventJournal journal = eventJournal;
+        if (journal != null) {
+            journal.register(o);
+        }
+    }
+
+    /**
+     * @return the dispatcher of the given observer, or null if the observer is notified synchronously
+     */
+    public final ObserverDispatcher getDispatcher(GraphObserver o) {
+        return dispatchers.get(o);
+    }
+
+    public final EventJournal getEventJournal() {
+        return eventJournal;
+    }
+
+    /**
+     * Once set, all broadcast events are journaled, and observers commit the events they have processed. All observers
+     * are registered with the journal, in the order they were added.
+     */
+    public final void setEventJournal(EventJournal eventJournal) {
+        this.eventJournal = eventJournal;
+        if (eventJournal != null) {
+            for (GraphObserver observer : observers) {
+                eventJournal.register(observer);
+            }
+        }
     }
 
     public final void notifyObservers(PageNodesModificationEvent event) {
+        final long start = System.nanoTime();
         for (GraphObserver observer : observers) {
-            observer.update(this, event);
+            notifyObserver(observer, event);
+        }
+        StageTimers.getInstance().record(StageTimers.Stage.NOTIFY, start);
+    }
+
+    public final void notifyObserver(GraphObserver observer, PageNodesModificationEvent event) {
+        ObserverDispatcher dispatcher = dispatchers.get(observer);
+        if (dispatcher == null) {
+            deliver(observer, event);
+        } else {
+            dispatcher.dispatch(event);
+        }
+    }
+
+    /**
+     * The observer commits the event to the journal once it has processed it
+     */
+    final void deliver(GraphObserver observer, PageNodesModificationEvent event) {
+        observer.update(this, event);
+    }
+
+    /**
+     * @return the number of events that have been queued for asynchronous observers but not processed yet
+     */
+    protected final int getNumberOfPendingDispatcherEvents() {
+        int ret = 0;
+        for (ObserverDispatcher dispatcher : dispatchers.values()) {
+            ret += dispatcher.getNumberOfPendingEvents();
+        }
+        return ret;
+    }
+
+    protected final void stopDispatchers() {
+        for (ObserverDispatcher dispatcher : dispatchers.values()) {
+            dispatcher.stop();
         }
     }
 }
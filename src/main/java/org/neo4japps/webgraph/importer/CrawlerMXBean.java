@@ -0,0 +1,11 @@
+package org.neo4japps.webgraph.importer;
+
+/**
+ * Live statistics of the crawler threads, registered as org.neo4japps.webgraph:type=Crawler.
+ */
+public interface CrawlerMXBean {
+
+    int getNumberOfVisitedPages();
+
+    double getPagesPerSecond();
+}
@@ -0,0 +1,18 @@
+package org.neo4japps.webgraph.importer;
+
+/**
+ * Thrown by observers that cannot update a page right now, e.g. because the remote service they depend on is down.
+ * The page is handed to {@link GraphObserver#deferUpdate} instead of being dropped.
+ */
+public class DeferredUpdateException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public DeferredUpdateException(String message) {
+        super(message);
+    }
+
+    public DeferredUpdateException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
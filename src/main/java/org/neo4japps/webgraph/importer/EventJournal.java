@@ -0,0 +1,318 @@
+package org.neo4japps.webgraph.importer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only journal of page node modification events, so that observers can catch up with the events they had not
+ * processed when the previous import was stopped or crashed.
+ * <p>
+ * The journal file is just a sequence of node ids (8 bytes each). Every journaled event covers a contiguous range of
+ * entries, starting at {@link PageNodesModificationEvent#getJournalOffset()}. For each observer the journal keeps the
+ * committed offset in a small file of its own: all entries before this offset have been processed by the observer.
+ * Observers of the same class are told apart by the order in which they are registered, so a resumed import must
+ * register them in the same order.
+ * Since events can complete out of order the committed offset only advances once all preceding events are done, or
+ * once there are more than {@link #MAX_COMPLETED_RANGES} gaps, in which case the entries of the oldest gap are given
+ * up on.
+ * <p>
+ * Nothing is forced to disk, so the journal survives a crash of the JVM but not necessarily a crash of the machine.
+ * Committed offsets are written at most once per second, so after a crash some events may be processed twice.
+ */
+public class EventJournal implements Closeable {
+
+    public static final String JOURNAL_FILE_NAME = "events.journal";
+    public static final String OFFSET_FILE_SUFFIX = ".offset";
+
+    private static final int ENTRY_SIZE = 8;
+    private static final long OFFSET_WRITE_INTERVAL_MILLIS = 1000;
+
+    /**
+     * Max number of gaps between the committed offset and the events completed ahead of it
+     */
+    static final int MAX_COMPLETED_RANGES = 10000;
+
+    /**
+     * Tracks which events an observer has completed.
+     */
+    private class Cursor {
+        private final File offsetFile;
+        private long committedOffset;
+        private long lastWriteMillis;
+        // start offset -> end offset of events that completed ahead of the committed offset
+        private final TreeMap<Long, Long> completedRanges = new TreeMap<>();
+
+        Cursor(File offsetFile, long journalSize) throws IOException {
+            this.offsetFile = offsetFile;
+            if (offsetFile.exists()) {
+                String content = new String(Files.readAllBytes(offsetFile.toPath()), StandardCharsets.UTF_8).trim();
+                committedOffset = content.isEmpty() ? 0 : Long.parseLong(content);
+            }
+            // stale offset file, e.g. of an observer that was not registered when the journal got truncated
+            committedOffset = Math.min(committedOffset, journalSize);
+        }
+
+        synchronized long getCommittedOffset() {
+            return committedOffset;
+        }
+
+        synchronized void commit(long start, long end) {
+            if (end <= committedOffset) {
+                return;
+            }
+
+            // merge with adjacent ranges, so that there is one range per gap rather than one per event
+            final Map.Entry<Long, Long> preceding = completedRanges.floorEntry(start);
+            if (preceding != null && preceding.getValue() == start) {
+                completedRanges.remove(preceding.getKey());
+                start = preceding.getKey();
+            }
+            final Long following = completedRanges.remove(end);
+            if (following != null) {
+                end = following;
+            }
+            completedRanges.put(start, end);
+
+            advanceCommittedOffset();
+            if (completedRanges.size() > MAX_COMPLETED_RANGES) {
+                // an event that never completes must not hold back the offset forever
+                final Map.Entry<Long, Long> first = completedRanges.firstEntry();
+                logger.warn("Giving up on journal entries " + committedOffset + " to " + first.getKey() + " for "
+                        + offsetFile.getName() + ". They won't be replayed.");
+                committedOffset = first.getKey();
+                advanceCommittedOffset();
+            }
+
+            final long now = System.currentTimeMillis();
+            if (now - lastWriteMillis >= OFFSET_WRITE_INTERVAL_MILLIS) {
+                write();
+                lastWriteMillis = now;
+            }
+        }
+
+        private void advanceCommittedOffset() {
+            Long next;
+            while ((next = completedRanges.remove(committedOffset)) != null) {
+                committedOffset = next;
+            }
+        }
+
+        synchronized int getNumberOfCompletedRanges() {
+            return completedRanges.size();
+        }
+
+        synchronized void reset() {
+            committedOffset = 0;
+            completedRanges.clear();
+            write();
+        }
+
+        synchronized void write() {
+            try {
+                Files.write(offsetFile.toPath(), Long.toString(committedOffset).getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                logger.warn("Could not write " + offsetFile, e);
+            }
+        }
+    }
+
+    private final Logger logger = LogManager.getLogger(this.getClass());
+
+    private final File dir;
+    private final FileChannel channel;
+    private final Map<GraphObserver, Cursor> cursors = new ConcurrentHashMap<>();
+    // guarded by itself
+    private final Map<String, Cursor> cursorsByName = new HashMap<>();
+
+    // number of entries in the journal
+    private long size;
+
+    public EventJournal(String dirName) throws IOException {
+        dir = new File(dirName);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Could not create event journal directory " + dir);
+        }
+
+        channel = FileChannel.open(new File(dir, JOURNAL_FILE_NAME).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // ignore a partially written entry at the end
+        size = channel.size() / ENTRY_SIZE;
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * @return the journal offset of the first page
+     */
+    public synchronized long append(List<PageSnapshot> pages) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(pages.size() * ENTRY_SIZE);
+        for (PageSnapshot page : pages) {
+            buffer.putLong(page.getId());
+        }
+        buffer.flip();
+
+        final long offset = size;
+        long position = offset * ENTRY_SIZE;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        // only now, so that a failed write leaves no gap, the next append overwrites it
+        size += pages.size();
+        return offset;
+    }
+
+    /**
+     * @return up to maxEntries node ids, starting at the given offset
+     */
+    public long[] read(long offset, int maxEntries) throws IOException {
+        final long available = size() - offset;
+        final int entries = (int) Math.max(0, Math.min(maxEntries, available));
+
+        final ByteBuffer buffer = ByteBuffer.allocate(entries * ENTRY_SIZE);
+        long position = offset * ENTRY_SIZE;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of event journal at entry " + position / ENTRY_SIZE);
+            }
+            position += read;
+        }
+        buffer.flip();
+
+        final long[] ids = new long[entries];
+        for (int i = 0; i < entries; i++) {
+            ids[i] = buffer.getLong();
+        }
+        return ids;
+    }
+
+    /**
+     * Starts tracking the observer. The journal is only truncated once every registered observer has processed all of
+     * it, even if an observer has not committed anything yet.
+     */
+    public void register(GraphObserver observer) {
+        try {
+            getCursor(observer);
+        } catch (IOException e) {
+            logger.warn("Could not read the committed offset of " + observer.getClass().getSimpleName(), e);
+        }
+    }
+
+    public long getCommittedOffset(GraphObserver observer) throws IOException {
+        return getCursor(observer).getCommittedOffset();
+    }
+
+    /**
+     * Package private visibility for unit testing
+     */
+    int getNumberOfCompletedRanges(GraphObserver observer) throws IOException {
+        return getCursor(observer).getNumberOfCompletedRanges();
+    }
+
+    /**
+     * Records that the observer has processed the given event, or will never process it, e.g. because it was dropped.
+     * Otherwise the committed offset cannot advance beyond the event.
+     */
+    public void commit(GraphObserver observer, PageNodesModificationEvent event) {
+        if (event.getJournalOffset() >= 0) {
+            commit(observer, event.getJournalOffset(), event.getJournalOffset() + event.getPages().size());
+        }
+    }
+
+    /**
+     * Records that the observer has processed the journal entries from start (inclusive) to end (exclusive).
+     */
+    void commit(GraphObserver observer, long start, long end) {
+        try {
+            getCursor(observer).commit(start, end);
+        } catch (IOException e) {
+            logger.warn("Could not commit journal entries " + start + " to " + end + " for "
+                    + observer.getClass().getSimpleName(), e);
+        }
+    }
+
+    private Cursor getCursor(GraphObserver observer) throws IOException {
+        Cursor cursor = cursors.get(observer);
+        if (cursor == null) {
+            synchronized (cursorsByName) {
+                cursor = cursors.get(observer);
+                if (cursor == null) {
+                    final String name = getUnusedName(observer.getClass().getName());
+                    cursor = new Cursor(new File(dir, name + OFFSET_FILE_SUFFIX), size());
+                    cursorsByName.put(name, cursor);
+                    cursors.put(observer, cursor);
+                }
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * @return the class name for the first observer of a class, the class name and a number for further ones
+     */
+    private String getUnusedName(String observerClassName) {
+        String name = observerClassName;
+        for (int i = 2; cursorsByName.containsKey(name); i++) {
+            name = observerClassName + "-" + i;
+        }
+        return name;
+    }
+
+    /**
+     * Writes all committed offsets. If every observer has processed the whole journal it gets truncated, so that it
+     * doesn't keep growing across resumed imports.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        boolean allCommitted = true;
+        for (Cursor cursor : cursors.values()) {
+            cursor.write();
+            allCommitted &= cursor.getCommittedOffset() == size;
+        }
+
+        if (allCommitted) {
+            channel.truncate(0);
+            size = 0;
+            for (Cursor cursor : cursors.values()) {
+                cursor.reset();
+            }
+            deleteStaleOffsetFiles();
+        }
+
+        channel.close();
+    }
+
+    private void deleteStaleOffsetFiles() {
+        File[] offsetFiles = dir.listFiles((d, name) -> name.endsWith(OFFSET_FILE_SUFFIX));
+        if (offsetFiles == null) {
+            return;
+        }
+        for (File offsetFile : offsetFiles) {
+            String name = offsetFile.getName().substring(0,
+                    offsetFile.getName().length() - OFFSET_FILE_SUFFIX.length());
+            final boolean isStale;
+            synchronized (cursorsByName) {
+                isStale = !cursorsByName.containsKey(name);
+            }
+            if (isStale && !offsetFile.delete()) {
+                logger.warn("Could not delete " + offsetFile);
+            }
+        }
+    }
+}
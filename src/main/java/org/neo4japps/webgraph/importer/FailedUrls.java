@@ -10,7 +10,7 @@ import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Map.Entry;
 
-public final class FailedUrls {
+public final class FailedUrls implements FailedUrlsMXBean {
 
     private static final FailedUrls singleton = new FailedUrls();
 
@@ -45,6 +45,26 @@ public final class FailedUrls {
         }
     }
 
+    @Override
+    public Map<String, Integer> getCountsByErrorType() {
+        final Map<String, Integer> counts = new TreeMap<>();
+        synchronized (theMap) {
+            for (Entry<String, Map<String, String>> entry : theMap.entrySet()) {
+                counts.put(entry.getKey(), entry.getValue().size());
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public int getNumberOfFailedUrls() {
+        int total = 0;
+        for (int count : getCountsByErrorType().values()) {
+            total += count;
+        }
+        return total;
+    }
+
     public String getStatusMessage(String errorType, WebURL webUrl) {
         return getOrCreateMap(errorType).get(webUrl.getURL());
     }
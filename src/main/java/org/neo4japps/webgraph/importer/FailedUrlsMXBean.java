@@ -0,0 +1,16 @@
+package org.neo4japps.webgraph.importer;
+
+import java.util.Map;
+
+/**
+ * Live view of the {@link FailedUrls}, registered as org.neo4japps.webgraph:type=FailedUrls.
+ */
+public interface FailedUrlsMXBean {
+
+    /**
+     * @return the number of failed URLs per error type, e.g. "ExcludedDomain"
+     */
+    Map<String, Integer> getCountsByErrorType();
+
+    int getNumberOfFailedUrls();
+}
@@ -0,0 +1,146 @@
+package org.neo4japps.webgraph.importer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.neo4j.graphdb.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Runs the registered observers against all page nodes of an existing graph, without crawling.
+ * <p>
+ * The node id space is split into partitions that are scanned in parallel. Each partition thread collects the page
+ * nodes it finds into batches and notifies the observers of each batch, just as if the pages had just been imported.
+ * The graph lock is only held while collecting a batch, so the observers of different partitions still run in
+ * parallel when the importer serializes all access to its store.
+ * Observers decide via {@link GraphObserver#shouldIgnore} which pages are already enriched.
+ */
+public class GraphEnricher {
+
+    private final Logger logger = LogManager.getLogger(this.getClass());
+
+    private final AbstractObservableGraphImporter importer;
+    private final int numberOfThreads;
+    private final int partitionSize;
+    private final int batchSize;
+
+    private final AtomicInteger numberOfScannedPartitions = new AtomicInteger();
+    private final AtomicLong numberOfPageNodes = new AtomicLong();
+
+    public GraphEnricher(AbstractObservableGraphImporter importer, int numberOfThreads, int partitionSize,
+                         int batchSize) {
+        if (numberOfThreads < 1) {
+            throw new IllegalArgumentException("numberOfThreads must be greater than 0");
+        }
+        if (partitionSize < 1) {
+            throw new IllegalArgumentException("partitionSize must be greater than 0");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be greater than 0");
+        }
+
+        this.importer = importer;
+        this.numberOfThreads = numberOfThreads;
+        this.partitionSize = partitionSize;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Blocks until all partitions have been scanned. Observers that are notified asynchronously may still be busy
+     * afterwards, see {@link GraphImporter#waitForImportToFinish()}.
+     *
+     * @return the number of page nodes found
+     */
+    public long enrich() throws InterruptedException {
+        final long highestNodeId = importer.getHighestNodeId();
+        final int numberOfPartitions = (int) (highestNodeId / partitionSize + 1);
+        logger.info("Enriching graph: scanning node ids 0 to " + highestNodeId + " in " + numberOfPartitions
+                + " partitions using " + numberOfThreads + " threads");
+
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        try {
+            for (long start = 0; start <= highestNodeId; start += partitionSize) {
+                final long partitionStart = start;
+                final long partitionEnd = Math.min(start + partitionSize, highestNodeId + 1);
+                executor.execute(() -> scanPartition(partitionStart, partitionEnd, numberOfPartitions));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        while (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.info(numberOfScannedPartitions.get() + " of " + numberOfPartitions + " partitions scanned");
+        }
+
+        return numberOfPageNodes.get();
+    }
+
+    private void scanPartition(long start, long end, int numberOfPartitions) {
+        try {
+            List<PageSnapshot> batch = new ArrayList<>(batchSize);
+            long batchStart = System.nanoTime();
+            long id = start;
+            while (id < end && !importer.isStopped.get()) {
+                id = collectPages(id, Math.min(id + batchSize, end), batch);
+                if (batch.size() == batchSize) {
+                    notifyObservers(batch);
+                    StageTimers.getInstance().record(StageTimers.Stage.ENRICH, batchStart);
+                    batch = new ArrayList<>(batchSize);
+                    batchStart = System.nanoTime();
+                }
+            }
+            if (!batch.isEmpty()) {
+                notifyObservers(batch);
+                StageTimers.getInstance().record(StageTimers.Stage.ENRICH, batchStart);
+            }
+        } catch (Exception e) {
+            // don't let one broken partition stop the others
+            logger.warn("Error scanning node ids " + start + " to " + end, e);
+        }
+
+        final int scanned = numberOfScannedPartitions.incrementAndGet();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Scanned partition " + scanned + " of " + numberOfPartitions);
+        }
+    }
+
+    /**
+     * Adds the page nodes with ids from start to end to the batch, until the batch is full, while holding the read
+     * lock once. For the batch importer the read lock is exclusive, since loading a node may write to its store.
+     *
+     * @return the id to continue with
+     */
+    private long collectPages(long start, long end, List<PageSnapshot> batch) {
+        final Lock lock = importer.getGraphLock().readLock();
+        lock.lock();
+        try {
+            long id = start;
+            for (; id < end && batch.size() < batchSize; id++) {
+                final Node node = importer.getNodeById(id);
+                // skip the reference node and category nodes
+                if (node != null && node.hasProperty(PageNode.TYPE_KEY)) {
+                    batch.add(PageSnapshot.of(node));
+                }
+            }
+            return id;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void notifyObservers(List<PageSnapshot> pages) {
+        numberOfPageNodes.addAndGet(pages.size());
+        importer.notifyObservers(new PageNodesModificationEvent(importer, pages, System.nanoTime(), -1));
+    }
+
+    public long getNumberOfPageNodes() {
+        return numberOfPageNodes.get();
+    }
+}
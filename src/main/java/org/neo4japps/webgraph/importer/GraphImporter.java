@@ -10,8 +10,13 @@ import java.util.concurrent.locks.Lock;
 
 public interface GraphImporter {
 
+    /**
+     * @return the exclusive lock, same as the write lock of {@link #getGraphLock()}
+     */
     Lock getLock();
 
+    GraphLock getGraphLock();
+
     Transaction beginDbTransaction();
 
     Node createNode();
@@ -28,6 +33,16 @@ public interface GraphImporter {
 
     Node getPage(String url);
 
+    /**
+     * @return the node, or null if there is no node with the given id
+     */
+    Node getNodeById(long id);
+
+    /**
+     * @return the highest id that may be in use by a node, i.e. all nodes have ids between 0 and this value
+     */
+    long getHighestNodeId();
+
     int getNumberOfPageNodes();
 
     int getNumberOfLinks();
@@ -0,0 +1,49 @@
+package org.neo4japps.webgraph.importer;
+
+/**
+ * Live statistics of the running {@link GraphImporter}, registered as org.neo4japps.webgraph:type=GraphImporter.
+ */
+public interface GraphImporterMXBean {
+
+    /**
+     * @return the simple class name of the importer
+     */
+    String getImporterType();
+
+    boolean isStopped();
+
+    int getNumberOfPageNodes();
+
+    int getNumberOfLinks();
+
+    double getNodesPerSecond();
+
+    /**
+     * @return the number of events waiting for an importer thread (batch importer only)
+     */
+    int getEventQueueDepth();
+
+    /**
+     * @return the number of importer threads notifying observers right now (batch importer only)
+     */
+    int getNumberOfActiveEventConsumers();
+
+    /**
+     * @return the number of events queued for asynchronously notified observers
+     */
+    int getNumberOfPendingObserverEvents();
+
+    /**
+     * @return how often a thread had to wait for the graph write lock (batch importer only)
+     */
+    long getNumberOfContendedGraphLocks();
+
+    /**
+     * @return the total time threads have waited for the graph write lock
+     */
+    double getGraphLockWaitMillis();
+
+    int getNumberOfRetriedTransactions();
+
+    int getNumberOfFailedTransactions();
+}
@@ -0,0 +1,49 @@
+package org.neo4japps.webgraph.importer;
+
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+/**
+ * Guards access to the graph of a {@link GraphImporter}. Readers can share the graph, writers get exclusive access.
+ * <p/>
+ * The write lock is reentrant, and the read lock may be taken while holding the write lock. A read lock can't be
+ * upgraded to a write lock though.
+ */
+public interface GraphLock {
+
+    /**
+     * @return the lock for reading node properties and relationships. This is the write lock if the underlying store
+     * is not safe to read concurrently.
+     */
+    Lock readLock();
+
+    /**
+     * @return the lock for modifying the graph, and for reads that are not safe to run concurrently, e.g. index
+     * lookups
+     */
+    Lock writeLock();
+
+    /**
+     * Runs the reader without taking the read lock if possible. If a writer got in the way, the reader is run again
+     * while holding the read lock.
+     * <p/>
+     * The reader must not modify the graph, and must be cheap, since it may run twice. It should only read the
+     * properties of nodes the caller already holds, since loading nodes or relationships may not be a pure read. Any
+     * exception thrown by the reader while a writer was active is treated as interference and triggers the retry.
+     */
+    <T> T optimisticRead(Supplier<T> reader);
+
+    /**
+     * @return how often a thread had to wait for the write lock
+     */
+    default long getNumberOfContendedWriteLocks() {
+        return 0;
+    }
+
+    /**
+     * @return the total time threads have waited for the write lock, in nanoseconds
+     */
+    default long getWriteLockWaitNanos() {
+        return 0;
+    }
+}
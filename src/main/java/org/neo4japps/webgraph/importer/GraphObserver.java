@@ -3,25 +3,55 @@ package org.neo4japps.webgraph.importer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.neo4j.graphdb.Node;
+import org.neo4japps.webgraph.jfr.ObserverUpdateEvent;
 import org.neo4japps.webgraph.util.ListChunker;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Observers can be invoked by multiple threads concurrently, so they must be thread-safe, and ideally stateless.
  * <p/>
  * If an observer is intended to be used in conjunction with a {@link BatchGraphImporter} and multiple crawler threads
- * care must be taken to use the lock provided by {@link GraphImporter#getLock()} when accessing and modifying the graph
- * in your observer.
+ * care must be taken to use the lock provided by {@link GraphImporter#getGraphLock()} when accessing and modifying the
+ * graph in your observer. Properties of the nodes of an event can be read optimistically, everything else needs the
+ * read or write lock. For the batch importer the read lock is the write lock.
  */
 public abstract class GraphObserver {
 
-    protected final Logger logger = LogManager.getLogger(this.getClass());
+    /**
+     * Commits a journaled event to the journal once its update and the retries of all its deferred pages are done
+     */
+    private final class JournalCommit {
+        private final EventJournal journal;
+        private final PageNodesModificationEvent event;
+        // the update in progress plus one for each deferred page
+        private final AtomicInteger holds = new AtomicInteger(1);
+
+        JournalCommit(EventJournal journal, PageNodesModificationEvent event) {
+            this.journal = journal;
+            this.event = event;
+        }
+
+        void hold() {
+            holds.incrementAndGet();
+        }
+
+        void release() {
+            if (holds.decrementAndGet() == 0) {
+                journal.commit(GraphObserver.this, event);
+            }
+        }
+    }
 
-    private int reportFrequency = 100;
+    protected final Logger logger = LogManager.getLogger(this.getClass());
 
     private final AtomicBoolean isShutdown = new AtomicBoolean();
 
@@ -31,11 +61,22 @@ public abstract class GraphObserver {
     private final AtomicInteger numberOfIgnoredPages = new AtomicInteger();
     private final AtomicInteger numberOfFailedUpdates = new AtomicInteger();
     private final AtomicInteger numberOfPagesPendingProcessing = new AtomicInteger();
+    private final AtomicInteger numberOfDeferredUpdates = new AtomicInteger();
+
+    // time between the modification of the graph and this observer starting to process the corresponding event
+    private final AtomicLong totalEventLagNanos = new AtomicLong();
+    private final AtomicLong maxEventLagNanos = new AtomicLong();
 
     private final GraphTransactionTemplate transactionTemplate = new GraphTransactionTemplate(this);
 
     private boolean useTransactions = false;
 
+    // the commit of the event being processed by the current thread
+    private final ThreadLocal<JournalCommit> currentJournalCommit = new ThreadLocal<>();
+
+    // commits held back until a deferred page has been retried, by page. Snapshots are compared by identity.
+    private final Map<PageSnapshot, JournalCommit> heldJournalCommits = new ConcurrentHashMap<>();
+
     public int getNumberOfReceivedEvents() {
         return numberOfReceivedEvents.get();
     }
@@ -56,6 +97,13 @@ public abstract class GraphObserver {
         return numberOfFailedUpdates.get();
     }
 
+    /**
+     * @return how often an update was deferred. Deferred pages count as failed updates until they are updated.
+     */
+    public final int getNumberOfDeferredUpdates() {
+        return numberOfDeferredUpdates.get();
+    }
+
     public final int getNumberOfPageNodesPendingProcessing() {
         return numberOfPagesPendingProcessing.get();
     }
@@ -76,6 +124,15 @@ public abstract class GraphObserver {
         return numberOfFailedUpdates.incrementAndGet();
     }
 
+    public final double getAverageEventLagMillis() {
+        final int events = numberOfReceivedEvents.get();
+        return events == 0 ? 0.0 : totalEventLagNanos.get() / 1000000.0 / events;
+    }
+
+    public final double getMaxEventLagMillis() {
+        return maxEventLagNanos.get() / 1000000.0;
+    }
+
     public final int getNumberOfRetriedTransactions() {
         return transactionTemplate.getNumberOfRetriedTransactions();
     }
@@ -86,19 +143,43 @@ public abstract class GraphObserver {
 
     public void configure(ApplicationConfiguration config) {
         this.useTransactions = config.isUseTransactions();
-        this.reportFrequency = config.getImportProgressReportFrequency();
     }
 
     public void shutdown() {
         isShutdown.set(true);
     }
 
-    public final void update(ConcurrentObservable source, PageNodesModificationEvent event) {
+    /**
+     * Waits for the pages passed to {@link #deferUpdate} to be retried. Called at the end of the import, before the
+     * observer is shut down.
+     * <p/>
+     * The default implementation doesn't keep deferred pages, so it returns straight away.
+     *
+     * @return true if no deferred pages are left, false if the timeout elapsed
+     */
+    public boolean awaitDeferredUpdates(long timeout, TimeUnit unit) throws InterruptedException {
+        return true;
+    }
+
+    /**
+     * Processes the event and commits it to the event journal of the source, if there is one. The commit is held back
+     * while pages of the event wait for a retry, see {@link #holdJournalCommitUntilRetried}.
+     *
+     * @return false if the event was ignored because this observer has been shut down, true otherwise (even if some
+     * pages could not be updated)
+     */
+    public final boolean update(ConcurrentObservable source, PageNodesModificationEvent event) {
         numberOfReceivedEvents.incrementAndGet();
+        recordEventLag(event);
+
+        final EventJournal journal = source.getEventJournal();
 
         if (event.getPages().isEmpty()) {
             logger.warn("Event contains no page nodes " + event);
-            return;
+            if (journal != null) {
+                journal.commit(this, event);
+            }
+            return true;
         }
 
         numberOfNotifiedPages.addAndGet(event.getPages().size());
@@ -106,16 +187,44 @@ public abstract class GraphObserver {
         if (isShutdown.get()) {
             // ignore all events after shutdown
             numberOfIgnoredPages.addAndGet(event.getPages().size());
-            return;
+            return false;
         }
 
         numberOfPagesPendingProcessing.addAndGet(event.getPages().size());
 
+        final JournalCommit journalCommit = journal == null ? null : new JournalCommit(journal, event);
+        final long start = System.nanoTime();
+        final ObserverUpdateEvent updateEvent = new ObserverUpdateEvent();
+        updateEvent.begin();
+        currentJournalCommit.set(journalCommit);
         try {
             doUpdate((GraphImporter) source, event);
         } catch (Exception e) {
             logger.warn("Error processing " + event, e);
+        } finally {
+            currentJournalCommit.remove();
         }
+        if (updateEvent.shouldCommit()) {
+            final PageSnapshot firstPage = event.getSnapshots().get(0);
+            updateEvent.observer = getClass().getSimpleName();
+            updateEvent.firstUrl = firstPage.getUrl();
+            updateEvent.firstNodeId = firstPage.getId();
+            updateEvent.pageCount = event.getPages().size();
+            updateEvent.commit();
+        }
+        StageTimers.getInstance().record(StageTimers.Stage.OBSERVER_UPDATE, start);
+
+        if (journalCommit != null) {
+            journalCommit.release();
+        }
+        return true;
+    }
+
+    private void recordEventLag(PageNodesModificationEvent event) {
+        final long lag = System.nanoTime() - event.getCreationTimeNanos();
+        totalEventLagNanos.addAndGet(lag);
+        maxEventLagNanos.accumulateAndGet(lag, Math::max);
+        StageTimers.getInstance().recordNanos(StageTimers.Stage.QUEUE_WAIT, lag);
     }
 
     private void doUpdate(GraphImporter graphImporter, PageNodesModificationEvent event) throws Exception {
@@ -127,28 +236,39 @@ public abstract class GraphObserver {
     }
 
     private void doUpdateWithoutTransaction(GraphImporter graphImporter, PageNodesModificationEvent event) {
-        final List<Node> pages = event.getPages();
-        for (Node page : pages) {
-            updateSinglePageWithoutTransaction(graphImporter, page);
+        final List<PageSnapshot> pages = event.getSnapshots();
+        final int chunkSize = getTransactionSize();
+        if (chunkSize == 1) {
+            // Shortcut: no need for chunking
+            for (PageSnapshot page : pages) {
+                updateSinglePageWithoutTransaction(graphImporter, page);
+            }
+        } else {
+            ListChunker<PageSnapshot> chunker = new ListChunker<>(pages, chunkSize);
+            while (chunker.hasMore()) {
+                updateChunk(chunker.getNextChunk(), graphImporter);
+            }
         }
     }
 
-    private Object updateSinglePageWithoutTransaction(GraphImporter graphImporter, Node page) {
+    private Object updateSinglePageWithoutTransaction(GraphImporter graphImporter, PageSnapshot page) {
         decrementNumberOfPageNodesPendingProcessing();
 
         if (shouldIgnore(page, graphImporter)) {
-            int counter = incrementNumberOfIgnoredPageNodes();
-            reportProgress(counter, "ignored");
+            incrementNumberOfIgnoredPageNodes();
             return null;
         }
 
         try {
             Node updatedPage = updatePage(page, graphImporter);
-            int counter = incrementNumberOfUpdatedPages();
-            reportProgress(counter, "updated");
+            incrementNumberOfUpdatedPages();
             return updatedPage;
+        } catch (DeferredUpdateException e) {
+            incrementNumberOfFailedUpdates();
+            deferUpdate(page, graphImporter, e);
+            return null;
         } catch (Exception e) {
-            logger.warn("Failure updating page node " + PageNode.getUrl(page), e);
+            logger.warn("Failure updating page node " + page.getUrl(), e);
             incrementNumberOfFailedUpdates();
             return null;
         }
@@ -157,39 +277,41 @@ public abstract class GraphObserver {
     private void doUpdateUsingTransactions(GraphImporter graphImporter, PageNodesModificationEvent event)
             throws Exception {
 
-        final List<Node> pages = event.getPages();
+        final List<PageSnapshot> pages = event.getSnapshots();
         final int transactionSize = getTransactionSize();
         if (transactionSize == 1) {
             // Shortcut: no need for chunking
-            for (Node page : pages) {
+            for (PageSnapshot page : pages) {
                 updateSinglePageInTransaction(page, graphImporter);
             }
         } else {
-            ListChunker<Node> chunker = new ListChunker<>(pages, transactionSize);
+            ListChunker<PageSnapshot> chunker = new ListChunker<>(pages, transactionSize);
             while (chunker.hasMore()) {
                 updateChunkInTransaction(chunker.getNextChunk(), graphImporter);
             }
         }
     }
 
-    protected Object updateSinglePageInTransaction(final Node page, final GraphImporter graphImporter)
+    protected Object updateSinglePageInTransaction(final PageSnapshot page, final GraphImporter graphImporter)
             throws Exception {
         decrementNumberOfPageNodesPendingProcessing();
 
         if (shouldIgnore(page, graphImporter)) {
-            int counter = incrementNumberOfIgnoredPageNodes();
-            reportProgress(counter, "ignored");
+            incrementNumberOfIgnoredPageNodes();
             return null;
         }
 
         Callable<Object> task = () -> {
             try {
                 Node updatedPage = updatePage(page, graphImporter);
-                int counter = incrementNumberOfUpdatedPages();
-                reportProgress(counter, "updated");
+                incrementNumberOfUpdatedPages();
                 return updatedPage;
+            } catch (DeferredUpdateException e) {
+                incrementNumberOfFailedUpdates();
+                deferUpdate(page, graphImporter, e);
+                return null;
             } catch (Exception e) {
-                logger.warn("Failure updating page " + PageNode.getUrl(page), e);
+                logger.warn("Failure updating page " + page.getUrl(), e);
                 incrementNumberOfFailedUpdates();
                 return null;
             }
@@ -198,29 +320,11 @@ public abstract class GraphObserver {
         return transactionTemplate.execute(task, graphImporter);
     }
 
-    protected Object updateChunkInTransaction(final List<Node> chunk, final GraphImporter graphImporter)
+    protected Object updateChunkInTransaction(final List<PageSnapshot> chunk, final GraphImporter graphImporter)
             throws Exception {
 
         Callable<Object> task = () -> {
-            for (Node page : chunk) {
-                decrementNumberOfPageNodesPendingProcessing();
-
-                if (shouldIgnore(page, graphImporter)) {
-                    int counter = incrementNumberOfIgnoredPageNodes();
-                    reportProgress(counter, "ignored");
-                    continue;
-                }
-
-                try {
-                    updatePage(page, graphImporter);
-                    int counter = incrementNumberOfUpdatedPages();
-                    reportProgress(counter, "updated");
-                } catch (Exception e) {
-                    logger.warn("Failure updating page node " + PageNode.getUrl(page), e);
-                    incrementNumberOfFailedUpdates();
-                }
-            }
-
+            updateChunk(chunk, graphImporter);
             return null;
         };
 
@@ -228,14 +332,126 @@ public abstract class GraphObserver {
         return transactionTemplate.execute(task, graphImporter, 10, 5000);
     }
 
-    private void reportProgress(int numberOfPages, String action) {
-        if (numberOfPages % reportFrequency != 0) {
+    /**
+     * Filters out the pages that should be ignored and passes the remaining ones to {@link #updatePages} in one go.
+     */
+    private void updateChunk(List<PageSnapshot> chunk, GraphImporter graphImporter) {
+        final List<PageSnapshot> pagesToUpdate = new ArrayList<>(chunk.size());
+        for (PageSnapshot page : chunk) {
+            decrementNumberOfPageNodesPendingProcessing();
+
+            if (shouldIgnore(page, graphImporter)) {
+                incrementNumberOfIgnoredPageNodes();
+            } else {
+                pagesToUpdate.add(page);
+            }
+        }
+
+        if (pagesToUpdate.isEmpty()) {
+            return;
+        }
+
+        int numberOfUpdates;
+        try {
+            List<PageSnapshot> updatedPages = updatePages(pagesToUpdate, graphImporter);
+            numberOfUpdates = updatedPages == null ? 0 : updatedPages.size();
+        } catch (Exception e) {
+            logger.warn("Failure updating " + pagesToUpdate.size() + " page nodes", e);
+            numberOfUpdates = 0;
+        }
+
+        final int numberOfFailures = pagesToUpdate.size() - numberOfUpdates;
+        if (numberOfUpdates > 0) {
+            numberOfUpdatedPages.addAndGet(numberOfUpdates);
+        }
+        if (numberOfFailures > 0) {
+            numberOfFailedUpdates.addAndGet(numberOfFailures);
+        }
+    }
+
+    /**
+     * Updates several pages at once. Override this to amortize work across pages, e.g. to look up many URLs with one
+     * HTTP request. The pages passed in have already been checked against {@link #shouldIgnore}.
+     * <p/>
+     * The default implementation calls {@link #updatePage} for each page.
+     *
+     * @return the pages that were updated successfully. All other pages are counted as failed updates, including the
+     * ones passed to {@link #deferUpdate}. If this method throws an exception all pages are counted as failed updates.
+     */
+    protected List<PageSnapshot> updatePages(List<PageSnapshot> pages, GraphImporter graphImporter) throws Exception {
+        final List<PageSnapshot> updatedPages = new ArrayList<>(pages.size());
+        for (PageSnapshot page : pages) {
+            try {
+                updatePage(page, graphImporter);
+                updatedPages.add(page);
+            } catch (DeferredUpdateException e) {
+                deferUpdate(page, graphImporter, e);
+            } catch (Exception e) {
+                logger.warn("Failure updating page node " + page.getUrl(), e);
+            }
+        }
+        return updatedPages;
+    }
+
+    /**
+     * Called when the update of a page threw a {@link DeferredUpdateException}. The page has been counted as a failed
+     * update. Override this to keep the page and try again later with {@link #retryDeferredUpdate}.
+     * <p/>
+     * The default implementation only logs the page.
+     */
+    protected void deferUpdate(PageSnapshot page, GraphImporter graphImporter, DeferredUpdateException cause) {
+        numberOfDeferredUpdates.incrementAndGet();
+        logger.warn("Cannot update page node " + page.getUrl() + " now: " + cause.getMessage());
+    }
+
+    /**
+     * Call this from {@link #deferUpdate} if the page is kept for {@link #retryDeferredUpdate}. The event of the page
+     * is then only committed to the event journal once the page has been retried for good, so that it gets replayed
+     * when a resumed import finds the page was never retried.
+     */
+    protected final void holdJournalCommitUntilRetried(PageSnapshot page) {
+        final JournalCommit journalCommit = currentJournalCommit.get();
+        if (journalCommit == null || heldJournalCommits.containsKey(page)) {
+            // not journaled, or deferred again by a retry and already held
             return;
         }
+        journalCommit.hold();
+        heldJournalCommits.put(page, journalCommit);
+    }
 
-        if (logger.isInfoEnabled()) {
-            logger.info(numberOfPages + " page nodes " + action + ".");
+    /**
+     * Tries again to update a page that was passed to {@link #deferUpdate}, in a transaction of its own if transactions
+     * are used. If the update succeeds the page no longer counts as a failed update.
+     *
+     * @return false if the update was deferred again (and passed to {@link #deferUpdate} once more), true otherwise
+     */
+    protected final boolean retryDeferredUpdate(final PageSnapshot page, final GraphImporter graphImporter)
+            throws Exception {
+        Callable<Object> task = () -> {
+            try {
+                updatePage(page, graphImporter);
+                numberOfFailedUpdates.decrementAndGet();
+                incrementNumberOfUpdatedPages();
+                return true;
+            } catch (DeferredUpdateException e) {
+                deferUpdate(page, graphImporter, e);
+                return false;
+            } catch (Exception e) {
+                logger.warn("Failure updating page node " + page.getUrl(), e);
+                return true;
+            }
+        };
+
+        final Object result = useTransactions ? transactionTemplate.execute(task, graphImporter) : task.call();
+        if (Boolean.FALSE.equals(result)) {
+            return false;
+        }
+
+        final JournalCommit journalCommit = heldJournalCommits.remove(page);
+        if (journalCommit != null) {
+            journalCommit.release();
         }
+        return true;
     }
 
     protected abstract int getTransactionSize();
@@ -243,4 +459,22 @@ public abstract class GraphObserver {
     protected abstract boolean shouldIgnore(Node page, GraphImporter graphImporter);
 
     protected abstract Node updatePage(Node page, GraphImporter graphImporter) throws Exception;
+
+    /**
+     * Override this to decide based on the snapshot properties only, without taking the graph lock.
+     * <p/>
+     * The default implementation calls {@link #shouldIgnore(Node, GraphImporter)}.
+     */
+    protected boolean shouldIgnore(PageSnapshot page, GraphImporter graphImporter) {
+        return shouldIgnore(page.getNode(), graphImporter);
+    }
+
+    /**
+     * Override this to use the snapshot properties (URL, domain, type) rather than reading them from the graph.
+     * <p/>
+     * The default implementation calls {@link #updatePage(Node, GraphImporter)}.
+     */
+    protected Node updatePage(PageSnapshot page, GraphImporter graphImporter) throws Exception {
+        return updatePage(page.getNode(), graphImporter);
+    }
 }
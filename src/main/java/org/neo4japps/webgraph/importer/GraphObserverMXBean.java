@@ -0,0 +1,39 @@
+package org.neo4japps.webgraph.importer;
+
+/**
+ * Live statistics of a {@link GraphObserver}, registered as org.neo4japps.webgraph:type=GraphObserver,name=ClassName.
+ */
+public interface GraphObserverMXBean {
+
+    int getNumberOfReceivedEvents();
+
+    int getNumberOfNotifiedPageNodes();
+
+    int getNumberOfUpdatedPageNodes();
+
+    int getNumberOfIgnoredPageNodes();
+
+    int getNumberOfFailedUpdates();
+
+    int getNumberOfDeferredUpdates();
+
+    int getNumberOfPageNodesPendingProcessing();
+
+    double getAverageEventLagMillis();
+
+    double getMaxEventLagMillis();
+
+    int getNumberOfRetriedTransactions();
+
+    int getNumberOfFailedTransactions();
+
+    /**
+     * @return the number of events in the observer's queue, 0 if the observer is notified synchronously
+     */
+    int getNumberOfQueuedEvents();
+
+    /**
+     * @return the number of events the observer's queue discarded because it was full
+     */
+    int getNumberOfDroppedEvents();
+}
@@ -4,6 +4,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.kernel.DeadlockDetectedException;
+import org.neo4japps.webgraph.jfr.GraphTransactionEvent;
 
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -64,27 +65,47 @@ public class GraphTransactionTemplate {
     public Object execute(Callable<Object> task, GraphImporter graphImporter, int maxRetries, int sleepMillis)
             throws Exception {
 
+        final GraphTransactionEvent event = new GraphTransactionEvent();
+        event.begin();
+
         int retryCounter = 0;
         Object result = null;
         boolean transactionSucceeded = false;
+        Exception failure = null;
 
-        while (!transactionSucceeded && retryCounter <= maxRetries) {
-            try {
-                result = executeInTransaction(task, graphImporter);
-                transactionSucceeded = true;
-            } catch (DeadlockDetectedException exception) {
-                retryCounter++;
-                if (retryCounter <= maxRetries) {
-                    retriedTransactions.incrementAndGet();
-                    logger.warn(ownerString() + "Deadlock executing task " + task.toString() + " - Retrying ... "
-                            + retryCounter);
-                    sleep(sleepMillis);
-                } else {
-                    failedTransactions.incrementAndGet();
-                    logger.error(
-                            ownerString() + "Too many deadlocks executing task " + task.toString() + " - Giving up.");
+        try {
+            while (!transactionSucceeded && retryCounter <= maxRetries) {
+                try {
+                    result = executeInTransaction(task, graphImporter);
+                    transactionSucceeded = true;
+                } catch (DeadlockDetectedException exception) {
+                    retryCounter++;
+                    if (retryCounter <= maxRetries) {
+                        retriedTransactions.incrementAndGet();
+                        logger.warn(ownerString() + "Deadlock executing task " + task.toString() + " - Retrying ... "
+                                + retryCounter);
+                        sleep(sleepMillis);
+                    } else {
+                        failedTransactions.incrementAndGet();
+                        failure = exception;
+                        logger.error(ownerString() + "Too many deadlocks executing task " + task.toString()
+                                + " - Giving up.");
+                    }
                 }
             }
+        } catch (Exception e) {
+            failure = e;
+            throw e;
+        } finally {
+            // record the task even if it threw, which is when the event is most interesting
+            if (event.shouldCommit()) {
+                event.owner = owner.toString();
+                event.task = task.toString();
+                event.retries = Math.min(retryCounter, maxRetries);
+                event.succeeded = transactionSucceeded;
+                event.failure = failure == null ? null : failure.toString();
+                event.commit();
+            }
         }
 
         return result;
@@ -6,6 +6,8 @@ import edu.uci.ics.crawler4j.parser.HtmlParseData;
 import edu.uci.ics.crawler4j.url.WebURL;
 import org.apache.http.HttpStatus;
 import org.neo4j.graphdb.Node;
+import org.neo4japps.webgraph.jfr.LinkBatchEvent;
+import org.neo4japps.webgraph.jfr.PageImportEvent;
 import org.neo4japps.webgraph.util.UrlUtil;
 
 import java.net.MalformedURLException;
@@ -28,6 +30,10 @@ public class HtmlOnlyCrawler extends WebCrawler {
     private ApplicationConfiguration appConfig;
     private GraphImporter graphImporter;
 
+    // System.nanoTime() when the current URL was picked up and when its response headers arrived, 0 if not set
+    private long processStartNanos;
+    private long fetchedNanos;
+
     /**
      * For unit tests. Returns the number of pages visited by all instances of this class.
      *
@@ -119,12 +125,28 @@ public class HtmlOnlyCrawler extends WebCrawler {
         return MEDIA_FILE_PATTERN.matcher(url).matches() || url.contains("/img/") || url.contains("/css/");
     }
 
+    /**
+     * Called before a URL is fetched. Starts the fetch stage timer.
+     */
+    @Override
+    protected WebURL handleUrlBeforeProcess(WebURL curURL) {
+        processStartNanos = System.nanoTime();
+        fetchedNanos = 0;
+        return super.handleUrlBeforeProcess(curURL);
+    }
+
     /**
      * This function is called once the header of a page is fetched. We log and record all URLs with a HTTP status code
      * of 307 or >= 400.
      */
     @Override
     protected void handlePageStatusCode(WebURL webUrl, int statusCode, String statusDescription) {
+        if (processStartNanos != 0) {
+            fetchedNanos = System.nanoTime();
+            StageTimers.getInstance().recordNanos(StageTimers.Stage.FETCH, fetchedNanos - processStartNanos);
+            processStartNanos = 0;
+        }
+
         String message = combine(statusCode, statusDescription);
         if (statusCode >= HttpStatus.SC_BAD_REQUEST) {
             FailedUrls.getInstance().add("FailedRequest", webUrl, message);
@@ -145,6 +167,11 @@ public class HtmlOnlyCrawler extends WebCrawler {
      */
     @Override
     public void visit(Page page) {
+        if (fetchedNanos != 0) {
+            StageTimers.getInstance().record(StageTimers.Stage.PARSE, fetchedNanos);
+            fetchedNanos = 0;
+        }
+
         WebURL webUrl = page.getWebURL();
 
         String statusMessage = FailedUrls.getInstance().getStatusMessage("FailedRequest", webUrl);
@@ -168,7 +195,7 @@ public class HtmlOnlyCrawler extends WebCrawler {
 
     private void visitHtmlPage(String url, HtmlParseData htmlParseData) {
         try {
-            Node pageNode = graphImporter.addPage(url, htmlParseData.getHtml());
+            Node pageNode = addPage(url, htmlParseData.getHtml());
             visitHtmlLinks(pageNode, htmlParseData.getOutgoingUrls());
         } catch (Exception e) {
             logger.error("Error creating node for " + url, e);
@@ -190,7 +217,17 @@ public class HtmlOnlyCrawler extends WebCrawler {
         }
 
         try {
+            final long start = System.nanoTime();
+            final LinkBatchEvent event = new LinkBatchEvent();
+            event.begin();
             graphImporter.addLinks(pageNode, crawlableLinks);
+            if (event.shouldCommit()) {
+                event.url = PageNode.getUrl(pageNode);
+                event.nodeId = pageNode.getId();
+                event.linkCount = crawlableLinks.size();
+                event.commit();
+            }
+            StageTimers.getInstance().record(StageTimers.Stage.ADD_LINKS, start);
         } catch (Exception e) {
             logger.error("Error creating " + crawlableLinks.size() + " links for " + PageNode.getUrl(pageNode), e);
         }
@@ -198,9 +235,24 @@ public class HtmlOnlyCrawler extends WebCrawler {
 
     private void visitNonHtmlPage(String url) {
         try {
-            graphImporter.addPage(url, "");
+            addPage(url, "");
         } catch (Exception e) {
             logger.error("Error creating (non-HTML) node for " + url, e);
         }
     }
+
+    private Node addPage(String url, String content) {
+        final long start = System.nanoTime();
+        final PageImportEvent event = new PageImportEvent();
+        event.begin();
+        Node pageNode = graphImporter.addPage(url, content);
+        if (event.shouldCommit()) {
+            event.url = url;
+            event.nodeId = pageNode.getId();
+            event.contentLength = content.length();
+            event.commit();
+        }
+        StageTimers.getInstance().record(StageTimers.Stage.ADD_PAGE, start);
+        return pageNode;
+    }
 }
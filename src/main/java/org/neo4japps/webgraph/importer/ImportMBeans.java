@@ -0,0 +1,249 @@
+package org.neo4japps.webgraph.importer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registers the MXBeans of an import with the platform MBean server, so that the import can be watched with JConsole,
+ * VisualVM or any other JMX client while it is running. All beans are registered in the {@link #DOMAIN} domain.
+ * <p>
+ * Registration problems are logged, they never stop the import.
+ */
+final class ImportMBeans {
+
+    static final String DOMAIN = "org.neo4japps.webgraph";
+
+    private final Logger logger = LogManager.getLogger(this.getClass());
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final List<ObjectName> registeredNames = new ArrayList<>();
+    private final Set<String> observerNames = new HashSet<>();
+
+    void registerImporter(AbstractObservableGraphImporter importer) {
+        register(new GraphImporterStats(importer), "type=GraphImporter");
+    }
+
+    /**
+     * The bean is named after the class of the observer. Further observers of the same class get a number appended, so
+     * that they don't replace the bean of the first one.
+     */
+    void registerObserver(GraphObserver observer, ObserverDispatcher dispatcher) {
+        final String className = observer.getClass().getSimpleName();
+        String name = className;
+        for (int i = 2; !observerNames.add(name); i++) {
+            name = className + "-" + i;
+        }
+        register(new GraphObserverStats(observer, dispatcher), "type=GraphObserver,name=" + ObjectName.quote(name));
+    }
+
+    void registerCrawler(long startTimeInMillis) {
+        register(new CrawlerStats(startTimeInMillis), "type=Crawler");
+    }
+
+    void registerFailedUrls() {
+        register(FailedUrls.getInstance(), "type=FailedUrls");
+    }
+
+    private void register(Object mbean, String properties) {
+        try {
+            final ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+            // a previous import in the same JVM, e.g. in tests, may not have cleaned up
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(mbean, name);
+            registeredNames.add(name);
+        } catch (JMException e) {
+            logger.warn("Cannot register MBean " + properties, e);
+        }
+    }
+
+    void unregisterAll() {
+        for (ObjectName name : registeredNames) {
+            try {
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (JMException e) {
+                logger.warn("Cannot unregister MBean " + name, e);
+            }
+        }
+        registeredNames.clear();
+        observerNames.clear();
+    }
+
+    private static final class GraphImporterStats implements GraphImporterMXBean {
+        private final AbstractObservableGraphImporter importer;
+
+        GraphImporterStats(AbstractObservableGraphImporter importer) {
+            this.importer = importer;
+        }
+
+        @Override
+        public String getImporterType() {
+            return importer.getClass().getSimpleName();
+        }
+
+        @Override
+        public boolean isStopped() {
+            return importer.isStopped();
+        }
+
+        @Override
+        public int getNumberOfPageNodes() {
+            return importer.getNumberOfPageNodes();
+        }
+
+        @Override
+        public int getNumberOfLinks() {
+            return importer.getNumberOfLinks();
+        }
+
+        @Override
+        public double getNodesPerSecond() {
+            return importer.getNodesPerSecond();
+        }
+
+        @Override
+        public int getEventQueueDepth() {
+            return importer.getEventQueueDepth();
+        }
+
+        @Override
+        public int getNumberOfActiveEventConsumers() {
+            return importer.getNumberOfActiveEventConsumers();
+        }
+
+        @Override
+        public int getNumberOfPendingObserverEvents() {
+            return importer.getNumberOfPendingDispatcherEvents();
+        }
+
+        @Override
+        public long getNumberOfContendedGraphLocks() {
+            return importer.getGraphLock().getNumberOfContendedWriteLocks();
+        }
+
+        @Override
+        public double getGraphLockWaitMillis() {
+            return importer.getGraphLock().getWriteLockWaitNanos() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        @Override
+        public int getNumberOfRetriedTransactions() {
+            return importer instanceof TransactionalGraphImporter
+                    ? ((TransactionalGraphImporter) importer).getNumberOfRetriedTransactions() : 0;
+        }
+
+        @Override
+        public int getNumberOfFailedTransactions() {
+            return importer instanceof TransactionalGraphImporter
+                    ? ((TransactionalGraphImporter) importer).getNumberOfFailedTransactions() : 0;
+        }
+    }
+
+    private static final class GraphObserverStats implements GraphObserverMXBean {
+        private final GraphObserver observer;
+        // null if the observer is notified synchronously
+        private final ObserverDispatcher dispatcher;
+
+        GraphObserverStats(GraphObserver observer, ObserverDispatcher dispatcher) {
+            this.observer = observer;
+            this.dispatcher = dispatcher;
+        }
+
+        @Override
+        public int getNumberOfReceivedEvents() {
+            return observer.getNumberOfReceivedEvents();
+        }
+
+        @Override
+        public int getNumberOfNotifiedPageNodes() {
+            return observer.getNumberOfNotifiedPageNodes();
+        }
+
+        @Override
+        public int getNumberOfUpdatedPageNodes() {
+            return observer.getNumberOfUpdatedPageNodes();
+        }
+
+        @Override
+        public int getNumberOfIgnoredPageNodes() {
+            return observer.getNumberOfIgnoredPageNodes();
+        }
+
+        @Override
+        public int getNumberOfFailedUpdates() {
+            return observer.getNumberOfFailedUpdates();
+        }
+
+        @Override
+        public int getNumberOfDeferredUpdates() {
+            return observer.getNumberOfDeferredUpdates();
+        }
+
+        @Override
+        public int getNumberOfPageNodesPendingProcessing() {
+            return observer.getNumberOfPageNodesPendingProcessing();
+        }
+
+        @Override
+        public double getAverageEventLagMillis() {
+            return observer.getAverageEventLagMillis();
+        }
+
+        @Override
+        public double getMaxEventLagMillis() {
+            return observer.getMaxEventLagMillis();
+        }
+
+        @Override
+        public int getNumberOfRetriedTransactions() {
+            return observer.getNumberOfRetriedTransactions();
+        }
+
+        @Override
+        public int getNumberOfFailedTransactions() {
+            return observer.getNumberOfFailedTransactions();
+        }
+
+        @Override
+        public int getNumberOfQueuedEvents() {
+            return dispatcher == null ? 0 : dispatcher.getNumberOfPendingEvents();
+        }
+
+        @Override
+        public int getNumberOfDroppedEvents() {
+            return dispatcher == null ? 0 : dispatcher.getNumberOfDroppedEvents();
+        }
+    }
+
+    private static final class CrawlerStats implements CrawlerMXBean {
+        private final long startTimeInMillis;
+
+        CrawlerStats(long startTimeInMillis) {
+            this.startTimeInMillis = startTimeInMillis;
+        }
+
+        @Override
+        public int getNumberOfVisitedPages() {
+            return HtmlOnlyCrawler.getGlobalPageCount();
+        }
+
+        @Override
+        public double getPagesPerSecond() {
+            final double elapsedSeconds = (System.currentTimeMillis() - startTimeInMillis) / 1000.00;
+            return elapsedSeconds <= 0 ? 0 : getNumberOfVisitedPages() / elapsedSeconds;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.neo4japps.webgraph.importer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+/**
+ * For importers that are thread-safe by themselves, e.g. because they use transactions.
+ */
+final class NullGraphLock implements GraphLock {
+
+    private final Lock nullLock = new Lock() {
+
+        @Override
+        public void lock() {
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            // not needed
+        }
+
+        @Override
+        public boolean tryLock() {
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            // not needed
+        }
+
+        @Override
+        public Condition newCondition() {
+            return null;
+        }
+    };
+
+    @Override
+    public Lock readLock() {
+        return nullLock;
+    }
+
+    @Override
+    public Lock writeLock() {
+        return nullLock;
+    }
+
+    @Override
+    public <T> T optimisticRead(Supplier<T> reader) {
+        return reader.get();
+    }
+}
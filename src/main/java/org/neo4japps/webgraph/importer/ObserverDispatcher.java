@@ -0,0 +1,247 @@
+package org.neo4japps.webgraph.importer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.neo4japps.webgraph.jfr.EventQueuePutEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers events to a single observer asynchronously. Each dispatcher has its own bounded queue and worker threads,
+ * so a slow (e.g. network bound) observer neither blocks the thread that modified the graph nor delays other
+ * observers.
+ * <p>
+ * What happens when the queue is full is determined by the {@link OverflowPolicy}.
+ */
+public class ObserverDispatcher {
+
+    public enum OverflowPolicy {
+        /**
+         * Wait for space in the queue. This throttles the import to the speed of the observer.
+         */
+        BLOCK,
+        /**
+         * Discard the event and count it. The observer will never see the pages of discarded events.
+         */
+        DROP,
+        /**
+         * Move the event to an unbounded in-memory overflow queue. Nothing is lost and nobody waits, at the expense of
+         * memory.
+         */
+        SPILL
+    }
+
+    private final Logger logger = LogManager.getLogger(this.getClass());
+
+    private final ConcurrentObservable source;
+    private final GraphObserver observer;
+    private final OverflowPolicy overflowPolicy;
+
+    private final BlockingQueue<PageNodesModificationEvent> queue;
+    private final Queue<PageNodesModificationEvent> spillQueue = new ConcurrentLinkedQueue<>();
+    private final List<Thread> workers = new ArrayList<>();
+
+    // events accepted but not processed yet, including the ones currently being processed
+    private final AtomicInteger pendingEvents = new AtomicInteger();
+    private final AtomicInteger pendingPages = new AtomicInteger();
+
+    private final AtomicInteger numberOfDroppedEvents = new AtomicInteger();
+    private final AtomicInteger numberOfDroppedPages = new AtomicInteger();
+    private final AtomicInteger numberOfSpilledEvents = new AtomicInteger();
+
+    private volatile boolean isStopped;
+
+    public ObserverDispatcher(ConcurrentObservable source, GraphObserver observer, int queueCapacity,
+                              int numberOfThreads, OverflowPolicy overflowPolicy) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be greater than 0");
+        }
+        if (numberOfThreads < 1) {
+            throw new IllegalArgumentException("numberOfThreads must be greater than 0");
+        }
+
+        this.source = source;
+        this.observer = observer;
+        this.overflowPolicy = overflowPolicy;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        final String namePrefix = observer.getClass().getSimpleName() + "-dispatcher-";
+        for (int i = 1; i <= numberOfThreads; i++) {
+            Thread thread = new Thread(this::processEvents, namePrefix + i);
+            thread.setDaemon(true);
+            workers.add(thread);
+            thread.start();
+        }
+    }
+
+    public GraphObserver getObserver() {
+        return observer;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public int getNumberOfPendingEvents() {
+        return pendingEvents.get();
+    }
+
+    public int getNumberOfPendingPages() {
+        return pendingPages.get();
+    }
+
+    public int getNumberOfDroppedEvents() {
+        return numberOfDroppedEvents.get();
+    }
+
+    public int getNumberOfDroppedPages() {
+        return numberOfDroppedPages.get();
+    }
+
+    public int getNumberOfSpilledEvents() {
+        return numberOfSpilledEvents.get();
+    }
+
+    public int getSpillQueueSize() {
+        return spillQueue.size();
+    }
+
+    /**
+     * Queues the event for the observer. Returns immediately unless the policy is {@link OverflowPolicy#BLOCK} and the
+     * queue is full.
+     */
+    public void dispatch(PageNodesModificationEvent event) {
+        if (isStopped) {
+            return;
+        }
+
+        final int pages = event.getPages().size();
+        pendingEvents.incrementAndGet();
+        pendingPages.addAndGet(pages);
+
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    final EventQueuePutEvent putEvent = new EventQueuePutEvent();
+                    putEvent.begin();
+                    final int remainingCapacity = queue.remainingCapacity();
+                    queue.put(event);
+                    if (putEvent.shouldCommit()) {
+                        putEvent.queue = observer.getClass().getSimpleName();
+                        putEvent.pageCount = pages;
+                        putEvent.remainingCapacity = remainingCapacity;
+                        putEvent.commit();
+                    }
+                } catch (InterruptedException e) {
+                    logger.warn("Interrupted while queuing " + event);
+                    markProcessed(pages);
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            case DROP:
+                if (!queue.offer(event)) {
+                    numberOfDroppedEvents.incrementAndGet();
+                    numberOfDroppedPages.addAndGet(pages);
+                    commitToJournal(event);
+                    markProcessed(pages);
+                }
+                break;
+            case SPILL:
+                // once we've started spilling keep doing so until the workers have caught up, to preserve ordering
+                if (!spillQueue.isEmpty() || !queue.offer(event)) {
+                    spillQueue.add(event);
+                    numberOfSpilledEvents.incrementAndGet();
+                }
+                break;
+        }
+
+        if (isStopped) {
+            // stopped while queuing, nobody is going to process the event
+            discardQueuedEvents();
+        }
+    }
+
+    private void processEvents() {
+        try {
+            while (!isStopped) {
+                PageNodesModificationEvent event = nextEvent();
+                if (event == null) {
+                    continue;
+                }
+                try {
+                    source.deliver(observer, event);
+                } catch (Exception e) {
+                    // never let an observer kill the worker thread
+                    logger.warn("Error notifying " + observer.getClass().getSimpleName() + " of " + event, e);
+                } finally {
+                    markProcessed(event.getPages().size());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private PageNodesModificationEvent nextEvent() throws InterruptedException {
+        PageNodesModificationEvent event = queue.poll();
+        if (event == null) {
+            event = spillQueue.poll();
+        }
+        if (event == null) {
+            event = queue.poll(500, TimeUnit.MILLISECONDS);
+        }
+        return event;
+    }
+
+    /**
+     * The observer is never going to see the event, so don't let the journal wait for it
+     */
+    private void commitToJournal(PageNodesModificationEvent event) {
+        final EventJournal journal = source.getEventJournal();
+        if (journal != null) {
+            journal.commit(observer, event);
+        }
+    }
+
+    private void markProcessed(int pages) {
+        pendingPages.addAndGet(-pages);
+        pendingEvents.decrementAndGet();
+    }
+
+    public boolean isIdle() {
+        return pendingEvents.get() == 0;
+    }
+
+    /**
+     * Stops the worker threads. Events that are still queued are discarded. They are not committed to the event
+     * journal, so a resumed import replays them.
+     */
+    public void stop() {
+        isStopped = true;
+        discardQueuedEvents();
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    private void discardQueuedEvents() {
+        final List<PageNodesModificationEvent> discarded = new ArrayList<>();
+        queue.drainTo(discarded);
+        PageNodesModificationEvent event;
+        while ((event = spillQueue.poll()) != null) {
+            discarded.add(event);
+        }
+
+        // so that the pending counters don't report work that will never be done
+        for (PageNodesModificationEvent discardedEvent : discarded) {
+            markProcessed(discardedEvent.getPages().size());
+        }
+    }
+}
@@ -6,6 +6,9 @@ import java.util.concurrent.locks.Lock;
 
 /**
  * Static wrapper for easy access to common page node properties.
+ * <p/>
+ * The methods taking a {@link GraphLock} read optimistically and write exclusively. The methods taking a plain
+ * {@link Lock} hold that lock for reads and writes alike.
  */
 public class PageNode {
 
@@ -43,6 +46,10 @@ public class PageNode {
         }
     }
 
+    public static String getUrl(Node page, GraphLock lock) {
+        return lock.optimisticRead(() -> getUrl(page));
+    }
+
     public static String getDomain(Node page) {
         return page == null ? null : (String) page.getProperty(DOMAIN_KEY, "");
     }
@@ -81,6 +88,10 @@ public class PageNode {
         }
     }
 
+    public static int getFacebookTotalCount(Node page, GraphLock lock) {
+        return lock.optimisticRead(() -> getFacebookTotalCount(page));
+    }
+
     public static int getTwitterCount(Node page) {
         return page == null ? 0 : (Integer) page.getProperty(TWITTER_COUNT_KEY, -1);
     }
@@ -94,6 +105,10 @@ public class PageNode {
         }
     }
 
+    public static int getTwitterCount(Node page, GraphLock lock) {
+        return lock.optimisticRead(() -> getTwitterCount(page));
+    }
+
     // "setters"
 
     public static void setUrl(Node page, String url) {
@@ -141,6 +156,10 @@ public class PageNode {
         }
     }
 
+    public static void setFacebookTotalCount(Node page, int count, GraphLock lock) {
+        setFacebookTotalCount(page, count, lock.writeLock());
+    }
+
     public static void setTwitterCount(Node page, int count) {
         if (page != null)
             page.setProperty(TWITTER_COUNT_KEY, count);
@@ -155,6 +174,10 @@ public class PageNode {
         }
     }
 
+    public static void setTwitterCount(Node page, int count, GraphLock lock) {
+        setTwitterCount(page, count, lock.writeLock());
+    }
+
     // "has"
 
     public static boolean hasProperty(Node page, String key) {
@@ -170,6 +193,10 @@ public class PageNode {
         }
     }
 
+    public static boolean hasProperty(Node page, String key, GraphLock lock) {
+        return lock.optimisticRead(() -> hasProperty(page, key));
+    }
+
     public static boolean hasUrlProperty(Node page) {
         return hasProperty(page, URL_KEY);
     }
@@ -202,6 +229,10 @@ public class PageNode {
         return hasProperty(page, FACEBOOK_TOTAL_COUNT_KEY, lock);
     }
 
+    public static boolean hasFacebookTotalCountProperty(Node page, GraphLock lock) {
+        return hasProperty(page, FACEBOOK_TOTAL_COUNT_KEY, lock);
+    }
+
     public static boolean hasTwitterCountProperty(Node page) {
         return hasProperty(page, TWITTER_COUNT_KEY);
     }
@@ -210,6 +241,10 @@ public class PageNode {
         return hasProperty(page, TWITTER_COUNT_KEY, lock);
     }
 
+    public static boolean hasTwitterCountProperty(Node page, GraphLock lock) {
+        return hasProperty(page, TWITTER_COUNT_KEY, lock);
+    }
+
     // other utilities
 
     public static void incrementIncomingLinks(Node page) {
@@ -2,48 +2,97 @@ package org.neo4japps.webgraph.importer;
 
 import org.neo4j.graphdb.Node;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EventObject;
 import java.util.List;
 
 /**
  * Event that gets broadcast during the graph import process when a number of page node are created or modified.
+ * <p>
+ * Besides the nodes themselves the event carries a {@link PageSnapshot} of each page, taken at modification time, so
+ * that observers can read the basic page properties without accessing the graph.
  */
 public final class PageNodesModificationEvent extends EventObject {
 
     private static final long serialVersionUID = 1L;
 
+    private final transient List<PageSnapshot> snapshots;
     private final transient List<Node> pages;
 
+    // System.nanoTime() when the modification happened, used to measure how far observers lag behind the import
+    private final long creationTimeNanos;
+
+    // position of the first page in the EventJournal, or -1 if the event has not been journaled
+    private final long journalOffset;
+
+    /**
+     * Takes the page snapshots from the given nodes, so the caller must hold the graph lock, if there is one.
+     */
     public PageNodesModificationEvent(Object source, List<Node> pages) {
+        this(source, takeSnapshots(pages), System.nanoTime(), -1);
+    }
+
+    public PageNodesModificationEvent(Object source, Node page) {
+        this(source, Collections.singletonList(page));
+    }
+
+    /**
+     * For events with snapshots taken by the importer, and for events derived from another event, e.g. when chunking
+     * up, so that the original creation time and journal position are kept.
+     */
+    PageNodesModificationEvent(Object source, List<PageSnapshot> snapshots, long creationTimeNanos,
+                               long journalOffset) {
         super(source);
+        if (snapshots == null) {
+            throw new IllegalArgumentException("null pages");
+        }
+        this.snapshots = Collections.unmodifiableList(snapshots);
+        this.pages = Collections.unmodifiableList(getNodes(snapshots));
+        this.creationTimeNanos = creationTimeNanos;
+        this.journalOffset = journalOffset;
+    }
+
+    private static List<PageSnapshot> takeSnapshots(List<Node> pages) {
         if (pages == null) {
             throw new IllegalArgumentException("null pages");
         }
-        this.pages = Collections.unmodifiableList(pages);
+        final List<PageSnapshot> snapshots = new ArrayList<>(pages.size());
+        for (Node page : pages) {
+            snapshots.add(PageSnapshot.of(page));
+        }
+        return snapshots;
     }
 
-    public PageNodesModificationEvent(Object source, Node page) {
-        this(source, Collections.singletonList(page));
+    private static List<Node> getNodes(List<PageSnapshot> snapshots) {
+        final List<Node> nodes = new ArrayList<>(snapshots.size());
+        for (PageSnapshot snapshot : snapshots) {
+            nodes.add(snapshot.getNode());
+        }
+        return nodes;
     }
 
     public List<Node> getPages() {
         return pages;
     }
 
-    @Override
-    public String toString() {
-        if (pages.size() == 1) {
-            return "PageNodesModificationEvent [" + pageToString(pages.get(0)) + "]";
-        }
-        return "PageNodesModificationEvent [" + pages.size() + " pages]";
+    public List<PageSnapshot> getSnapshots() {
+        return snapshots;
     }
 
-    private String pageToString(Node page) {
-        try {
-            return PageNode.toString(page);
-        } catch (Exception e) {
-            return "Node [" + page.getId() + "]";
+    public long getCreationTimeNanos() {
+        return creationTimeNanos;
+    }
+
+    public long getJournalOffset() {
+        return journalOffset;
+    }
+
+    @Override
+    public String toString() {
+        if (snapshots.size() == 1) {
+            return "PageNodesModificationEvent [" + snapshots.get(0) + "]";
         }
+        return "PageNodesModificationEvent [" + snapshots.size() + " pages]";
     }
 }
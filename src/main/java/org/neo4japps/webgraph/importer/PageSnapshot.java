@@ -0,0 +1,95 @@
+package org.neo4japps.webgraph.importer;
+
+import org.neo4j.graphdb.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Immutable copy of the basic properties of a page node, taken when the node was created or modified.
+ * <p>
+ * Observers can read these properties without accessing the graph, i.e. without taking the graph lock. The node
+ * handle is still available for updates, and for reading any other properties.
+ */
+public final class PageSnapshot {
+
+    private final Node node;
+    private final String url;
+    private final String domain;
+    private final String type;
+    private final boolean contentKnown;
+
+    public PageSnapshot(Node node, String url, String domain, String type, boolean contentKnown) {
+        if (node == null) {
+            throw new IllegalArgumentException("null node");
+        }
+        this.node = node;
+        this.url = url;
+        this.domain = domain;
+        this.type = type;
+        this.contentKnown = contentKnown;
+    }
+
+    /**
+     * Reads the page properties from the node. The caller must hold the graph lock, if there is one.
+     */
+    public static PageSnapshot of(Node page) {
+        return new PageSnapshot(page, PageNode.getUrl(page), PageNode.getDomain(page), PageNode.getType(page),
+                !PageNode.hasNoContent(page));
+    }
+
+    public static PageSnapshot of(Node page, GraphLock lock) {
+        return lock.optimisticRead(() -> of(page));
+    }
+
+    /**
+     * Takes the snapshots of all pages while holding the read lock once.
+     */
+    public static List<PageSnapshot> of(List<Node> pages, GraphLock graphLock) {
+        final List<PageSnapshot> snapshots = new ArrayList<>(pages.size());
+        final Lock lock = graphLock.readLock();
+        lock.lock();
+        try {
+            for (Node page : pages) {
+                snapshots.add(of(page));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return snapshots;
+    }
+
+    public Node getNode() {
+        return node;
+    }
+
+    public long getId() {
+        return node.getId();
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getDomain() {
+        return domain;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return false if the page has only been linked to, but not fetched yet
+     */
+    public boolean isContentKnown() {
+        return contentKnown;
+    }
+
+    @Override
+    public String toString() {
+        return "id: " + getId() + ", " + PageNode.URL_KEY + ": " + url + ", " + PageNode.DOMAIN_KEY + ": " + domain
+                + ", " + PageNode.TYPE_KEY + ": " + type;
+    }
+}
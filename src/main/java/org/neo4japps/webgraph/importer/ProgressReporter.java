@@ -0,0 +1,165 @@
+package org.neo4japps.webgraph.importer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.neo4japps.webgraph.util.StringFormatUtil;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs the progress of an import at a fixed interval from a background thread: the number of page nodes, links and
+ * pages processed by the custom event handlers, how fast each of them grew during the last interval and on average
+ * over the last {@link #MOVING_AVERAGE_SAMPLES} intervals, and how much work is queued.
+ * <p>
+ * The counters are only read when a report is due, so the import threads don't pay anything for it. An interval in
+ * which none of the counters moved is reported as a stall, together with the work that is still queued.
+ * <p>
+ * This class is thread-safe.
+ */
+final class ProgressReporter implements Runnable {
+
+    static final int MOVING_AVERAGE_SAMPLES = 6;
+
+    private final Logger logger = LogManager.getLogger(this.getClass());
+
+    private final AbstractObservableGraphImporter importer;
+    private final long intervalMillis;
+
+    // the latest sample is last, holds up to MOVING_AVERAGE_SAMPLES + 1 samples
+    private final Deque<Sample> samples = new ArrayDeque<>();
+    private boolean isStalled;
+    // System.nanoTime() of the last sample that showed progress, only valid while stalled
+    private long stalledSinceNanos;
+
+    private ScheduledExecutorService executor;
+
+    ProgressReporter(AbstractObservableGraphImporter importer, long intervalMillis) {
+        if (intervalMillis < 1) {
+            throw new IllegalArgumentException("Value for intervalMillis must be greater than 0");
+        }
+        this.importer = importer;
+        this.intervalMillis = intervalMillis;
+    }
+
+    synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ProgressReporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            report(sample(System.nanoTime()));
+        } catch (RuntimeException e) {
+            // an exception would cancel all further reports
+            logger.warn("Cannot report import progress", e);
+        }
+    }
+
+    Sample sample(long nanoTime) {
+        int processedPages = 0;
+        for (GraphObserver observer : importer.getObservers()) {
+            processedPages += observer.getNumberOfUpdatedPageNodes() + observer.getNumberOfIgnoredPageNodes()
+                    + observer.getNumberOfFailedUpdates();
+        }
+        return new Sample(nanoTime, importer.getNumberOfPageNodes(), importer.getNumberOfLinks(), processedPages,
+                importer.getEventQueueDepth() + importer.getNumberOfPendingDispatcherEvents(),
+                importer.getNumberOfUnprocessedPageNodesByObservers());
+    }
+
+    /**
+     * @return the message logged for the sample, null for the first sample
+     */
+    synchronized String report(Sample sample) {
+        final Sample previous = samples.peekLast();
+        samples.addLast(sample);
+        if (samples.size() > MOVING_AVERAGE_SAMPLES + 1) {
+            samples.removeFirst();
+        }
+        if (previous == null) {
+            return null;
+        }
+        final Sample oldest = samples.peekFirst();
+
+        final StringBuilder message = new StringBuilder();
+        message.append("Nodes: ").append(sample.nodes).append(rates(previous, oldest, sample, s -> s.nodes));
+        message.append(" Links: ").append(sample.links).append(rates(previous, oldest, sample, s -> s.links));
+        message.append(" Handled pages: ").append(sample.processedPages)
+                .append(rates(previous, oldest, sample, s -> s.processedPages));
+        message.append(" Queued events: ").append(sample.queuedEvents);
+        message.append(", pending pages: ").append(sample.pendingPages).append('.');
+
+        if (sample.hasProgressSince(previous)) {
+            isStalled = false;
+            logger.info(message.toString());
+        } else {
+            if (!isStalled) {
+                isStalled = true;
+                stalledSinceNanos = previous.nanoTime;
+            }
+            final double stalledSeconds = (sample.nanoTime - stalledSinceNanos) / 1e9;
+            message.insert(0, "No progress for " + StringFormatUtil.formatSeconds(stalledSeconds) + " secs. ");
+            logger.warn(message.toString());
+        }
+        return message.toString();
+    }
+
+    synchronized boolean isStalled() {
+        return isStalled;
+    }
+
+    private interface Counter {
+        long get(Sample sample);
+    }
+
+    private static String rates(Sample previous, Sample oldest, Sample latest, Counter counter) {
+        return " (" + StringFormatUtil.formatNodesPerSecond(rate(previous, latest, counter)) + "/s, avg "
+                + StringFormatUtil.formatNodesPerSecond(rate(oldest, latest, counter)) + "/s).";
+    }
+
+    private static double rate(Sample from, Sample to, Counter counter) {
+        final double seconds = (to.nanoTime - from.nanoTime) / 1e9;
+        // avoid division by zero!
+        return seconds <= 0 ? 0 : (counter.get(to) - counter.get(from)) / seconds;
+    }
+
+    static final class Sample {
+        final long nanoTime;
+        final int nodes;
+        final int links;
+        final int processedPages;
+        final int queuedEvents;
+        final int pendingPages;
+
+        Sample(long nanoTime, int nodes, int links, int processedPages, int queuedEvents, int pendingPages) {
+            this.nanoTime = nanoTime;
+            this.nodes = nodes;
+            this.links = links;
+            this.processedPages = processedPages;
+            this.queuedEvents = queuedEvents;
+            this.pendingPages = pendingPages;
+        }
+
+        boolean hasProgressSince(Sample previous) {
+            return nodes != previous.nodes || links != previous.links || processedPages != previous.processedPages;
+        }
+    }
+}
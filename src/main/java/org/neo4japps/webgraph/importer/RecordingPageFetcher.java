@@ -0,0 +1,133 @@
+package org.neo4japps.webgraph.importer;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.exceptions.PageBiggerThanMaxSizeException;
+import edu.uci.ics.crawler4j.fetcher.PageFetchResult;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.url.WebURL;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.util.ByteArrayBuffer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.neo4japps.webgraph.util.ArchivedHttpResponse;
+import org.neo4japps.webgraph.util.WarcWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+/**
+ * Page fetcher that writes every response it fetches (status, headers and body) to a WARC archive, so that the crawl
+ * can later be re-run offline with a {@link ReplayPageFetcher}.
+ * <p>
+ * Bodies are read up to the configured maximum download size only. Pages that are bigger, whether announced by their
+ * Content-Length or found out while reading a chunked body, are recorded without a body but with a
+ * {@link #PAGE_SIZE_HEADER} header, so that the replay fails them the same way.
+ */
+public class RecordingPageFetcher extends PageFetcher {
+
+    /**
+     * Marks an archived response as bigger than the maximum download size. The value is the size of the page in bytes,
+     * or a lower bound of it if the page had no Content-Length.
+     */
+    static final String PAGE_SIZE_HEADER = "X-Page-Bigger-Than-Max-Size";
+
+    private final Logger logger = LogManager.getLogger(this.getClass());
+
+    private final WarcWriter archive;
+
+    public RecordingPageFetcher(CrawlConfig config, String archiveFileName) throws IOException {
+        super(config);
+        archive = new WarcWriter(archiveFileName);
+        logger.info("Recording fetched pages to " + archiveFileName);
+    }
+
+    @Override
+    public PageFetchResult fetchPage(WebURL webUrl)
+            throws InterruptedException, IOException, PageBiggerThanMaxSizeException {
+
+        PageFetchResult result;
+        try {
+            result = super.fetchPage(webUrl);
+        } catch (PageBiggerThanMaxSizeException e) {
+            recordPageBiggerThanMaxSize(webUrl, e.getPageSize());
+            throw e;
+        }
+
+        byte[] body = null;
+        HttpEntity entity = result.getEntity();
+        if (entity != null) {
+            // the entity stream can only be read once, so buffer it and hand a repeatable copy to the crawler
+            try {
+                body = readBody(entity);
+            } catch (PageBiggerThanMaxSizeException e) {
+                recordPageBiggerThanMaxSize(webUrl, e.getPageSize());
+                throw e;
+            }
+            ByteArrayEntity bufferedEntity = new ByteArrayEntity(body);
+            bufferedEntity.setContentType(entity.getContentType());
+            bufferedEntity.setContentEncoding(entity.getContentEncoding());
+            result.setEntity(bufferedEntity);
+        }
+
+        final int statusCode = result.getStatusCode();
+        record(new ArchivedHttpResponse(webUrl.getURL(), statusCode,
+                EnglishReasonPhraseCatalog.INSTANCE.getReason(statusCode, Locale.ENGLISH),
+                result.getResponseHeaders(), body));
+
+        return result;
+    }
+
+    /**
+     * Reads the body, but not more than the maximum download size, so that a chunked body of any length cannot exhaust
+     * the heap.
+     */
+    private byte[] readBody(HttpEntity entity) throws IOException, PageBiggerThanMaxSizeException {
+        final int maxSize = config.getMaxDownloadSize();
+        final ByteArrayBuffer buffer = new ByteArrayBuffer(4096);
+        try (InputStream in = entity.getContent()) {
+            if (in == null) {
+                return null;
+            }
+            final byte[] chunk = new byte[4096];
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                if (buffer.length() + n > maxSize) {
+                    throw new PageBiggerThanMaxSizeException(buffer.length() + n);
+                }
+                buffer.append(chunk, 0, n);
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    private void recordPageBiggerThanMaxSize(WebURL webUrl, long pageSize) {
+        record(new ArchivedHttpResponse(webUrl.getURL(), HttpStatus.SC_OK, "OK",
+                new Header[]{new BasicHeader(PAGE_SIZE_HEADER, String.valueOf(pageSize))}, null));
+    }
+
+    private void record(ArchivedHttpResponse response) {
+        try {
+            archive.write(response);
+        } catch (IOException e) {
+            // don't fail the crawl because of the archive
+            logger.warn("Could not record response for " + response.getUrl(), e);
+        }
+    }
+
+    @Override
+    public synchronized void shutDown() {
+        super.shutDown();
+        try {
+            archive.close();
+            logger.info("Recorded " + archive.getNumberOfRecords() + " responses to " + archive.getArchiveFileName());
+        } catch (IOException e) {
+            logger.warn("Error closing archive " + archive.getArchiveFileName(), e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.neo4japps.webgraph.importer;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.exceptions.PageBiggerThanMaxSizeException;
+import edu.uci.ics.crawler4j.fetcher.PageFetchResult;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.url.URLCanonicalizer;
+import edu.uci.ics.crawler4j.url.WebURL;
+import org.apache.http.Header;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.neo4japps.webgraph.util.ArchivedHttpResponse;
+import org.neo4japps.webgraph.util.WarcReader;
+
+import java.io.IOException;
+
+/**
+ * Page fetcher that serves responses from a WARC archive previously written by a {@link RecordingPageFetcher} instead
+ * of going to the network. There is no politeness delay, pages are served as fast as the crawler threads can consume
+ * them. URLs that are not in the archive are reported as 404 (Not Found), pages that were recorded as too big fail
+ * with a {@link PageBiggerThanMaxSizeException} like they did when they were fetched.
+ */
+public class ReplayPageFetcher extends PageFetcher {
+
+    private final Logger logger = LogManager.getLogger(this.getClass());
+
+    private final WarcReader archive;
+
+    public ReplayPageFetcher(CrawlConfig config, String archiveFileName) throws IOException {
+        super(config);
+        archive = new WarcReader(archiveFileName);
+        logger.info("Replaying " + archive.size() + " archived responses from " + archiveFileName);
+    }
+
+    @Override
+    public PageFetchResult fetchPage(WebURL webUrl) throws IOException, PageBiggerThanMaxSizeException {
+        final String url = webUrl.getURL();
+        final PageFetchResult result = new PageFetchResult();
+
+        ArchivedHttpResponse response = archive.read(url);
+        if (response == null) {
+            logger.debug("Not in archive: " + url);
+            result.setStatusCode(HttpStatus.SC_NOT_FOUND);
+            return result;
+        }
+
+        Header pageSize = response.getFirstHeader(RecordingPageFetcher.PAGE_SIZE_HEADER);
+        if (pageSize != null) {
+            throw new PageBiggerThanMaxSizeException(Long.parseLong(pageSize.getValue()));
+        }
+
+        final int statusCode = response.getStatusCode();
+        result.setResponseHeaders(response.getHeaders());
+
+        // mirror what PageFetcher does with live responses
+        if (isRedirect(statusCode)) {
+            Header location = response.getFirstHeader("Location");
+            if (location != null) {
+                result.setMovedToUrl(URLCanonicalizer.getCanonicalURL(location.getValue(), url));
+            }
+        } else if (statusCode == HttpStatus.SC_OK) {
+            result.setFetchedUrl(url);
+        }
+
+        byte[] body = response.getBody();
+        if (body.length > config.getMaxDownloadSize()) {
+            throw new PageBiggerThanMaxSizeException(body.length);
+        }
+
+        ByteArrayEntity entity = new ByteArrayEntity(body);
+        Header contentType = response.getFirstHeader("Content-Type");
+        if (contentType != null) {
+            entity.setContentType(contentType);
+        }
+        result.setEntity(entity);
+        result.setStatusCode(statusCode);
+
+        return result;
+    }
+
+    private static boolean isRedirect(int statusCode) {
+        return statusCode == HttpStatus.SC_MOVED_PERMANENTLY || statusCode == HttpStatus.SC_MOVED_TEMPORARILY
+                || statusCode == HttpStatus.SC_MULTIPLE_CHOICES || statusCode == HttpStatus.SC_SEE_OTHER
+                || statusCode == HttpStatus.SC_TEMPORARY_REDIRECT || statusCode == 308;
+    }
+
+    @Override
+    public synchronized void shutDown() {
+        super.shutDown();
+        try {
+            archive.close();
+        } catch (IOException e) {
+            logger.warn("Error closing archive " + archive.getArchiveFileName(), e);
+        }
+    }
+}
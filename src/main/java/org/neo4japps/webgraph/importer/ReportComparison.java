@@ -0,0 +1,263 @@
+package org.neo4japps.webgraph.importer;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Compares two {@link RunReport}s, e.g. of the last release and of the current build, and flags the metrics that got
+ * worse by more than a threshold:
+ * <ul>
+ * <li>rates (nodes, links and pages per second) that dropped, and an elapsed time that grew, by more than '-t'
+ * percent</li>
+ * <li>stage latency percentiles, event lag and graph lock wait time that grew by more than '-lt' percent and by more
+ * than '-lm' milliseconds, to ignore noise on fast stages</li>
+ * <li>transaction retries and failures, failed updates, dropped events, lock contention and failed URLs that grew by
+ * more than '-t' percent, or appeared at all</li>
+ * </ul>
+ * All other metrics are informational and not compared. Differences in the configuration are listed, since they
+ * usually explain the differences in the metrics.
+ * <p>
+ * Usage: ReportComparison [options] baseline.json current.json
+ * <p>
+ * The exit status is 0 if there are no regressions, 1 if there are, and 2 if the reports cannot be compared.
+ */
+public final class ReportComparison {
+
+    static final double DEFAULT_THRESHOLD_PERCENT = 10;
+    static final double DEFAULT_LATENCY_THRESHOLD_PERCENT = 25;
+    static final double DEFAULT_MIN_LATENCY_MILLIS = 1;
+
+    private enum Kind {
+        RATE, LATENCY, COUNT
+    }
+
+    /**
+     * The change of one metric between the two reports
+     */
+    static final class Difference {
+        final String metric;
+        final double baseline;
+        final double current;
+        final boolean isRegression;
+
+        Difference(String metric, double baseline, double current, boolean isRegression) {
+            this.metric = metric;
+            this.baseline = baseline;
+            this.current = current;
+            this.isRegression = isRegression;
+        }
+
+        /**
+         * @return the change relative to the baseline in percent, infinite if the baseline is 0
+         */
+        double getChangePercent() {
+            if (baseline == current) {
+                return 0;
+            }
+            return baseline == 0 ? Math.signum(current) * Double.POSITIVE_INFINITY
+                    : (current - baseline) / Math.abs(baseline) * 100;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-45s %12.2f %12.2f %+9.1f%%%s", metric, baseline, current, getChangePercent(),
+                    isRegression ? "  REGRESSION" : "");
+        }
+    }
+
+    private final double thresholdPercent;
+    private final double latencyThresholdPercent;
+    private final double minLatencyMillis;
+
+    ReportComparison(double thresholdPercent, double latencyThresholdPercent, double minLatencyMillis) {
+        this.thresholdPercent = thresholdPercent;
+        this.latencyThresholdPercent = latencyThresholdPercent;
+        this.minLatencyMillis = minLatencyMillis;
+    }
+
+    /**
+     * @return the differences of all compared metrics, in the order of the current report. Metrics missing from
+     * either report are skipped.
+     */
+    List<Difference> compare(JsonObject baseline, JsonObject current) {
+        final Map<String, Double> baselineMetrics = flatten(baseline);
+        final List<Difference> differences = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : flatten(current).entrySet()) {
+            final String metric = entry.getKey();
+            final Kind kind = kindOf(metric);
+            final Double baselineValue = baselineMetrics.get(metric);
+            if (kind == null || baselineValue == null) {
+                continue;
+            }
+            differences.add(new Difference(metric, baselineValue, entry.getValue(),
+                    isRegression(kind, metric, baselineValue, entry.getValue())));
+        }
+        return differences;
+    }
+
+    /**
+     * @return "name: baseline -> current" for every configuration setting that differs
+     */
+    static List<String> compareConfigurations(JsonObject baseline, JsonObject current) {
+        final JsonObject baselineConfig = configurationOf(baseline);
+        final JsonObject currentConfig = configurationOf(current);
+        final List<String> differences = new ArrayList<>();
+        for (Map.Entry<String, JsonElement> entry : currentConfig.entrySet()) {
+            final JsonElement baselineValue = baselineConfig.get(entry.getKey());
+            if (!Objects.equals(baselineValue, entry.getValue())) {
+                differences.add(entry.getKey() + ": " + baselineValue + " -> " + entry.getValue());
+            }
+        }
+        return differences;
+    }
+
+    private static JsonObject configurationOf(JsonObject report) {
+        final JsonElement configuration = report.get("configuration");
+        return configuration != null && configuration.isJsonObject() ? configuration.getAsJsonObject()
+                : new JsonObject();
+    }
+
+    private static Kind kindOf(String metric) {
+        if (metric.startsWith("configuration.")) {
+            return null;
+        }
+        if (metric.endsWith("PerSecond") || metric.equals("elapsedSeconds")) {
+            return Kind.RATE;
+        }
+        if (metric.startsWith("stages.") && metric.endsWith("Millis") || metric.endsWith("EventLagMillis")
+                || metric.endsWith("LockWaitMillis")) {
+            return Kind.LATENCY;
+        }
+        if (metric.startsWith("transactions.") || metric.startsWith("failedUrls.") || metric.endsWith(".failedUpdates")
+                || metric.endsWith(".droppedEvents") || metric.endsWith("contendedGraphLocks")) {
+            return Kind.COUNT;
+        }
+        return null;
+    }
+
+    private boolean isRegression(Kind kind, String metric, double baseline, double current) {
+        // only rates are better when higher
+        final boolean isHigherBetter = kind == Kind.RATE && !metric.equals("elapsedSeconds");
+        final double worsening = isHigherBetter ? baseline - current : current - baseline;
+        if (worsening <= 0) {
+            return false;
+        }
+        if (baseline == 0) {
+            // something that didn't happen at all before
+            return kind != Kind.LATENCY || worsening > minLatencyMillis;
+        }
+
+        final double worseningPercent = worsening / Math.abs(baseline) * 100;
+        if (kind == Kind.LATENCY) {
+            return worseningPercent > latencyThresholdPercent && worsening > minLatencyMillis;
+        }
+        return worseningPercent > thresholdPercent;
+    }
+
+    /**
+     * @return all numbers of the report by their dotted path, e.g. "stages.addPage.p99Millis"
+     */
+    static Map<String, Double> flatten(JsonObject report) {
+        final Map<String, Double> metrics = new TreeMap<>();
+        flatten("", report, metrics);
+        return metrics;
+    }
+
+    private static void flatten(String prefix, JsonObject object, Map<String, Double> metrics) {
+        for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+            final String name = prefix + entry.getKey();
+            final JsonElement value = entry.getValue();
+            if (value.isJsonObject()) {
+                flatten(name + ".", value.getAsJsonObject(), metrics);
+            } else if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isNumber()) {
+                metrics.put(name, value.getAsDouble());
+            }
+        }
+    }
+
+    static JsonObject read(String fileName) throws IOException {
+        try (Reader reader = new FileReader(fileName)) {
+            return JsonParser.parseReader(reader).getAsJsonObject();
+        }
+    }
+
+    /**
+     * @return the exit status
+     */
+    int run(JsonObject baseline, JsonObject current, PrintStream out) {
+        final JsonElement baselineVersion = baseline.get("formatVersion");
+        final JsonElement currentVersion = current.get("formatVersion");
+        if (!Objects.equals(baselineVersion, currentVersion)) {
+            out.println("Cannot compare report format " + baselineVersion + " with " + currentVersion);
+            return 2;
+        }
+
+        final List<String> configDifferences = compareConfigurations(baseline, current);
+        if (!configDifferences.isEmpty()) {
+            out.println("Configuration differences:");
+            for (String difference : configDifferences) {
+                out.println("  " + difference);
+            }
+            out.println();
+        }
+
+        out.println(String.format("%-45s %12s %12s %10s", "metric", "baseline", "current", "change"));
+        int regressions = 0;
+        for (Difference difference : compare(baseline, current)) {
+            out.println(difference);
+            if (difference.isRegression) {
+                regressions++;
+            }
+        }
+        out.println();
+        out.println(regressions == 0 ? "No regressions." : regressions + " regression(s).");
+        return regressions == 0 ? 0 : 1;
+    }
+
+    public static void main(String[] args) throws IOException {
+        final OptionParser parser = new OptionParser();
+        parser.accepts("t").withRequiredArg().ofType(Double.class)
+                .describedAs("max worsening of rates and counts in percent").defaultsTo(DEFAULT_THRESHOLD_PERCENT);
+        parser.accepts("lt").withRequiredArg().ofType(Double.class)
+                .describedAs("max increase of latencies in percent").defaultsTo(DEFAULT_LATENCY_THRESHOLD_PERCENT);
+        parser.accepts("lm").withRequiredArg().ofType(Double.class)
+                .describedAs("latency increases up to this many milliseconds are ignored")
+                .defaultsTo(DEFAULT_MIN_LATENCY_MILLIS);
+        parser.acceptsAll(List.of("h", "?"), "show help");
+
+        final OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (OptionException e) {
+            System.out.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        if (options.has("h") || options.nonOptionArguments().size() != 2) {
+            System.out.println("Usage: ReportComparison [options] baseline.json current.json");
+            parser.printHelpOn(System.out);
+            System.exit(2);
+            return;
+        }
+
+        final ReportComparison comparison = new ReportComparison((Double) options.valueOf("t"),
+                (Double) options.valueOf("lt"), (Double) options.valueOf("lm"));
+        final JsonObject baseline = read((String) options.nonOptionArguments().get(0));
+        final JsonObject current = read((String) options.nonOptionArguments().get(1));
+        System.exit(comparison.run(baseline, current, System.out));
+    }
+}
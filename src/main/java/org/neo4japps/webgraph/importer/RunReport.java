@@ -0,0 +1,192 @@
+package org.neo4japps.webgraph.importer;
+
+import com.google.gson.GsonBuilder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Machine readable summary of an import: the configuration, durations, nodes, links and rates, the latency
+ * percentiles of every {@link StageTimers.Stage}, transaction retries, the counters and cache statistics of every
+ * custom event handler and the number of failed URLs per error type.
+ * <p>
+ * All sections are JSON objects, keyed by name where there is more than one of a kind, so that two reports can be
+ * compared metric by metric with {@link ReportComparison}.
+ */
+final class RunReport {
+
+    static final String DEFAULT_FILE_NAME = "run-report.json";
+
+    /**
+     * Incremented whenever a metric is renamed or changes its meaning
+     */
+    static final int FORMAT_VERSION = 1;
+
+    private final Map<String, Object> report = new LinkedHashMap<>();
+
+    /**
+     * @param importer null if the import never got as far as creating the importer
+     */
+    RunReport(ApplicationConfiguration config, AbstractObservableGraphImporter importer, long startTimeInMillis,
+              long endTimeInMillis) {
+        final double elapsedSeconds = (endTimeInMillis - startTimeInMillis) / 1000.00;
+
+        report.put("formatVersion", FORMAT_VERSION);
+        report.put("startTime", formatTime(startTimeInMillis));
+        report.put("endTime", formatTime(endTimeInMillis));
+        report.put("elapsedSeconds", elapsedSeconds);
+        report.put("configuration", configuration(config, importer));
+
+        if (importer != null) {
+            report.put("graph", graph(importer, elapsedSeconds));
+            report.put("transactions", transactions(importer));
+            report.put("observers", observers(importer));
+        }
+
+        final int visitedPages = HtmlOnlyCrawler.getGlobalPageCount();
+        final Map<String, Object> crawler = new LinkedHashMap<>();
+        crawler.put("visitedPages", visitedPages);
+        crawler.put("pagesPerSecond", perSecond(visitedPages, elapsedSeconds));
+        report.put("crawler", crawler);
+
+        report.put("stages", StageTimers.getInstance().summarize());
+        report.put("failedUrls", FailedUrls.getInstance().getCountsByErrorType());
+    }
+
+    Map<String, Object> toMap() {
+        return report;
+    }
+
+    void write(File file) throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            new GsonBuilder().setPrettyPrinting().serializeSpecialFloatingPointValues().create().toJson(report, writer);
+        }
+    }
+
+    private static Map<String, Object> configuration(ApplicationConfiguration config,
+                                                     AbstractObservableGraphImporter importer) {
+        final Map<String, Object> configuration = new LinkedHashMap<>();
+        configuration.put("importer", importer == null ? null : importer.getClass().getSimpleName());
+        configuration.put("rootUrl", config.getRootUrl());
+        configuration.put("enrichOnly", config.isEnrichOnly());
+        configuration.put("resumableImport", config.isResumableImport());
+        configuration.put("numberOfCrawlers", config.getNumberOfCrawlers());
+        configuration.put("maxPagesToFetch", config.getMaxPagesToFetch());
+        configuration.put("maxDepthOfCrawling", config.getMaxDepthOfCrawling());
+        configuration.put("politenessDelay", config.getPolitenessDelay());
+        configuration.put("useTransactions", config.isUseTransactions());
+        configuration.put("transactionSize", config.getTransactionSize());
+        configuration.put("numberOfBatchImporterThreads", config.getNumberOfBatchImporterThreads());
+        configuration.put("asynchronousObservers", config.isAsynchronousObservers());
+        configuration.put("observerQueueCapacity", config.getObserverQueueCapacity());
+        configuration.put("observerThreads", config.getObserverThreads());
+        configuration.put("observerOverflowPolicy", String.valueOf(config.getObserverOverflowPolicy()));
+        configuration.put("journalEvents", config.isJournalEvents());
+        configuration.put("socialApiBurst", config.getSocialApiBurst());
+        configuration.put("socialLookupsInFlight", config.getSocialLookupsInFlight());
+        configuration.put("batchFacebookRequests", config.isBatchFacebookRequests());
+        configuration.put("httpMaxPerRoute", config.getHttpMaxPerRoute());
+        configuration.put("httpMaxTotal", config.getHttpMaxTotal());
+        if (importer != null) {
+            final List<String> eventHandlers = new ArrayList<>();
+            for (GraphObserver observer : importer.getObservers()) {
+                eventHandlers.add(observer.getClass().getName());
+            }
+            configuration.put("customEventHandlers", eventHandlers);
+        }
+        return configuration;
+    }
+
+    private static Map<String, Object> graph(AbstractObservableGraphImporter importer, double elapsedSeconds) {
+        final Map<String, Object> graph = new LinkedHashMap<>();
+        graph.put("nodes", importer.getNumberOfPageNodes());
+        graph.put("links", importer.getNumberOfLinks());
+        graph.put("nodesPerSecond", perSecond(importer.getNumberOfPageNodes(), elapsedSeconds));
+        graph.put("linksPerSecond", perSecond(importer.getNumberOfLinks(), elapsedSeconds));
+        graph.put("contendedGraphLocks", importer.getGraphLock().getNumberOfContendedWriteLocks());
+        graph.put("graphLockWaitMillis", importer.getGraphLock().getWriteLockWaitNanos() / 1e6);
+        return graph;
+    }
+
+    private static Map<String, Object> transactions(AbstractObservableGraphImporter importer) {
+        int retried = 0;
+        int failed = 0;
+        if (importer instanceof TransactionalGraphImporter) {
+            retried += ((TransactionalGraphImporter) importer).getNumberOfRetriedTransactions();
+            failed += ((TransactionalGraphImporter) importer).getNumberOfFailedTransactions();
+        }
+        for (GraphObserver observer : importer.getObservers()) {
+            retried += observer.getNumberOfRetriedTransactions();
+            failed += observer.getNumberOfFailedTransactions();
+        }
+
+        final Map<String, Object> transactions = new LinkedHashMap<>();
+        transactions.put("retried", retried);
+        transactions.put("failed", failed);
+        return transactions;
+    }
+
+    private static Map<String, Object> observers(AbstractObservableGraphImporter importer) {
+        final Map<String, Object> observers = new LinkedHashMap<>();
+        for (GraphObserver observer : importer.getObservers()) {
+            final Map<String, Object> counters = new LinkedHashMap<>();
+            counters.put("receivedEvents", observer.getNumberOfReceivedEvents());
+            counters.put("notifiedPages", observer.getNumberOfNotifiedPageNodes());
+            counters.put("updatedPages", observer.getNumberOfUpdatedPageNodes());
+            counters.put("ignoredPages", observer.getNumberOfIgnoredPageNodes());
+            counters.put("failedUpdates", observer.getNumberOfFailedUpdates());
+            counters.put("deferredUpdates", observer.getNumberOfDeferredUpdates());
+            counters.put("averageEventLagMillis", observer.getAverageEventLagMillis());
+            counters.put("maxEventLagMillis", observer.getMaxEventLagMillis());
+
+            final ObserverDispatcher dispatcher = importer.getDispatcher(observer);
+            if (dispatcher != null) {
+                counters.put("droppedEvents", dispatcher.getNumberOfDroppedEvents());
+                counters.put("spilledEvents", dispatcher.getNumberOfSpilledEvents());
+            }
+
+            if (observer instanceof CachingObserver) {
+                final CachingObserver cachingObserver = (CachingObserver) observer;
+                final Map<String, Object> cache = new LinkedHashMap<>();
+                cache.put("enabled", cachingObserver.isCachingEnabled());
+                cache.put("hits", cachingObserver.getCacheHits());
+                cache.put("misses", cachingObserver.getCacheMisses());
+                cache.put("updates", cachingObserver.getCacheUpdates());
+                cache.put("coalescedRequests", cachingObserver.getCoalescedRequests());
+                counters.put("cache", cache);
+            }
+
+            observers.put(uniqueName(observers, observer.getClass().getSimpleName()), counters);
+        }
+        return observers;
+    }
+
+    /**
+     * @return the name, with a number appended if another observer goes by it already, e.g. another instance of the
+     * same handler
+     */
+    private static String uniqueName(Map<String, ?> observers, String name) {
+        String uniqueName = name;
+        for (int i = 2; observers.containsKey(uniqueName); i++) {
+            uniqueName = name + "-" + i;
+        }
+        return uniqueName;
+    }
+
+    private static double perSecond(long count, double elapsedSeconds) {
+        // avoid division by zero!
+        return elapsedSeconds <= 0 ? 0 : count / elapsedSeconds;
+    }
+
+    private static String formatTime(long millis) {
+        return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(new Date(millis));
+    }
+}
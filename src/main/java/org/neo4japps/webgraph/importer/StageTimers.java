@@ -0,0 +1,171 @@
+package org.neo4japps.webgraph.importer;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.logging.log4j.Logger;
+import org.neo4japps.webgraph.util.StringFormatUtil;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Latency histograms of the stages every page goes through, from fetching it to updating it in the custom event
+ * handlers, so that a slow import can be traced to the stage that holds it up.
+ * <p>
+ * Recording is wait-free and doesn't allocate, so the timers are always on. Latencies are recorded in microseconds
+ * with 3 significant digits.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class StageTimers {
+
+    public enum Stage {
+        /**
+         * From sending the request until the response headers have arrived
+         */
+        FETCH("fetch"),
+        /**
+         * Downloading the page content and parsing the HTML
+         */
+        PARSE("parse"),
+        ADD_PAGE("addPage"),
+        ADD_LINKS("addLinks"),
+        /**
+         * Waiting for the graph write lock, recorded only if another thread held it
+         */
+        LOCK_WAIT("lockWait"),
+        /**
+         * From creating an event until an observer starts processing it, i.e. time spent in event queues
+         */
+        QUEUE_WAIT("queueWait"),
+        /**
+         * Notifying all observers of an event
+         */
+        NOTIFY("notify"),
+        /**
+         * Processing an event in one observer
+         */
+        OBSERVER_UPDATE("observerUpdate"),
+        /**
+         * One social API request, including the politeness delay
+         */
+        SOCIAL_LOOKUP("socialLookup"),
+        /**
+         * Reading one batch of existing pages and notifying the observers of it, with '-e'
+         */
+        ENRICH("enrich");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private static final StageTimers singleton = new StageTimers();
+
+    private final Map<Stage, Recorder> recorders = new EnumMap<>(Stage.class);
+    // everything recorded so far, filled from the recorders when read
+    private final Map<Stage, Histogram> totals = new EnumMap<>(Stage.class);
+
+    private StageTimers() {
+        for (Stage stage : Stage.values()) {
+            recorders.put(stage, new Recorder(3));
+            totals.put(stage, new Histogram(3));
+        }
+    }
+
+    public static StageTimers getInstance() {
+        return singleton;
+    }
+
+    /**
+     * @param startNanos the {@link System#nanoTime()} at the start of the stage
+     */
+    public void record(Stage stage, long startNanos) {
+        recordNanos(stage, System.nanoTime() - startNanos);
+    }
+
+    public void recordNanos(Stage stage, long nanos) {
+        recorders.get(stage).recordValue(Math.max(0, nanos / 1000));
+    }
+
+    /**
+     * @return a copy of everything recorded for the stage since the start, or the last {@link #reset()}
+     */
+    public Histogram getHistogram(Stage stage) {
+        synchronized (totals) {
+            final Histogram total = totals.get(stage);
+            total.add(recorders.get(stage).getIntervalHistogram());
+            return total.copy();
+        }
+    }
+
+    public void reset() {
+        synchronized (totals) {
+            for (Stage stage : Stage.values()) {
+                recorders.get(stage).reset();
+                totals.get(stage).reset();
+            }
+        }
+    }
+
+    /**
+     * Logs count, percentiles and max of all stages that have been recorded.
+     */
+    public void report(Logger logger) {
+        logger.info("Stage latencies (ms):");
+        for (Stage stage : Stage.values()) {
+            final Histogram histogram = getHistogram(stage);
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            final StringBuilder line = new StringBuilder(String.format("  %-15s", stage.getLabel()));
+            line.append(" count ").append(histogram.getTotalCount());
+            for (double percentile : PERCENTILES) {
+                line.append(", p").append(formatPercentile(percentile)).append(' ')
+                        .append(StringFormatUtil.formatMillis(toMillis(histogram.getValueAtPercentile(percentile))));
+            }
+            line.append(", max ").append(StringFormatUtil.formatMillis(toMillis(histogram.getMaxValue())));
+            logger.info(line.toString());
+        }
+    }
+
+    /**
+     * @return count, mean, percentiles and max of every stage by stage label, all times in milliseconds
+     */
+    public Map<String, Map<String, Object>> summarize() {
+        final Map<String, Map<String, Object>> stages = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            stages.put(stage.getLabel(), summarize(getHistogram(stage)));
+        }
+        return stages;
+    }
+
+    static Map<String, Object> summarize(Histogram histogram) {
+        final Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", histogram.getTotalCount());
+        summary.put("meanMillis", histogram.getTotalCount() == 0 ? 0 : histogram.getMean() / 1000);
+        for (double percentile : PERCENTILES) {
+            summary.put("p" + formatPercentile(percentile).replace('.', '_') + "Millis",
+                    toMillis(histogram.getValueAtPercentile(percentile)));
+        }
+        summary.put("maxMillis", toMillis(histogram.getMaxValue()));
+        return summary;
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile);
+    }
+
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+}
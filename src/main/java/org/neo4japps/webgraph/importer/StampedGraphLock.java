@@ -0,0 +1,187 @@
+package org.neo4japps.webgraph.importer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * {@link GraphLock} backed by a {@link StampedLock}, for importers whose underlying database is not thread-safe. Even
+ * reads may write to such a store, e.g. by evicting nodes from a cache, so the read lock is the write lock. Only
+ * optimistic reads of the properties of nodes the caller already holds run concurrently, and they don't take any lock
+ * unless a writer gets in the way.
+ * <p/>
+ * StampedLock is not reentrant, but the importers call their own locking methods from within locked sections. Writers
+ * therefore go through a {@link ReentrantLock} first and only the outermost acquisition takes the write stamp.
+ */
+final class StampedGraphLock implements GraphLock {
+
+    private final StampedLock stampedLock = new StampedLock();
+    private final ReentrantLock writeMutex = new ReentrantLock();
+
+    // only accessed by the thread holding the write mutex
+    private long writeStamp;
+
+    // only the contended acquisitions are timed, so that the uncontended path stays cheap
+    private final LongAdder contendedWriteLocks = new LongAdder();
+    private final LongAdder writeLockWaitNanos = new LongAdder();
+
+    private final Lock writeLock = new Lock() {
+
+        @Override
+        public void lock() {
+            if (writeMutex.tryLock()) {
+                if (writeMutex.getHoldCount() > 1) {
+                    return;
+                }
+                final long stamp = stampedLock.tryWriteLock();
+                if (stamp != 0) {
+                    writeStamp = stamp;
+                    return;
+                }
+            }
+
+            // another writer or a reader is in the way
+            final long start = System.nanoTime();
+            if (!writeMutex.isHeldByCurrentThread()) {
+                writeMutex.lock();
+            }
+            if (writeMutex.getHoldCount() == 1) {
+                writeStamp = stampedLock.writeLock();
+            }
+            final long waitNanos = System.nanoTime() - start;
+            contendedWriteLocks.increment();
+            writeLockWaitNanos.add(waitNanos);
+            StageTimers.getInstance().recordNanos(StageTimers.Stage.LOCK_WAIT, waitNanos);
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            writeMutex.lockInterruptibly();
+            if (writeMutex.getHoldCount() == 1) {
+                try {
+                    writeStamp = stampedLock.writeLockInterruptibly();
+                } catch (InterruptedException e) {
+                    writeMutex.unlock();
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (!writeMutex.tryLock()) {
+                return false;
+            }
+            if (writeMutex.getHoldCount() == 1) {
+                final long stamp = stampedLock.tryWriteLock();
+                if (stamp == 0) {
+                    writeMutex.unlock();
+                    return false;
+                }
+                writeStamp = stamp;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            final long deadline = System.nanoTime() + unit.toNanos(time);
+            if (!writeMutex.tryLock(time, unit)) {
+                return false;
+            }
+            if (writeMutex.getHoldCount() == 1) {
+                final long stamp;
+                try {
+                    stamp = stampedLock.tryWriteLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    writeMutex.unlock();
+                    throw e;
+                }
+                if (stamp == 0) {
+                    writeMutex.unlock();
+                    return false;
+                }
+                writeStamp = stamp;
+            }
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            if (writeMutex.getHoldCount() == 1) {
+                stampedLock.unlockWrite(writeStamp);
+            }
+            writeMutex.unlock();
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    private final AtomicLong numberOfOptimisticReadRetries = new AtomicLong();
+
+    @Override
+    public Lock readLock() {
+        return writeLock;
+    }
+
+    @Override
+    public Lock writeLock() {
+        return writeLock;
+    }
+
+    @Override
+    public <T> T optimisticRead(Supplier<T> reader) {
+        if (writeMutex.isHeldByCurrentThread()) {
+            // we already have a consistent view
+            return reader.get();
+        }
+
+        final long stamp = stampedLock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                final T result = reader.get();
+                if (stampedLock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                if (stampedLock.validate(stamp)) {
+                    throw e;
+                }
+                // the writer got in the way, retry below
+            }
+        }
+
+        numberOfOptimisticReadRetries.incrementAndGet();
+        writeLock.lock();
+        try {
+            return reader.get();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return how often an optimistic read had to be repeated under the read lock
+     */
+    long getNumberOfOptimisticReadRetries() {
+        return numberOfOptimisticReadRetries.get();
+    }
+
+    @Override
+    public long getNumberOfContendedWriteLocks() {
+        return contendedWriteLocks.sum();
+    }
+
+    @Override
+    public long getWriteLockWaitNanos() {
+        return writeLockWaitNanos.sum();
+    }
+}
@@ -3,6 +3,7 @@ package org.neo4japps.webgraph.importer;
 import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.index.Index;
 import org.neo4j.graphdb.index.UniqueFactory;
+import org.neo4j.kernel.GraphDatabaseAPI;
 import org.neo4j.test.TestGraphDatabaseFactory;
 import org.neo4japps.webgraph.util.ListChunker;
 import org.neo4japps.webgraph.util.UrlUtil;
@@ -14,8 +15,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 
 /**
@@ -43,37 +42,7 @@ public final class TransactionalGraphImporter extends AbstractObservableGraphImp
 
     private final GraphTransactionTemplate transactionTemplate = new GraphTransactionTemplate(this);
 
-    private final Lock nullLock = new Lock() {
-
-        @Override
-        public void lock() {
-        }
-
-        @Override
-        public void lockInterruptibly() throws InterruptedException {
-            // not needed
-        }
-
-        @Override
-        public boolean tryLock() {
-            return true;
-        }
-
-        @Override
-        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
-            return true;
-        }
-
-        @Override
-        public void unlock() {
-            // not needed
-        }
-
-        @Override
-        public Condition newCondition() {
-            return null;
-        }
-    };
+    private final GraphLock graphLock = new NullGraphLock();
 
     private final GraphDatabaseService graphDb;
     private final Index<Node> pageIndex;
@@ -86,16 +55,16 @@ public final class TransactionalGraphImporter extends AbstractObservableGraphImp
      * For unit testing
      */
     public static TransactionalGraphImporter createImpermanentInstance(String rootUrl, long startTimeInMillis,
-                                                                       int importProgressReportFrequency, int transactionSize) {
+                                                                       int transactionSize) {
         return new TransactionalGraphImporter(
                 new TestGraphDatabaseFactory().newImpermanentDatabaseBuilder().newGraphDatabase(), rootUrl,
-                startTimeInMillis, importProgressReportFrequency, transactionSize);
+                startTimeInMillis, transactionSize);
     }
 
     public TransactionalGraphImporter(GraphDatabaseService graphDb, String rootUrl, long startTimeInMillis,
-                                      int importProgressReportFrequency, int transactionSize) {
+                                      int transactionSize) {
 
-        super(rootUrl, startTimeInMillis, importProgressReportFrequency);
+        super(rootUrl, startTimeInMillis);
 
         if (transactionSize < 1) {
             throw new IllegalArgumentException("Value for transactionSize must be greater than 0");
@@ -119,7 +88,12 @@ public final class TransactionalGraphImporter extends AbstractObservableGraphImp
 
     @Override
     public Lock getLock() {
-        return nullLock;
+        return graphLock.writeLock();
+    }
+
+    @Override
+    public GraphLock getGraphLock() {
+        return graphLock;
     }
 
     @Override
@@ -190,7 +164,6 @@ public final class TransactionalGraphImporter extends AbstractObservableGraphImp
             updatePageIndex(page);
             numberOfPageNodes.incrementAndGet();
             logger.trace("Created page node: " + PageNode.toString(page));
-            reportProgress();
         } else {
             // Sometimes pages are parsed after the corresponding node has been
             // created, e.g.
@@ -358,6 +331,23 @@ public final class TransactionalGraphImporter extends AbstractObservableGraphImp
         return pageIndex.get(PageNode.URL_KEY, url).getSingle();
     }
 
+    @Override
+    public Node getNodeById(long id) {
+        try {
+            return graphDb.getNodeById(id);
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    // Neo4j 1.8 deprecated all of GraphDatabaseAPI without a public replacement. Node ids may have gaps here, so we
+    // can't search for the highest one the way the batch importer does.
+    @SuppressWarnings("deprecation")
+    @Override
+    public long getHighestNodeId() {
+        return ((GraphDatabaseAPI) graphDb).getNodeManager().getHighestPossibleIdInUse(Node.class);
+    }
+
     @Override
     public Iterator<Node> getAllPagesForDomain(String domain) {
         return pageIndex.get(PageNode.DOMAIN_KEY, domain).iterator();
@@ -379,8 +369,9 @@ public final class TransactionalGraphImporter extends AbstractObservableGraphImp
     }
 
     @Override
-    public void waitForImportToFinish() {
-        // no-op, this importer is synchronous
+    public void waitForImportToFinish() throws InterruptedException {
+        // the import itself is synchronous, only asynchronously notified observers may still be busy
+        waitForDispatchersToFinish();
     }
 
     @Override
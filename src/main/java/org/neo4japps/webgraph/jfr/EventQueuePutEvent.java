@@ -0,0 +1,31 @@
+package org.neo4japps.webgraph.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Putting a modification event into a bounded queue, which blocks while the queue is full.
+ */
+@Name("org.neo4japps.webgraph.EventQueuePut")
+@Label("Event Queue Put")
+@Category({"Web Graph", "Event Handlers"})
+@Description("Puts a modification event into a bounded queue, waiting while it is full")
+@Enabled(false)
+@StackTrace(false)
+public class EventQueuePutEvent extends Event {
+
+    @Label("Queue")
+    public String queue;
+
+    @Label("Pages")
+    public int pageCount;
+
+    @Label("Remaining Capacity")
+    @Description("Free slots in the queue before the put")
+    public int remainingCapacity;
+}
@@ -0,0 +1,37 @@
+package org.neo4japps.webgraph.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One task run by the GraphTransactionTemplate, including all retries after deadlocks.
+ */
+@Name("org.neo4japps.webgraph.GraphTransaction")
+@Label("Graph Transaction")
+@Category({"Web Graph", "Database"})
+@Description("Runs a task in a Neo4j transaction, retrying it after deadlocks")
+@Enabled(false)
+@StackTrace(false)
+public class GraphTransactionEvent extends Event {
+
+    @Label("Owner")
+    public String owner;
+
+    @Label("Task")
+    public String task;
+
+    @Label("Retries")
+    public int retries;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+
+    @Label("Failure")
+    @Description("The exception the task failed with, if any")
+    public String failure;
+}
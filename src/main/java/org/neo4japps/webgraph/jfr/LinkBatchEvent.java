@@ -0,0 +1,31 @@
+package org.neo4japps.webgraph.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Adding the outgoing links of one page to the graph.
+ */
+@Name("org.neo4japps.webgraph.LinkBatch")
+@Label("Link Batch")
+@Category({"Web Graph", "Import"})
+@Description("Adds the outgoing links of a page to the graph")
+@Enabled(false)
+@StackTrace(false)
+public class LinkBatchEvent extends Event {
+
+    @Label("URL")
+    @Description("The page the links start from")
+    public String url;
+
+    @Label("Node Id")
+    public long nodeId;
+
+    @Label("Links")
+    public int linkCount;
+}
@@ -0,0 +1,34 @@
+package org.neo4japps.webgraph.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One custom event handler processing one modification event.
+ */
+@Name("org.neo4japps.webgraph.ObserverUpdate")
+@Label("Observer Update")
+@Category({"Web Graph", "Event Handlers"})
+@Description("A custom event handler processes the pages of a modification event")
+@Enabled(false)
+@StackTrace(false)
+public class ObserverUpdateEvent extends Event {
+
+    @Label("Observer")
+    public String observer;
+
+    @Label("First URL")
+    @Description("The URL of the first page of the event")
+    public String firstUrl;
+
+    @Label("First Node Id")
+    public long firstNodeId;
+
+    @Label("Pages")
+    public int pageCount;
+}
@@ -0,0 +1,31 @@
+package org.neo4japps.webgraph.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Adding one crawled page to the graph, including waiting for the graph lock.
+ */
+@Name("org.neo4japps.webgraph.PageImport")
+@Label("Page Import")
+@Category({"Web Graph", "Import"})
+@Description("Adds a crawled page to the graph")
+@Enabled(false)
+@StackTrace(false)
+public class PageImportEvent extends Event {
+
+    @Label("URL")
+    public String url;
+
+    @Label("Node Id")
+    public long nodeId;
+
+    @Label("Content Length")
+    @Description("The length of the page content in characters")
+    public int contentLength;
+}
@@ -0,0 +1,34 @@
+package org.neo4japps.webgraph.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One request to a social media API, including the politeness delay.
+ */
+@Name("org.neo4japps.webgraph.SocialApiCall")
+@Label("Social API Call")
+@Category({"Web Graph", "Event Handlers"})
+@Description("Queries a social media API, including the politeness delay")
+@Enabled(false)
+@StackTrace(false)
+public class SocialApiCallEvent extends Event {
+
+    @Label("URL")
+    public String url;
+
+    @Label("Response Length")
+    @Description("The length of the response in characters")
+    public int responseLength;
+
+    @Label("Asynchronous")
+    public boolean async;
+
+    @Label("Service Unavailable")
+    public boolean unavailable;
+}
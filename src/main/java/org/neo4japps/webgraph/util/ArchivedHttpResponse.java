@@ -0,0 +1,66 @@
+package org.neo4japps.webgraph.util;
+
+import org.apache.http.Header;
+
+import java.util.Arrays;
+
+/**
+ * Immutable HTTP response as stored in, or read back from, a {@link WarcWriter} archive.
+ */
+public final class ArchivedHttpResponse {
+
+    private final String url;
+    private final int statusCode;
+    private final String reasonPhrase;
+    private final Header[] headers;
+    private final byte[] body;
+
+    public ArchivedHttpResponse(String url, int statusCode, String reasonPhrase, Header[] headers, byte[] body) {
+        if (url == null) {
+            throw new IllegalArgumentException("null url");
+        }
+        this.url = url;
+        this.statusCode = statusCode;
+        this.reasonPhrase = reasonPhrase == null ? "" : reasonPhrase;
+        this.headers = headers == null ? new Header[0] : headers.clone();
+        this.body = body == null ? new byte[0] : body;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getReasonPhrase() {
+        return reasonPhrase;
+    }
+
+    public Header[] getHeaders() {
+        return headers.clone();
+    }
+
+    public Header getFirstHeader(String name) {
+        for (Header header : headers) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return header;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The returned array is not copied for performance reasons, callers must not modify it.
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    @Override
+    public String toString() {
+        return "ArchivedHttpResponse [url=" + url + ", statusCode=" + statusCode + ", headers="
+                + Arrays.toString(headers) + ", body=" + body.length + " bytes]";
+    }
+}
@@ -0,0 +1,157 @@
+package org.neo4japps.webgraph.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops calls to a remote service while it keeps failing.
+ * <p>
+ * The breaker starts closed and records the outcome of the most recent calls in a sliding window. Once the window holds
+ * enough calls and the failure rate reaches the threshold, the breaker opens and denies all calls. After the open
+ * duration a single trial call is let through (half-open): if it succeeds the breaker closes again, otherwise it opens
+ * for another open duration.
+ * <p>
+ * Callers ask for permission with {@link #tryAcquirePermission()} and must report the outcome of every permitted call
+ * with {@link #onSuccess()} or {@link #onFailure()}.
+ * <p>
+ * This class is thread-safe.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+
+    // outcomes of the most recent calls, true for failures
+    private final boolean[] window;
+    private int windowPosition;
+    private int numberOfCallsInWindow;
+    private int numberOfFailuresInWindow;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialCallInProgress;
+
+    private long numberOfDeniedCalls;
+    private long numberOfTimesOpened;
+
+    /**
+     * @param windowSize           the number of recent calls the failure rate is computed from
+     * @param minimumCalls         the breaker doesn't open before the window holds this many calls
+     * @param failureRateThreshold the failure rate, between 0 and 1, at which the breaker opens
+     * @param openDuration         how long the breaker denies calls before it lets a trial call through
+     */
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long openDuration,
+                          TimeUnit unit) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize must be greater than 0");
+        }
+        if (minimumCalls < 1 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("minimumCalls must be between 1 and windowSize");
+        }
+        if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("failureRateThreshold must be greater than 0 and at most 1");
+        }
+        if (openDuration < 0) {
+            throw new IllegalArgumentException("openDuration must not be negative");
+        }
+
+        this.window = new boolean[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = unit.toNanos(openDuration);
+    }
+
+    /**
+     * @return true if the call may go ahead, false if the service should not be called now
+     */
+    public synchronized boolean tryAcquirePermission() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt >= openDurationNanos) {
+                    state = State.HALF_OPEN;
+                    trialCallInProgress = true;
+                    return true;
+                }
+                break;
+            case HALF_OPEN:
+                if (!trialCallInProgress) {
+                    trialCallInProgress = true;
+                    return true;
+                }
+                break;
+        }
+
+        numberOfDeniedCalls++;
+        return false;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            // the service has recovered, start with a clean window
+            state = State.CLOSED;
+            trialCallInProgress = false;
+            resetWindow();
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && numberOfCallsInWindow >= minimumCalls
+                && numberOfFailuresInWindow >= failureRateThreshold * numberOfCallsInWindow) {
+            open();
+        }
+    }
+
+    private void record(boolean failure) {
+        if (numberOfCallsInWindow == window.length) {
+            if (window[windowPosition]) {
+                numberOfFailuresInWindow--;
+            }
+        } else {
+            numberOfCallsInWindow++;
+        }
+        window[windowPosition] = failure;
+        if (failure) {
+            numberOfFailuresInWindow++;
+        }
+        windowPosition = (windowPosition + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        trialCallInProgress = false;
+        numberOfTimesOpened++;
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        windowPosition = 0;
+        numberOfCallsInWindow = 0;
+        numberOfFailuresInWindow = 0;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized long getNumberOfDeniedCalls() {
+        return numberOfDeniedCalls;
+    }
+
+    public synchronized long getNumberOfTimesOpened() {
+        return numberOfTimesOpened;
+    }
+}
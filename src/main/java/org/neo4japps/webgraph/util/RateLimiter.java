@@ -0,0 +1,155 @@
+package org.neo4japps.webgraph.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free rate limiter based on the generic cell rate algorithm (GCRA).
+ * <p>
+ * Requests are spaced by a steady interval, but up to "burst" requests may go through back to back after an idle
+ * period. Callers reserve a slot with a single compare-and-set and then wait for it without holding any lock, so the
+ * rate does not depend on the number of threads or on lock fairness.
+ * <p>
+ * The interval is doubled by {@link #slowDown()}, e.g. when the remote service reports that it is overloaded, and
+ * gradually restored by {@link #speedUp()}.
+ * <p>
+ * This class is thread-safe.
+ */
+public class RateLimiter {
+    /**
+     * Slowing down waits at least this long between requests, even if the configured interval is shorter
+     */
+    public static final long MIN_SLOW_DOWN_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    public static final long MAX_SLOW_DOWN_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private volatile long configuredIntervalNanos;
+    private volatile int burst;
+
+    private final AtomicLong intervalNanos = new AtomicLong();
+
+    // the theoretical arrival time of the next request if requests arrived exactly at the steady rate
+    private final AtomicLong theoreticalArrivalTime = new AtomicLong(System.nanoTime());
+
+    private final AtomicLong numberOfDelayedRequests = new AtomicLong();
+    private final AtomicLong totalDelayNanos = new AtomicLong();
+    private final AtomicLong numberOfSlowDowns = new AtomicLong();
+
+    /**
+     * @param interval the time between two requests, 0 for no limit
+     * @param burst    the number of requests that may be sent back to back
+     */
+    public RateLimiter(long interval, TimeUnit unit, int burst) {
+        setInterval(interval, unit);
+        setBurst(burst);
+    }
+
+    public void setInterval(long interval, TimeUnit unit) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("interval must not be negative");
+        }
+        configuredIntervalNanos = unit.toNanos(interval);
+        intervalNanos.set(configuredIntervalNanos);
+    }
+
+    public void setBurst(int burst) {
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be greater than 0");
+        }
+        this.burst = burst;
+    }
+
+    /**
+     * Reserves the next slot without waiting for it.
+     *
+     * @return the number of nanoseconds the caller must wait before sending its request
+     */
+    public long reserve() {
+        final long interval = intervalNanos.get();
+        if (interval == 0) {
+            return 0;
+        }
+
+        final long tolerance = (burst - 1) * interval;
+        while (true) {
+            final long now = System.nanoTime();
+            final long tat = theoreticalArrivalTime.get();
+            final long newTat = Math.max(tat, now) + interval;
+            if (theoreticalArrivalTime.compareAndSet(tat, newTat)) {
+                final long delay = Math.max(0, tat - tolerance - now);
+                if (delay > 0) {
+                    numberOfDelayedRequests.incrementAndGet();
+                    totalDelayNanos.addAndGet(delay);
+                }
+                return delay;
+            }
+        }
+    }
+
+    /**
+     * Reserves the next slot and waits for it.
+     */
+    public void acquire() {
+        final long delay = reserve();
+        if (delay == 0) {
+            return;
+        }
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(delay);
+        } catch (InterruptedException ignore) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Doubles the interval, up to {@link #MAX_SLOW_DOWN_INTERVAL_NANOS}.
+     */
+    public void slowDown() {
+        numberOfSlowDowns.incrementAndGet();
+        long current;
+        long next;
+        do {
+            current = intervalNanos.get();
+            next = Math.min(Math.max(current * 2, MIN_SLOW_DOWN_INTERVAL_NANOS), MAX_SLOW_DOWN_INTERVAL_NANOS);
+            next = Math.max(next, configuredIntervalNanos);
+        } while (!intervalNanos.compareAndSet(current, next));
+    }
+
+    /**
+     * Shortens a slowed down interval by a quarter, but not below the configured interval.
+     */
+    public void speedUp() {
+        final long configured = configuredIntervalNanos;
+        long current;
+        long next;
+        do {
+            current = intervalNanos.get();
+            if (current <= configured) {
+                return;
+            }
+            next = current * 3 / 4;
+            if (next < configured + TimeUnit.MILLISECONDS.toNanos(1)) {
+                next = configured;
+            }
+        } while (!intervalNanos.compareAndSet(current, next));
+    }
+
+    /**
+     * @return the current interval, which is longer than the configured one while slowed down
+     */
+    public long getIntervalNanos() {
+        return intervalNanos.get();
+    }
+
+    public long getNumberOfDelayedRequests() {
+        return numberOfDelayedRequests.get();
+    }
+
+    public long getTotalDelayNanos() {
+        return totalDelayNanos.get();
+    }
+
+    public long getNumberOfSlowDowns() {
+        return numberOfSlowDowns.get();
+    }
+}
@@ -1,36 +1,125 @@
 package org.neo4japps.webgraph.util;
 
+import org.apache.http.HttpClientConnection;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
-import org.apache.http.client.HttpClient;
+import org.apache.http.client.cache.CacheResponseStatus;
+import org.apache.http.client.cache.HttpCacheContext;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.conn.params.ConnRoutePNames;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.cache.CacheConfig;
-import org.apache.http.impl.client.cache.CachingHttpClient;
-import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.client.cache.CachingHttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SimpleHttpClient {
+    /**
+     * Responses longer than this are discarded by {@link #httpGet(String)}, unless configured otherwise
+     */
+    public static final int DEFAULT_MAX_CONTENT_LENGTH = 2048;
+
+    // increase max number of connections per host and total, the HttpClient defaults (2 and 20) are too low to take
+    // advantage of multiple threads
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 50;
+    public static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 100;
+
+    /**
+     * Connections are kept alive this long, unless the server asks for less
+     */
+    public static final int DEFAULT_KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Returned instead of the content when the server answers 429 (Too Many Requests) or 503 (Service Unavailable)
+     */
+    public static final String SERVICE_UNAVAILABLE = "<service unavailable>";
+
+    // not defined by HttpStatus
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private static final int EVICTION_INTERVAL_SECONDS = 5;
+
     private static final AtomicInteger instanceCounter = new AtomicInteger();
 
+    // requests in flight, shared by all clients so that concurrent identical requests of different observers are sent
+    // only once
+    private static final ConcurrentMap<String, CompletableFuture<String>> inFlightRequests = new ConcurrentHashMap<>();
+
+    // closes the expired and idle connections of all clients
+    private static final ScheduledExecutorService connectionEvictor = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "SimpleHttpClient-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // response bodies are read into these, so that a thread doesn't allocate a new buffer per response
+    private static final ThreadLocal<byte[]> contentBuffers = ThreadLocal.withInitial(() -> new byte[4096]);
+
     private final Logger logger;
     private final AtomicBoolean isShutdown;
+    private final AtomicLong coalescedRequests = new AtomicLong();
+
+    private final MeteredConnectionManager connectionManager;
+    private final CloseableHttpClient theClient;
+    private final boolean isCaching;
+    private final ScheduledFuture<?> eviction;
+
+    private volatile int maxContentLength = DEFAULT_MAX_CONTENT_LENGTH;
+    private volatile long keepAliveMillis = TimeUnit.SECONDS.toMillis(DEFAULT_KEEP_ALIVE_SECONDS);
+
+    // set once the proxy is configured
+    private volatile RequestConfig requestConfig = RequestConfig.DEFAULT;
+    private volatile CredentialsProvider proxyCredentials;
 
-    private final DefaultHttpClient defaultClient;
-    private final CachingHttpClient cachingClient;
-    private final HttpClient theClient;
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong cacheUpdates = new AtomicLong();
+
+    // created on first use, so that it picks up the proxy configuration
+    private CloseableHttpAsyncClient asyncClient;
+    private PoolingNHttpClientConnectionManager asyncConnectionManager;
 
     /**
      * Creates a HTTP client.
@@ -44,23 +133,28 @@ public class SimpleHttpClient {
 
         isShutdown = new AtomicBoolean();
 
-        PoolingClientConnectionManager conman = new PoolingClientConnectionManager();
-        // increase max number of connections per host and total, defaults are too low to take advantage of multiple
-        // threads
-        conman.setDefaultMaxPerRoute(50); // default is 2
-        conman.setMaxTotal(100); // default is 20
-        defaultClient = new DefaultHttpClient(conman);
-
-        if (maxCacheEntries > 0) {
-            CacheConfig cacheConfig = new CacheConfig();
-            cacheConfig.setSharedCache(false);
-            cacheConfig.setMaxCacheEntries(maxCacheEntries);
-            cachingClient = new CachingHttpClient(defaultClient, cacheConfig);
-            theClient = cachingClient;
+        connectionManager = new MeteredConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+        connectionManager.setMaxTotal(DEFAULT_MAX_CONNECTIONS_TOTAL);
+
+        isCaching = maxCacheEntries > 0;
+        final HttpClientBuilder builder;
+        if (isCaching) {
+            CacheConfig cacheConfig = CacheConfig.custom()
+                    .setSharedCache(false)
+                    .setMaxCacheEntries(maxCacheEntries)
+                    .build();
+            builder = CachingHttpClientBuilder.create().setCacheConfig(cacheConfig);
         } else {
-            cachingClient = null;
-            theClient = defaultClient;
+            builder = HttpClientBuilder.create();
         }
+        theClient = builder
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(keepAliveStrategy())
+                .build();
+
+        eviction = connectionEvictor.scheduleWithFixedDelay(this::evictConnections, EVICTION_INTERVAL_SECONDS,
+                EVICTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
 
         logger.info("Created");
     }
@@ -74,18 +168,62 @@ public class SimpleHttpClient {
             return;
         }
 
-        theClient.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, new HttpHost(proxyHost, proxyPort, "http"));
+        requestConfig = RequestConfig.custom().setProxy(new HttpHost(proxyHost, proxyPort, "http")).build();
         logger.info("Configured proxy host " + proxyHost);
 
         if (proxyUsername != null) {
             CredentialsProvider credsProvider = new BasicCredentialsProvider();
             credsProvider.setCredentials(new AuthScope(proxyHost, proxyPort),
                     new UsernamePasswordCredentials(proxyUsername, proxyPassword));
-            defaultClient.setCredentialsProvider(credsProvider);
+            proxyCredentials = credsProvider;
             logger.info("Configured proxy user " + proxyUsername);
         }
     }
 
+    /**
+     * Changes the connection pool limits and the keep-alive time. Takes effect for the non-blocking client only if it
+     * has not been used yet.
+     */
+    public void configConnectionPool(int maxConnectionsPerRoute, int maxConnectionsTotal, int keepAliveSeconds) {
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setMaxTotal(maxConnectionsTotal);
+        keepAliveMillis = TimeUnit.SECONDS.toMillis(keepAliveSeconds);
+    }
+
+    /**
+     * @param maxContentLength responses of this length or longer are discarded by {@link #httpGet(String)}
+     */
+    public void setMaxContentLength(int maxContentLength) {
+        this.maxContentLength = maxContentLength;
+    }
+
+    public int getMaxContentLength() {
+        return maxContentLength;
+    }
+
+    /**
+     * Keeps connections alive as long as the server allows, but no longer than the configured keep-alive time.
+     */
+    private ConnectionKeepAliveStrategy keepAliveStrategy() {
+        return (response, context) -> {
+            final long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response,
+                    context);
+            return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAliveMillis) : keepAliveMillis;
+        };
+    }
+
+    private void evictConnections() {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(keepAliveMillis, TimeUnit.MILLISECONDS);
+
+        synchronized (this) {
+            if (asyncConnectionManager != null) {
+                asyncConnectionManager.closeExpiredConnections();
+                asyncConnectionManager.closeIdleConnections(keepAliveMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
     /**
      * Retrieves the textual content of a HTTP response triggered by a HTTP GET request to the specified URI. The
      * content itself can be HTML, XML, JSON,... whatever.
@@ -94,17 +232,63 @@ public class SimpleHttpClient {
      * @return the content of the HTTP response, or null if the response cannot be read
      */
     public String httpGet(String uri) {
+        return httpGet(uri, maxContentLength);
+    }
+
+    /**
+     * Same as {@link #httpGet(String)}, for responses that may be longer than the configured maximum.
+     * <p>
+     * If the same URI is already being requested, by this or any other client, no new request is sent. The caller
+     * waits for the request in flight and gets the same response.
+     *
+     * @param maxContentLength responses of this length or longer are discarded
+     */
+    public String httpGet(String uri, int maxContentLength) {
         if (isShutdown.get()) {
             return "";
         }
 
-        final HttpGet request = new HttpGet(uri);
+        final String key = requestKey(uri, maxContentLength);
+        final CompletableFuture<String> request = new CompletableFuture<>();
+        final CompletableFuture<String> requestInFlight = inFlightRequests.putIfAbsent(key, request);
+        if (requestInFlight != null) {
+            coalescedRequests.incrementAndGet();
+            return requestInFlight.join();
+        }
 
+        String content = "";
         try {
-            HttpResponse response = theClient.execute(request);
+            content = doHttpGet(uri, maxContentLength);
+            return content;
+        } finally {
+            inFlightRequests.remove(key, request);
+            request.complete(content);
+        }
+    }
+
+    private static String requestKey(String uri, int maxContentLength) {
+        return maxContentLength + " " + uri;
+    }
+
+    private String doHttpGet(String uri, int maxContentLength) {
+        final HttpGet request = createRequest(uri);
+        if (request == null) {
+            return "";
+        }
+
+        final HttpCacheContext context = HttpCacheContext.create();
+        if (proxyCredentials != null) {
+            context.setCredentialsProvider(proxyCredentials);
+        }
+
+        try (CloseableHttpResponse response = theClient.execute(request, context)) {
+            countCacheResponse(context.getCacheResponseStatus());
             HttpEntity entity = response.getEntity();
-            if (entity != null) {
-                return getEntityContent(entity, uri);
+            if (isThrottled(response, uri)) {
+                EntityUtils.consumeQuietly(entity);
+                return SERVICE_UNAVAILABLE;
+            } else if (entity != null) {
+                return readContent(entity, uri, maxContentLength, request);
             } else {
                 logger.warn(String.format("Cannot read response for URI %s. It has no content.", uri));
             }
@@ -116,24 +300,217 @@ public class SimpleHttpClient {
         return "";
     }
 
-    private String getEntityContent(HttpEntity entity, String uri) throws IOException {
-        String content = "";
+    private boolean isThrottled(HttpResponse response, String uri) {
+        final int status = response.getStatusLine().getStatusCode();
+        if (status == SC_TOO_MANY_REQUESTS || status == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+            logger.warn("Server refused request for URI " + uri + " with status " + status);
+            return true;
+        }
+        return false;
+    }
 
-        long len = entity.getContentLength();
-        if (len != -1 && len < 2048) {
-            // the use of EntityUtils is strongly discouraged unless the response entities originate
-            // from a trusted HTTP server and are known to be of limited length.
-            content = EntityUtils.toString(entity);
-        } else {
+    private void countCacheResponse(CacheResponseStatus status) {
+        if (!isCaching || status == null) {
+            return;
+        }
+
+        switch (status) {
+            case CACHE_HIT:
+            case CACHE_MODULE_RESPONSE:
+                cacheHits.incrementAndGet();
+                break;
+            case VALIDATED:
+                cacheUpdates.incrementAndGet();
+                break;
+            default:
+                cacheMisses.incrementAndGet();
+        }
+    }
+
+    /**
+     * Streams the response body into the thread's content buffer, up to the given length. Responses with unknown
+     * length are accepted as long as they turn out to be short enough.
+     *
+     * @param request aborted when the response is too long, rather than reading the rest of it
+     */
+    private String readContent(HttpEntity entity, String uri, int maxContentLength, HttpGet request)
+            throws IOException {
+        final long len = entity.getContentLength();
+        if (len >= maxContentLength) {
             logger.warn("Cannot read response for URI " + uri + ". Incorrect response length " + len);
+            request.abort();
+            return "";
         }
 
-        // ensure the connection gets released to the manager
-        EntityUtils.consume(entity);
+        byte[] buffer = contentBuffers.get();
+        int size = 0;
+        try (InputStream in = entity.getContent()) {
+            while (true) {
+                if (size == buffer.length) {
+                    if (buffer.length >= maxContentLength) {
+                        logger.warn("Cannot read response for URI " + uri + ". Response longer than "
+                                + maxContentLength + " bytes");
+                        request.abort();
+                        return "";
+                    }
+                    buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, maxContentLength));
+                    contentBuffers.set(buffer);
+                }
+                final int read = in.read(buffer, size, buffer.length - size);
+                if (read == -1) {
+                    break;
+                }
+                size += read;
+            }
+        }
+
+        if (size >= maxContentLength) {
+            logger.warn("Cannot read response for URI " + uri + ". Response longer than " + maxContentLength
+                    + " bytes");
+            return "";
+        }
+        return new String(buffer, 0, size, charsetOf(entity));
+    }
+
+    private static Charset charsetOf(HttpEntity entity) {
+        final ContentType contentType = ContentType.get(entity);
+        final Charset charset = contentType == null ? null : contentType.getCharset();
+        // the HTTP default for text
+        return charset == null ? StandardCharsets.ISO_8859_1 : charset;
+    }
+
+    /**
+     * Non-blocking version of {@link #httpGet(String, int)}. The request is sent by a small pool of I/O threads, so
+     * many requests can be in flight without tying up a thread each.
+     * <p>
+     * Concurrent requests of the same URI are coalesced, as with {@link #httpGet(String, int)}.
+     *
+     * @return a future completed with the content of the HTTP response, or with an empty string if the response cannot
+     * be read. The future never completes exceptionally.
+     */
+    public CompletableFuture<String> httpGetAsync(final String uri, final int maxContentLength) {
+        final String key = requestKey(uri, maxContentLength);
+        final CompletableFuture<String> request = new CompletableFuture<>();
+        final CompletableFuture<String> requestInFlight = inFlightRequests.putIfAbsent(key, request);
+        if (requestInFlight != null) {
+            coalescedRequests.incrementAndGet();
+            return requestInFlight;
+        }
+
+        CompletableFuture<String> content;
+        try {
+            content = doHttpGetAsync(uri, maxContentLength);
+        } catch (RuntimeException e) {
+            // the request must complete, or all later requests of the URI would wait for it forever
+            logger.warn("Cannot send request for URI " + uri, e);
+            content = CompletableFuture.completedFuture("");
+        }
+        content.whenComplete((result, e) -> {
+            inFlightRequests.remove(key, request);
+            request.complete(result == null ? "" : result);
+        });
+        return request;
+    }
+
+    private CompletableFuture<String> doHttpGetAsync(final String uri, final int maxContentLength) {
+        final CloseableHttpAsyncClient client = getAsyncClient();
+        if (client == null) {
+            return CompletableFuture.completedFuture("");
+        }
+
+        final HttpGet request = createRequest(uri);
+        if (request == null) {
+            return CompletableFuture.completedFuture("");
+        }
+
+        final CompletableFuture<String> content = new CompletableFuture<>();
+        try {
+            client.execute(request, new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse response) {
+                    HttpEntity entity = response.getEntity();
+                    if (isThrottled(response, uri)) {
+                        content.complete(SERVICE_UNAVAILABLE);
+                        return;
+                    }
+                    if (entity == null) {
+                        logger.warn(String.format("Cannot read response for URI %s. It has no content.", uri));
+                        content.complete("");
+                        return;
+                    }
+                    try {
+                        // the body has already been buffered by the I/O thread
+                        content.complete(readContent(entity, uri, maxContentLength, request));
+                    } catch (Exception e) {
+                        logger.warn("Cannot read response for URI " + uri, e);
+                        content.complete("");
+                    }
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    logger.warn("Cannot read response for URI " + uri, e);
+                    content.complete("");
+                }
+
+                @Override
+                public void cancelled() {
+                    content.complete("");
+                }
+            });
+        } catch (Exception e) {
+            // e.g. the client has just been shut down
+            logger.warn("Cannot send request for URI " + uri, e);
+            content.complete("");
+        }
 
         return content;
     }
 
+    /**
+     * @return the request, or null if the URI is invalid, e.g. because a page URL with spaces was appended to it
+     */
+    private HttpGet createRequest(String uri) {
+        final HttpGet request;
+        try {
+            request = new HttpGet(uri);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Cannot send request for invalid URI " + uri, e);
+            return null;
+        }
+        request.setConfig(requestConfig);
+        return request;
+    }
+
+    private synchronized CloseableHttpAsyncClient getAsyncClient() {
+        if (isShutdown.get()) {
+            return null;
+        }
+
+        if (asyncClient == null) {
+            try {
+                asyncConnectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor());
+            } catch (IOReactorException e) {
+                logger.warn("Cannot start non-blocking client", e);
+                return null;
+            }
+            // same limits as the blocking client
+            asyncConnectionManager.setDefaultMaxPerRoute(connectionManager.getDefaultMaxPerRoute());
+            asyncConnectionManager.setMaxTotal(connectionManager.getMaxTotal());
+
+            HttpAsyncClientBuilder builder = HttpAsyncClients.custom()
+                    .setConnectionManager(asyncConnectionManager)
+                    .setKeepAliveStrategy(keepAliveStrategy());
+            if (proxyCredentials != null) {
+                builder.setDefaultCredentialsProvider(proxyCredentials);
+            }
+            asyncClient = builder.build();
+            asyncClient.start();
+            logger.info("Started non-blocking client");
+        }
+        return asyncClient;
+    }
+
     public void shutdown() {
         if (isShutdown.get()) {
             return;
@@ -141,19 +518,103 @@ public class SimpleHttpClient {
 
         isShutdown.set(true);
 
-        logger.info("Shutting down");
-        theClient.getConnectionManager().shutdown();
+        logger.info("Shutting down. Connection pool: " + getNumberOfConnectionLeases() + " leases, "
+                + StringFormatUtil.formatMillis(getAverageLeaseWaitMillis()) + " ms average wait, "
+                + StringFormatUtil.formatMillis(getMaxLeaseWaitMillis()) + " ms max wait");
+        eviction.cancel(false);
+        try {
+            theClient.close();
+        } catch (IOException e) {
+            logger.warn("Cannot shut down client", e);
+        }
+
+        synchronized (this) {
+            if (asyncClient != null) {
+                try {
+                    asyncClient.close();
+                } catch (IOException e) {
+                    logger.warn("Cannot shut down non-blocking client", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of requests that were not sent because an identical request was already in flight
+     */
+    public long getCoalescedRequests() {
+        return coalescedRequests.get();
     }
 
     public long getCacheHits() {
-        return cachingClient == null ? 0 : cachingClient.getCacheHits();
+        return cacheHits.get();
     }
 
     public long getCacheMisses() {
-        return cachingClient == null ? 0 : cachingClient.getCacheMisses();
+        return cacheMisses.get();
     }
 
     public long getCacheUpdates() {
-        return cachingClient == null ? 0 : cachingClient.getCacheUpdates();
+        return cacheUpdates.get();
+    }
+
+    /**
+     * @return the number of connections the blocking client has taken from its pool
+     */
+    public long getNumberOfConnectionLeases() {
+        return connectionManager.numberOfLeases.get();
+    }
+
+    /**
+     * @return how long the blocking client waited for a pooled connection on average
+     */
+    public double getAverageLeaseWaitMillis() {
+        final long leases = connectionManager.numberOfLeases.get();
+        return leases == 0 ? 0.0 : connectionManager.totalLeaseWaitNanos.get() / 1000000.0 / leases;
+    }
+
+    public double getMaxLeaseWaitMillis() {
+        return connectionManager.maxLeaseWaitNanos.get() / 1000000.0;
+    }
+
+    /**
+     * @return the current number of leased, pending and available connections of the blocking client's pool
+     */
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Records how long callers wait for a pooled connection.
+     */
+    private static class MeteredConnectionManager extends PoolingHttpClientConnectionManager {
+        private final AtomicLong numberOfLeases = new AtomicLong();
+        private final AtomicLong totalLeaseWaitNanos = new AtomicLong();
+        private final AtomicLong maxLeaseWaitNanos = new AtomicLong();
+
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+            final long start = System.nanoTime();
+            final ConnectionRequest request = super.requestConnection(route, state);
+            return new ConnectionRequest() {
+                @Override
+                public HttpClientConnection get(long timeout, TimeUnit unit)
+                        throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                    try {
+                        return request.get(timeout, unit);
+                    } finally {
+                        final long wait = System.nanoTime() - start;
+                        numberOfLeases.incrementAndGet();
+                        totalLeaseWaitNanos.addAndGet(wait);
+                        maxLeaseWaitNanos.accumulateAndGet(wait, Math::max);
+                    }
+                }
+
+                @Override
+                public boolean cancel() {
+                    return request.cancel();
+                }
+            };
+        }
     }
 }
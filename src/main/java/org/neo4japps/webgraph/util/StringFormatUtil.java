@@ -12,4 +12,8 @@ public final class StringFormatUtil {
     public static String formatMinutes(double value) {
         return String.format("%4.2f", value);
     }
+
+    public static String formatMillis(double value) {
+        return String.format("%4.2f", value);
+    }
 }
@@ -0,0 +1,155 @@
+package org.neo4japps.webgraph.util;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Random access reader for archives created by {@link WarcWriter}. The index is loaded into memory when the reader is
+ * created. If a URL was archived more than once the most recent record wins.
+ * <p>
+ * This class is thread-safe.
+ */
+public class WarcReader implements Closeable {
+
+    private final String archiveFileName;
+    private final FileChannel channel;
+
+    // URL --> {offset, length}
+    private final Map<String, long[]> index = new HashMap<>();
+
+    public WarcReader(String archiveFileName) throws IOException {
+        this.archiveFileName = archiveFileName;
+        loadIndex(archiveFileName + WarcWriter.INDEX_FILE_SUFFIX);
+        channel = FileChannel.open(Paths.get(archiveFileName), StandardOpenOption.READ);
+    }
+
+    private void loadIndex(String indexFileName) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(indexFileName), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ", 3);
+                if (parts.length != 3) {
+                    // probably a partially written line after a crash
+                    continue;
+                }
+                index.put(parts[2], new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1])});
+            }
+        } catch (FileNotFoundException e) {
+            throw new IOException("Missing index file " + indexFileName + " for archive " + archiveFileName, e);
+        }
+    }
+
+    public String getArchiveFileName() {
+        return archiveFileName;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public boolean contains(String url) {
+        return index.containsKey(url);
+    }
+
+    /**
+     * @param url the URL to look up
+     * @return the archived response, or null if the URL is not in the archive
+     * @throws IOException if the record cannot be read
+     */
+    public ArchivedHttpResponse read(String url) throws IOException {
+        long[] location = index.get(url);
+        if (location == null) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) location[1]);
+        long position = location[0];
+        while (buffer.hasRemaining()) {
+            // positional reads don't modify the channel's position, so concurrent readers don't interfere
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Truncated record for " + url + " in " + archiveFileName);
+            }
+        }
+
+        try (InputStream in = new BufferedInputStream(
+                new GZIPInputStream(new ByteArrayInputStream(buffer.array())))) {
+            return parseRecord(url, in);
+        }
+    }
+
+    private ArchivedHttpResponse parseRecord(String url, InputStream in) throws IOException {
+        String versionLine = readLine(in);
+        if (!versionLine.startsWith("WARC/")) {
+            throw new IOException("Not a WARC record for " + url + ": " + versionLine);
+        }
+
+        // skip the WARC headers, the HTTP block carries its own Content-Length
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            // nothing to do
+        }
+
+        String statusLine = readLine(in);
+        String[] statusParts = statusLine.split(" ", 3);
+        if (statusParts.length < 2) {
+            throw new IOException("Invalid HTTP status line for " + url + ": " + statusLine);
+        }
+        final int statusCode = Integer.parseInt(statusParts[1]);
+        final String reasonPhrase = statusParts.length == 3 ? statusParts[2] : "";
+
+        List<Header> headers = new ArrayList<>();
+        int contentLength = -1;
+        while (!(line = readLine(in)).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("Content-Length")) {
+                contentLength = Integer.parseInt(value);
+            }
+            headers.add(new BasicHeader(name, value));
+        }
+
+        byte[] body = contentLength < 0 ? in.readAllBytes() : in.readNBytes(contentLength);
+
+        return new ArchivedHttpResponse(url, statusCode, reasonPhrase, headers.toArray(new Header[0]), body);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                break;
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        if (b == -1 && line.size() == 0) {
+            throw new EOFException("Unexpected end of record");
+        }
+        return line.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,149 @@
+package org.neo4japps.webgraph.util;
+
+import org.apache.http.Header;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes HTTP responses to an append-only WARC/1.0 archive. Every record is compressed as a separate gzip member, so
+ * the archive as a whole is a valid .warc.gz file that standard WARC tools can read, and every record can be
+ * decompressed on its own.
+ * <p>
+ * For each record a line "offset length url" is appended to a plain text index file (archive name +
+ * {@link #INDEX_FILE_SUFFIX}), which allows {@link WarcReader} to look up responses by URL without scanning the
+ * archive.
+ * <p>
+ * This class is thread-safe.
+ */
+public class WarcWriter implements Closeable {
+
+    public static final String INDEX_FILE_SUFFIX = ".idx";
+
+    static final String CRLF = "\r\n";
+
+    private final String archiveFileName;
+    private final OutputStream archiveStream;
+    private final Writer indexWriter;
+
+    private long offset;
+    private int numberOfRecords;
+    private boolean isClosed;
+
+    /**
+     * Opens the archive for appending, creating it if it does not exist yet.
+     *
+     * @param archiveFileName the archive file, e.g. crawl.warc.gz
+     * @throws IOException if the archive or its index cannot be opened
+     */
+    public WarcWriter(String archiveFileName) throws IOException {
+        this.archiveFileName = archiveFileName;
+
+        File archiveFile = new File(archiveFileName);
+        offset = archiveFile.length();
+
+        archiveStream = new FileOutputStream(archiveFile, true);
+        indexWriter = new OutputStreamWriter(new FileOutputStream(archiveFileName + INDEX_FILE_SUFFIX, true),
+                StandardCharsets.UTF_8);
+    }
+
+    public String getArchiveFileName() {
+        return archiveFileName;
+    }
+
+    public synchronized int getNumberOfRecords() {
+        return numberOfRecords;
+    }
+
+    public synchronized void write(ArchivedHttpResponse response) throws IOException {
+        if (isClosed) {
+            throw new IOException("Archive " + archiveFileName + " is closed");
+        }
+
+        final byte[] record = compress(buildRecord(response));
+
+        archiveStream.write(record);
+        archiveStream.flush();
+
+        // only index the record once it has been written, so that the index never points past the end of the archive
+        indexWriter.write(offset + " " + record.length + " " + response.getUrl() + "\n");
+        indexWriter.flush();
+
+        offset += record.length;
+        numberOfRecords++;
+    }
+
+    private static byte[] buildRecord(ArchivedHttpResponse response) throws IOException {
+        final byte[] httpBlock = buildHttpBlock(response);
+
+        StringBuilder warcHeader = new StringBuilder(256);
+        warcHeader.append("WARC/1.0").append(CRLF);
+        warcHeader.append("WARC-Type: response").append(CRLF);
+        warcHeader.append("WARC-Record-ID: <urn:uuid:").append(UUID.randomUUID()).append('>').append(CRLF);
+        warcHeader.append("WARC-Date: ").append(Instant.now().truncatedTo(ChronoUnit.SECONDS)).append(CRLF);
+        warcHeader.append("WARC-Target-URI: ").append(sanitize(response.getUrl())).append(CRLF);
+        warcHeader.append("Content-Type: application/http;msgtype=response").append(CRLF);
+        warcHeader.append("Content-Length: ").append(httpBlock.length).append(CRLF);
+        warcHeader.append(CRLF);
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(warcHeader.length() + httpBlock.length + 4);
+        record.write(warcHeader.toString().getBytes(StandardCharsets.ISO_8859_1));
+        record.write(httpBlock);
+        record.write((CRLF + CRLF).getBytes(StandardCharsets.ISO_8859_1));
+        return record.toByteArray();
+    }
+
+    private static byte[] buildHttpBlock(ArchivedHttpResponse response) throws IOException {
+        final byte[] body = response.getBody();
+
+        StringBuilder httpHeader = new StringBuilder(512);
+        httpHeader.append("HTTP/1.1 ").append(response.getStatusCode()).append(' ')
+                .append(sanitize(response.getReasonPhrase())).append(CRLF);
+        for (Header header : response.getHeaders()) {
+            final String name = header.getName();
+            // the stored body is the decoded entity, so the original framing headers no longer apply
+            if (name.equalsIgnoreCase("Content-Length") || name.equalsIgnoreCase("Transfer-Encoding")
+                    || name.equalsIgnoreCase("Content-Encoding")) {
+                continue;
+            }
+            httpHeader.append(sanitize(name)).append(": ").append(sanitize(header.getValue())).append(CRLF);
+        }
+        httpHeader.append("Content-Length: ").append(body.length).append(CRLF);
+        httpHeader.append(CRLF);
+
+        ByteArrayOutputStream block = new ByteArrayOutputStream(httpHeader.length() + body.length);
+        block.write(httpHeader.toString().getBytes(StandardCharsets.ISO_8859_1));
+        block.write(body);
+        return block.toByteArray();
+    }
+
+    private static String sanitize(String value) {
+        return value == null ? "" : value.replace('\r', ' ').replace('\n', ' ');
+    }
+
+    private static byte[] compress(byte[] record) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(record.length / 2 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(record);
+        }
+        return compressed.toByteArray();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+
+        try {
+            archiveStream.close();
+        } finally {
+            indexWriter.close();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.neo4japps.webgraph.customhandlers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+public class BatchingFacebookClientTest extends TestCase {
+
+    /**
+     * Returns the length of each URL as its count, except for URLs containing "unknown".
+     */
+    private static class FacebookClientStub extends FacebookClient {
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean fail;
+
+        FacebookClientStub() {
+            super(null);
+        }
+
+        @Override
+        public Map<String, Integer> getSocialCounts(List<String> pageUrls) throws Exception {
+            batchSizes.add(pageUrls.size());
+            if (fail) {
+                throw new ServiceUnavailableException("Simulated failure");
+            }
+
+            Map<String, Integer> counts = new HashMap<>();
+            for (String pageUrl : pageUrls) {
+                if (!pageUrl.contains("unknown")) {
+                    counts.put(pageUrl, pageUrl.length());
+                }
+            }
+            return counts;
+        }
+    }
+
+    private final FacebookClientStub stub = new FacebookClientStub();
+
+    public void testThatConcurrentLookupsAreBatched() throws Exception {
+        // long wait, so that only full batches are sent
+        BatchingFacebookClient client = new BatchingFacebookClient(stub, 5, 10000);
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        try {
+            List<String> urls = new ArrayList<>();
+            List<Future<Integer>> counts = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                final String url = "http://mydomain.com/" + i + (i == 7 ? "/unknown" : "");
+                urls.add(url);
+                counts.add(executor.submit(() -> client.getSocialCount(url)));
+            }
+
+            for (int i = 0; i < 10; i++) {
+                int expected = i == 7 ? SocialJsonResponse.UNINITALIZED : urls.get(i).length();
+                assertEquals(expected, counts.get(i).get().intValue());
+            }
+
+            assertEquals(2, client.getNumberOfRequests());
+            assertEquals(10, client.getNumberOfLookups());
+            assertEquals(Collections.nCopies(2, 5), stub.batchSizes);
+        } finally {
+            executor.shutdown();
+            client.shutdown();
+        }
+    }
+
+    public void testThatIncompleteBatchIsSentAfterWaiting() throws Exception {
+        BatchingFacebookClient client = new BatchingFacebookClient(stub, 50, 10);
+        try {
+            assertEquals("http://mydomain.com/".length(), client.getSocialCount("http://mydomain.com/"));
+            assertEquals(Collections.singletonList(1), stub.batchSizes);
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    public void testThatFailureIsPassedToAllCallers() throws Exception {
+        BatchingFacebookClient client = new BatchingFacebookClient(stub, 50, 10);
+        stub.fail = true;
+        try {
+            client.getSocialCount("http://mydomain.com/");
+            fail("Expected ServiceUnavailableException");
+        } catch (ServiceUnavailableException expected) {
+            // ok
+        } finally {
+            client.shutdown();
+        }
+    }
+}
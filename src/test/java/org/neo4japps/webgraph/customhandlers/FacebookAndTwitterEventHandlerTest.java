@@ -4,10 +4,15 @@ import junit.framework.TestCase;
 import org.neo4j.graphdb.Node;
 import org.neo4japps.webgraph.importer.AbstractObservableGraphImporter;
 import org.neo4japps.webgraph.importer.ApplicationConfiguration;
+import org.neo4japps.webgraph.importer.DeferredUpdateException;
 import org.neo4japps.webgraph.importer.PageNode;
 import org.neo4japps.webgraph.importer.TransactionalGraphImporter;
 
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FacebookAndTwitterEventHandlerTest extends TestCase {
 
@@ -17,7 +22,7 @@ public class FacebookAndTwitterEventHandlerTest extends TestCase {
     @Override
     protected void setUp() throws Exception {
         graphImporter = TransactionalGraphImporter.createImpermanentInstance("http://homepage.com/",
-                System.currentTimeMillis(), 100, 500);
+                System.currentTimeMillis(), 500);
         handler = new FacebookAndTwitterEventHandler();
         handler.configure(new ApplicationConfiguration(new String[]{"-t"}, new Properties()));
         graphImporter.addObserver(handler);
@@ -88,4 +93,121 @@ public class FacebookAndTwitterEventHandlerTest extends TestCase {
 
         assertFalse(handler.shouldIgnore(page, graphImporter));
     }
+
+    public void testThatPagesAreUpdatedWhenSeveralLookupsAreInFlight() throws Exception {
+        FacebookAndTwitterEventHandler asyncHandler = new FacebookAndTwitterEventHandler();
+        asyncHandler.setFacebookClient(new SocialMediaClientStub(42));
+        asyncHandler.setTwitterClient(new SocialMediaClientStub(-1) {
+            @Override
+            public CompletableFuture<Integer> getSocialCountAsync(String pageUrl) {
+                return CompletableFuture.supplyAsync(() -> 7);
+            }
+        });
+        asyncHandler.configure(new ApplicationConfiguration(new String[]{"-t", "-sl", "10"}, new Properties()));
+        graphImporter.addObserver(asyncHandler);
+        handler.setFacebookClient(new SocialMediaClientStub(-1));
+        handler.setTwitterClient(new SocialMediaClientStub(-1));
+
+        try {
+            Node page = graphImporter.addPage("http://mydomain.com/", "random content");
+
+            assertEquals(42, PageNode.getFacebookTotalCount(page));
+            assertEquals(7, PageNode.getTwitterCount(page));
+            assertEquals(1, asyncHandler.getNumberOfUpdatedPageNodes());
+        } finally {
+            asyncHandler.shutdown();
+        }
+    }
+
+    public void testThatFacebookCountIsKeptWhenAsyncTwitterLookupFails() throws Exception {
+        FacebookAndTwitterEventHandler asyncHandler = new FacebookAndTwitterEventHandler();
+        asyncHandler.setFacebookClient(new SocialMediaClientStub(42));
+        asyncHandler.setTwitterClient(new SocialMediaClientStub(-1) {
+            @Override
+            public CompletableFuture<Integer> getSocialCountAsync(String pageUrl) {
+                return CompletableFuture.failedFuture(new ServiceUnavailableException("Rate limit exceeded"));
+            }
+        });
+        asyncHandler.configure(new ApplicationConfiguration(new String[]{"-t", "-sl", "10"}, new Properties()));
+        graphImporter.addObserver(asyncHandler);
+        handler.setFacebookClient(new SocialMediaClientStub(-1));
+        handler.setTwitterClient(new SocialMediaClientStub(-1));
+
+        try {
+            Node page = graphImporter.addPage("http://mydomain.com/", "random content");
+
+            assertEquals(42, PageNode.getFacebookTotalCount(page));
+            assertFalse(PageNode.hasTwitterCountProperty(page));
+            assertEquals(1, asyncHandler.getNumberOfFailedUpdates());
+        } finally {
+            asyncHandler.shutdown();
+        }
+    }
+
+    public void testThatOnlyTheUnavailableServiceIsQueriedAgainOnRetry() throws Exception {
+        final AtomicInteger facebookLookups = new AtomicInteger();
+        handler.setFacebookClient(new SocialMediaClientStub(42) {
+            @Override
+            public int getSocialCount(String pageUrl) throws Exception {
+                facebookLookups.incrementAndGet();
+                return super.getSocialCount(pageUrl);
+            }
+        });
+        handler.setTwitterClient(new SocialMediaClientStub(-1) {
+            @Override
+            public int getSocialCount(String pageUrl) throws Exception {
+                throw new DeferredUpdateException("Service temporarily unavailable");
+            }
+        });
+
+        Node page = graphImporter.addPage("http://mydomain.com/", "random content");
+        assertEquals(42, PageNode.getFacebookTotalCount(page));
+        assertFalse(PageNode.hasTwitterCountProperty(page));
+        assertEquals(1, handler.getNumberOfDeferredPages());
+
+        handler.setTwitterClient(new SocialMediaClientStub(7));
+        handler.retryDeferredPages();
+        assertEquals(42, PageNode.getFacebookTotalCount(page));
+        assertEquals(7, PageNode.getTwitterCount(page));
+        assertEquals(0, handler.getNumberOfDeferredPages());
+        assertEquals(1, facebookLookups.get());
+    }
+
+    public void testThatBothLookupsAreInFlightAtTheSameTime() throws Exception {
+        final CountDownLatch bothLookupsStarted = new CountDownLatch(2);
+        handler.setFacebookClient(new OverlappingLookupStub(bothLookupsStarted, 42));
+        handler.setTwitterClient(new OverlappingLookupStub(bothLookupsStarted, 7));
+
+        Node page = graphImporter.addPage("http://mydomain.com/", "random content");
+
+        assertEquals(42, PageNode.getFacebookTotalCount(page));
+        assertEquals(7, PageNode.getTwitterCount(page));
+    }
+
+    /**
+     * Only knows the count if the other lookup has started before this one is done.
+     */
+    private static class OverlappingLookupStub extends SocialMediaClientStub {
+        private final CountDownLatch bothLookupsStarted;
+        private final int count;
+
+        OverlappingLookupStub(CountDownLatch bothLookupsStarted, int count) {
+            super(-1);
+            this.bothLookupsStarted = bothLookupsStarted;
+            this.count = count;
+        }
+
+        @Override
+        public CompletableFuture<Integer> getSocialCountAsync(String pageUrl) {
+            bothLookupsStarted.countDown();
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return bothLookupsStarted.await(5, TimeUnit.SECONDS) ? count : -1;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return -1;
+                }
+            });
+        }
+    }
 }
@@ -1,6 +1,17 @@
 package org.neo4japps.webgraph.customhandlers;
 
+import com.google.gson.JsonParseException;
 import junit.framework.TestCase;
+import org.neo4japps.webgraph.importer.DeferredUpdateException;
+import org.neo4japps.webgraph.util.SimpleHttpClient;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FacebookClientTest extends TestCase {
 
@@ -19,29 +30,23 @@ public class FacebookClientTest extends TestCase {
         json = client.doDeserialize("", null);
         assertFalse(json.isInitialized());
 
-        json = client.doDeserialize("nonsense", null);
-        assertFalse(json.isInitialized());
+        assertUnreadable(client, "nonsense");
 
-        json = client.doDeserialize("{}", null);
-        assertFalse(json.isInitialized());
+        assertUnreadable(client, "{}");
 
         json = client.doDeserialize("[{}]", null);
         assertFalse(json.isInitialized());
 
-        json = client.doDeserialize("{nonsense}", null);
-        assertFalse(json.isInitialized());
+        assertUnreadable(client, "{nonsense}");
 
-        json = client.doDeserialize("[{nonsense}]", null);
-        assertFalse(json.isInitialized());
+        assertUnreadable(client, "[{nonsense}]");
 
-        json = client.doDeserialize("{nonsense: 1}", null);
-        assertFalse(json.isInitialized());
+        assertUnreadable(client, "{nonsense: 1}");
 
         json = client.doDeserialize("[{nonsense: 1}]", null);
         assertFalse(json.isInitialized());
 
-        json = client.doDeserialize("{total_count: 1}", null);
-        assertFalse(json.isInitialized());
+        assertUnreadable(client, "{total_count: 1}");
 
         json = client.doDeserialize("[{total_count: 1}]", null);
         assertEquals(1, json.total_count);
@@ -57,4 +62,69 @@ public class FacebookClientTest extends TestCase {
         } catch (ServiceUnavailableException expected) {
         }
     }
+
+    private static void assertUnreadable(FacebookClient client, String jsonString)
+            throws ServiceUnavailableException {
+        try {
+            client.doDeserialize(jsonString, null);
+            fail("Expected JsonParseException for " + jsonString);
+        } catch (JsonParseException expected) {
+        }
+    }
+
+    public void testThatErrorMarkerIsFoundInNestedValues() {
+        FacebookClient client = new FacebookClient(null);
+        try {
+            client.doDeserializeAll("[{\"total_count\":1},{\"error\":{\"messages\":[\"Service temporarily unavailable\"]}}]",
+                    null);
+            fail("Expected ServiceUnavailableException");
+        } catch (ServiceUnavailableException expected) {
+        }
+    }
+
+    public void testThatBatchResponseIsMatchedToRequestedUrls() throws ServiceUnavailableException {
+        FacebookClient client = new FacebookClient(null);
+        List<String> urls = Arrays.asList("http://a.com/", "http://b.com/", "http://c.com/");
+
+        String json = "[{\"url\":\"http://c.com/\",\"total_count\":3},{\"url\":\"http://a.com/\",\"total_count\":1}]";
+        Map<String, Integer> counts = client.toCounts(urls, client.doDeserializeAll(json, null));
+        assertEquals(2, counts.size());
+        assertEquals(1, counts.get("http://a.com/").intValue());
+        assertEquals(3, counts.get("http://c.com/").intValue());
+
+        // without URLs the entries are matched by position
+        json = "[{\"total_count\":1},{\"total_count\":2},{}]";
+        counts = client.toCounts(urls, client.doDeserializeAll(json, null));
+        assertEquals(2, counts.size());
+        assertEquals(2, counts.get("http://b.com/").intValue());
+    }
+
+    public void testThatLookupIsDeferredWhileServiceIsUnavailable() throws Exception {
+        final String unavailable = "{\"error_code\":2,\"error_msg\":\"Service temporarily unavailable\"}";
+        final AtomicInteger requests = new AtomicInteger();
+        SimpleHttpClient httpClient = new SimpleHttpClient(this, 0) {
+            @Override
+            public CompletableFuture<String> httpGetAsync(String uri, int maxContentLength) {
+                String response = requests.incrementAndGet() == 1 ? unavailable : "[{\"total_count\":42}]";
+                return CompletableFuture.supplyAsync(() -> response);
+            }
+        };
+
+        try {
+            FacebookClient client = new FacebookClient(httpClient);
+            try {
+                client.getSocialCountAsync("http://mydomain.com/").get(10, TimeUnit.SECONDS);
+                fail("Expected DeferredUpdateException");
+            } catch (ExecutionException expected) {
+                assertTrue(expected.getCause() instanceof DeferredUpdateException);
+            }
+            assertEquals(1, requests.get());
+            assertEquals(1, client.getRateLimiter().getNumberOfSlowDowns());
+
+            assertEquals(42, client.getSocialCountAsync("http://mydomain.com/").get(10, TimeUnit.SECONDS).intValue());
+            assertEquals(2, requests.get());
+        } finally {
+            httpClient.shutdown();
+        }
+    }
 }
@@ -1,12 +1,20 @@
 package org.neo4japps.webgraph.customhandlers;
 
+import java.io.File;
+import java.nio.file.Files;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 import org.neo4j.graphdb.Node;
 import org.neo4japps.webgraph.importer.AbstractObservableGraphImporter;
 import org.neo4japps.webgraph.importer.ApplicationConfiguration;
+import org.neo4japps.webgraph.importer.DeferredUpdateException;
+import org.neo4japps.webgraph.importer.EventJournal;
 import org.neo4japps.webgraph.importer.PageNode;
 import org.neo4japps.webgraph.importer.TransactionalGraphImporter;
+import org.neo4japps.webgraph.util.CircuitBreaker;
+import org.neo4japps.webgraph.util.DirectoryUtil;
+import org.neo4japps.webgraph.util.SimpleHttpClient;
 
 import junit.framework.TestCase;
 
@@ -18,7 +26,7 @@ public class FacebookEventHandlerTest extends TestCase {
     @Override
     protected void setUp() throws Exception {
         graphImporter = TransactionalGraphImporter.createImpermanentInstance("http://homepage.com/",
-                System.currentTimeMillis(), 100, 500);
+                System.currentTimeMillis(), 500);
         handler = new FacebookEventHandler();
         handler.configure(new ApplicationConfiguration(new String[] { "-t" }, new Properties()));
         graphImporter.addObserver(handler);
@@ -45,4 +53,75 @@ public class FacebookEventHandlerTest extends TestCase {
         assertEquals(-1, PageNode.getFacebookTotalCount(page));
         assertFalse(handler.shouldIgnore(page, graphImporter));
     }
+
+    public void testThatDeferredNodeIsUpdatedOnRetry() throws Exception {
+        handler.setFacebookClient(createUnavailableClient());
+        Node page = graphImporter.addPage("http://mydomain.com/", "random content");
+        assertFalse(PageNode.hasFacebookTotalCountProperty(page));
+        assertEquals(1, handler.getNumberOfFailedUpdates());
+        assertEquals(1, handler.getNumberOfDeferredUpdates());
+        assertEquals(1, handler.getNumberOfDeferredPages());
+
+        // still unavailable
+        handler.retryDeferredPages();
+        assertEquals(2, handler.getNumberOfDeferredUpdates());
+        assertEquals(1, handler.getNumberOfDeferredPages());
+
+        handler.setFacebookClient(new SocialMediaClientStub(42));
+        handler.retryDeferredPages();
+        assertEquals(42, PageNode.getFacebookTotalCount(page));
+        assertEquals(0, handler.getNumberOfFailedUpdates());
+        assertEquals(1, handler.getNumberOfUpdatedPageNodes());
+        assertEquals(0, handler.getNumberOfDeferredPages());
+    }
+
+    public void testThatJournalCommitIsHeldBackUntilDeferredNodeIsRetried() throws Exception {
+        File journalDir = Files.createTempDirectory("event-journal").toFile();
+        try (EventJournal journal = new EventJournal(journalDir.getPath())) {
+            graphImporter.setEventJournal(journal);
+
+            handler.setFacebookClient(createUnavailableClient());
+            graphImporter.addPage("http://mydomain.com/1", "random content");
+            handler.setFacebookClient(new SocialMediaClientStub(42));
+            graphImporter.addPage("http://mydomain.com/2", "random content");
+
+            assertEquals(2, journal.size());
+            assertEquals(0, journal.getCommittedOffset(handler));
+            assertFalse(handler.awaitDeferredUpdates(100, TimeUnit.MILLISECONDS));
+
+            handler.retryDeferredPages();
+            assertEquals(2, journal.getCommittedOffset(handler));
+            assertTrue(handler.awaitDeferredUpdates(0, TimeUnit.MILLISECONDS));
+        } finally {
+            DirectoryUtil.deleteDir(journalDir);
+        }
+    }
+
+    public void testThatUnreachableServiceOpensCircuitBreakerAndDefersPages() throws Exception {
+        SocialApiEmulator emulator = new SocialApiEmulator(2);
+        try {
+            FacebookClient client = new FacebookClient(new SimpleHttpClient(this, 0));
+            client.setApiBaseUrl(emulator.getBaseUrl());
+            handler.setFacebookClient(client);
+            emulator.failNext(Integer.MAX_VALUE, SocialApiEmulator.Failure.CONNECTION_RESET);
+
+            for (int i = 0; i < 8; i++) {
+                graphImporter.addPage("http://mydomain.com/" + i, "random content");
+            }
+            assertEquals(CircuitBreaker.State.OPEN, client.getCircuitBreaker().getState());
+            assertEquals(8, handler.getNumberOfDeferredPages());
+            assertEquals(0, handler.getNumberOfUpdatedPageNodes());
+        } finally {
+            emulator.close();
+        }
+    }
+
+    private static SocialMediaClient createUnavailableClient() {
+        return new SocialMediaClientStub(42) {
+            @Override
+            public int getSocialCount(String pageUrl) throws Exception {
+                throw new DeferredUpdateException("Service temporarily unavailable");
+            }
+        };
+    }
 }
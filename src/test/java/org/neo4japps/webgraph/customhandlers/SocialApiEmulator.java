@@ -0,0 +1,259 @@
+package org.neo4japps.webgraph.customhandlers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the Facebook and Twitter count APIs, so that the real clients can be load tested and their
+ * backoff behaviour verified without network access.
+ * <p>
+ * Point the clients at {@link #getBaseUrl()} with {@link AbstractSocialMediaClient#setApiBaseUrl(String)}, or start
+ * the importer with '-fbApiUrl' and '-twApiUrl'. The emulator can delay responses, refuse requests above a rate
+ * limit with 429 (Too Many Requests), and fail bursts of requests like the real services do when they are overloaded.
+ * <p>
+ * This class is thread-safe.
+ */
+public class SocialApiEmulator implements Closeable {
+
+    /**
+     * Response time of the emulated service.
+     */
+    public interface Latency {
+        long nextMillis();
+
+        static Latency none() {
+            return () -> 0;
+        }
+
+        static Latency fixed(long millis) {
+            return () -> millis;
+        }
+
+        static Latency uniform(long minMillis, long maxMillis) {
+            return () -> ThreadLocalRandom.current().nextLong(minMillis, maxMillis + 1);
+        }
+
+        /**
+         * Mostly fast responses with a long tail, as seen from busy web APIs.
+         */
+        static Latency exponential(long meanMillis) {
+            return () -> Math.round(-meanMillis * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+        }
+    }
+
+    public enum Failure {
+        /**
+         * HTTP 429 (Too Many Requests)
+         */
+        TOO_MANY_REQUESTS,
+        /**
+         * HTTP 503 (Service Unavailable)
+         */
+        SERVICE_UNAVAILABLE,
+        /**
+         * HTTP 200 with the error message the API sends when it is overloaded
+         */
+        UNAVAILABLE_BODY,
+        /**
+         * The connection is closed without any response
+         */
+        CONNECTION_RESET
+    }
+
+    public static final String FACEBOOK_PATH = "/restserver.php";
+    public static final String TWITTER_PATH = "/1/urls/count.json";
+
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    private static final int SC_SERVICE_UNAVAILABLE = 503;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private volatile Latency latency = Latency.none();
+    private volatile ToIntFunction<String> counts = url -> url.length();
+
+    // fixed one second windows
+    private int rateLimit;
+    private long windowStart;
+    private int requestsInWindow;
+
+    private int failuresLeft;
+    private Failure failure;
+
+    private final AtomicLong numberOfRequests = new AtomicLong();
+    private final AtomicLong numberOfThrottledRequests = new AtomicLong();
+    private final AtomicLong numberOfFailedRequests = new AtomicLong();
+
+    /**
+     * Starts the emulator on a free local port.
+     *
+     * @param threads the number of requests served concurrently
+     */
+    public SocialApiEmulator(int threads) throws IOException {
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "SocialApiEmulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(FACEBOOK_PATH, exchange -> serve(exchange, true));
+        server.createContext(TWITTER_PATH, exchange -> serve(exchange, false));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return the base URL of both emulated APIs
+     */
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public void setLatency(Latency latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * @param counts the count returned for each URL. Defaults to the length of the URL.
+     */
+    public void setCounts(ToIntFunction<String> counts) {
+        this.counts = counts;
+    }
+
+    /**
+     * @param requestsPerSecond requests above this rate are refused with 429. 0 means no limit.
+     */
+    public synchronized void setRateLimit(int requestsPerSecond) {
+        this.rateLimit = requestsPerSecond;
+    }
+
+    /**
+     * Fails the next requests, e.g. to emulate an outage.
+     */
+    public synchronized void failNext(int requests, Failure failure) {
+        this.failuresLeft = requests;
+        this.failure = failure;
+    }
+
+    private void serve(HttpExchange exchange, boolean isFacebook) throws IOException {
+        numberOfRequests.incrementAndGet();
+        try {
+            final long delay = latency.nextMillis();
+            if (delay > 0) {
+                TimeUnit.MILLISECONDS.sleep(delay);
+            }
+
+            final Failure failure = nextFailure();
+            if (failure == Failure.CONNECTION_RESET) {
+                // closing the exchange without sending the response headers drops the connection
+                return;
+            } else if (failure == Failure.TOO_MANY_REQUESTS) {
+                respond(exchange, SC_TOO_MANY_REQUESTS, "{\"error\":\"Too Many Requests\"}");
+            } else if (failure == Failure.SERVICE_UNAVAILABLE) {
+                respond(exchange, SC_SERVICE_UNAVAILABLE, "{\"error\":\"Service Unavailable\"}");
+            } else if (failure == Failure.UNAVAILABLE_BODY) {
+                respond(exchange, 200, isFacebook
+                        ? "{\"error_code\":2,\"error_msg\":\"Service temporarily unavailable\"}"
+                        : "{\"errors\":[{\"code\":48,\"message\":\"Unable to access URL counting services\"}]}");
+            } else if (isFacebook) {
+                respond(exchange, 200, facebookResponse(queryValue(exchange, "urls=")));
+            } else {
+                respond(exchange, 200, twitterResponse(queryValue(exchange, "url=")));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private synchronized Failure nextFailure() {
+        if (rateLimit > 0) {
+            final long now = System.nanoTime();
+            if (now - windowStart >= TimeUnit.SECONDS.toNanos(1)) {
+                windowStart = now;
+                requestsInWindow = 0;
+            }
+            if (++requestsInWindow > rateLimit) {
+                numberOfThrottledRequests.incrementAndGet();
+                return Failure.TOO_MANY_REQUESTS;
+            }
+        }
+
+        if (failuresLeft > 0) {
+            failuresLeft--;
+            numberOfFailedRequests.incrementAndGet();
+            return failure;
+        }
+        return null;
+    }
+
+    /**
+     * The clients don't encode the page URLs, so the value is everything after the parameter name.
+     */
+    private static String queryValue(HttpExchange exchange, String parameter) {
+        final String query = exchange.getRequestURI().getRawQuery();
+        final int start = query == null ? -1 : query.indexOf(parameter);
+        return start < 0 ? "" : query.substring(start + parameter.length());
+    }
+
+    private String facebookResponse(String urls) {
+        final StringBuilder json = new StringBuilder("[");
+        for (String url : urls.split(",")) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append("{\"url\":\"").append(escape(url)).append("\",\"total_count\":")
+                    .append(counts.applyAsInt(url)).append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    private String twitterResponse(String url) {
+        return "{\"count\":" + counts.applyAsInt(url) + ",\"url\":\"" + escape(url) + "\"}";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public long getNumberOfRequests() {
+        return numberOfRequests.get();
+    }
+
+    public long getNumberOfThrottledRequests() {
+        return numberOfThrottledRequests.get();
+    }
+
+    public long getNumberOfFailedRequests() {
+        return numberOfFailedRequests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,162 @@
+package org.neo4japps.webgraph.customhandlers;
+
+import junit.framework.TestCase;
+import org.neo4japps.webgraph.importer.DeferredUpdateException;
+import org.neo4japps.webgraph.util.CircuitBreaker;
+import org.neo4japps.webgraph.util.SimpleHttpClient;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class SocialApiEmulatorTest extends TestCase {
+
+    private SocialApiEmulator emulator;
+    private SimpleHttpClient httpClient;
+    private FacebookClient facebookClient;
+    private TwitterClient twitterClient;
+
+    @Override
+    protected void setUp() throws Exception {
+        emulator = new SocialApiEmulator(4);
+        emulator.setCounts(url -> url.endsWith("/b") ? 2 : 1);
+
+        httpClient = new SimpleHttpClient(this, 0);
+        facebookClient = new FacebookClient(httpClient);
+        facebookClient.setApiBaseUrl(emulator.getBaseUrl());
+        twitterClient = new TwitterClient(httpClient);
+        twitterClient.setApiBaseUrl(emulator.getBaseUrl());
+    }
+
+    @Override
+    protected void tearDown() {
+        httpClient.shutdown();
+        emulator.close();
+    }
+
+    public void testThatRealClientsGetCountsFromEmulator() throws Exception {
+        assertEquals(1, facebookClient.getSocialCount("http://a.com/a"));
+        assertEquals(2, twitterClient.getSocialCount("http://a.com/b"));
+        assertEquals(2, facebookClient.getSocialCountAsync("http://a.com/b").get(10, TimeUnit.SECONDS).intValue());
+
+        Map<String, Integer> counts = facebookClient.getSocialCounts(Arrays.asList("http://a.com/a", "http://a.com/b"));
+        assertEquals(1, counts.get("http://a.com/a").intValue());
+        assertEquals(2, counts.get("http://a.com/b").intValue());
+
+        assertEquals(4, emulator.getNumberOfRequests());
+    }
+
+    public void testThatThrottledAndUnavailableResponsesDeferTheLookup() throws Exception {
+        for (SocialApiEmulator.Failure failure : SocialApiEmulator.Failure.values()) {
+            emulator.failNext(1, failure);
+            assertDeferred(facebookClient, "http://a.com/" + failure);
+            emulator.failNext(1, failure);
+            assertDeferred(twitterClient, "http://a.com/" + failure);
+        }
+        assertEquals(2 * SocialApiEmulator.Failure.values().length, emulator.getNumberOfFailedRequests());
+        assertEquals(SocialApiEmulator.Failure.values().length, facebookClient.getRateLimiter().getNumberOfSlowDowns());
+
+        // the service has recovered
+        assertEquals(1, facebookClient.getSocialCount("http://a.com/a"));
+    }
+
+    public void testThatOutageOpensCircuitBreaker() throws Exception {
+        emulator.failNext(Integer.MAX_VALUE, SocialApiEmulator.Failure.SERVICE_UNAVAILABLE);
+
+        for (int i = 0; i < 5; i++) {
+            assertDeferred(twitterClient, "http://a.com/" + i);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, twitterClient.getCircuitBreaker().getState());
+
+        // no more requests are sent while the breaker is open
+        assertDeferred(twitterClient, "http://a.com/a");
+        assertEquals(5, emulator.getNumberOfRequests());
+        assertEquals(1, twitterClient.getCircuitBreaker().getNumberOfDeniedCalls());
+    }
+
+    public void testThatConnectionErrorsOpenCircuitBreaker() throws Exception {
+        emulator.failNext(Integer.MAX_VALUE, SocialApiEmulator.Failure.CONNECTION_RESET);
+
+        for (int i = 0; i < 3; i++) {
+            assertDeferred(facebookClient, "http://a.com/" + i);
+        }
+        for (int i = 3; i < 5; i++) {
+            try {
+                facebookClient.getSocialCount("http://a.com/" + i);
+                fail("Expected DeferredUpdateException");
+            } catch (DeferredUpdateException expected) {
+            }
+        }
+        assertEquals(CircuitBreaker.State.OPEN, facebookClient.getCircuitBreaker().getState());
+    }
+
+    public void testThatFailingTrialCallReopensCircuitBreaker() throws Exception {
+        // no open duration, so every call after the breaker opened is a trial call
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, 1, 0.5, 0, TimeUnit.MILLISECONDS);
+        BrokenParserClient client = new BrokenParserClient(httpClient, emulator.getBaseUrl(), circuitBreaker);
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.onFailure();
+
+        try {
+            client.getSocialCount("http://a.com/a");
+            fail("Expected AssertionError");
+        } catch (AssertionError expected) {
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        try {
+            client.getSocialCountAsync("http://a.com/b").get(10, TimeUnit.SECONDS);
+            fail("Expected ExecutionException");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof AssertionError);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        // the breaker still lets trial calls through
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertEquals(0, circuitBreaker.getNumberOfDeniedCalls());
+    }
+
+    public void testThatRequestsAboveRateLimitAreThrottled() throws Exception {
+        emulator.setRateLimit(2);
+
+        assertEquals(1, twitterClient.getSocialCount("http://a.com/a"));
+        assertEquals(2, twitterClient.getSocialCount("http://a.com/b"));
+        assertDeferred(twitterClient, "http://a.com/c");
+        assertEquals(1, emulator.getNumberOfThrottledRequests());
+    }
+
+    private static void assertDeferred(AbstractSocialMediaClient client, String pageUrl) throws Exception {
+        try {
+            client.getSocialCountAsync(pageUrl).get(10, TimeUnit.SECONDS);
+            fail("Expected DeferredUpdateException");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof DeferredUpdateException);
+        }
+    }
+
+    /**
+     * A client with a bug in its parser
+     */
+    private static final class BrokenParserClient extends AbstractSocialMediaClient {
+        BrokenParserClient(SimpleHttpClient httpClient, String apiBaseUrl, CircuitBreaker circuitBreaker) {
+            super(httpClient, apiBaseUrl, circuitBreaker);
+        }
+
+        @Override
+        protected String getSocialApiUrl() {
+            return getApiBaseUrl() + SocialApiEmulator.TWITTER_PATH + "?url=";
+        }
+
+        @Override
+        protected String cleanUp(String url) {
+            return url;
+        }
+
+        @Override
+        protected SocialJsonResponse deserialize(String jsonString, String url) {
+            throw new AssertionError("Parser bug");
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.neo4japps.webgraph.customhandlers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4japps.webgraph.util.DirectoryUtil;
+
+import junit.framework.TestCase;
+
+public class SocialCountCacheTest extends TestCase {
+    private static final long TTL = TimeUnit.HOURS.toMillis(1);
+
+    private File cacheDir;
+
+    @Override
+    protected void setUp() throws IOException {
+        cacheDir = Files.createTempDirectory("social-cache").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        DirectoryUtil.deleteDir(cacheDir);
+    }
+
+    public void testThatCountsSurviveReopening() throws IOException {
+        SocialCountCache cache = SocialCountCache.open(cacheDir, "facebook", 1024);
+        assertNull(cache.get("http://mydomain.com/", TTL));
+        cache.put("http://mydomain.com/", 42);
+        cache.put("http://mydomain.com/page", 7);
+        assertEquals(42, cache.get("http://mydomain.com/", TTL).intValue());
+
+        // handlers of the same service share the cache
+        SocialCountCache sharedCache = SocialCountCache.open(cacheDir, "facebook", 1024);
+        assertSame(cache, sharedCache);
+        sharedCache.close();
+        cache.close();
+
+        cache = SocialCountCache.open(cacheDir, "facebook", 1024);
+        try {
+            assertEquals(42, cache.get("http://mydomain.com/", TTL).intValue());
+            assertEquals(7, cache.get("http://mydomain.com/page", TTL).intValue());
+            assertNull(cache.get("http://mydomain.com/other", TTL));
+        } finally {
+            cache.close();
+        }
+    }
+
+    public void testThatExpiredCountsAreIgnored() throws IOException {
+        SocialCountCache cache = SocialCountCache.open(cacheDir, "twitter", 1024);
+        try {
+            long twoHoursAgo = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2);
+            cache.put("http://mydomain.com/", 42, twoHoursAgo);
+            assertNull(cache.get("http://mydomain.com/", TTL));
+            assertEquals(42, cache.get("http://mydomain.com/", 3 * TTL).intValue());
+        } finally {
+            cache.close();
+        }
+    }
+
+    public void testThatOldestEntryIsReplacedWhenCacheIsFull() throws IOException {
+        // the minimum capacity, so that every lookup probes all slots
+        SocialCountCache cache = SocialCountCache.open(cacheDir, "facebook", 16);
+        try {
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < 16; i++) {
+                cache.put("http://mydomain.com/" + i, i, now - TimeUnit.MINUTES.toMillis(i));
+            }
+            cache.put("http://mydomain.com/new", 100);
+
+            assertEquals(100, cache.get("http://mydomain.com/new", TTL).intValue());
+            assertNull(cache.get("http://mydomain.com/15", TTL));
+            assertEquals(14, cache.get("http://mydomain.com/14", TTL).intValue());
+        } finally {
+            cache.close();
+        }
+    }
+
+    public void testThatCachingClientOnlyAsksForMissingCounts() throws Exception {
+        SocialCountCache cache = SocialCountCache.open(cacheDir, "facebook", 1024);
+        cache.put("http://mydomain.com/cached", 7);
+
+        CachingSocialMediaClient client = new CachingSocialMediaClient(new SocialMediaClientStub(42), cache, TTL);
+        try {
+            assertEquals(7, client.getSocialCount("http://mydomain.com/cached"));
+            assertEquals(42, client.getSocialCount("http://mydomain.com/new"));
+            assertEquals(42, client.getSocialCount("http://mydomain.com/new"));
+
+            assertEquals(2, client.getCacheHits());
+            assertEquals(1, client.getCacheMisses());
+            assertEquals(1, client.getCacheUpdates());
+        } finally {
+            client.shutdown();
+        }
+    }
+}
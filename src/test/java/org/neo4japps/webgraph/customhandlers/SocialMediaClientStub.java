@@ -16,4 +16,9 @@ class SocialMediaClientStub implements SocialMediaClient {
     public void setPolitenessDelay(int milliseconds) {
         // no-op
     }
+
+    @Override
+    public void setMaxBurst(int requests) {
+        // no-op
+    }
 }
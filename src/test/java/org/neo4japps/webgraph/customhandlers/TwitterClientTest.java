@@ -1,5 +1,6 @@
 package org.neo4japps.webgraph.customhandlers;
 
+import com.google.gson.JsonParseException;
 import junit.framework.TestCase;
 
 public class TwitterClientTest extends TestCase {
@@ -13,14 +14,12 @@ public class TwitterClientTest extends TestCase {
         json = client.doDeserialize("", null);
         assertFalse(json.isInitialized());
 
-        json = client.doDeserialize("nonsense", null);
-        assertFalse(json.isInitialized());
+        assertUnreadable(client, "nonsense");
 
         json = client.doDeserialize("{}", null);
         assertFalse(json.isInitialized());
 
-        json = client.doDeserialize("{nonsense}", null);
-        assertFalse(json.isInitialized());
+        assertUnreadable(client, "{nonsense}");
 
         json = client.doDeserialize("{nonsense: 1}", null);
         assertFalse(json.isInitialized());
@@ -41,4 +40,21 @@ public class TwitterClientTest extends TestCase {
         } catch (ServiceUnavailableException expected) {
         }
     }
+
+    private static void assertUnreadable(TwitterClient client, String jsonString) throws ServiceUnavailableException {
+        try {
+            client.doDeserialize(jsonString, null);
+            fail("Expected JsonParseException for " + jsonString);
+        } catch (JsonParseException expected) {
+        }
+    }
+
+    public void testThatErrorMarkerIsFoundOutsideOfJson() {
+        TwitterClient client = new TwitterClient(null);
+        try {
+            client.doDeserialize("<html><body>Unable to access URL counting services</body></html>", null);
+            fail("Expected ServiceUnavailableException");
+        } catch (ServiceUnavailableException expected) {
+        }
+    }
 }
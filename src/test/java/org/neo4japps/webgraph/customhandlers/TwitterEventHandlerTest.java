@@ -18,7 +18,7 @@ public class TwitterEventHandlerTest extends TestCase {
     @Override
     protected void setUp() throws Exception {
         graphImporter = TransactionalGraphImporter.createImpermanentInstance("http://homepage.com/",
-                System.currentTimeMillis(), 100, 500);
+                System.currentTimeMillis(), 500);
         handler = new TwitterEventHandler();
         handler.configure(new ApplicationConfiguration(new String[] { "-t" }, new Properties()));
         graphImporter.addObserver(handler);
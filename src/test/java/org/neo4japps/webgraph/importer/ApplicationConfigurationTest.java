@@ -23,16 +23,36 @@ public class ApplicationConfigurationTest extends TestCase {
         assertEquals(-1, appConfig.getMaxPagesToFetch());
         assertEquals(10, appConfig.getMaxDepthOfCrawling());
         assertEquals(50, appConfig.getPolitenessDelay());
-        assertEquals(500, appConfig.getImportProgressReportFrequency());
+        assertEquals(10, appConfig.getProgressReportInterval());
 
         assertNull(appConfig.getProxyHost());
         assertEquals(8080, appConfig.getProxyPort());
         assertNull(appConfig.getProxyUsername());
         assertNull(appConfig.getProxyPassword());
 
+        assertNull(appConfig.getRecordArchive());
+        assertNull(appConfig.getReplayArchive());
+
         assertFalse(appConfig.isUseTransactions());
         assertEquals(500, appConfig.getTransactionSize());
 
+        assertFalse(appConfig.isEnrichOnly());
+        assertFalse(appConfig.isJournalEvents());
+        assertEquals("./event-journal", appConfig.getEventJournalDir());
+
+        assertFalse(appConfig.isAsynchronousObservers());
+        assertEquals(0, appConfig.getObserverQueueCapacity());
+        assertEquals(4, appConfig.getObserverThreads());
+        assertEquals(ObserverDispatcher.OverflowPolicy.BLOCK, appConfig.getObserverOverflowPolicy());
+
+        assertEquals(1, appConfig.getSocialApiBurst());
+        assertNull(appConfig.getSocialCacheDir());
+        assertEquals(24, appConfig.getFacebookCacheTtl());
+        assertEquals(24, appConfig.getTwitterCacheTtl());
+        assertFalse(appConfig.isBatchFacebookRequests());
+        assertEquals(1, appConfig.getFacebookBatchSize());
+        assertEquals(100, appConfig.getFacebookBatchWait());
+
         assertEquals(700, appConfig.getMaxConnectionsPerHost());
         assertEquals(700, appConfig.getMaxTotalConnections());
         assertFalse(appConfig.isRespectRobotsTxt());
@@ -66,26 +86,32 @@ public class ApplicationConfigurationTest extends TestCase {
     }
 
     public void testOptionsWithOptionalArguments() throws Exception {
-        ApplicationConfiguration appConfig = new ApplicationConfiguration(new String[]{"-r", "-b", "-s", "-t"},
+        ApplicationConfiguration appConfig = new ApplicationConfiguration(new String[]{"-r", "-b", "-s", "-t", "-j", "-e"},
                 new Properties());
         assertTrue(appConfig.isResumableImport());
         assertTrue(appConfig.isIncludeBinaryContentInCrawling());
         assertTrue(appConfig.isIncludeHttpsPages());
         assertTrue(appConfig.isUseTransactions());
+        assertTrue(appConfig.isJournalEvents());
+        assertTrue(appConfig.isEnrichOnly());
 
         appConfig = new ApplicationConfiguration(
-                new String[]{"-r", "true", "-b", "true", "-s", "true", "-t", "true"}, new Properties());
+                new String[]{"-r", "true", "-b", "true", "-s", "true", "-t", "true", "-j", "true", "-e", "true"}, new Properties());
         assertTrue(appConfig.isResumableImport());
         assertTrue(appConfig.isIncludeBinaryContentInCrawling());
         assertTrue(appConfig.isIncludeHttpsPages());
         assertTrue(appConfig.isUseTransactions());
+        assertTrue(appConfig.isJournalEvents());
+        assertTrue(appConfig.isEnrichOnly());
 
         appConfig = new ApplicationConfiguration(
-                new String[]{"-r", "false", "-b", "false", "-s", "false", "-t", "false"}, new Properties());
+                new String[]{"-r", "false", "-b", "false", "-s", "false", "-t", "false", "-j", "false", "-e", "false"}, new Properties());
         assertFalse(appConfig.isResumableImport());
         assertFalse(appConfig.isIncludeBinaryContentInCrawling());
         assertFalse(appConfig.isIncludeHttpsPages());
         assertFalse(appConfig.isUseTransactions());
+        assertFalse(appConfig.isJournalEvents());
+        assertFalse(appConfig.isEnrichOnly());
     }
 
     public void testOptionsWithRequiredArguments() throws Exception {
@@ -93,14 +119,26 @@ public class ApplicationConfigurationTest extends TestCase {
         doTestRequiredArgument("f");
         doTestRequiredArgument("d");
         doTestRequiredArgument("p");
-        doTestRequiredArgument("rf");
+        doTestRequiredArgument("ri");
         doTestRequiredArgument("ts");
+        doTestRequiredArgument("oq");
+        doTestRequiredArgument("ot");
+        doTestRequiredArgument("op");
+        doTestRequiredArgument("sb");
+        doTestRequiredArgument("socialCacheDir");
+        doTestRequiredArgument("fbCacheTtl");
+        doTestRequiredArgument("twCacheTtl");
+        doTestRequiredArgument("fbb");
+        doTestRequiredArgument("fbw");
 
         doTestRequiredArgument("proxyHost");
         doTestRequiredArgument("proxyPort");
         doTestRequiredArgument("proxyUsername");
         doTestRequiredArgument("proxyPassword");
 
+        doTestRequiredArgument("recordTo");
+        doTestRequiredArgument("replayFrom");
+
         doTestRequiredArgument("config");
     }
 
@@ -115,18 +153,49 @@ public class ApplicationConfigurationTest extends TestCase {
 
     public void testArgumentValidation() throws Exception {
         doTestZeroOrPositiveArgumentValueValidation("p");
+        doTestZeroOrPositiveArgumentValueValidation("oq");
+        doTestZeroOrPositiveArgumentValueValidation("fbw");
+        doTestZeroOrPositiveArgumentValueValidation("fbCacheTtl");
+        doTestZeroOrPositiveArgumentValueValidation("twCacheTtl");
 
         doTestPositiveArgumentValueValidation("c");
         doTestPositiveArgumentValueValidation("f");
         doTestPositiveArgumentValueValidation("d");
-        doTestPositiveArgumentValueValidation("rf");
+        doTestPositiveArgumentValueValidation("ri");
         doTestPositiveArgumentValueValidation("ts");
+        doTestPositiveArgumentValueValidation("ot");
+        doTestPositiveArgumentValueValidation("sb");
+        doTestPositiveArgumentValueValidation("fbb");
         doTestPositiveArgumentValueValidation("proxyPort");
 
         doTestUnlimitedArgumentValueValidation("f");
         doTestUnlimitedArgumentValueValidation("d");
     }
 
+    public void testThatRecordingAndReplayingCannotBeCombined() throws Exception {
+        try {
+            new ApplicationConfiguration(new String[]{"-recordTo", "a.warc.gz", "-replayFrom", "b.warc.gz"},
+                    new Properties());
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("'recordTo'"));
+        }
+    }
+
+    public void testObserverOverflowPolicy() throws Exception {
+        ApplicationConfiguration appConfig = new ApplicationConfiguration(
+                new String[]{"-oq", "1000", "-op", "spill"}, new Properties());
+        assertTrue(appConfig.isAsynchronousObservers());
+        assertEquals(ObserverDispatcher.OverflowPolicy.SPILL, appConfig.getObserverOverflowPolicy());
+
+        try {
+            new ApplicationConfiguration(new String[]{"-op", "ignore"}, new Properties());
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("'op'"));
+        }
+    }
+
     private void doTestUnlimitedArgumentValueValidation(String argument) throws Exception {
         new ApplicationConfiguration(new String[]{"-" + argument, "-1"}, new Properties());
     }
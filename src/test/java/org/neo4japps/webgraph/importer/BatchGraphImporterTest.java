@@ -1,9 +1,21 @@
 package org.neo4japps.webgraph.importer;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
 import org.neo4japps.webgraph.util.DirectoryUtil;
 
 public class BatchGraphImporterTest extends GraphImporterTestBase {
@@ -59,7 +71,7 @@ public class BatchGraphImporterTest extends GraphImporterTestBase {
 
     private static void createGraphImporter() {
         importer = new BatchGraphImporter(ApplicationConfiguration.DEFAULT_DB_DIR_LOCATION, ROOT_URL,
-                System.currentTimeMillis(), 100, 1);
+                System.currentTimeMillis(), 1);
     }
 
     private static void importRootPage() {
@@ -72,4 +84,67 @@ public class BatchGraphImporterTest extends GraphImporterTestBase {
             importer.shutdown();
         }
     }
+
+    @Test
+    public void testThatConcurrentThreadsDontLoseUpdatesWhenNodesGetEvictedFromTheCache() throws Exception {
+        // the batch database caches 10000 nodes, and writes the evicted ones to the store
+        final int numberOfPages = 12000;
+        final int numberOfThreads = 4;
+
+        File storeDir = Files.createTempDirectory("batch-graph").toFile();
+        try {
+            BatchGraphImporter batchImporter = new BatchGraphImporter(storeDir.getPath(), ROOT_URL,
+                    System.currentTimeMillis(), 1);
+            final long highestNodeId;
+            try {
+                for (int i = 0; i < numberOfPages; i++) {
+                    batchImporter.addPage(ROOT_URL + i, "content");
+                }
+                highestNodeId = batchImporter.getHighestNodeId();
+                assertTrue(highestNodeId >= numberOfPages);
+
+                // every thread loads all nodes, and updates its share of them
+                ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < numberOfThreads; t++) {
+                    final int thread = t;
+                    futures.add(executor.submit(() -> {
+                        GraphLock lock = batchImporter.getGraphLock();
+                        for (long id = 1; id <= highestNodeId; id++) {
+                            Node node = batchImporter.getNodeById(id);
+                            if (id % numberOfThreads == thread) {
+                                PageNode.setFacebookTotalCount(node, (int) id, lock);
+                            } else {
+                                PageNode.getUrl(node, lock);
+                            }
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                executor.shutdown();
+            } finally {
+                batchImporter.shutdown();
+            }
+
+            BatchGraphImporter reopenedImporter = new BatchGraphImporter(storeDir.getPath(), ROOT_URL,
+                    System.currentTimeMillis(), 1);
+            try {
+                int checkedPages = 0;
+                for (long id = 1; id <= highestNodeId; id++) {
+                    Node node = reopenedImporter.getNodeById(id);
+                    if (PageNode.hasUrlProperty(node)) {
+                        assertEquals("facebook count of node " + id, (int) id, PageNode.getFacebookTotalCount(node));
+                        checkedPages++;
+                    }
+                }
+                assertEquals(numberOfPages, checkedPages);
+            } finally {
+                reopenedImporter.shutdown();
+            }
+        } finally {
+            DirectoryUtil.deleteDir(storeDir.getPath());
+        }
+    }
 }
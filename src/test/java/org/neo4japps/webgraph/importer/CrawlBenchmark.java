@@ -0,0 +1,147 @@
+package org.neo4japps.webgraph.importer;
+
+import org.neo4j.graphdb.Node;
+import org.neo4japps.webgraph.util.StringFormatUtil;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * End-to-end crawl and import benchmark. Generates a {@link SyntheticSite}, serves it from a local
+ * {@link SyntheticSiteServer} and runs the whole {@link App} against it, once with the batch importer and once with
+ * the transactional importer.
+ * <p>
+ * Run it from the test classpath, e.g.:
+ * <p>
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.neo4japps.webgraph.importer.CrawlBenchmark -Dexec.args="5000 4"
+ * <p>
+ * Arguments (all optional): number of pages (default 2000), number of crawler threads (default 4). Note that this
+ * deletes and re-creates the graph.db and crawl-data directories in the current working directory, like any import.
+ */
+public class CrawlBenchmark {
+
+    /**
+     * Cheap observer that reads every notified page, so that the benchmark includes the event dispatching overhead.
+     */
+    public static class BenchmarkObserver extends GraphObserver {
+        @Override
+        protected int getTransactionSize() {
+            return 20;
+        }
+
+        @Override
+        protected boolean shouldIgnore(Node page, GraphImporter graphImporter) {
+            return false;
+        }
+
+        @Override
+        protected Node updatePage(Node page, GraphImporter graphImporter) {
+            PageNode.getUrl(page, graphImporter.getGraphLock());
+            return page;
+        }
+    }
+
+    static class Result {
+        final String mode;
+        final double elapsedSeconds;
+        final int pagesVisited;
+        final int nodes;
+        final int links;
+        final double averageObserverLagMillis;
+        final double maxObserverLagMillis;
+
+        Result(String mode, double elapsedSeconds, int pagesVisited, int nodes, int links,
+               double averageObserverLagMillis, double maxObserverLagMillis) {
+            this.mode = mode;
+            this.elapsedSeconds = elapsedSeconds;
+            this.pagesVisited = pagesVisited;
+            this.nodes = nodes;
+            this.links = links;
+            this.averageObserverLagMillis = averageObserverLagMillis;
+            this.maxObserverLagMillis = maxObserverLagMillis;
+        }
+
+        @Override
+        public String toString() {
+            return mode + ": " + StringFormatUtil.formatSeconds(elapsedSeconds) + " secs, " + pagesVisited
+                    + " pages visited (" + StringFormatUtil.formatNodesPerSecond(pagesVisited / elapsedSeconds)
+                    + " pages/sec), " + nodes + " nodes, " + links + " links ("
+                    + StringFormatUtil.formatNodesPerSecond(links / elapsedSeconds) + " links/sec), observer lag "
+                    + StringFormatUtil.formatMillis(averageObserverLagMillis) + " ms average, "
+                    + StringFormatUtil.formatMillis(maxObserverLagMillis) + " ms max";
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        final int crawlers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        SyntheticSite site = new SyntheticSite.Builder().pageCount(pageCount).build();
+        System.out.println("Synthetic site: " + site.getPageCount() + " pages, " + site.getNumberOfLinks() + " links");
+
+        List<Result> results = new ArrayList<>();
+        try (SyntheticSiteServer server = new SyntheticSiteServer(site, crawlers * 2)) {
+            server.start();
+            File configFile = writeConfigFile(server.getRootUrl());
+            try {
+                results.add(run("batch", configFile, crawlers, false));
+                results.add(run("transactional", configFile, crawlers, true));
+            } finally {
+                configFile.delete();
+            }
+        }
+
+        System.out.println();
+        for (Result result : results) {
+            System.out.println(result);
+        }
+        // crawler4j leaves non-daemon threads behind
+        System.exit(0);
+    }
+
+    private static File writeConfigFile(String rootUrl) throws IOException {
+        Properties props = new Properties();
+        props.setProperty(ApplicationConfiguration.ROOT_URL_KEY, rootUrl);
+        props.setProperty(ApplicationConfiguration.SEED_URLS_KEY, rootUrl);
+        props.setProperty(ApplicationConfiguration.DOMAINS_TO_CRAWL_KEY, "localhost");
+        props.setProperty(ApplicationConfiguration.SUBDOMAINS_TO_IGNORE_KEY, "");
+        props.setProperty(ApplicationConfiguration.EVENT_HANDLERS_KEY, BenchmarkObserver.class.getName());
+
+        File configFile = File.createTempFile("benchmark", ".properties");
+        try (Writer writer = new FileWriter(configFile)) {
+            props.store(writer, "Crawl benchmark");
+        }
+        return configFile;
+    }
+
+    private static Result run(String mode, File configFile, int crawlers, boolean useTransactions) throws Exception {
+        HtmlOnlyCrawler.resetGlobalPageCount();
+
+        String[] args = {"-config", configFile.getPath(), "-c", String.valueOf(crawlers), "-p", "0", "-d", "-1",
+                "-t", String.valueOf(useTransactions)};
+        App app = new App(args, true);
+
+        final long start = System.nanoTime();
+        app.run();
+        final double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        double averageLag = 0;
+        double maxLag = 0;
+        for (GraphObserver observer : app.getGraphObservers()) {
+            averageLag = Math.max(averageLag, observer.getAverageEventLagMillis());
+            maxLag = Math.max(maxLag, observer.getMaxEventLagMillis());
+        }
+
+        GraphImporter importer = app.getGraphImporter();
+        Result result = new Result(mode, elapsedSeconds, HtmlOnlyCrawler.getGlobalPageCount(),
+                importer.getNumberOfPageNodes(), importer.getNumberOfLinks(), averageLag, maxLag);
+        System.out.println(result);
+        return result;
+    }
+}
@@ -0,0 +1,214 @@
+package org.neo4japps.webgraph.importer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.test.TestGraphDatabaseFactory;
+import org.neo4japps.webgraph.util.DirectoryUtil;
+
+public class EventJournalTest {
+    private static final String ROOT_URL = "http://homepage.com/";
+
+    private File journalDir;
+    private GraphDatabaseService graphDb;
+
+    @Before
+    public void setUp() throws IOException {
+        journalDir = Files.createTempDirectory("event-journal").toFile();
+        graphDb = new TestGraphDatabaseFactory().newImpermanentDatabaseBuilder().newGraphDatabase();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        graphDb.shutdown();
+        DirectoryUtil.deleteDir(journalDir);
+    }
+
+    @Test
+    public void testThatCommittedOffsetOnlyAdvancesOverContiguousEvents() throws IOException {
+        GraphObserver observer = new GraphImporterTestBase.TestGraphObserver();
+        List<PageSnapshot> pages = createPages(6);
+
+        try (EventJournal journal = new EventJournal(journalDir.getPath())) {
+            assertEquals(0, journal.append(pages.subList(0, 2)));
+            assertEquals(2, journal.append(pages.subList(2, 3)));
+            assertEquals(3, journal.append(pages.subList(3, 6)));
+            assertEquals(6, journal.size());
+
+            assertArrayEquals(new long[]{pages.get(2).getId(), pages.get(3).getId()}, journal.read(2, 2));
+            assertEquals(1, journal.read(5, 10).length);
+
+            journal.commit(observer, 2, 3);
+            assertEquals(0, journal.getCommittedOffset(observer));
+            journal.commit(observer, 0, 2);
+            assertEquals(3, journal.getCommittedOffset(observer));
+        }
+
+        // reopening keeps the journal and the offset, since not everything has been committed
+        try (EventJournal journal = new EventJournal(journalDir.getPath())) {
+            assertEquals(6, journal.size());
+            assertEquals(3, journal.getCommittedOffset(observer));
+            journal.commit(observer, 3, 6);
+        }
+
+        // everything was committed, so the journal got truncated
+        try (EventJournal journal = new EventJournal(journalDir.getPath())) {
+            assertEquals(0, journal.size());
+            assertEquals(0, journal.getCommittedOffset(observer));
+        }
+    }
+
+    @Test
+    public void testThatUnprocessedEventsAreReplayed() throws IOException {
+        TransactionalGraphImporter importer = createImporter();
+        GraphImporterTestBase.TestGraphObserver observer = new GraphImporterTestBase.TestGraphObserver();
+        importer.addObserver(observer);
+
+        EventJournal journal = new EventJournal(journalDir.getPath());
+        importer.setEventJournal(journal);
+
+        importer.addPage(ROOT_URL, "root");
+        importer.addPage(ROOT_URL + "1", "content 1");
+        assertEquals(2, observer.getNumberOfUpdatedPageNodes());
+
+        // simulate an observer that stops before the import
+        observer.shutdown();
+        importer.addPage(ROOT_URL + "2", "content 2");
+        importer.addPage(ROOT_URL + "3", "content 3");
+        importer.stop();
+        journal.close();
+
+        // resume
+        TransactionalGraphImporter resumedImporter = createImporter();
+        GraphImporterTestBase.TestGraphObserver resumedObserver = new GraphImporterTestBase.TestGraphObserver();
+        resumedImporter.addObserver(resumedObserver);
+        journal = new EventJournal(journalDir.getPath());
+        resumedImporter.setEventJournal(journal);
+
+        assertEquals(2, resumedImporter.replayEventJournal());
+        assertEquals(2, resumedObserver.getNumberOfUpdatedPageNodes());
+        assertEquals(ROOT_URL + "3", resumedObserver.url);
+        assertEquals(4, journal.getCommittedOffset(resumedObserver));
+
+        // nothing left to replay
+        assertEquals(0, resumedImporter.replayEventJournal());
+        journal.close();
+    }
+
+    @Test
+    public void testThatJournalIsKeptForObserversThatHaveNotCommittedAnything() throws IOException {
+        TransactionalGraphImporter importer = createImporter();
+        GraphImporterTestBase.TestGraphObserver observer = new GraphImporterTestBase.TestGraphObserver();
+        importer.addObserver(observer);
+
+        // an observer that stops before processing anything, e.g. because its events were all discarded
+        observer.shutdown();
+        EventJournal journal = new EventJournal(journalDir.getPath());
+        importer.setEventJournal(journal);
+        importer.addPage(ROOT_URL, "root");
+        importer.addPage(ROOT_URL + "1", "content 1");
+        importer.stop();
+        journal.close();
+
+        TransactionalGraphImporter resumedImporter = createImporter();
+        GraphImporterTestBase.TestGraphObserver resumedObserver = new GraphImporterTestBase.TestGraphObserver();
+        resumedImporter.addObserver(resumedObserver);
+        journal = new EventJournal(journalDir.getPath());
+        resumedImporter.setEventJournal(journal);
+
+        assertEquals(2, journal.size());
+        assertEquals(2, resumedImporter.replayEventJournal());
+        assertEquals(2, resumedObserver.getNumberOfUpdatedPageNodes());
+        journal.close();
+    }
+
+    @Test
+    public void testThatObserversOfTheSameClassHaveOffsetsOfTheirOwn() throws IOException {
+        List<PageSnapshot> pages = createPages(3);
+        GraphObserver first = new GraphImporterTestBase.TestGraphObserver();
+        GraphObserver second = new GraphImporterTestBase.TestGraphObserver();
+
+        try (EventJournal journal = new EventJournal(journalDir.getPath())) {
+            journal.append(pages);
+            journal.register(first);
+            journal.register(second);
+            journal.commit(first, 0, 3);
+            journal.commit(second, 0, 1);
+            assertEquals(3, journal.getCommittedOffset(first));
+            assertEquals(1, journal.getCommittedOffset(second));
+        }
+
+        // registered in the same order they get their offsets back
+        GraphObserver resumedFirst = new GraphImporterTestBase.TestGraphObserver();
+        GraphObserver resumedSecond = new GraphImporterTestBase.TestGraphObserver();
+        try (EventJournal journal = new EventJournal(journalDir.getPath())) {
+            journal.register(resumedFirst);
+            journal.register(resumedSecond);
+            assertEquals(3, journal.getCommittedOffset(resumedFirst));
+            assertEquals(1, journal.getCommittedOffset(resumedSecond));
+        }
+    }
+
+    @Test
+    public void testThatCompletedRangesAreMergedAndTheOldestGapIsGivenUpOn() throws IOException {
+        GraphObserver observer = new GraphImporterTestBase.TestGraphObserver();
+
+        try (EventJournal journal = new EventJournal(journalDir.getPath())) {
+            // entry 0 never completes
+            journal.commit(observer, 1, 2);
+            journal.commit(observer, 2, 3);
+            assertEquals(1, journal.getNumberOfCompletedRanges(observer));
+
+            for (int i = 0; i < EventJournal.MAX_COMPLETED_RANGES; i++) {
+                journal.commit(observer, 4 + 2 * i, 5 + 2 * i);
+            }
+            assertEquals(3, journal.getCommittedOffset(observer));
+            assertEquals(EventJournal.MAX_COMPLETED_RANGES, journal.getNumberOfCompletedRanges(observer));
+        }
+    }
+
+    @Test
+    public void testThatDroppedEventsDoNotHoldBackTheCommittedOffset() throws Exception {
+        TransactionalGraphImporter importer = createImporter();
+        ObserverDispatcherTest.BlockedObserver observer = new ObserverDispatcherTest.BlockedObserver();
+        importer.addObserver(observer, 1, 1, ObserverDispatcher.OverflowPolicy.DROP);
+
+        try (EventJournal journal = new EventJournal(journalDir.getPath())) {
+            importer.setEventJournal(journal);
+            for (int i = 0; i < 10; i++) {
+                importer.addPage(ROOT_URL + i, "content");
+            }
+            assertTrue(importer.getDispatcher(observer).getNumberOfDroppedEvents() > 0);
+
+            observer.release();
+            importer.waitForImportToFinish();
+
+            assertEquals(10, journal.getCommittedOffset(observer));
+            assertEquals(0, journal.getNumberOfCompletedRanges(observer));
+        }
+    }
+
+    private TransactionalGraphImporter createImporter() {
+        return new TransactionalGraphImporter(graphDb, ROOT_URL, System.currentTimeMillis(), 500);
+    }
+
+    private List<PageSnapshot> createPages(int count) {
+        TransactionalGraphImporter importer = createImporter();
+        List<PageSnapshot> pages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            pages.add(PageSnapshot.of(importer.addPage(ROOT_URL + i, "content")));
+        }
+        return pages;
+    }
+}
@@ -0,0 +1,102 @@
+package org.neo4japps.webgraph.importer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4japps.webgraph.util.DirectoryUtil;
+
+public class GraphEnricherTest {
+    private static final String ROOT_URL = "http://homepage.com/";
+    private static final int NUMBER_OF_LINKS = 250;
+
+    /**
+     * Ignores home pages, i.e. pretends they have been enriched already.
+     */
+    private static class LeafPageObserver extends GraphImporterTestBase.TestGraphObserver {
+        @Override
+        protected boolean shouldIgnore(Node page, GraphImporter graphImporter) {
+            return PageNode.HOME_PAGE.equals(PageNode.getType(page));
+        }
+    }
+
+    @Test
+    public void testThatBatchImportedGraphIsEnriched() throws Exception {
+        File dbDir = Files.createTempDirectory("enricher").toFile();
+        try {
+            AbstractObservableGraphImporter importer = new BatchGraphImporter(dbDir.getPath(), ROOT_URL,
+                    System.currentTimeMillis(), 1);
+            try {
+                doTestThatGraphIsEnriched(importer);
+            } finally {
+                importer.shutdown();
+            }
+        } finally {
+            deleteDir(dbDir);
+        }
+    }
+
+    @Test
+    public void testThatTransactionalGraphIsEnriched() throws Exception {
+        AbstractObservableGraphImporter importer = TransactionalGraphImporter.createImpermanentInstance(ROOT_URL,
+                System.currentTimeMillis(), 500);
+        try {
+            doTestThatGraphIsEnriched(importer);
+        } finally {
+            importer.shutdown();
+        }
+    }
+
+    private void doTestThatGraphIsEnriched(AbstractObservableGraphImporter importer) throws Exception {
+        Node rootPage = importer.addPage(ROOT_URL, "root content");
+        importer.addLinks(rootPage, createUrlList(NUMBER_OF_LINKS));
+        addCategoryNode(importer);
+        importer.waitForImportToFinish();
+
+        LeafPageObserver observer = new LeafPageObserver();
+        importer.addObserver(observer);
+
+        // small partitions and batches so that we exercise the partitioning
+        GraphEnricher enricher = new GraphEnricher(importer, 4, 32, 10);
+        assertEquals(NUMBER_OF_LINKS + 1, enricher.enrich());
+        importer.waitForImportToFinish();
+
+        assertEquals(NUMBER_OF_LINKS + 1, observer.getNumberOfNotifiedPageNodes());
+        assertEquals(1, observer.getNumberOfIgnoredPageNodes());
+        assertEquals(NUMBER_OF_LINKS, observer.getNumberOfUpdatedPageNodes());
+    }
+
+    private static void addCategoryNode(GraphImporter importer) {
+        Transaction tx = importer.beginDbTransaction();
+        try {
+            Node category = importer.createNode();
+            category.setProperty("category", "test");
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+    }
+
+    private static List<String> createUrlList(int size) {
+        final List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(ROOT_URL + "page" + i);
+        }
+        return list;
+    }
+
+    private static void deleteDir(File dir) {
+        try {
+            DirectoryUtil.deleteDir(dir);
+        } catch (IOException ignore) {
+            // we're having trouble deleting Lucene index files on Windows sometimes
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.neo4japps.webgraph.importer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+public class GraphObserverTest {
+    private static final String ROOT_URL = "http://homepage.com/";
+
+    /**
+     * Updates pages in bulk, using the snapshots only. Pages of sub domain 3 fail, pages of sub domain 7 are ignored.
+     */
+    private static class BulkObserver extends GraphObserver {
+        final List<Integer> chunkSizes = new ArrayList<>();
+        boolean failWholeChunk;
+
+        @Override
+        protected int getTransactionSize() {
+            return 4;
+        }
+
+        @Override
+        protected boolean shouldIgnore(Node page, GraphImporter graphImporter) {
+            throw new UnsupportedOperationException("Pages should be checked using their snapshots");
+        }
+
+        @Override
+        protected boolean shouldIgnore(PageSnapshot page, GraphImporter graphImporter) {
+            return page.getUrl().contains("subdomain7.");
+        }
+
+        @Override
+        protected Node updatePage(Node page, GraphImporter graphImporter) {
+            throw new UnsupportedOperationException("Pages should be updated in bulk");
+        }
+
+        @Override
+        protected List<PageSnapshot> updatePages(List<PageSnapshot> pages, GraphImporter graphImporter) {
+            chunkSizes.add(pages.size());
+            if (failWholeChunk) {
+                throw new IllegalStateException("Simulated bulk failure");
+            }
+
+            List<PageSnapshot> updatedPages = new ArrayList<>();
+            for (PageSnapshot page : pages) {
+                if (!page.getUrl().contains("subdomain3.")) {
+                    updatedPages.add(page);
+                }
+            }
+            return updatedPages;
+        }
+    }
+
+    private TransactionalGraphImporter importer;
+    private Node rootPage;
+
+    @Before
+    public void createImporter() {
+        importer = new TransactionalGraphImporter(
+                new TestGraphDatabaseFactory().newImpermanentDatabaseBuilder().newGraphDatabase(), ROOT_URL,
+                System.currentTimeMillis(), 500);
+        rootPage = importer.addPage(ROOT_URL, "root content");
+    }
+
+    @After
+    public void shutdownImporter() {
+        importer.shutdown();
+    }
+
+    @Test
+    public void testThatPagesAreUpdatedInChunksWithoutTransactions() throws Exception {
+        doTestThatPagesAreUpdatedInChunks(false);
+    }
+
+    @Test
+    public void testThatPagesAreUpdatedInChunksUsingTransactions() throws Exception {
+        doTestThatPagesAreUpdatedInChunks(true);
+    }
+
+    private void doTestThatPagesAreUpdatedInChunks(boolean useTransactions) throws Exception {
+        BulkObserver observer = createObserver(useTransactions);
+
+        importer.addLinks(rootPage, createUrlList(10));
+
+        assertEquals(10, observer.getNumberOfNotifiedPageNodes());
+        assertEquals(1, observer.getNumberOfIgnoredPageNodes());
+        assertEquals(8, observer.getNumberOfUpdatedPageNodes());
+        assertEquals(1, observer.getNumberOfFailedUpdates());
+        assertEquals(0, observer.getNumberOfPageNodesPendingProcessing());
+
+        // chunks of 4, minus the ignored page in the second chunk
+        List<Integer> expectedChunkSizes = new ArrayList<>();
+        expectedChunkSizes.add(4);
+        expectedChunkSizes.add(3);
+        expectedChunkSizes.add(2);
+        assertEquals(expectedChunkSizes, observer.chunkSizes);
+    }
+
+    @Test
+    public void testThatExceptionFailsTheWholeChunk() throws Exception {
+        BulkObserver observer = createObserver(true);
+        observer.failWholeChunk = true;
+
+        importer.addLinks(rootPage, createUrlList(10));
+
+        assertEquals(1, observer.getNumberOfIgnoredPageNodes());
+        assertEquals(0, observer.getNumberOfUpdatedPageNodes());
+        assertEquals(9, observer.getNumberOfFailedUpdates());
+    }
+
+    private BulkObserver createObserver(boolean useTransactions) throws Exception {
+        BulkObserver observer = new BulkObserver();
+        String[] args = useTransactions ? new String[]{"-t"} : new String[]{};
+        observer.configure(new ApplicationConfiguration(args, new Properties()));
+        importer.addObserver(observer);
+        return observer;
+    }
+
+    private static List<String> createUrlList(int size) {
+        final List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add("http://subdomain" + i + ".homepage.com/");
+        }
+        return list;
+    }
+}
@@ -44,7 +44,7 @@ public class GraphTransactionTemplateTest extends TestCase {
     protected void setUp() {
         graphImporter = new TransactionalGraphImporter(
                 new TestGraphDatabaseFactory().newImpermanentDatabaseBuilder().newGraphDatabase(),
-                "http://homepage.com/", System.currentTimeMillis(), 100, 500);
+                "http://homepage.com/", System.currentTimeMillis(), 500);
     }
 
     @Override
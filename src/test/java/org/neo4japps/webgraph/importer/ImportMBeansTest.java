@@ -0,0 +1,102 @@
+package org.neo4japps.webgraph.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ImportMBeansTest {
+
+    private static final String ROOT_URL = "http://www.mydomain.com/";
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final ImportMBeans mbeans = new ImportMBeans();
+
+    private TransactionalGraphImporter importer;
+
+    @Before
+    public void createImporter() {
+        importer = TransactionalGraphImporter.createImpermanentInstance(ROOT_URL, System.currentTimeMillis(), 10);
+    }
+
+    @After
+    public void shutdown() {
+        mbeans.unregisterAll();
+        importer.shutdown();
+    }
+
+    @Test
+    public void testThatImporterAndObserverStatisticsAreExposed() throws Exception {
+        GraphObserver observer = new CrawlBenchmark.BenchmarkObserver();
+        importer.addObserver(observer);
+
+        mbeans.registerImporter(importer);
+        mbeans.registerObserver(observer, null);
+
+        importer.addLinks(importer.addPage(ROOT_URL, "root"), Arrays.asList(ROOT_URL + "a", ROOT_URL + "b"));
+
+        ObjectName importerName = new ObjectName(ImportMBeans.DOMAIN + ":type=GraphImporter");
+        assertEquals("TransactionalGraphImporter", server.getAttribute(importerName, "ImporterType"));
+        assertEquals(3, server.getAttribute(importerName, "NumberOfPageNodes"));
+        assertEquals(2, server.getAttribute(importerName, "NumberOfLinks"));
+        assertEquals(0, server.getAttribute(importerName, "EventQueueDepth"));
+
+        ObjectName observerName = new ObjectName(ImportMBeans.DOMAIN + ":type=GraphObserver,name=\"BenchmarkObserver\"");
+        assertEquals(3, server.getAttribute(observerName, "NumberOfNotifiedPageNodes"));
+        assertEquals(0, server.getAttribute(observerName, "NumberOfQueuedEvents"));
+    }
+
+    @Test
+    public void testThatObserversOfTheSameClassGetBeansOfTheirOwn() throws Exception {
+        GraphObserver first = new CrawlBenchmark.BenchmarkObserver();
+        GraphObserver second = new CrawlBenchmark.BenchmarkObserver();
+        importer.addObserver(first);
+        importer.addPage(ROOT_URL, "root");
+        importer.addObserver(second);
+
+        mbeans.registerObserver(first, null);
+        mbeans.registerObserver(second, null);
+
+        ObjectName firstName = new ObjectName(ImportMBeans.DOMAIN + ":type=GraphObserver,name=\"BenchmarkObserver\"");
+        ObjectName secondName = new ObjectName(ImportMBeans.DOMAIN
+                + ":type=GraphObserver,name=\"BenchmarkObserver-2\"");
+        assertEquals(1, server.getAttribute(firstName, "NumberOfNotifiedPageNodes"));
+        assertEquals(0, server.getAttribute(secondName, "NumberOfNotifiedPageNodes"));
+    }
+
+    @Test
+    public void testThatFailedUrlCountsAreExposedPerErrorType() throws Exception {
+        mbeans.registerFailedUrls();
+        FailedUrls.getInstance().add("ImportMBeansTest", "http://www.otherdomain.com/", "Failed");
+
+        ObjectName name = new ObjectName(ImportMBeans.DOMAIN + ":type=FailedUrls");
+        TabularData counts = (TabularData) server.getAttribute(name, "CountsByErrorType");
+        assertEquals(1, counts.get(new Object[]{"ImportMBeansTest"}).get("value"));
+        assertTrue((Integer) server.getAttribute(name, "NumberOfFailedUrls") >= 1);
+    }
+
+    @Test
+    public void testThatBeansAreUnregistered() throws Exception {
+        mbeans.registerImporter(importer);
+        mbeans.registerCrawler(System.currentTimeMillis());
+        // registering again replaces the old bean
+        mbeans.registerCrawler(System.currentTimeMillis());
+
+        ObjectName crawlerName = new ObjectName(ImportMBeans.DOMAIN + ":type=Crawler");
+        assertTrue(server.isRegistered(crawlerName));
+
+        mbeans.unregisterAll();
+        assertFalse(server.isRegistered(crawlerName));
+        assertFalse(server.isRegistered(new ObjectName(ImportMBeans.DOMAIN + ":type=GraphImporter")));
+    }
+}
@@ -0,0 +1,152 @@
+package org.neo4japps.webgraph.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4japps.webgraph.jfr.GraphTransactionEvent;
+import org.neo4japps.webgraph.jfr.ObserverUpdateEvent;
+
+public class JfrEventsTest {
+
+    private static final String ROOT_URL = "http://www.mydomain.com/";
+
+    private TransactionalGraphImporter importer;
+
+    @Before
+    public void createImporter() {
+        importer = TransactionalGraphImporter.createImpermanentInstance(ROOT_URL, System.currentTimeMillis(), 10);
+        importer.addObserver(new CrawlBenchmark.BenchmarkObserver());
+    }
+
+    @After
+    public void shutdown() {
+        importer.shutdown();
+    }
+
+    @Test
+    public void testThatEventsAreDisabledByDefault() throws Exception {
+        try (Recording recording = new Recording(Configuration.getConfiguration("default"))) {
+            recording.start();
+            importPage();
+            recording.stop();
+
+            assertTrue(readWebGraphEvents(recording).isEmpty());
+        }
+    }
+
+    @Test
+    public void testThatEnabledEventsCarryPageDetails() throws Exception {
+        try (Recording recording = new Recording()) {
+            recording.enable(ObserverUpdateEvent.class).withoutThreshold();
+            recording.enable(GraphTransactionEvent.class).withoutThreshold();
+            recording.start();
+            importPage();
+            recording.stop();
+
+            List<RecordedEvent> events = readWebGraphEvents(recording);
+
+            RecordedEvent update = find(events, "org.neo4japps.webgraph.ObserverUpdate", "observer",
+                    "BenchmarkObserver");
+            assertEquals(ROOT_URL, update.getString("firstUrl"));
+            assertEquals(1, update.getInt("pageCount"));
+
+            // the importer runs transactions of its own
+            RecordedEvent transaction = find(events, "org.neo4japps.webgraph.GraphTransaction", "task", "import task");
+            assertEquals(0, transaction.getInt("retries"));
+            assertTrue(transaction.getBoolean("succeeded"));
+            assertNull(transaction.getString("failure"));
+        }
+    }
+
+    @Test
+    public void testThatFailedTransactionIsRecorded() throws Exception {
+        try (Recording recording = new Recording()) {
+            recording.enable(GraphTransactionEvent.class).withoutThreshold();
+            recording.start();
+            try {
+                new GraphTransactionTemplate(this).execute(new FailingTask(), importer);
+                fail("Task should have failed");
+            } catch (IllegalStateException e) {
+                assertEquals("no graph for you", e.getMessage());
+            }
+            recording.stop();
+
+            RecordedEvent transaction = find(readWebGraphEvents(recording), "org.neo4japps.webgraph.GraphTransaction",
+                    "task", "failing task");
+            assertFalse(transaction.getBoolean("succeeded"));
+            assertEquals("java.lang.IllegalStateException: no graph for you", transaction.getString("failure"));
+        }
+    }
+
+    private void importPage() throws Exception {
+        importer.addPage(ROOT_URL, "root");
+        new GraphTransactionTemplate(this).execute(new ImportTask(), importer);
+    }
+
+    private static final class ImportTask implements Callable<Object> {
+        @Override
+        public Object call() {
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "import task";
+        }
+    }
+
+    private static final class FailingTask implements Callable<Object> {
+        @Override
+        public Object call() {
+            throw new IllegalStateException("no graph for you");
+        }
+
+        @Override
+        public String toString() {
+            return "failing task";
+        }
+    }
+
+    private static List<RecordedEvent> readWebGraphEvents(Recording recording) throws IOException {
+        Path file = Files.createTempFile("webgraph", ".jfr");
+        try {
+            recording.dump(file);
+            List<RecordedEvent> events = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getEventType().getName().startsWith("org.neo4japps.webgraph.")) {
+                    events.add(event);
+                }
+            }
+            return events;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, String name, String field, String value) {
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name) && value.equals(event.getString(field))) {
+                return event;
+            }
+        }
+        throw new AssertionError("No " + name + " event in " + events);
+    }
+}
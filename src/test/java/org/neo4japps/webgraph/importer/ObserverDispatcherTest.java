@@ -0,0 +1,157 @@
+package org.neo4japps.webgraph.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+public class ObserverDispatcherTest {
+    private static final String ROOT_URL = "http://www.abc.com/";
+
+    /**
+     * Observer that doesn't process any page until it's released.
+     */
+    static class BlockedObserver extends GraphObserver {
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        protected int getTransactionSize() {
+            return 10;
+        }
+
+        @Override
+        protected boolean shouldIgnore(Node page, GraphImporter graphImporter) {
+            return false;
+        }
+
+        @Override
+        protected Node updatePage(Node page, GraphImporter graphImporter) {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return page;
+        }
+
+        void release() {
+            release.countDown();
+        }
+    }
+
+    private TransactionalGraphImporter importer;
+
+    @Before
+    public void createImporter() {
+        importer = new TransactionalGraphImporter(
+                new TestGraphDatabaseFactory().newImpermanentDatabaseBuilder().newGraphDatabase(), ROOT_URL,
+                System.currentTimeMillis(), 500);
+    }
+
+    @After
+    public void shutdownImporter() {
+        importer.shutdown();
+    }
+
+    @Test
+    public void testThatSynchronousObserversHaveNoDispatcher() {
+        GraphImporterTestBase.TestGraphObserver observer = new GraphImporterTestBase.TestGraphObserver();
+        importer.addObserver(observer);
+        assertNull(importer.getDispatcher(observer));
+
+        importer.addPage(ROOT_URL, "root content");
+        assertEquals(1, observer.getNumberOfReceivedEvents());
+    }
+
+    @Test
+    public void testThatSlowObserverDoesNotDelayImportOrOtherObservers() throws InterruptedException {
+        BlockedObserver slowObserver = new BlockedObserver();
+        GraphImporterTestBase.TestGraphObserver fastObserver = new GraphImporterTestBase.TestGraphObserver();
+        importer.addObserver(slowObserver, 100, 1, ObserverDispatcher.OverflowPolicy.BLOCK);
+        importer.addObserver(fastObserver);
+
+        for (int i = 0; i < 5; i++) {
+            importer.addPage(ROOT_URL + i, "content");
+        }
+
+        assertEquals(5, fastObserver.getNumberOfReceivedEvents());
+        assertTrue(importer.getDispatcher(slowObserver).getNumberOfPendingEvents() > 0);
+
+        slowObserver.release();
+        importer.waitForImportToFinish();
+
+        assertEquals(0, importer.getDispatcher(slowObserver).getNumberOfPendingEvents());
+        assertEquals(5, slowObserver.getNumberOfReceivedEvents());
+        assertEquals(5, slowObserver.getNumberOfUpdatedPageNodes());
+    }
+
+    @Test
+    public void testThatDropPolicyDiscardsEventsWhenQueueIsFull() throws InterruptedException {
+        BlockedObserver observer = new BlockedObserver();
+        importer.addObserver(observer, 1, 1, ObserverDispatcher.OverflowPolicy.DROP);
+
+        for (int i = 0; i < 10; i++) {
+            importer.addPage(ROOT_URL + i, "content");
+        }
+        observer.release();
+        importer.waitForImportToFinish();
+
+        ObserverDispatcher dispatcher = importer.getDispatcher(observer);
+        // at most one event being processed and one queued, the rest gets dropped
+        assertTrue(dispatcher.getNumberOfDroppedEvents() >= 8);
+        assertEquals(dispatcher.getNumberOfDroppedEvents(), dispatcher.getNumberOfDroppedPages());
+        assertEquals(10, observer.getNumberOfReceivedEvents() + dispatcher.getNumberOfDroppedEvents());
+    }
+
+    @Test
+    public void testThatSpillPolicyLosesNothing() throws InterruptedException {
+        BlockedObserver observer = new BlockedObserver();
+        importer.addObserver(observer, 1, 1, ObserverDispatcher.OverflowPolicy.SPILL);
+
+        for (int i = 0; i < 10; i++) {
+            importer.addPage(ROOT_URL + i, "content");
+        }
+        ObserverDispatcher dispatcher = importer.getDispatcher(observer);
+        assertTrue(dispatcher.getSpillQueueSize() > 0);
+
+        observer.release();
+        importer.waitForImportToFinish();
+
+        assertEquals(0, dispatcher.getNumberOfDroppedEvents());
+        assertTrue(dispatcher.getNumberOfSpilledEvents() >= 8);
+        assertEquals(0, dispatcher.getSpillQueueSize());
+        assertEquals(10, observer.getNumberOfReceivedEvents());
+    }
+
+    @Test
+    public void testThatStopDiscardsQueuedEventsFromPendingCounts() throws InterruptedException {
+        BlockedObserver observer = new BlockedObserver();
+        importer.addObserver(observer, 1, 1, ObserverDispatcher.OverflowPolicy.SPILL);
+
+        for (int i = 0; i < 10; i++) {
+            importer.addPage(ROOT_URL + i, "content");
+        }
+        ObserverDispatcher dispatcher = importer.getDispatcher(observer);
+        assertEquals(10, dispatcher.getNumberOfPendingPages());
+
+        dispatcher.stop();
+        observer.release();
+
+        // the event being processed when stopped still has to finish
+        for (int i = 0; i < 100 && !dispatcher.isIdle(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(dispatcher.isIdle());
+        assertEquals(0, dispatcher.getNumberOfPendingPages());
+        assertEquals(0, dispatcher.getSpillQueueSize());
+        assertTrue(observer.getNumberOfReceivedEvents() <= 1);
+    }
+}
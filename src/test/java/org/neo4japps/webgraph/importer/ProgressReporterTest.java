@@ -0,0 +1,79 @@
+package org.neo4japps.webgraph.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProgressReporterTest {
+
+    private static final String ROOT_URL = "http://www.mydomain.com/";
+
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private TransactionalGraphImporter importer;
+    private ProgressReporter reporter;
+
+    @Before
+    public void createImporter() {
+        importer = TransactionalGraphImporter.createImpermanentInstance(ROOT_URL, System.currentTimeMillis(), 10);
+        importer.addObserver(new CrawlBenchmark.BenchmarkObserver());
+        reporter = new ProgressReporter(importer, 1000);
+    }
+
+    @After
+    public void shutdown() {
+        reporter.stop();
+        importer.shutdown();
+    }
+
+    @Test
+    public void testThatRatesAreComputedOverTheLastInterval() {
+        assertNull(reporter.report(reporter.sample(0)));
+
+        importer.addLinks(importer.addPage(ROOT_URL, "root"), Arrays.asList(ROOT_URL + "a", ROOT_URL + "b"));
+        String message = reporter.report(reporter.sample(ONE_SECOND));
+        assertTrue(message, message.startsWith("Nodes: 3 (3.00/s, avg 3.00/s). Links: 2 (2.00/s, avg 2.00/s)."));
+        assertTrue(message, message.contains("Handled pages: 3 (3.00/s, avg 3.00/s)."));
+
+        importer.addPage(ROOT_URL + "c", "c");
+        message = reporter.report(reporter.sample(3 * ONE_SECOND));
+        assertTrue(message, message.startsWith("Nodes: 4 (0.50/s, avg 1.33/s)."));
+        assertFalse(reporter.isStalled());
+    }
+
+    @Test
+    public void testThatStallsAreDetected() {
+        importer.addPage(ROOT_URL, "root");
+        reporter.report(reporter.sample(0));
+        reporter.report(reporter.sample(ONE_SECOND));
+        assertTrue(reporter.isStalled());
+
+        String message = reporter.report(reporter.sample(2 * ONE_SECOND));
+        assertTrue(message, message.startsWith("No progress for 2.00 secs."));
+
+        importer.addPage(ROOT_URL + "a", "a");
+        reporter.report(reporter.sample(3 * ONE_SECOND));
+        assertFalse(reporter.isStalled());
+    }
+
+    @Test
+    public void testThatTheMovingAverageOnlyCoversTheLastSamples() {
+        reporter.report(reporter.sample(0));
+        // one node per second in the first interval, none afterwards
+        importer.addPage(ROOT_URL, "root");
+        for (int i = 1; i <= ProgressReporter.MOVING_AVERAGE_SAMPLES + 1; i++) {
+            reporter.report(reporter.sample(i * ONE_SECOND));
+        }
+        String message = reporter.report(reporter.sample((ProgressReporter.MOVING_AVERAGE_SAMPLES + 2) * ONE_SECOND));
+        assertTrue(message, message.contains("Nodes: 1 (0.00/s, avg 0.00/s)."));
+        assertEquals(0, importer.getEventQueueDepth());
+    }
+}
@@ -0,0 +1,128 @@
+package org.neo4japps.webgraph.importer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.http.util.EntityUtils;
+import org.neo4japps.webgraph.util.WarcWriter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.exceptions.PageBiggerThanMaxSizeException;
+import edu.uci.ics.crawler4j.fetcher.PageFetchResult;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+import junit.framework.TestCase;
+
+public class RecordingPageFetcherTest extends TestCase {
+
+    private static final int MAX_DOWNLOAD_SIZE = 1000;
+
+    private static final byte[] SMALL_PAGE = "<html>small</html>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] BIG_PAGE = new byte[MAX_DOWNLOAD_SIZE * 10];
+
+    private HttpServer server;
+    private String rootUrl;
+    private File archiveFile;
+    private CrawlConfig config;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        rootUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+
+        archiveFile = File.createTempFile("RecordingPageFetcherTest", ".warc.gz");
+        archiveFile.delete();
+
+        config = new CrawlConfig();
+        config.setPolitenessDelay(0);
+        config.setMaxDownloadSize(MAX_DOWNLOAD_SIZE);
+    }
+
+    @Override
+    protected void tearDown() {
+        server.stop(0);
+        archiveFile.delete();
+        new File(archiveFile.getPath() + WarcWriter.INDEX_FILE_SUFFIX).delete();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        final String path = exchange.getRequestURI().getPath();
+        byte[] body;
+        long length;
+        if (path.equals("/small")) {
+            body = SMALL_PAGE;
+            length = body.length;
+        } else if (path.equals("/big")) {
+            body = BIG_PAGE;
+            length = body.length;
+        } else if (path.equals("/chunked")) {
+            body = BIG_PAGE;
+            length = 0; // no Content-Length, chunked transfer encoding
+        } else {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+        exchange.sendResponseHeaders(200, length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    public void testThatRecordedPagesAreReplayedWithTheSameOutcome() throws Exception {
+        PageFetcher recorder = new RecordingPageFetcher(config, archiveFile.getPath());
+        try {
+            assertSmallPage(recorder);
+            assertBiggerThanMaxSize(recorder, "big");
+            assertBiggerThanMaxSize(recorder, "chunked");
+        } finally {
+            recorder.shutDown();
+        }
+
+        server.stop(0);
+
+        PageFetcher replayer = new ReplayPageFetcher(config, archiveFile.getPath());
+        try {
+            assertSmallPage(replayer);
+            assertBiggerThanMaxSize(replayer, "big");
+            assertBiggerThanMaxSize(replayer, "chunked");
+            assertEquals(404, replayer.fetchPage(webUrl("unknown")).getStatusCode());
+        } finally {
+            replayer.shutDown();
+        }
+    }
+
+    private void assertSmallPage(PageFetcher fetcher) throws Exception {
+        PageFetchResult result = fetcher.fetchPage(webUrl("small"));
+        assertEquals(200, result.getStatusCode());
+        assertEquals(rootUrl + "small", result.getFetchedUrl());
+        assertTrue(Arrays.equals(SMALL_PAGE, EntityUtils.toByteArray(result.getEntity())));
+    }
+
+    private void assertBiggerThanMaxSize(PageFetcher fetcher, String path) throws Exception {
+        try {
+            fetcher.fetchPage(webUrl(path));
+            fail("Expected PageBiggerThanMaxSizeException for /" + path);
+        } catch (PageBiggerThanMaxSizeException e) {
+            assertTrue(e.getPageSize() > MAX_DOWNLOAD_SIZE);
+        }
+    }
+
+    private WebURL webUrl(String path) {
+        WebURL webUrl = new WebURL();
+        webUrl.setURL(rootUrl + path);
+        return webUrl;
+    }
+}
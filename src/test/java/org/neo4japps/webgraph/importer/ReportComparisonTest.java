@@ -0,0 +1,93 @@
+package org.neo4japps.webgraph.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class ReportComparisonTest {
+
+    private final ReportComparison comparison = new ReportComparison(10, 25, 1);
+
+    private static JsonObject report(double nodesPerSecond, double addPageP99Millis, int retried, int crawlers) {
+        return JsonParser.parseString("{\"formatVersion\": 1, \"elapsedSeconds\": 100,"
+                + " \"configuration\": {\"numberOfCrawlers\": " + crawlers + "},"
+                + " \"graph\": {\"nodes\": 1000, \"nodesPerSecond\": " + nodesPerSecond + "},"
+                + " \"transactions\": {\"retried\": " + retried + "},"
+                + " \"stages\": {\"addPage\": {\"count\": 1000, \"p99Millis\": " + addPageP99Millis + "}}}")
+                .getAsJsonObject();
+    }
+
+    private static ReportComparison.Difference find(List<ReportComparison.Difference> differences, String metric) {
+        for (ReportComparison.Difference difference : differences) {
+            if (difference.metric.equals(metric)) {
+                return difference;
+            }
+        }
+        throw new AssertionError("No difference for " + metric);
+    }
+
+    @Test
+    public void testThatRateDropsAboveTheThresholdAreRegressions() {
+        List<ReportComparison.Difference> differences = comparison.compare(report(100, 10, 0, 2), report(95, 10, 0, 2));
+        assertFalse(find(differences, "graph.nodesPerSecond").isRegression);
+
+        differences = comparison.compare(report(100, 10, 0, 2), report(80, 10, 0, 2));
+        assertTrue(find(differences, "graph.nodesPerSecond").isRegression);
+        assertEquals(-20.0, find(differences, "graph.nodesPerSecond").getChangePercent(), 0.001);
+
+        // faster is never a regression
+        differences = comparison.compare(report(100, 10, 0, 2), report(200, 10, 0, 2));
+        assertFalse(find(differences, "graph.nodesPerSecond").isRegression);
+    }
+
+    @Test
+    public void testThatSmallLatencyIncreasesAreIgnored() {
+        // +100%, but only 0.5 ms
+        List<ReportComparison.Difference> differences = comparison.compare(report(100, 0.5, 0, 2),
+                report(100, 1.0, 0, 2));
+        assertFalse(find(differences, "stages.addPage.p99Millis").isRegression);
+
+        differences = comparison.compare(report(100, 10, 0, 2), report(100, 15, 0, 2));
+        assertTrue(find(differences, "stages.addPage.p99Millis").isRegression);
+    }
+
+    @Test
+    public void testThatNewRetriesAreRegressions() {
+        List<ReportComparison.Difference> differences = comparison.compare(report(100, 10, 0, 2), report(100, 10, 3, 2));
+        assertTrue(find(differences, "transactions.retried").isRegression);
+    }
+
+    @Test
+    public void testThatCountsAndConfigurationAreNotCompared() {
+        List<ReportComparison.Difference> differences = comparison.compare(report(100, 10, 0, 2), report(100, 10, 0, 4));
+        for (ReportComparison.Difference difference : differences) {
+            assertFalse(difference.metric, difference.metric.startsWith("configuration."));
+            assertFalse(difference.metric, difference.metric.equals("graph.nodes"));
+        }
+
+        List<String> configDifferences = ReportComparison.compareConfigurations(report(100, 10, 0, 2),
+                report(100, 10, 0, 4));
+        assertEquals(1, configDifferences.size());
+        assertEquals("numberOfCrawlers: 2 -> 4", configDifferences.get(0));
+    }
+
+    @Test
+    public void testThatExitStatusReflectsRegressions() {
+        PrintStream out = new PrintStream(new ByteArrayOutputStream());
+        assertEquals(0, comparison.run(report(100, 10, 0, 2), report(100, 10, 0, 2), out));
+        assertEquals(1, comparison.run(report(100, 10, 0, 2), report(50, 10, 0, 2), out));
+
+        JsonObject otherFormat = report(100, 10, 0, 2);
+        otherFormat.addProperty("formatVersion", 2);
+        assertEquals(2, comparison.run(report(100, 10, 0, 2), otherFormat, out));
+    }
+}
@@ -0,0 +1,85 @@
+package org.neo4japps.webgraph.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+
+public class RunReportTest {
+
+    private static final String ROOT_URL = "http://www.mydomain.com/";
+
+    private TransactionalGraphImporter importer;
+
+    @Before
+    public void createImporter() {
+        importer = TransactionalGraphImporter.createImpermanentInstance(ROOT_URL, System.currentTimeMillis(), 10);
+        importer.addObserver(new CrawlBenchmark.BenchmarkObserver());
+    }
+
+    @After
+    public void shutdown() {
+        importer.shutdown();
+    }
+
+    @Test
+    public void testThatReportCanBeComparedWithItself() throws Exception {
+        importer.addLinks(importer.addPage(ROOT_URL, "root"), Arrays.asList(ROOT_URL + "a", ROOT_URL + "b"));
+        Properties props = new Properties();
+        props.setProperty(ApplicationConfiguration.ROOT_URL_KEY, ROOT_URL);
+        ApplicationConfiguration config = new ApplicationConfiguration(new String[]{"-c", "4"}, props);
+
+        RunReport report = new RunReport(config, importer, 1000, 3000);
+
+        Map<String, Object> map = report.toMap();
+        assertEquals(RunReport.FORMAT_VERSION, map.get("formatVersion"));
+        assertEquals(2.0, map.get("elapsedSeconds"));
+
+        File file = File.createTempFile("run-report", ".json");
+        try {
+            report.write(file);
+            JsonObject json = ReportComparison.read(file.getPath());
+
+            Map<String, Double> metrics = ReportComparison.flatten(json);
+            assertEquals(3.0, metrics.get("graph.nodes"), 0);
+            assertEquals(1.5, metrics.get("graph.nodesPerSecond"), 0.001);
+            assertEquals(3.0, metrics.get("observers.BenchmarkObserver.updatedPages"), 0);
+            assertEquals(4.0, metrics.get("configuration.numberOfCrawlers"), 0);
+            assertTrue(metrics.containsKey("stages.addPage.p99Millis"));
+            assertTrue(metrics.containsKey("transactions.retried"));
+
+            ReportComparison comparison = new ReportComparison(10, 25, 1);
+            for (ReportComparison.Difference difference : comparison.compare(json, json)) {
+                assertTrue(difference.toString(), !difference.isRegression);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testThatObserversOfTheSameClassAreReportedSeparately() throws Exception {
+        importer.addPage(ROOT_URL, "root");
+        importer.addObserver(new CrawlBenchmark.BenchmarkObserver());
+        importer.addPage(ROOT_URL + "a", "a");
+        Properties props = new Properties();
+        props.setProperty(ApplicationConfiguration.ROOT_URL_KEY, ROOT_URL);
+        ApplicationConfiguration config = new ApplicationConfiguration(new String[]{}, props);
+
+        Map<String, Object> observers = (Map<String, Object>) new RunReport(config, importer, 1000, 3000).toMap()
+                .get("observers");
+
+        assertEquals(2, ((Map<String, Object>) observers.get("BenchmarkObserver")).get("updatedPages"));
+        assertEquals(1, ((Map<String, Object>) observers.get("BenchmarkObserver-2")).get("updatedPages"));
+    }
+}
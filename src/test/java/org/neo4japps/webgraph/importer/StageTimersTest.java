@@ -0,0 +1,68 @@
+package org.neo4japps.webgraph.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.junit.After;
+import org.junit.Test;
+
+public class StageTimersTest {
+
+    private final StageTimers timers = StageTimers.getInstance();
+
+    @After
+    public void reset() {
+        timers.reset();
+    }
+
+    @Test
+    public void testThatRecordedLatenciesAreSummarizedInMillis() {
+        Histogram histogram = new Histogram(3);
+        for (int i = 1; i <= 100; i++) {
+            histogram.recordValue(i * 1000L);
+        }
+
+        Map<String, Object> summary = StageTimers.summarize(histogram);
+
+        assertEquals(100L, summary.get("count"));
+        assertEquals(50.0, (Double) summary.get("p50Millis"), 0.1);
+        assertEquals(90.0, (Double) summary.get("p90Millis"), 0.1);
+        assertEquals(99.0, (Double) summary.get("p99Millis"), 0.1);
+        assertEquals(100.0, (Double) summary.get("p99_9Millis"), 0.1);
+        assertEquals(100.0, (Double) summary.get("maxMillis"), 0.1);
+    }
+
+    @Test
+    public void testThatHistogramsAccumulateUntilReset() {
+        timers.reset();
+        timers.recordNanos(StageTimers.Stage.ENRICH, TimeUnit.MILLISECONDS.toNanos(5));
+        timers.recordNanos(StageTimers.Stage.ENRICH, TimeUnit.MILLISECONDS.toNanos(7));
+        assertEquals(2, timers.getHistogram(StageTimers.Stage.ENRICH).getTotalCount());
+
+        // reading a histogram doesn't lose what has been recorded
+        timers.recordNanos(StageTimers.Stage.ENRICH, TimeUnit.MILLISECONDS.toNanos(9));
+        Histogram histogram = timers.getHistogram(StageTimers.Stage.ENRICH);
+        assertEquals(3, histogram.getTotalCount());
+        assertEquals(9000, histogram.getMaxValue(), 10);
+
+        timers.reset();
+        assertEquals(0, timers.getHistogram(StageTimers.Stage.ENRICH).getTotalCount());
+    }
+
+    @Test
+    public void testThatSummaryContainsAllStages() {
+        timers.reset();
+        timers.recordNanos(StageTimers.Stage.ENRICH, TimeUnit.MILLISECONDS.toNanos(3));
+
+        Map<String, Map<String, Object>> stages = timers.summarize();
+        assertEquals(StageTimers.Stage.values().length, stages.size());
+
+        Map<String, Object> enrich = stages.get("enrich");
+        assertEquals(1L, enrich.get("count"));
+        assertTrue((Double) enrich.get("maxMillis") >= 3.0);
+    }
+}
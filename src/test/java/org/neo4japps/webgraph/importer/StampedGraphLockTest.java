@@ -0,0 +1,119 @@
+package org.neo4japps.webgraph.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class StampedGraphLockTest {
+
+    private final StampedGraphLock graphLock = new StampedGraphLock();
+
+    @Test
+    public void testThatWriteLockIsReentrantAndAllowsReading() {
+        graphLock.writeLock().lock();
+        try {
+            graphLock.writeLock().lock();
+            graphLock.readLock().lock();
+            graphLock.readLock().unlock();
+            graphLock.writeLock().unlock();
+            assertEquals("read", graphLock.optimisticRead(() -> "read"));
+        } finally {
+            graphLock.writeLock().unlock();
+        }
+
+        // fully released
+        assertTrue(graphLock.writeLock().tryLock());
+        graphLock.writeLock().unlock();
+    }
+
+    @Test
+    public void testThatReadLockIsTheWriteLock() throws Exception {
+        graphLock.readLock().lock();
+        try {
+            // a reader may write, it holds the write lock anyway
+            graphLock.writeLock().lock();
+            graphLock.writeLock().unlock();
+
+            final AtomicBoolean otherReaderGotLock = new AtomicBoolean(true);
+            Thread other = new Thread(() -> otherReaderGotLock.set(graphLock.readLock().tryLock()));
+            other.start();
+            other.join();
+
+            assertFalse(otherReaderGotLock.get());
+        } finally {
+            graphLock.readLock().unlock();
+        }
+        assertEquals("read", graphLock.optimisticRead(() -> "read"));
+    }
+
+    @Test
+    public void testThatOptimisticReadIsRetriedWhenWriterInterferes() throws Exception {
+        final CountDownLatch readerStarted = new CountDownLatch(1);
+        final CountDownLatch writerDone = new CountDownLatch(1);
+        final AtomicInteger attempts = new AtomicInteger();
+
+        Thread writer = new Thread(() -> {
+            try {
+                readerStarted.await();
+                graphLock.writeLock().lock();
+                graphLock.writeLock().unlock();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                writerDone.countDown();
+            }
+        });
+        writer.start();
+
+        String result = graphLock.optimisticRead(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                readerStarted.countDown();
+                try {
+                    writerDone.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("Torn read");
+            }
+            return "consistent";
+        });
+        writer.join();
+
+        assertEquals("consistent", result);
+        assertEquals(2, attempts.get());
+        assertEquals(1, graphLock.getNumberOfOptimisticReadRetries());
+    }
+
+    @Test
+    public void testThatOnlyContendedWriteLocksAreTimed() throws Exception {
+        graphLock.writeLock().lock();
+        graphLock.writeLock().unlock();
+        assertEquals(0, graphLock.getNumberOfContendedWriteLocks());
+
+        final CountDownLatch writerWaiting = new CountDownLatch(1);
+        graphLock.writeLock().lock();
+        Thread writer = new Thread(() -> {
+            writerWaiting.countDown();
+            graphLock.writeLock().lock();
+            graphLock.writeLock().unlock();
+        });
+        try {
+            writer.start();
+            writerWaiting.await();
+            Thread.sleep(50);
+        } finally {
+            graphLock.writeLock().unlock();
+        }
+        writer.join();
+
+        assertEquals(1, graphLock.getNumberOfContendedWriteLocks());
+        assertTrue(graphLock.getWriteLockWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(10));
+    }
+}
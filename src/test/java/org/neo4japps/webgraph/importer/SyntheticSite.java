@@ -0,0 +1,229 @@
+package org.neo4japps.webgraph.importer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic website for crawl benchmarks. The same settings (including the seed) always produce exactly
+ * the same pages and links.
+ * <p>
+ * Page 0 is the home page ("/"), all other pages live at "/page/{id}". Every page links to its children in a wide tree
+ * so that the whole site is reachable within a few levels of crawling. On top of that each page gets a power-law
+ * distributed number of extra links whose targets are skewed towards low page ids, which turns the first pages into
+ * hubs with lots of incoming links.
+ * <p>
+ * A fraction of the links can be turned into duplicate URLs ("/page/{id}?ref={from}", same content as the canonical
+ * URL) and media links ("/media/{from}-{n}.jpg", which the crawler should skip). Some pages can be made slow or fail
+ * with an HTTP error.
+ */
+public class SyntheticSite {
+
+    public static final int TREE_FAN_OUT = 8;
+
+    private static final String FILLER = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod "
+            + "tempor incididunt ut labore et dolore magna aliqua. ";
+
+    public static class Builder {
+        private int pageCount = 1000;
+        private int averageOutDegree = 10;
+        private double linkExponent = 2.5;
+        private int pageSizeBytes = 4096;
+        private double duplicateRatio = 0.05;
+        private double mediaLinkRatio = 0.1;
+        private double slowPageRatio = 0.01;
+        private int slowPageDelayMillis = 200;
+        private double errorRatio = 0.01;
+        private long seed = 42;
+
+        public Builder pageCount(int value) {
+            this.pageCount = value;
+            return this;
+        }
+
+        public Builder averageOutDegree(int value) {
+            this.averageOutDegree = value;
+            return this;
+        }
+
+        /**
+         * @param value the exponent of the power-law out-degree distribution, must be greater than 2
+         */
+        public Builder linkExponent(double value) {
+            this.linkExponent = value;
+            return this;
+        }
+
+        public Builder pageSizeBytes(int value) {
+            this.pageSizeBytes = value;
+            return this;
+        }
+
+        public Builder duplicateRatio(double value) {
+            this.duplicateRatio = value;
+            return this;
+        }
+
+        public Builder mediaLinkRatio(double value) {
+            this.mediaLinkRatio = value;
+            return this;
+        }
+
+        public Builder slowPageRatio(double value) {
+            this.slowPageRatio = value;
+            return this;
+        }
+
+        public Builder slowPageDelayMillis(int value) {
+            this.slowPageDelayMillis = value;
+            return this;
+        }
+
+        public Builder errorRatio(double value) {
+            this.errorRatio = value;
+            return this;
+        }
+
+        public Builder seed(long value) {
+            this.seed = value;
+            return this;
+        }
+
+        public SyntheticSite build() {
+            if (pageCount < 1) {
+                throw new IllegalArgumentException("pageCount must be greater than 0");
+            }
+            if (linkExponent <= 2.0) {
+                throw new IllegalArgumentException("linkExponent must be greater than 2");
+            }
+            return new SyntheticSite(this);
+        }
+    }
+
+    private final int pageCount;
+    private final int pageSizeBytes;
+    private final int slowPageDelayMillis;
+
+    // per page: target page ids of the links, negative ids mark duplicate (aliased) URLs
+    private final int[][] links;
+    private final int[] mediaLinks;
+    private final int[] statusCodes;
+    private final boolean[] slowPages;
+
+    private final int numberOfLinks;
+
+    private SyntheticSite(Builder builder) {
+        this.pageCount = builder.pageCount;
+        this.pageSizeBytes = builder.pageSizeBytes;
+        this.slowPageDelayMillis = builder.slowPageDelayMillis;
+
+        links = new int[pageCount][];
+        mediaLinks = new int[pageCount];
+        statusCodes = new int[pageCount];
+        slowPages = new boolean[pageCount];
+
+        final Random random = new Random(builder.seed);
+        // Pareto distribution: mean = minDegree * (exponent - 1) / (exponent - 2)
+        final double minDegree = builder.averageOutDegree * (builder.linkExponent - 2) / (builder.linkExponent - 1);
+
+        int linkCounter = 0;
+        for (int page = 0; page < pageCount; page++) {
+            final int firstChild = page * TREE_FAN_OUT + 1;
+            final int children = Math.max(0, Math.min(TREE_FAN_OUT, pageCount - firstChild));
+
+            final double u = random.nextDouble();
+            final int extraLinks = Math.min(pageCount,
+                    (int) Math.round(minDegree * Math.pow(1 - u, -1 / (builder.linkExponent - 1))));
+
+            final int[] pageLinks = new int[children + extraLinks];
+            for (int i = 0; i < children; i++) {
+                pageLinks[i] = firstChild + i;
+            }
+            for (int i = children; i < pageLinks.length; i++) {
+                // cubing a uniform value skews the targets towards the first pages, which become hubs
+                final double r = random.nextDouble();
+                int target = (int) (r * r * r * pageCount);
+                if (random.nextDouble() < builder.duplicateRatio) {
+                    target = -target - 1;
+                }
+                pageLinks[i] = target;
+            }
+            links[page] = pageLinks;
+            linkCounter += pageLinks.length;
+
+            mediaLinks[page] = (int) Math.round(pageLinks.length * builder.mediaLinkRatio);
+
+            // never break the home page, otherwise there's nothing to crawl
+            statusCodes[page] = (page > 0 && random.nextDouble() < builder.errorRatio) ? 500 : 200;
+            slowPages[page] = page > 0 && random.nextDouble() < builder.slowPageRatio;
+        }
+
+        numberOfLinks = linkCounter;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * @return the number of page links in the whole site, including duplicates but excluding media links
+     */
+    public int getNumberOfLinks() {
+        return numberOfLinks;
+    }
+
+    public int getStatusCode(int page) {
+        return statusCodes[page];
+    }
+
+    public int getDelayMillis(int page) {
+        return slowPages[page] ? slowPageDelayMillis : 0;
+    }
+
+    public static String getPath(int page) {
+        return page == 0 ? "/" : "/page/" + page;
+    }
+
+    /**
+     * @param path the path part of a URL, without query string
+     * @return the page id, or -1 if the path is not a page of this site
+     */
+    public int getPageId(String path) {
+        if (path.equals("/")) {
+            return 0;
+        }
+        if (!path.startsWith("/page/")) {
+            return -1;
+        }
+        try {
+            final int page = Integer.parseInt(path.substring("/page/".length()));
+            return (page >= 0 && page < pageCount) ? page : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public byte[] render(int page) {
+        final StringBuilder html = new StringBuilder(pageSizeBytes + 64 * links[page].length);
+        html.append("<html><head><title>Page ").append(page).append("</title></head><body>\n");
+        html.append("<h1>Page ").append(page).append("</h1>\n");
+
+        for (int target : links[page]) {
+            if (target < 0) {
+                html.append("<a href=\"").append(getPath(-target - 1)).append("?ref=").append(page).append("\">dup</a>\n");
+            } else {
+                html.append("<a href=\"").append(getPath(target)).append("\">page ").append(target).append("</a>\n");
+            }
+        }
+        for (int i = 0; i < mediaLinks[page]; i++) {
+            html.append("<a href=\"/media/").append(page).append('-').append(i).append(".jpg\">image</a>\n");
+        }
+
+        html.append("<p>");
+        while (html.length() < pageSizeBytes) {
+            html.append(FILLER);
+        }
+        html.append("</p></body></html>\n");
+
+        return html.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
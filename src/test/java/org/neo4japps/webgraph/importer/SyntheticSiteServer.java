@@ -0,0 +1,107 @@
+package org.neo4japps.webgraph.importer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded HTTP server for a {@link SyntheticSite}, bound to an ephemeral port on the loopback interface.
+ */
+public class SyntheticSiteServer implements Closeable {
+
+    private static final byte[] MEDIA_CONTENT = new byte[512];
+
+    private final SyntheticSite site;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final AtomicInteger numberOfRequests = new AtomicInteger();
+
+    public SyntheticSiteServer(SyntheticSite site, int threads) throws IOException {
+        this.site = site;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return the URL of the home page, e.g. http://localhost:12345/
+     */
+    public String getRootUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    public int getNumberOfRequests() {
+        return numberOfRequests.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        numberOfRequests.incrementAndGet();
+        try {
+            final String path = exchange.getRequestURI().getPath();
+
+            if (path.startsWith("/media/")) {
+                respond(exchange, 200, "image/jpeg", MEDIA_CONTENT);
+                return;
+            }
+
+            final int page = site.getPageId(path);
+            if (page < 0) {
+                respond(exchange, 404, "text/plain", "Not found".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            final int delay = site.getDelayMillis(page);
+            if (delay > 0) {
+                sleep(delay);
+            }
+
+            final int statusCode = site.getStatusCode(page);
+            if (statusCode != 200) {
+                respond(exchange, statusCode, "text/plain", "Synthetic error".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            respond(exchange, 200, "text/html; charset=UTF-8", site.render(page));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int statusCode, String contentType, byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(statusCode, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,70 @@
+package org.neo4japps.webgraph.importer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class SyntheticSiteTest extends TestCase {
+
+    public void testThatSameSeedGeneratesTheSameSite() {
+        SyntheticSite site1 = new SyntheticSite.Builder().pageCount(200).seed(7).build();
+        SyntheticSite site2 = new SyntheticSite.Builder().pageCount(200).seed(7).build();
+        SyntheticSite site3 = new SyntheticSite.Builder().pageCount(200).seed(8).build();
+
+        assertEquals(site1.getNumberOfLinks(), site2.getNumberOfLinks());
+        for (int page = 0; page < 200; page++) {
+            assertTrue(Arrays.equals(site1.render(page), site2.render(page)));
+            assertEquals(site1.getStatusCode(page), site2.getStatusCode(page));
+        }
+        assertFalse(Arrays.equals(site1.render(0), site3.render(0)));
+    }
+
+    public void testThatAllPagesAreReachableFromTheHomePage() {
+        SyntheticSite site = new SyntheticSite.Builder().pageCount(100).pageSizeBytes(0).build();
+        for (int page = 1; page < 100; page++) {
+            int parent = (page - 1) / SyntheticSite.TREE_FAN_OUT;
+            String parentHtml = new String(site.render(parent), StandardCharsets.UTF_8);
+            assertTrue(parentHtml.contains("href=\"" + SyntheticSite.getPath(page) + "\""));
+        }
+    }
+
+    public void testThatPagesHaveTheConfiguredSize() {
+        SyntheticSite site = new SyntheticSite.Builder().pageCount(10).pageSizeBytes(10000).build();
+        assertTrue(site.render(3).length >= 10000);
+    }
+
+    public void testThatServerServesPagesMediaAndErrors() throws IOException {
+        SyntheticSite site = new SyntheticSite.Builder().pageCount(50).errorRatio(1.0).slowPageRatio(0).build();
+        try (SyntheticSiteServer server = new SyntheticSiteServer(site, 2)) {
+            server.start();
+
+            assertEquals(200, get(server.getRootUrl()));
+            // every page but the home page fails
+            assertEquals(500, get(server.getRootUrl() + "page/1"));
+            assertEquals(404, get(server.getRootUrl() + "page/50"));
+            assertEquals(404, get(server.getRootUrl() + "nonsense"));
+            assertEquals(200, get(server.getRootUrl() + "media/0-0.jpg"));
+            assertEquals(5, server.getNumberOfRequests());
+        }
+    }
+
+    private static int get(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            int statusCode = connection.getResponseCode();
+            InputStream in = statusCode < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (in != null) {
+                in.readAllBytes();
+                in.close();
+            }
+            return statusCode;
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -32,7 +32,7 @@ public class TransactionalGraphImporterTest extends GraphImporterTestBase {
     private void createGraphImporter(int transactionSize, boolean eventHandlersExecuteTheirOwnTransactions) {
         importer = new TransactionalGraphImporter(
                 new TestGraphDatabaseFactory().newImpermanentDatabaseBuilder().newGraphDatabase(), ROOT_URL,
-                System.currentTimeMillis(), 100, transactionSize);
+                System.currentTimeMillis(), transactionSize);
     }
 
     private Node importRootPage() {
@@ -0,0 +1,71 @@
+package org.neo4japps.webgraph.util;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class CircuitBreakerTest extends TestCase {
+
+    public void testThatBreakerOpensWhenFailureRateIsReached() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 1, TimeUnit.HOURS);
+
+        // not enough calls yet
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onSuccess();
+        // 3 failures in 7 calls
+        breaker.onFailure();
+        // 4 failures in 8 calls
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getNumberOfTimesOpened());
+
+        assertFalse(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+        assertEquals(2, breaker.getNumberOfDeniedCalls());
+    }
+
+    public void testThatOldOutcomesLeaveTheWindow() {
+        CircuitBreaker breaker = new CircuitBreaker(4, 4, 0.75, 1, TimeUnit.HOURS);
+
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onSuccess();
+        // window: failure, success, success, success
+        breaker.onFailure();
+        // window: success, success, success, failure
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    public void testThatSingleTrialCallIsLetThroughAfterOpenDuration() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 1, 1.0, 50, TimeUnit.MILLISECONDS);
+
+        breaker.onFailure();
+        assertFalse(breaker.tryAcquirePermission());
+
+        Thread.sleep(100);
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // only one trial at a time
+        assertFalse(breaker.tryAcquirePermission());
+
+        // the trial fails, so the breaker opens again
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+
+        Thread.sleep(100);
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(2, breaker.getNumberOfTimesOpened());
+    }
+}
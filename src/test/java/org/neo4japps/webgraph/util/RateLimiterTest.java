@@ -0,0 +1,81 @@
+package org.neo4japps.webgraph.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class RateLimiterTest extends TestCase {
+    private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    public void testThatZeroIntervalMeansNoLimit() {
+        RateLimiter limiter = new RateLimiter(0, TimeUnit.MILLISECONDS, 1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, limiter.reserve());
+        }
+        assertEquals(0, limiter.getNumberOfDelayedRequests());
+    }
+
+    public void testThatRequestsAreSpacedAfterBurst() {
+        RateLimiter limiter = new RateLimiter(10, TimeUnit.SECONDS, 3);
+
+        // the burst goes through immediately
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+
+        // then one request per interval. The interval is long enough for the elapsed time not to matter.
+        assertDelay(INTERVAL_NANOS, limiter.reserve());
+        assertDelay(2 * INTERVAL_NANOS, limiter.reserve());
+        assertEquals(2, limiter.getNumberOfDelayedRequests());
+    }
+
+    public void testThatRateDoesNotDependOnNumberOfThreads() throws Exception {
+        final RateLimiter limiter = new RateLimiter(10, TimeUnit.SECONDS, 1);
+        final List<Long> delays = Collections.synchronizedList(new ArrayList<>());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 80; i++) {
+            executor.execute(() -> delays.add(limiter.reserve()));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // every thread got its own slot
+        Collections.sort(delays);
+        for (int i = 0; i < delays.size(); i++) {
+            assertDelay(i * INTERVAL_NANOS, delays.get(i));
+        }
+    }
+
+    public void testSlowDownAndSpeedUp() {
+        RateLimiter limiter = new RateLimiter(200, TimeUnit.MILLISECONDS, 1);
+
+        limiter.slowDown();
+        assertEquals(RateLimiter.MIN_SLOW_DOWN_INTERVAL_NANOS, limiter.getIntervalNanos());
+        limiter.slowDown();
+        assertEquals(2 * RateLimiter.MIN_SLOW_DOWN_INTERVAL_NANOS, limiter.getIntervalNanos());
+        for (int i = 0; i < 10; i++) {
+            limiter.slowDown();
+        }
+        assertEquals(RateLimiter.MAX_SLOW_DOWN_INTERVAL_NANOS, limiter.getIntervalNanos());
+        assertEquals(12, limiter.getNumberOfSlowDowns());
+
+        limiter.speedUp();
+        assertEquals(RateLimiter.MAX_SLOW_DOWN_INTERVAL_NANOS * 3 / 4, limiter.getIntervalNanos());
+        for (int i = 0; i < 100; i++) {
+            limiter.speedUp();
+        }
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(200), limiter.getIntervalNanos());
+    }
+
+    private static void assertDelay(long expected, long actual) {
+        // allow for the time that passed while the test was running
+        assertTrue("Expected about " + expected + " but was " + actual,
+                actual <= expected && actual > expected - TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,130 @@
+package org.neo4japps.webgraph.util;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.TestCase;
+
+public class SimpleHttpClientTest extends TestCase {
+
+    private HttpServer server;
+    private final AtomicInteger numberOfRequests = new AtomicInteger();
+    private final CountDownLatch releaseResponses = new CountDownLatch(1);
+
+    private SimpleHttpClient client1;
+    private SimpleHttpClient client2;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/count", exchange -> {
+            numberOfRequests.incrementAndGet();
+            try {
+                releaseResponses.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"count\":42}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/chunked", exchange -> {
+            int length = Integer.parseInt(exchange.getRequestURI().getQuery());
+            byte[] body = new byte[length];
+            Arrays.fill(body, (byte) 'x');
+            // length 0 means chunked transfer encoding, i.e. unknown content length
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        client1 = new SimpleHttpClient(this, 0);
+        client2 = new SimpleHttpClient(this, 0);
+    }
+
+    @Override
+    protected void tearDown() {
+        client1.shutdown();
+        client2.shutdown();
+        server.stop(0);
+    }
+
+    public void testThatConcurrentIdenticalRequestsAreSentOnce() throws Exception {
+        final String uri = "http://localhost:" + server.getAddress().getPort() + "/count?url=a";
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> client1.httpGet(uri));
+        waitFor(() -> numberOfRequests.get() == 1);
+
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> client2.httpGet(uri));
+        CompletableFuture<String> third = client2.httpGetAsync(uri, SimpleHttpClient.DEFAULT_MAX_CONTENT_LENGTH);
+        waitFor(() -> client2.getCoalescedRequests() == 2);
+        releaseResponses.countDown();
+
+        assertEquals("{\"count\":42}", first.get(10, TimeUnit.SECONDS));
+        assertEquals("{\"count\":42}", second.get(10, TimeUnit.SECONDS));
+        assertEquals("{\"count\":42}", third.get(10, TimeUnit.SECONDS));
+        assertEquals(1, numberOfRequests.get());
+        assertEquals(0, client1.getCoalescedRequests());
+
+        // once the response is in, the next request goes to the server again
+        assertEquals("{\"count\":42}", client1.httpGet(uri));
+        assertEquals(2, numberOfRequests.get());
+    }
+
+    public void testThatInvalidUrisDontBlockLaterRequests() throws Exception {
+        final String uri = "http://localhost:" + server.getAddress().getPort() + "/count?url=a b";
+
+        assertEquals("", client1.httpGetAsync(uri, SimpleHttpClient.DEFAULT_MAX_CONTENT_LENGTH)
+                .get(10, TimeUnit.SECONDS));
+        assertEquals("", client1.httpGetAsync(uri, SimpleHttpClient.DEFAULT_MAX_CONTENT_LENGTH)
+                .get(10, TimeUnit.SECONDS));
+        assertEquals("", CompletableFuture.supplyAsync(() -> client2.httpGet(uri)).get(10, TimeUnit.SECONDS));
+        assertEquals(0, client1.getCoalescedRequests());
+        assertEquals(0, client2.getCoalescedRequests());
+        assertEquals(0, numberOfRequests.get());
+    }
+
+    public void testThatResponsesOfUnknownLengthAreReadUpToTheLimit() {
+        final String uri = "http://localhost:" + server.getAddress().getPort() + "/chunked?";
+        client1.setMaxContentLength(10000);
+
+        assertEquals(9999, client1.httpGet(uri + 9999).length());
+        assertEquals("", client1.httpGet(uri + 10000));
+        assertEquals("", client1.httpGet(uri + 50000));
+        assertEquals(3, client1.httpGet(uri + 3).length());
+    }
+
+    public void testThatConnectionLeasesAreCounted() {
+        final String uri = "http://localhost:" + server.getAddress().getPort() + "/chunked?10";
+
+        client1.httpGet(uri);
+        client1.httpGet(uri);
+
+        assertEquals(2, client1.getNumberOfConnectionLeases());
+        assertTrue(client1.getMaxLeaseWaitMillis() >= client1.getAverageLeaseWaitMillis());
+        assertEquals(0, client1.getPoolStats().getLeased());
+        // kept alive for the next request
+        assertEquals(1, client1.getPoolStats().getAvailable());
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -12,4 +12,9 @@ public class StringFormatUtilTest extends TestCase {
         assertEquals("1.26", StringFormatUtil.formatNodesPerSecond(1.264));
         assertEquals("1111.26", StringFormatUtil.formatNodesPerSecond(1111.264));
     }
+
+    public void testMillisFormattedCorrectly() {
+        assertEquals("0.00", StringFormatUtil.formatMillis(0.00));
+        assertEquals("12.35", StringFormatUtil.formatMillis(12.345678));
+    }
 }
@@ -0,0 +1,91 @@
+package org.neo4japps.webgraph.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+
+import junit.framework.TestCase;
+
+public class WarcArchiveTest extends TestCase {
+
+    private File archiveFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        archiveFile = File.createTempFile("WarcArchiveTest", ".warc.gz");
+        archiveFile.delete();
+    }
+
+    @Override
+    protected void tearDown() {
+        archiveFile.delete();
+        new File(archiveFile.getPath() + WarcWriter.INDEX_FILE_SUFFIX).delete();
+    }
+
+    public void testThatRecordedResponsesCanBeReplayed() throws IOException {
+        try (WarcWriter writer = new WarcWriter(archiveFile.getPath())) {
+            writer.write(new ArchivedHttpResponse("http://mydomain.com/", 200, "OK",
+                    new Header[]{new BasicHeader("Content-Type", "text/html; charset=UTF-8"),
+                            new BasicHeader("Content-Length", "9999")},
+                    "<html>home</html>".getBytes(StandardCharsets.UTF_8)));
+            writer.write(new ArchivedHttpResponse("http://mydomain.com/old", 301, "Moved Permanently",
+                    new Header[]{new BasicHeader("Location", "/new")}, null));
+            assertEquals(2, writer.getNumberOfRecords());
+        }
+
+        try (WarcReader reader = new WarcReader(archiveFile.getPath())) {
+            assertEquals(2, reader.size());
+            assertNull(reader.read("http://mydomain.com/unknown"));
+
+            ArchivedHttpResponse home = reader.read("http://mydomain.com/");
+            assertEquals(200, home.getStatusCode());
+            assertEquals("OK", home.getReasonPhrase());
+            assertEquals("text/html; charset=UTF-8", home.getFirstHeader("content-type").getValue());
+            // the original Content-Length is replaced by the length of the stored body
+            assertEquals("17", home.getFirstHeader("Content-Length").getValue());
+            assertEquals("<html>home</html>", new String(home.getBody(), StandardCharsets.UTF_8));
+
+            ArchivedHttpResponse redirect = reader.read("http://mydomain.com/old");
+            assertEquals(301, redirect.getStatusCode());
+            assertEquals("/new", redirect.getFirstHeader("Location").getValue());
+            assertEquals(0, redirect.getBody().length);
+        }
+    }
+
+    public void testThatArchiveIsAppendOnlyAndLatestRecordWins() throws IOException {
+        try (WarcWriter writer = new WarcWriter(archiveFile.getPath())) {
+            writer.write(new ArchivedHttpResponse("http://mydomain.com/", 200, "OK", null,
+                    "first".getBytes(StandardCharsets.UTF_8)));
+        }
+        try (WarcWriter writer = new WarcWriter(archiveFile.getPath())) {
+            writer.write(new ArchivedHttpResponse("http://mydomain.com/", 200, "OK", null,
+                    "second".getBytes(StandardCharsets.UTF_8)));
+        }
+
+        try (WarcReader reader = new WarcReader(archiveFile.getPath())) {
+            assertEquals(1, reader.size());
+            assertEquals("second", new String(reader.read("http://mydomain.com/").getBody(), StandardCharsets.UTF_8));
+        }
+    }
+
+    public void testThatArchiveIsAValidGzipFile() throws IOException {
+        try (WarcWriter writer = new WarcWriter(archiveFile.getPath())) {
+            writer.write(new ArchivedHttpResponse("http://mydomain.com/a", 200, "OK", null, new byte[10]));
+            writer.write(new ArchivedHttpResponse("http://mydomain.com/b", 404, "Not Found", null, null));
+        }
+
+        // concatenated gzip members decompress as a single stream
+        try (GZIPInputStream in = new GZIPInputStream(new FileInputStream(archiveFile))) {
+            String content = new String(in.readAllBytes(), StandardCharsets.ISO_8859_1);
+            assertTrue(content.startsWith("WARC/1.0\r\n"));
+            assertTrue(content.contains("WARC-Target-URI: http://mydomain.com/a\r\n"));
+            assertTrue(content.contains("WARC-Target-URI: http://mydomain.com/b\r\n"));
+            assertTrue(content.contains("HTTP/1.1 404 Not Found\r\n"));
+        }
+    }
+}